@@ -0,0 +1,100 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.benchmarks.fixtures.PersonData;
+import com.mindoo.domino.jna.constants.ReadMask;
+
+/**
+ * Benchmarks for {@link CollectionDataCache}, which NotesCollection uses to skip
+ * reading unchanged view entries.<br>
+ * <br>
+ * The class is in the <code>com.mindoo.domino.jna</code> package, because the methods
+ * that fill and read the cache are package private.
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionDataCacheBenchmark {
+	@Param({"1000"})
+	public int entryCount;
+
+	private EnumSet<ReadMask> m_readMask;
+	private NotesTimeDate m_diffTime;
+	private List<NotesViewEntryData> m_entries;
+	private CollectionDataCache m_cache;
+
+	@Setup
+	public void setup() {
+		m_readMask = EnumSet.of(ReadMask.NOTEID, ReadMask.NOTEUNID, ReadMask.SUMMARYVALUES);
+		m_diffTime = new NotesTimeDate(2021, 11, 24, 13, 45, 12);
+
+		List<PersonData> persons = PersonData.generate(entryCount);
+		m_entries = new ArrayList<>(persons.size());
+		for (PersonData currPerson : persons) {
+			NotesViewEntryData entry = new NotesViewEntryData(null);
+			entry.setNoteId(currPerson.getNoteId());
+			entry.setUNID(currPerson.getUnid());
+			entry.setColumnValues(currPerson.getValuesAsArray());
+			m_entries.add(entry);
+		}
+
+		m_cache = new CollectionDataCache(entryCount * 2);
+		m_cache.addCacheValues(m_readMask, m_diffTime, m_entries);
+	}
+
+	/**
+	 * Creates entries like NIFReadEntries returns them for documents that have not changed
+	 * since the diff time (note id only, no column values)
+	 *
+	 * @return stubs
+	 */
+	private List<NotesViewEntryData> createStubs() {
+		List<NotesViewEntryData> stubs = new ArrayList<>(m_entries.size());
+		for (NotesViewEntryData currEntry : m_entries) {
+			NotesViewEntryData stub = new NotesViewEntryData(null);
+			stub.setNoteId(currEntry.getNoteId());
+			stubs.add(stub);
+		}
+		return stubs;
+	}
+
+	@Benchmark
+	public Object addCacheValues() {
+		m_cache.addCacheValues(m_readMask, m_diffTime, m_entries);
+		return m_cache;
+	}
+
+	@Benchmark
+	public Object createStubsOnly() {
+		//baseline for populateEntryStubsWithData
+		return createStubs();
+	}
+
+	@Benchmark
+	public Object populateEntryStubsWithData() {
+		List<NotesViewEntryData> stubs = createStubs();
+		m_cache.populateEntryStubsWithData(stubs);
+		return stubs;
+	}
+}
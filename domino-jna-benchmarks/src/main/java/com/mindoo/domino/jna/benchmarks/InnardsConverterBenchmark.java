@@ -0,0 +1,84 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.internal.InnardsConverter;
+
+/**
+ * Benchmarks for the pure Java conversion between Java date/time objects and
+ * TIMEDATE innards in {@link InnardsConverter}
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InnardsConverterBenchmark {
+	private ZonedDateTime m_zonedDateTime;
+	private OffsetDateTime m_offsetDateTime;
+	private LocalDate m_localDate;
+	private int[] m_dateTimeInnards;
+	private int[] m_dateOnlyInnards;
+
+	@Setup
+	public void setup() {
+		m_zonedDateTime = ZonedDateTime.of(2021, 11, 24, 13, 45, 12, 340000000, ZoneId.of("Europe/Berlin"));
+		m_offsetDateTime = m_zonedDateTime.toOffsetDateTime();
+		m_localDate = m_zonedDateTime.toLocalDate();
+		m_dateTimeInnards = InnardsConverter.encodeInnards(m_zonedDateTime);
+		m_dateOnlyInnards = InnardsConverter.encodeInnards(m_localDate);
+	}
+
+	@Benchmark
+	public int[] encodeZonedDateTime() {
+		return InnardsConverter.encodeInnards(m_zonedDateTime);
+	}
+
+	@Benchmark
+	public int[] encodeOffsetDateTime() {
+		return InnardsConverter.encodeInnards(m_offsetDateTime, null);
+	}
+
+	@Benchmark
+	public int[] encodeLocalDate() {
+		return InnardsConverter.encodeInnards(m_localDate);
+	}
+
+	@Benchmark
+	public Object decodeDateTime() {
+		return InnardsConverter.decodeInnards(m_dateTimeInnards);
+	}
+
+	@Benchmark
+	public Object decodeDateOnly() {
+		return InnardsConverter.decodeInnards(m_dateOnlyInnards);
+	}
+
+	@Benchmark
+	public Object decodeToCalendar() {
+		return InnardsConverter.decodeInnardsToCalendar(m_dateTimeInnards);
+	}
+
+	@Benchmark
+	public Object toJavaDateTime() {
+		return InnardsConverter.toJavaDateTime(m_dateTimeInnards);
+	}
+}
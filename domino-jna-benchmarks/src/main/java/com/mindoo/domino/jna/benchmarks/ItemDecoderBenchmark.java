@@ -0,0 +1,94 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.benchmarks.fixtures.SummaryBufferEncoder;
+import com.mindoo.domino.jna.internal.ItemDecoder;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * Benchmarks for the {@link ItemDecoder} methods that convert single item values
+ * from native memory
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemDecoderBenchmark {
+	private Pointer m_numberPtr;
+	private Pointer m_textPtr;
+	private int m_textLength;
+	private Pointer m_timeDatePtr;
+	private Pointer m_numberRangePtr;
+	private int m_numberRangeLength;
+
+	@Setup
+	public void setup() {
+		Memory numberMem = new Memory(8);
+		numberMem.setDouble(0, 4711.25);
+		m_numberPtr = numberMem;
+
+		byte[] text = SummaryBufferEncoder.toAscii("Lehmann Software GmbH & Co. KG");
+		m_textLength = text.length;
+		m_textPtr = toMemory(text);
+
+		m_timeDatePtr = toMemory(SummaryBufferEncoder.encodeTimeDateInnards(new NotesTimeDate(2021, 11, 24, 13, 45, 12)));
+
+		byte[] range = SummaryBufferEncoder.encodeNumberRange(new double[] {1, 2, 3, 4, 5, 6, 7, 8});
+		m_numberRangeLength = range.length;
+		m_numberRangePtr = toMemory(range);
+	}
+
+	private static Memory toMemory(byte[] data) {
+		Memory mem = new Memory(data.length);
+		mem.write(0, data, 0, data.length);
+		return mem;
+	}
+
+	@Benchmark
+	public Object decodeNumber() {
+		return ItemDecoder.decodeNumber(m_numberPtr, 8);
+	}
+
+	@Benchmark
+	public Object decodeTextValueLazily() {
+		return ItemDecoder.decodeTextValue(m_textPtr, m_textLength, true);
+	}
+
+	@Benchmark
+	public Object decodeTextValue() {
+		return ItemDecoder.decodeTextValue(m_textPtr, m_textLength, false);
+	}
+
+	@Benchmark
+	public Object decodeTimeDateAsNotesTimeDate() {
+		return ItemDecoder.decodeTimeDateAsNotesTimeDate(m_timeDatePtr, 8);
+	}
+
+	@Benchmark
+	public Object decodeTimeDate() {
+		return ItemDecoder.decodeTimeDate(m_timeDatePtr, 8);
+	}
+
+	@Benchmark
+	public Object decodeNumberList() {
+		return ItemDecoder.decodeNumberList(m_numberRangePtr, m_numberRangeLength);
+	}
+}
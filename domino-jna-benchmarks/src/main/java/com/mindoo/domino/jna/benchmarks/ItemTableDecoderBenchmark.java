@@ -0,0 +1,100 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.IItemValueTableData;
+import com.mindoo.domino.jna.benchmarks.fixtures.BenchmarkFixtures;
+import com.mindoo.domino.jna.benchmarks.fixtures.PersonData;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
+import com.sun.jna.Pointer;
+
+/**
+ * Benchmarks for {@link NotesLookupResultBufferDecoder} decoding the summary buffers
+ * of NSFSearch (ITEM_TABLE) and NIFReadEntries (ITEM_VALUE_TABLE). Each invocation
+ * decodes all buffers of the fixture, so the score is the time per fixture.
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemTableDecoderBenchmark {
+	private Pointer[] m_itemTables;
+	private Pointer[] m_itemValueTables;
+	private IItemTableData m_reusableItemTable;
+	private IItemTableData m_reusableItemValueTable;
+
+	@Setup
+	public void setup() {
+		m_itemTables = BenchmarkFixtures.toNativeMemory(BenchmarkFixtures.getSummaryBuffers(BenchmarkFixtures.ITEMTABLE_PERSONS));
+		m_itemValueTables = BenchmarkFixtures.toNativeMemory(BenchmarkFixtures.getSummaryBuffers(BenchmarkFixtures.ITEMVALUETABLE_PERSONS));
+	}
+
+	@Benchmark
+	public void decodeItemTable(Blackhole bh) {
+		for (Pointer currPtr : m_itemTables) {
+			IItemTableData data = NotesLookupResultBufferDecoder.decodeItemTable(currPtr, true, false, false);
+			bh.consume(data.get("Lastname"));
+		}
+	}
+
+	@Benchmark
+	public void decodeItemTableAllValues(Blackhole bh) {
+		for (Pointer currPtr : m_itemTables) {
+			IItemTableData data = NotesLookupResultBufferDecoder.decodeItemTable(currPtr, true, false, true);
+			bh.consume(data.get("Lastname"));
+		}
+	}
+
+	@Benchmark
+	public void decodeItemTableReused(Blackhole bh) {
+		for (Pointer currPtr : m_itemTables) {
+			m_reusableItemTable = NotesLookupResultBufferDecoder.decodeItemTable(currPtr, true, false, false,
+					m_reusableItemTable);
+			bh.consume(m_reusableItemTable.get("Lastname"));
+		}
+	}
+
+	@Benchmark
+	public void decodeItemTableAsMap(Blackhole bh) {
+		for (Pointer currPtr : m_itemTables) {
+			IItemTableData data = NotesLookupResultBufferDecoder.decodeItemTable(currPtr, true, false, false);
+			bh.consume(data.asMap(true));
+		}
+	}
+
+	@Benchmark
+	public void decodeItemValueTable(Blackhole bh) {
+		for (Pointer currPtr : m_itemValueTables) {
+			IItemValueTableData data = NotesLookupResultBufferDecoder.decodeItemValueTable(currPtr, true, false, true);
+			for (int i=0; i<data.getItemsCount(); i++) {
+				bh.consume(data.getItemValue(i));
+			}
+		}
+	}
+
+	@Benchmark
+	public void decodeItemValueTableWithColumnNamesReused(Blackhole bh) {
+		for (Pointer currPtr : m_itemValueTables) {
+			m_reusableItemValueTable = NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(PersonData.ITEM_NAMES,
+					currPtr, true, false, false, m_reusableItemValueTable);
+			bh.consume(m_reusableItemValueTable.get("Lastname"));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mindoo.domino.jna.benchmarks.fixtures.PersonData;
+import com.mindoo.domino.jna.benchmarks.fixtures.SummaryBufferEncoder;
+import com.mindoo.domino.jna.internal.LMBCSStringConversionCache;
+import com.mindoo.domino.jna.utils.LMBCSString;
+
+/**
+ * Benchmarks for {@link LMBCSStringConversionCache} and the creation of {@link LMBCSString}
+ * objects for lazily decoded summary buffer text.<br>
+ * <br>
+ * All strings are pure ASCII, so cache misses are converted in Java and do not need
+ * the OSTranslate C API function.
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LMBCSStringConversionCacheBenchmark {
+	private static final int COUNT = 1000;
+
+	private byte[][] m_rawStrings;
+	private LMBCSString[] m_cachedStrings;
+	private LMBCSString[] m_uncachedStrings;
+
+	@Setup
+	public void setup() {
+		List<PersonData> persons = PersonData.generate(COUNT);
+
+		m_rawStrings = new byte[COUNT][];
+		m_cachedStrings = new LMBCSString[COUNT];
+		m_uncachedStrings = new LMBCSString[COUNT];
+
+		for (int i=0; i<COUNT; i++) {
+			PersonData currPerson = persons.get(i);
+			String companyName = (String) currPerson.getValues().get("CompanyName");
+			m_rawStrings[i] = SummaryBufferEncoder.toAscii(companyName);
+
+			m_cachedStrings[i] = new LMBCSString(m_rawStrings[i]);
+			//populate the cache
+			LMBCSStringConversionCache.get(m_cachedStrings[i]);
+
+			//never added to the cache
+			m_uncachedStrings[i] = new LMBCSString(SummaryBufferEncoder.toAscii(companyName + " #" + i + " (uncached)"));
+		}
+	}
+
+	@Benchmark
+	public void createLMBCSString(Blackhole bh) {
+		for (byte[] currData : m_rawStrings) {
+			bh.consume(new LMBCSString(currData));
+		}
+	}
+
+	@Benchmark
+	public void cacheHit(Blackhole bh) {
+		for (LMBCSString currStr : m_cachedStrings) {
+			bh.consume(LMBCSStringConversionCache.get(currStr));
+		}
+	}
+
+	@Benchmark
+	public void cacheLookupOnlyMiss(Blackhole bh) {
+		for (LMBCSString currStr : m_uncachedStrings) {
+			bh.consume(LMBCSStringConversionCache.get(currStr, true));
+		}
+	}
+
+	@Benchmark
+	public void cacheHitWithNewKeys(Blackhole bh) {
+		//like summary buffer decoding, which creates new LMBCSString objects for every buffer
+		for (byte[] currData : m_rawStrings) {
+			bh.consume(LMBCSStringConversionCache.get(new LMBCSString(currData)));
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.internal.SizeLimitedLRUCache;
+
+/**
+ * Benchmarks for {@link SizeLimitedLRUCache}, which is used for the string conversion
+ * caches. The cache is shared by all benchmark threads.
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SizeLimitedLRUCacheBenchmark {
+	private static final int KEY_COUNT = 10000;
+
+	/** max cache size in percent of the size of all keys */
+	@Param({"50", "200"})
+	public int capacityPercent;
+
+	private String[] m_keys;
+	private String[] m_values;
+	private SizeLimitedLRUCache<String,String> m_cache;
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+		int m_idx;
+
+		int nextIdx() {
+			m_idx = (m_idx + 7) % KEY_COUNT;
+			return m_idx;
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		m_keys = new String[KEY_COUNT];
+		m_values = new String[KEY_COUNT];
+		int totalSize = 0;
+		for (int i=0; i<KEY_COUNT; i++) {
+			m_keys[i] = "CN=User " + i + "/OU=Sales/O=Mindoo";
+			m_values[i] = "User " + i + "/Sales/Mindoo";
+			totalSize += computeEntrySize(m_keys[i], m_values[i]);
+		}
+
+		m_cache = new SizeLimitedLRUCache<String,String>((int) ((long) totalSize * capacityPercent / 100)) {
+			@Override
+			protected int computeSize(String key, String value) {
+				return computeEntrySize(key, value);
+			}
+		};
+		for (int i=0; i<KEY_COUNT; i++) {
+			m_cache.put(m_keys[i], m_values[i]);
+		}
+	}
+
+	private static int computeEntrySize(String key, String value) {
+		return key.length()*2 + value.length()*2;
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Object get(ThreadState state) {
+		return m_cache.get(m_keys[state.nextIdx()]);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object getConcurrent(ThreadState state) {
+		return m_cache.get(m_keys[state.nextIdx()]);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object getOrPutConcurrent(ThreadState state) {
+		int idx = state.nextIdx();
+		String value = m_cache.get(m_keys[idx]);
+		if (value==null) {
+			m_cache.put(m_keys[idx], m_values[idx]);
+			value = m_values[idx];
+		}
+		return value;
+	}
+}
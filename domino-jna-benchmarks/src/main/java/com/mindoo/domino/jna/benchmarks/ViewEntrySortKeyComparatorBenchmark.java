@@ -0,0 +1,98 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.benchmarks.fixtures.PersonData;
+import com.mindoo.domino.jna.virtualviews.ViewEntrySortKey;
+import com.mindoo.domino.jna.virtualviews.ViewEntrySortKeyComparator;
+import com.mindoo.domino.jna.virtualviews.VirtualView.CategorizationStyle;
+
+/**
+ * Benchmarks for {@link ViewEntrySortKeyComparator}, which is called for every
+ * insert and lookup in the {@link ConcurrentSkipListMap} of each virtual view level
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewEntrySortKeyComparatorBenchmark {
+	private static final String ORIGIN = "benchmark";
+
+	@Param({"1000", "10000"})
+	public int count;
+
+	private ViewEntrySortKeyComparator m_docComparator;
+	private ViewEntrySortKeyComparator m_categoryComparator;
+	private ViewEntrySortKey[] m_docKeys;
+	private ViewEntrySortKey[] m_categoryKeys;
+
+	@Setup
+	public void setup() {
+		List<PersonData> persons = PersonData.generate(count);
+
+		m_docComparator = new ViewEntrySortKeyComparator(CategorizationStyle.DOCUMENT_THEN_CATEGORY, false,
+				new boolean[] {false, false, true});
+		m_categoryComparator = new ViewEntrySortKeyComparator(CategorizationStyle.DOCUMENT_THEN_CATEGORY, false,
+				new boolean[0]);
+
+		m_docKeys = new ViewEntrySortKey[persons.size()];
+		m_categoryKeys = new ViewEntrySortKey[persons.size()];
+
+		for (int i=0; i<persons.size(); i++) {
+			PersonData currPerson = persons.get(i);
+
+			List<Object> docValues = new ArrayList<>(3);
+			docValues.add(currPerson.getValues().get("Lastname"));
+			docValues.add(currPerson.getValues().get("Firstname"));
+			docValues.add(currPerson.getValues().get("Birthday"));
+			m_docKeys[i] = ViewEntrySortKey.createSortKey(false, docValues, ORIGIN, currPerson.getNoteId());
+
+			List<Object> catValues = new ArrayList<>(1);
+			catValues.add(currPerson.getValues().get("City"));
+			m_categoryKeys[i] = ViewEntrySortKey.createSortKey(true, catValues, ORIGIN, 0);
+		}
+	}
+
+	@Benchmark
+	public Object sortDocumentKeys() {
+		ViewEntrySortKey[] keys = m_docKeys.clone();
+		Arrays.sort(keys, m_docComparator);
+		return keys;
+	}
+
+	@Benchmark
+	public Object sortCategoryKeys() {
+		ViewEntrySortKey[] keys = m_categoryKeys.clone();
+		Arrays.sort(keys, m_categoryComparator);
+		return keys;
+	}
+
+	@Benchmark
+	public Object insertIntoSkipList() {
+		ConcurrentSkipListMap<ViewEntrySortKey,Boolean> map = new ConcurrentSkipListMap<>(m_docComparator);
+		for (ViewEntrySortKey currKey : m_docKeys) {
+			map.put(currKey, Boolean.TRUE);
+		}
+		return map;
+	}
+}
@@ -0,0 +1,157 @@
+package com.mindoo.domino.jna.benchmarks;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mindoo.domino.jna.IViewColumn.ColumnSort;
+import com.mindoo.domino.jna.benchmarks.fixtures.PersonData;
+import com.mindoo.domino.jna.virtualviews.VirtualView;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Category;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Hidden;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+import com.mindoo.domino.jna.virtualviews.VirtualViewDataChange;
+import com.mindoo.domino.jna.virtualviews.VirtualViewNavigator;
+import com.mindoo.domino.jna.virtualviews.VirtualViewNavigator.SelectedOnly;
+
+/**
+ * Benchmarks for building and navigating a categorized {@link VirtualView}.<br>
+ * <br>
+ * The view data is passed to {@link VirtualView#applyChanges(VirtualViewDataChange)} directly
+ * instead of using a data provider, and the navigators use an access check that accepts all
+ * entries, so no Notes runtime is needed.
+ *
+ * @author Karsten Lehmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VirtualViewBenchmark {
+	private static final String ORIGIN = "benchmark";
+
+	@Param({"1000", "10000"})
+	public int docCount;
+
+	/** percentage of documents changed in {@link #applyChangesUpdate()} */
+	@Param({"1"})
+	public int changedPercent;
+
+	private List<PersonData> m_persons;
+	private VirtualView m_view;
+	private Set<Integer> m_lookupNoteIds;
+	private int m_updateRound;
+
+	@Setup(Level.Trial)
+	public void setupData() {
+		m_persons = PersonData.generate(docCount);
+
+		m_lookupNoteIds = new HashSet<>();
+		for (int i=0; i<m_persons.size(); i+=Math.max(1, m_persons.size()/100)) {
+			m_lookupNoteIds.add(m_persons.get(i).getNoteId());
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void setupView() {
+		m_view = createView();
+		m_view.applyChanges(createInitialChange());
+	}
+
+	private VirtualView createView() {
+		return new VirtualView(
+				new VirtualViewColumn("Country", "Country", Category.YES, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("City", "City", Category.YES, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Lastname", "Lastname", Category.NO, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Firstname", "Firstname", Category.NO, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Birthday", "Birthday", Category.NO, Hidden.NO, ColumnSort.DESCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Salary", "Salary", Category.NO, Hidden.NO, ColumnSort.NONE, Total.SUM, (String) null)
+				);
+	}
+
+	private VirtualViewDataChange createInitialChange() {
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		for (PersonData currPerson : m_persons) {
+			change.addEntry(currPerson.getNoteId(), currPerson.getUnid(), new HashMap<>(currPerson.getValues()));
+		}
+		return change;
+	}
+
+	private VirtualViewNavigator createNavigator() {
+		return m_view
+				.createViewNav()
+				.withCustomAccessCheck((nav, entry) -> true)
+				.build()
+				.expandAll();
+	}
+
+	@Benchmark
+	public Object applyChangesInitial() {
+		VirtualView view = createView();
+		view.applyChanges(createInitialChange());
+		return view;
+	}
+
+	@Benchmark
+	public Object applyChangesUpdate() {
+		//move some documents to other categories and positions, alternating between two states
+		m_updateRound++;
+		int step = Math.max(1, 100 / Math.max(1, changedPercent));
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+
+		for (int i=m_updateRound % step; i<m_persons.size(); i+=step) {
+			PersonData currPerson = m_persons.get(i);
+			Map<String,Object> values = new HashMap<>(currPerson.getValues());
+			if (m_updateRound % 2 == 0) {
+				values.put("City", "Updated " + values.get("City"));
+				values.put("Lastname", "Updated " + values.get("Lastname"));
+			}
+			change.addEntry(currPerson.getNoteId(), currPerson.getUnid(), values);
+		}
+		m_view.applyChanges(change);
+		return m_view;
+	}
+
+	@Benchmark
+	public long navigateAllExpanded() {
+		return createNavigator()
+				.entriesForward(SelectedOnly.NO)
+				.count();
+	}
+
+	@Benchmark
+	public long navigateTopLevel() {
+		return m_view
+				.createViewNav()
+				.withCustomAccessCheck((nav, entry) -> true)
+				.build()
+				.entriesForward(SelectedOnly.NO)
+				.count();
+	}
+
+	@Benchmark
+	public long getSortedEntries() {
+		return createNavigator()
+				.getSortedEntries(ORIGIN, m_lookupNoteIds)
+				.count();
+	}
+}
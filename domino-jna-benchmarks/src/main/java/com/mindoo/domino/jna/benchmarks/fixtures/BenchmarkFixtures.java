@@ -0,0 +1,208 @@
+package com.mindoo.domino.jna.benchmarks.fixtures;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * Loads the summary buffers used by the decoder benchmarks.<br>
+ * <br>
+ * Buffers are read from recorded fixture files if available, so that results stay comparable
+ * across runs and library versions (jfairy output may change) and so that buffers captured
+ * from real databases can be used as well:
+ * <ol>
+ * <li>from the directory specified in the system property {@value #PROP_FIXTURES_DIR}</li>
+ * <li>from the classpath folder <code>/fixtures</code></li>
+ * </ol>
+ * If no fixture file exists, the buffers are generated from {@link PersonData}.<br>
+ * <br>
+ * Run {@link #main(String[])} to record the generated buffers to a directory.
+ *
+ * @author Karsten Lehmann
+ */
+public class BenchmarkFixtures {
+	public static final String PROP_FIXTURES_DIR = "dominojna.benchmark.fixtures";
+
+	/** fixture with ITEM_TABLE buffers of person documents, like NSFSearch returns them */
+	public static final String ITEMTABLE_PERSONS = "itemtable-persons";
+	/** fixture with ITEM_VALUE_TABLE buffers of person documents, like NIFReadEntries returns them */
+	public static final String ITEMVALUETABLE_PERSONS = "itemvaluetable-persons";
+
+	/** number of buffers we generate if there is no fixture file */
+	public static final int DEFAULT_BUFFER_COUNT = 1000;
+
+	private static final int FILE_MAGIC = 0x444a4e42; // "DJNB"
+	private static final int FILE_VERSION = 1;
+
+	/**
+	 * Returns the summary buffers of a fixture
+	 *
+	 * @param fixtureName fixture name, e.g. {@link #ITEMTABLE_PERSONS}
+	 * @return buffers
+	 */
+	public static List<byte[]> getSummaryBuffers(String fixtureName) {
+		try {
+			List<byte[]> buffers = loadRecordedBuffers(fixtureName);
+			if (buffers!=null) {
+				return buffers;
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Error reading fixture "+fixtureName, e);
+		}
+		return generateSummaryBuffers(fixtureName, DEFAULT_BUFFER_COUNT);
+	}
+
+	/**
+	 * Generates summary buffers for the person documents of {@link PersonData}
+	 *
+	 * @param fixtureName fixture name, e.g. {@link #ITEMTABLE_PERSONS}
+	 * @param count number of buffers
+	 * @return buffers
+	 */
+	public static List<byte[]> generateSummaryBuffers(String fixtureName, int count) {
+		List<PersonData> persons = PersonData.generate(count);
+		List<byte[]> buffers = new ArrayList<>(count);
+
+		for (PersonData currPerson : persons) {
+			if (ITEMTABLE_PERSONS.equals(fixtureName)) {
+				buffers.add(SummaryBufferEncoder.encodeItemTable(PersonData.ITEM_NAMES, currPerson.getValuesAsArray()));
+			}
+			else if (ITEMVALUETABLE_PERSONS.equals(fixtureName)) {
+				buffers.add(SummaryBufferEncoder.encodeItemValueTable(currPerson.getValuesAsArray()));
+			}
+			else {
+				throw new IllegalArgumentException("Unknown fixture: "+fixtureName);
+			}
+		}
+		return buffers;
+	}
+
+	/**
+	 * Copies buffers into one block of native memory, like the C API returns them
+	 *
+	 * @param buffers buffers
+	 * @return pointers to the buffers, which keep the {@link Memory} block referenced
+	 */
+	public static Pointer[] toNativeMemory(List<byte[]> buffers) {
+		long totalSize = 0;
+		for (byte[] currBuffer : buffers) {
+			totalSize += currBuffer.length;
+		}
+
+		Memory mem = new Memory(Math.max(1, totalSize));
+		Pointer[] pointers = new Pointer[buffers.size()];
+		long offset = 0;
+		for (int i=0; i<buffers.size(); i++) {
+			byte[] currBuffer = buffers.get(i);
+			mem.write(offset, currBuffer, 0, currBuffer.length);
+			pointers[i] = mem.share(offset, currBuffer.length);
+			offset += currBuffer.length;
+		}
+		return pointers;
+	}
+
+	private static List<byte[]> loadRecordedBuffers(String fixtureName) throws IOException {
+		String fileName = fixtureName + ".bin";
+
+		String fixturesDir = System.getProperty(PROP_FIXTURES_DIR);
+		if (fixturesDir!=null && fixturesDir.length()>0) {
+			File file = new File(fixturesDir, fileName);
+			if (file.exists()) {
+				try (InputStream in = new FileInputStream(file)) {
+					return readBuffers(in);
+				}
+			}
+		}
+
+		InputStream in = BenchmarkFixtures.class.getResourceAsStream("/fixtures/"+fileName);
+		if (in!=null) {
+			try {
+				return readBuffers(in);
+			}
+			finally {
+				in.close();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads buffers written by {@link #writeBuffers(List, File)}
+	 *
+	 * @param in stream
+	 * @return buffers
+	 * @throws IOException in case of I/O errors or an unsupported file format
+	 */
+	public static List<byte[]> readBuffers(InputStream in) throws IOException {
+		DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+		if (dataIn.readInt()!=FILE_MAGIC) {
+			throw new IOException("Not a summary buffer fixture file");
+		}
+		int version = dataIn.readInt();
+		if (version!=FILE_VERSION) {
+			throw new IOException("Unsupported fixture file version: "+version);
+		}
+		int count = dataIn.readInt();
+		List<byte[]> buffers = new ArrayList<>(count);
+		for (int i=0; i<count; i++) {
+			byte[] buffer = new byte[dataIn.readInt()];
+			dataIn.readFully(buffer);
+			buffers.add(buffer);
+		}
+		return buffers;
+	}
+
+	/**
+	 * Writes buffers to a fixture file
+	 *
+	 * @param buffers buffers
+	 * @param file target file
+	 * @throws IOException in case of I/O errors
+	 */
+	public static void writeBuffers(List<byte[]> buffers, File file) throws IOException {
+		try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			dataOut.writeInt(FILE_MAGIC);
+			dataOut.writeInt(FILE_VERSION);
+			dataOut.writeInt(buffers.size());
+			for (byte[] currBuffer : buffers) {
+				dataOut.writeInt(currBuffer.length);
+				dataOut.write(currBuffer);
+			}
+		}
+	}
+
+	/**
+	 * Records the generated fixtures to a directory, e.g. <code>src/main/resources/fixtures</code>
+	 *
+	 * @param args target directory and optional number of buffers
+	 * @throws IOException in case of I/O errors
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length==0) {
+			System.err.println("Usage: BenchmarkFixtures <targetdir> [count]");
+			System.exit(1);
+		}
+		File targetDir = new File(args[0]);
+		targetDir.mkdirs();
+		int count = args.length>1 ? Integer.parseInt(args[1]) : DEFAULT_BUFFER_COUNT;
+
+		for (String currFixtureName : new String[] {ITEMTABLE_PERSONS, ITEMVALUETABLE_PERSONS}) {
+			List<byte[]> buffers = generateSummaryBuffers(currFixtureName, count);
+			File file = new File(targetDir, currFixtureName+".bin");
+			writeBuffers(buffers, file);
+			System.out.println("Wrote "+buffers.size()+" buffers to "+file.getAbsolutePath());
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.mindoo.domino.jna.benchmarks.fixtures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.devskiller.jfairy.Fairy;
+import com.devskiller.jfairy.producer.person.Person;
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * Person document data similar to the one that the JUnit tests write into
+ * temporary databases (see <code>BaseJNATestClass.generateNABPersons</code>),
+ * but kept in memory so that the benchmarks can run without a Notes runtime.<br>
+ * <br>
+ * The data is generated with a fixed random seed, so every benchmark run
+ * works on the same documents.
+ *
+ * @author Karsten Lehmann
+ */
+public class PersonData {
+	/** item names in the order they are written to summary buffers */
+	public static final String[] ITEM_NAMES = new String[] {
+			"Form", "Firstname", "Lastname", "CompanyName", "City", "Country", "Birthday", "Salary", "Rating"
+	};
+
+	private static final int RANDOM_SEED = 5;
+
+	private final int m_noteId;
+	private final String m_unid;
+	private final Map<String,Object> m_values;
+
+	private PersonData(int noteId, String unid, Map<String,Object> values) {
+		m_noteId = noteId;
+		m_unid = unid;
+		m_values = values;
+	}
+
+	/**
+	 * Generates person data with deterministic values
+	 *
+	 * @param count number of persons
+	 * @return persons
+	 */
+	public static List<PersonData> generate(int count) {
+		Fairy fairy = Fairy
+				.builder()
+				.withRandomSeed(RANDOM_SEED) // return deterministic data
+				.withLocale(Locale.ENGLISH)
+				.build();
+
+		List<PersonData> persons = new ArrayList<>(count);
+		for (int i=0; i<count; i++) {
+			Person person = fairy.person();
+
+			Map<String,Object> values = new LinkedHashMap<>();
+			values.put("Form", "Person");
+			values.put("Firstname", person.getFirstName());
+			values.put("Lastname", person.getLastName());
+			values.put("CompanyName", person.getCompany().getName());
+			values.put("City", person.getAddress().getCity());
+			values.put("Country", person.getNationality().getCode());
+			values.put("Birthday", new NotesTimeDate(person.getDateOfBirth()));
+			values.put("Salary", Double.valueOf(20000 + (i * 7919) % 80000));
+			List<Object> rating = new ArrayList<>(3);
+			rating.add(Double.valueOf(i % 5));
+			rating.add(Double.valueOf((i * 3) % 5));
+			rating.add(Double.valueOf((i * 7) % 5));
+			values.put("Rating", rating);
+
+			//note ids of documents are multiples of 4
+			int noteId = 4 * (i+1);
+			persons.add(new PersonData(noteId, createUnid(i), values));
+		}
+		return persons;
+	}
+
+	private static String createUnid(int idx) {
+		String hex = Integer.toHexString(idx).toUpperCase(Locale.ENGLISH);
+		StringBuilder sb = new StringBuilder(32);
+		sb.append("C1257A8B0037A");
+		for (int i=hex.length(); i<19; i++) {
+			sb.append('0');
+		}
+		sb.append(hex);
+		return sb.toString();
+	}
+
+	public int getNoteId() {
+		return m_noteId;
+	}
+
+	public String getUnid() {
+		return m_unid;
+	}
+
+	/**
+	 * Returns the item values of the person document. Value types are
+	 * {@link String}, {@link Double}, {@link NotesTimeDate} and {@link List} of {@link Double}.
+	 *
+	 * @return values keyed by item name
+	 */
+	public Map<String, Object> getValues() {
+		return m_values;
+	}
+
+	/**
+	 * Returns the values in the order of {@link #ITEM_NAMES}
+	 *
+	 * @return values
+	 */
+	public Object[] getValuesAsArray() {
+		Object[] arr = new Object[ITEM_NAMES.length];
+		for (int i=0; i<ITEM_NAMES.length; i++) {
+			arr[i] = m_values.get(ITEM_NAMES[i]);
+		}
+		return arr;
+	}
+}
@@ -0,0 +1,203 @@
+package com.mindoo.domino.jna.benchmarks.fixtures;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * Writes item values in the binary format that NSFSearch and NIFReadEntries use
+ * for summary buffers, so that the decoder code can be benchmarked without
+ * a Notes runtime.<br>
+ * <br>
+ * Supported value types are {@link String} (TYPE_TEXT), {@link Number} (TYPE_NUMBER),
+ * {@link NotesTimeDate} (TYPE_TIME) and {@link List} of {@link Number} (TYPE_NUMBER_RANGE).
+ * Text lists are not supported, because decoding them calls ListGetText in the C API.
+ * Strings are written as pure ASCII, other characters are replaced with '?'.
+ *
+ * @author Karsten Lehmann
+ */
+public class SummaryBufferEncoder {
+	//ITEM_TABLE / ITEM_VALUE_TABLE header: USHORT Length, USHORT Items
+	private static final int TABLE_HEADER_SIZE = 4;
+	//ITEM: USHORT NameLength, USHORT ValueLength
+	private static final int ITEM_SIZE = 4;
+	//RANGE: USHORT ListEntries, USHORT RangeEntries
+	private static final int RANGE_SIZE = 4;
+
+	/**
+	 * Writes an ITEM_TABLE structure with item names and values
+	 *
+	 * @param itemNames item names
+	 * @param values item values, null for an empty summary value
+	 * @return buffer
+	 */
+	public static byte[] encodeItemTable(String[] itemNames, Object[] values) {
+		byte[][] encodedNames = new byte[itemNames.length][];
+		byte[][] encodedValues = new byte[itemNames.length][];
+		int totalLength = TABLE_HEADER_SIZE + itemNames.length * ITEM_SIZE;
+
+		for (int i=0; i<itemNames.length; i++) {
+			encodedNames[i] = toAscii(itemNames[i]);
+			encodedValues[i] = encodeValue(values[i]);
+			totalLength += encodedNames[i].length + encodedValues[i].length;
+		}
+		checkLength(totalLength);
+
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream(totalLength);
+		writeShort(bOut, totalLength);
+		writeShort(bOut, itemNames.length);
+		for (int i=0; i<itemNames.length; i++) {
+			writeShort(bOut, encodedNames[i].length);
+			writeShort(bOut, encodedValues[i].length);
+		}
+		for (int i=0; i<itemNames.length; i++) {
+			bOut.write(encodedNames[i], 0, encodedNames[i].length);
+			bOut.write(encodedValues[i], 0, encodedValues[i].length);
+		}
+		return bOut.toByteArray();
+	}
+
+	/**
+	 * Writes an ITEM_VALUE_TABLE structure with item values only, like
+	 * NIFReadEntries returns for READ_MASK_SUMMARYVALUES
+	 *
+	 * @param values item values, null for an empty summary value
+	 * @return buffer
+	 */
+	public static byte[] encodeItemValueTable(Object[] values) {
+		byte[][] encodedValues = new byte[values.length][];
+		int totalLength = TABLE_HEADER_SIZE + values.length * 2;
+
+		for (int i=0; i<values.length; i++) {
+			encodedValues[i] = encodeValue(values[i]);
+			totalLength += encodedValues[i].length;
+		}
+		checkLength(totalLength);
+
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream(totalLength);
+		writeShort(bOut, totalLength);
+		writeShort(bOut, values.length);
+		for (int i=0; i<values.length; i++) {
+			writeShort(bOut, encodedValues[i].length);
+		}
+		for (int i=0; i<values.length; i++) {
+			bOut.write(encodedValues[i], 0, encodedValues[i].length);
+		}
+		return bOut.toByteArray();
+	}
+
+	/**
+	 * Encodes a single value with its data type WORD
+	 *
+	 * @param value value or null
+	 * @return encoded value, empty array for null
+	 */
+	public static byte[] encodeValue(Object value) {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+
+		if (value==null) {
+			return new byte[0];
+		}
+		else if (value instanceof String) {
+			writeShort(bOut, NotesItem.TYPE_TEXT);
+			byte[] txt = toAscii((String) value);
+			bOut.write(txt, 0, txt.length);
+		}
+		else if (value instanceof Number) {
+			writeShort(bOut, NotesItem.TYPE_NUMBER);
+			writeDouble(bOut, ((Number) value).doubleValue());
+		}
+		else if (value instanceof NotesTimeDate) {
+			writeShort(bOut, NotesItem.TYPE_TIME);
+			int[] innards = ((NotesTimeDate) value).getInnards();
+			writeInt(bOut, innards[0]);
+			writeInt(bOut, innards[1]);
+		}
+		else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			writeShort(bOut, NotesItem.TYPE_NUMBER_RANGE);
+			writeShort(bOut, list.size());
+			writeShort(bOut, 0);
+			for (Object currEntry : list) {
+				if (!(currEntry instanceof Number)) {
+					throw new IllegalArgumentException("Only number lists are supported: "+list);
+				}
+				writeDouble(bOut, ((Number) currEntry).doubleValue());
+			}
+		}
+		else {
+			throw new IllegalArgumentException("Unsupported value type: "+value.getClass().getName());
+		}
+		return bOut.toByteArray();
+	}
+
+	/**
+	 * Encodes a NotesTimeDate value without data type WORD
+	 *
+	 * @param td timedate
+	 * @return 8 bytes
+	 */
+	public static byte[] encodeTimeDateInnards(NotesTimeDate td) {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream(8);
+		int[] innards = td.getInnards();
+		writeInt(bOut, innards[0]);
+		writeInt(bOut, innards[1]);
+		return bOut.toByteArray();
+	}
+
+	/**
+	 * Encodes a number list as RANGE structure without data type WORD
+	 *
+	 * @param numbers numbers
+	 * @return encoded range
+	 */
+	public static byte[] encodeNumberRange(double[] numbers) {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream(RANGE_SIZE + numbers.length*8);
+		writeShort(bOut, numbers.length);
+		writeShort(bOut, 0);
+		for (double currNumber : numbers) {
+			writeDouble(bOut, currNumber);
+		}
+		return bOut.toByteArray();
+	}
+
+	/**
+	 * Converts a string to bytes; pure ASCII strings have the same representation
+	 * in LMBCS
+	 *
+	 * @param str string
+	 * @return bytes
+	 */
+	public static byte[] toAscii(String str) {
+		byte[] data = new byte[str.length()];
+		for (int i=0; i<str.length(); i++) {
+			char c = str.charAt(i);
+			data[i] = (byte) (c <= 0x1f || c >= 0x80 ? '?' : c);
+		}
+		return data;
+	}
+
+	private static void checkLength(int totalLength) {
+		if (totalLength > 0xffff) {
+			throw new IllegalArgumentException("Summary buffer exceeds 64K: "+totalLength);
+		}
+	}
+
+	private static void writeShort(ByteArrayOutputStream bOut, int val) {
+		bOut.write(val & 0xff);
+		bOut.write((val >>> 8) & 0xff);
+	}
+
+	private static void writeInt(ByteArrayOutputStream bOut, int val) {
+		writeShort(bOut, val & 0xffff);
+		writeShort(bOut, (val >>> 16) & 0xffff);
+	}
+
+	private static void writeDouble(ByteArrayOutputStream bOut, double val) {
+		long bits = Double.doubleToRawLongBits(val);
+		writeInt(bOut, (int) (bits & 0xffffffffL));
+		writeInt(bOut, (int) (bits >>> 32));
+	}
+}
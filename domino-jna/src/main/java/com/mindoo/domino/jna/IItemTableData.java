@@ -181,6 +181,20 @@ public interface IItemTableData extends IItemValueTableData {
 	 */
 	public Map<String,Object> asMap(boolean decodeLMBCS);
 	
+	/**
+	 * Returns a copy of this data that stays valid after the callback that received it
+	 * has returned, e.g. when the object is reused for the next search match
+	 * (see {@link NotesSearch.SearchCallback#isReuseMatchObjects()}).<br>
+	 * <br>
+	 * The default implementation returns this object, implementations that reuse
+	 * or free their data need to override it.
+	 * 
+	 * @return copy with all values decoded
+	 */
+	default IItemTableData snapshot() {
+		return this;
+	}
+	
 	/**
 	 * @deprecated internal method, no need to call this in client code
 	 */
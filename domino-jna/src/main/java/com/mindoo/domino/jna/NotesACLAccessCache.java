@@ -0,0 +1,353 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mindoo.domino.jna.NotesACL.NotesACLAccess;
+import com.mindoo.domino.jna.constants.AclFlag;
+import com.mindoo.domino.jna.constants.AclLevel;
+import com.mindoo.domino.jna.internal.SizeLimitedLRUCache;
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+
+/**
+ * Cache for the ACL access of users to databases, to be used when the same access
+ * information is computed over and over again, e.g. for every web request.<br>
+ * <br>
+ * Entries are keyed by server, database replica id and canonical username and contain
+ * the {@link AclLevel}, {@link AclFlag}s and roles of the user together with the usernames list
+ * (name variants, wildcards and groups).<br>
+ * <br>
+ * Before returning a cached entry, we compare the non-data modified date of the database
+ * ({@link NotesDatabase#getLastModifiedTimes()}), which changes when the ACL note is saved. If it differs,
+ * the ACL access is looked up again. Usernames lists are cached per server and user and expire
+ * after a configurable time, because group changes in the directory are not reflected in
+ * the database modified dates.<br>
+ * <br>
+ * Instances are thread-safe. Use {@link #getSharedInstance()} to share one cache across the application.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesACLAccessCache {
+	/** default max number of cached ACL access entries */
+	private static final int DEFAULT_MAX_ENTRIES = 50000;
+	/** default max age of cached usernames lists */
+	private static final long DEFAULT_NAMESLIST_MAX_AGE_MILLIS = 5 * 60 * 1000;
+
+	private static final NotesACLAccessCache m_sharedInstance = new NotesACLAccessCache(DEFAULT_MAX_ENTRIES,
+			DEFAULT_NAMESLIST_MAX_AGE_MILLIS);
+
+	private long m_namesListMaxAgeMillis;
+	private SizeLimitedLRUCache<String,AccessInfo> m_accessCache;
+	private SizeLimitedLRUCache<String,CachedNamesList> m_namesListCache;
+
+	private AtomicLong m_hits = new AtomicLong();
+	private AtomicLong m_misses = new AtomicLong();
+	private AtomicLong m_invalidations = new AtomicLong();
+	private AtomicLong m_namesListHits = new AtomicLong();
+	private AtomicLong m_namesListMisses = new AtomicLong();
+
+	/**
+	 * Returns the cache instance shared across the application
+	 *
+	 * @return cache
+	 */
+	public static NotesACLAccessCache getSharedInstance() {
+		return m_sharedInstance;
+	}
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param maxEntries max number of cached ACL access entries (database/user combinations) and usernames lists
+	 * @param namesListMaxAgeMillis max age of cached usernames lists in milliseconds
+	 */
+	public NotesACLAccessCache(int maxEntries, long namesListMaxAgeMillis) {
+		m_namesListMaxAgeMillis = namesListMaxAgeMillis;
+
+		m_accessCache = new SizeLimitedLRUCache<String,AccessInfo>(maxEntries) {
+			@Override
+			protected int computeSize(String key, AccessInfo value) {
+				return 1;
+			}
+		};
+		m_namesListCache = new SizeLimitedLRUCache<String,CachedNamesList>(maxEntries) {
+			@Override
+			protected int computeSize(String key, CachedNamesList value) {
+				return 1;
+			}
+		};
+	}
+
+	/**
+	 * Looks up the ACL access of a user to a database, using the cache if the ACL
+	 * has not been changed since the entry was computed
+	 *
+	 * @param db database
+	 * @param userName username, either canonical or abbreviated
+	 * @return access info
+	 */
+	public AccessInfo lookupAccess(NotesDatabase db, String userName) {
+		String server = db.getServer();
+		String userNameCanonical = NotesNamingUtils.toCanonicalName(userName);
+		String cacheKey = toServerKey(server) + "!!" + db.getReplicaID() + "!!" + userNameCanonical.toLowerCase(Locale.ENGLISH);
+
+		//the non-data modified date changes when the ACL note is saved
+		NotesTimeDate nonDataModified = db.getLastModifiedTimes()[1];
+
+		AccessInfo cachedInfo = m_accessCache.get(cacheKey);
+		if (cachedInfo!=null) {
+			if (cachedInfo.m_nonDataModified.equals(nonDataModified) && !isExpired(cachedInfo.m_namesList)) {
+				m_hits.incrementAndGet();
+				return cachedInfo;
+			}
+			m_invalidations.incrementAndGet();
+		}
+		m_misses.incrementAndGet();
+
+		CachedNamesList namesList = getCachedNamesList(server, userNameCanonical);
+
+		NotesNamesList nativeNamesList = NotesNamingUtils.writeNewNamesList(namesList.m_names);
+		NotesACLAccess aclAccess;
+		try {
+			aclAccess = db.getACL().lookupAccess(nativeNamesList);
+		}
+		finally {
+			nativeNamesList.free();
+		}
+
+		AccessInfo newInfo = new AccessInfo(db.getReplicaID(), userNameCanonical, aclAccess, namesList,
+				nonDataModified);
+		m_accessCache.put(cacheKey, newInfo);
+		return newInfo;
+	}
+
+	/**
+	 * Returns the usernames list (name variants, wildcards and groups) of a user on a server
+	 *
+	 * @param server server name, either abbreviated or canonical or null/empty string for local
+	 * @param userName username, either canonical or abbreviated
+	 * @return usernames list
+	 */
+	public List<String> getUserNamesList(String server, String userName) {
+		return getCachedNamesList(server, NotesNamingUtils.toCanonicalName(userName)).m_names;
+	}
+
+	private CachedNamesList getCachedNamesList(String server, String userNameCanonical) {
+		String cacheKey = toServerKey(server) + "!!" + userNameCanonical.toLowerCase(Locale.ENGLISH);
+
+		CachedNamesList cachedNamesList = m_namesListCache.get(cacheKey);
+		if (cachedNamesList!=null && !isExpired(cachedNamesList)) {
+			m_namesListHits.incrementAndGet();
+			return cachedNamesList;
+		}
+		m_namesListMisses.incrementAndGet();
+
+		List<String> names = NotesNamingUtils.getUserNamesList(server, userNameCanonical);
+		CachedNamesList newNamesList = new CachedNamesList(Collections.unmodifiableList(new ArrayList<String>(names)));
+		m_namesListCache.put(cacheKey, newNamesList);
+		return newNamesList;
+	}
+
+	private boolean isExpired(CachedNamesList namesList) {
+		return (System.currentTimeMillis() - namesList.m_created) > m_namesListMaxAgeMillis;
+	}
+
+	private static String toServerKey(String server) {
+		return server==null ? "" : NotesNamingUtils.toCanonicalName(server).toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Removes all cached ACL access entries of a database, e.g. after changing its ACL
+	 * in the current transaction
+	 *
+	 * @param db database
+	 */
+	public void invalidate(NotesDatabase db) {
+		String prefix = toServerKey(db.getServer()) + "!!" + db.getReplicaID() + "!!";
+		for (String currKey : m_accessCache.getKeys()) {
+			if (currKey.startsWith(prefix)) {
+				m_accessCache.remove(currKey);
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached entries and usernames lists
+	 */
+	public void clear() {
+		m_accessCache.clear();
+		m_namesListCache.clear();
+	}
+
+	/**
+	 * Returns the number of lookups that could be answered from the cache
+	 *
+	 * @return hits
+	 */
+	public long getHits() {
+		return m_hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that required an ACL lookup
+	 *
+	 * @return misses, including invalidations
+	 */
+	public long getMisses() {
+		return m_misses.get();
+	}
+
+	/**
+	 * Returns the number of cached entries that had to be recomputed because the
+	 * database ACL has been changed or the usernames list has expired
+	 *
+	 * @return invalidations
+	 */
+	public long getInvalidations() {
+		return m_invalidations.get();
+	}
+
+	/**
+	 * Returns the number of usernames list lookups that could be answered from the cache
+	 *
+	 * @return hits
+	 */
+	public long getNamesListHits() {
+		return m_namesListHits.get();
+	}
+
+	/**
+	 * Returns the number of usernames lists that had to be computed
+	 *
+	 * @return misses
+	 */
+	public long getNamesListMisses() {
+		return m_namesListMisses.get();
+	}
+
+	/**
+	 * Returns the number of cached ACL access entries
+	 *
+	 * @return size
+	 */
+	public long getCacheSize() {
+		return m_accessCache.getCurrentCacheSizeInUnits();
+	}
+
+	@Override
+	public String toString() {
+		return "NotesACLAccessCache [size="+getCacheSize()+", hits="+getHits()+", misses="+getMisses()+
+				", invalidations="+getInvalidations()+", nameslisthits="+getNamesListHits()+
+				", nameslistmisses="+getNamesListMisses()+"]";
+	}
+
+	private static class CachedNamesList {
+		private final List<String> m_names;
+		private final long m_created;
+
+		private CachedNamesList(List<String> names) {
+			m_names = names;
+			m_created = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Cached access information of a user for a database. Instances are immutable and
+	 * shared between threads.
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static class AccessInfo {
+		private final String m_replicaId;
+		private final String m_userName;
+		private final AclLevel m_aclLevel;
+		private final Set<AclFlag> m_aclFlags;
+		private final List<String> m_roles;
+		private final CachedNamesList m_namesList;
+		private final Set<String> m_namesListWithRoles;
+		private final NotesTimeDate m_nonDataModified;
+
+		private AccessInfo(String replicaId, String userName, NotesACLAccess aclAccess,
+				CachedNamesList namesList, NotesTimeDate nonDataModified) {
+			m_replicaId = replicaId;
+			m_userName = userName;
+			m_aclLevel = aclAccess.getAclLevel();
+			m_aclFlags = Collections.unmodifiableSet(EnumSet.copyOf(aclAccess.getAclFlags()));
+			m_roles = Collections.unmodifiableList(new ArrayList<String>(aclAccess.getRoles()));
+			m_namesList = namesList;
+
+			TreeSet<String> namesListWithRoles = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+			namesListWithRoles.addAll(namesList.m_names);
+			namesListWithRoles.addAll(m_roles);
+			m_namesListWithRoles = Collections.unmodifiableSet(namesListWithRoles);
+
+			m_nonDataModified = nonDataModified;
+		}
+
+		public String getReplicaId() {
+			return m_replicaId;
+		}
+
+		/**
+		 * Returns the canonical username
+		 *
+		 * @return username
+		 */
+		public String getUserName() {
+			return m_userName;
+		}
+
+		public AclLevel getAclLevel() {
+			return m_aclLevel;
+		}
+
+		public Set<AclFlag> getAclFlags() {
+			return m_aclFlags;
+		}
+
+		public List<String> getRoles() {
+			return m_roles;
+		}
+
+		/**
+		 * Returns the usernames list of the user (name variants, wildcards and groups)
+		 *
+		 * @return usernames list
+		 */
+		public List<String> getUserNamesList() {
+			return m_namesList.m_names;
+		}
+
+		/**
+		 * Returns a case-insensitive set with the usernames list and the roles of the user,
+		 * e.g. to compare it with reader items
+		 *
+		 * @return names and roles
+		 */
+		public Set<String> getUserNamesListWithRoles() {
+			return m_namesListWithRoles;
+		}
+
+		/**
+		 * Creates a new {@link NotesNamesList} from the cached usernames list. The caller is
+		 * responsible for freeing it.
+		 *
+		 * @return names list
+		 */
+		public NotesNamesList createNamesList() {
+			return NotesNamingUtils.writeNewNamesList(m_namesList.m_names);
+		}
+
+		@Override
+		public String toString() {
+			return "AccessInfo [replicaid="+m_replicaId+", user="+m_userName+", level="+m_aclLevel+
+					", flags="+m_aclFlags+", roles="+m_roles+"]";
+		}
+	}
+}
@@ -0,0 +1,766 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.transactions.RollbackException;
+import com.mindoo.domino.jna.transactions.Transactions;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Write-behind buffer for bulk create, update and delete operations.<br>
+ * <br>
+ * Operations are collected per database and written by worker threads, each with its own
+ * database handle and {@link NotesGC} context, so that writes to different databases run in
+ * parallel while the operations of one database are written in the order they have been added.<br>
+ * <br>
+ * For local databases, the operations are grouped in transactions via
+ * {@link Transactions#runInDbTransaction(NotesDatabase, com.mindoo.domino.jna.transactions.ITransactionCallable)}.
+ * The group size adapts to the measured commit duration (see {@link #setTargetCommitMillis(long)}).
+ * When a group gets rolled back, its operations are retried one by one, so only the failing
+ * operations are reported as failed. Remote databases do not support transactions; here the
+ * notes are simply updated one after the other.<br>
+ * <br>
+ * Example:<br>
+ * <pre>
+ * try (NotesBatchWriter writer = new NotesBatchWriter()) {
+ *    for (...) {
+ *       writer.create(db, items);
+ *    }
+ * }
+ * </pre>
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesBatchWriter implements AutoCloseable {
+	public static final int DEFAULT_MAX_BUFFERED_OPERATIONS = 1000;
+	public static final long DEFAULT_TARGET_COMMIT_MILLIS = 250;
+	private static final int MIN_GROUP_SIZE = 1;
+	private static final int INITIAL_GROUP_SIZE = 100;
+	private static final int MAX_GROUP_SIZE = 10000;
+
+	private ExecutorService m_executor;
+	private Map<String,DatabaseBuffer> m_buffers = new HashMap<>();
+	private int m_maxBufferedOperations = DEFAULT_MAX_BUFFERED_OPERATIONS;
+	private volatile long m_targetCommitMillis = DEFAULT_TARGET_COMMIT_MILLIS;
+	private boolean m_useTransactions = true;
+	private volatile IBatchWriterListener m_listener;
+	private volatile boolean m_closed;
+
+	private long m_startTime;
+	private AtomicLong m_submittedOps = new AtomicLong();
+	private AtomicLong m_writtenOps = new AtomicLong();
+	private AtomicLong m_failedOps = new AtomicLong();
+	private AtomicLong m_retriedOps = new AtomicLong();
+	private AtomicLong m_commits = new AtomicLong();
+	private AtomicLong m_rollbacks = new AtomicLong();
+
+	/**
+	 * Creates a new writer that writes to up to four databases in parallel
+	 */
+	public NotesBatchWriter() {
+		this(4);
+	}
+
+	/**
+	 * Creates a new writer
+	 *
+	 * @param numThreads max number of databases written in parallel
+	 */
+	public NotesBatchWriter(int numThreads) {
+		if (numThreads<1) {
+			throw new IllegalArgumentException("Number of threads must be greater than 0");
+		}
+		m_executor = Executors.newFixedThreadPool(numThreads, new NotesThreadFactory("NotesBatchWriter"));
+	}
+
+	/** Type of write operation */
+	public static enum OperationType { CREATE, UPDATE, DELETE }
+
+	/**
+	 * Listener that gets notified about written and failed operations. Methods are called from the
+	 * worker threads, so implementations need to be thread-safe.
+	 */
+	public static interface IBatchWriterListener {
+
+		/**
+		 * Method is called when an operation has been written. For {@link OperationType#CREATE},
+		 * {@link Operation#getNoteId()} and {@link Operation#getUNID()} return the new note.
+		 *
+		 * @param op operation
+		 */
+		public void operationWritten(Operation op);
+
+		/**
+		 * Method is called when an operation could not be written
+		 *
+		 * @param op operation
+		 * @param t error
+		 */
+		public void operationFailed(Operation op, Throwable t);
+
+	}
+
+	/**
+	 * Sets the number of operations per database that get buffered before
+	 * they are handed over to a worker thread
+	 *
+	 * @param maxOps number of operations, {@link #DEFAULT_MAX_BUFFERED_OPERATIONS} by default
+	 * @return this writer
+	 */
+	public NotesBatchWriter setMaxBufferedOperations(int maxOps) {
+		if (maxOps<1) {
+			throw new IllegalArgumentException("Number of operations must be greater than 0");
+		}
+		m_maxBufferedOperations = maxOps;
+		return this;
+	}
+
+	public int getMaxBufferedOperations() {
+		return m_maxBufferedOperations;
+	}
+
+	/**
+	 * Sets the desired duration of one transaction. Groups get larger while commits
+	 * are faster and smaller when they take longer, to keep the database lock short.
+	 *
+	 * @param millis duration, {@link #DEFAULT_TARGET_COMMIT_MILLIS} by default
+	 * @return this writer
+	 */
+	public NotesBatchWriter setTargetCommitMillis(long millis) {
+		if (millis<1) {
+			throw new IllegalArgumentException("Duration must be greater than 0");
+		}
+		m_targetCommitMillis = millis;
+		return this;
+	}
+
+	public long getTargetCommitMillis() {
+		return m_targetCommitMillis;
+	}
+
+	/**
+	 * Sets whether operations in local databases should be grouped in transactions
+	 *
+	 * @param b true to use transactions if supported (default)
+	 * @return this writer
+	 */
+	public NotesBatchWriter setUseTransactions(boolean b) {
+		m_useTransactions = b;
+		return this;
+	}
+
+	public boolean isUseTransactions() {
+		return m_useTransactions;
+	}
+
+	/**
+	 * Sets a listener that gets notified about written and failed operations
+	 *
+	 * @param listener listener or null
+	 * @return this writer
+	 */
+	public NotesBatchWriter setListener(IBatchWriterListener listener) {
+		m_listener = listener;
+		return this;
+	}
+
+	/**
+	 * Adds an operation to create a note
+	 *
+	 * @param db database
+	 * @param items item values, see {@link NotesNote#replaceItemValue(String, Object)} for supported types
+	 * @return operation
+	 */
+	public Operation create(NotesDatabase db, Map<String,Object> items) {
+		return add(new Operation(OperationType.CREATE, db, 0, null, items));
+	}
+
+	/**
+	 * Adds an operation to update a note. Items with a null value get removed.
+	 *
+	 * @param db database
+	 * @param noteId note id
+	 * @param items item values, see {@link NotesNote#replaceItemValue(String, Object)} for supported types
+	 * @return operation
+	 */
+	public Operation update(NotesDatabase db, int noteId, Map<String,Object> items) {
+		return add(new Operation(OperationType.UPDATE, db, noteId, null, items));
+	}
+
+	/**
+	 * Adds an operation to update a note. Items with a null value get removed.
+	 *
+	 * @param db database
+	 * @param unid UNID
+	 * @param items item values, see {@link NotesNote#replaceItemValue(String, Object)} for supported types
+	 * @return operation
+	 */
+	public Operation update(NotesDatabase db, String unid, Map<String,Object> items) {
+		return add(new Operation(OperationType.UPDATE, db, 0, unid, items));
+	}
+
+	/**
+	 * Adds an operation to delete a note
+	 *
+	 * @param db database
+	 * @param noteId note id
+	 * @return operation
+	 */
+	public Operation delete(NotesDatabase db, int noteId) {
+		return add(new Operation(OperationType.DELETE, db, noteId, null, null));
+	}
+
+	/**
+	 * Adds an operation to delete a note
+	 *
+	 * @param db database
+	 * @param unid UNID
+	 * @return operation
+	 */
+	public Operation delete(NotesDatabase db, String unid) {
+		return add(new Operation(OperationType.DELETE, db, 0, unid, null));
+	}
+
+	private Operation add(Operation op) {
+		if (m_closed) {
+			throw new IllegalStateException("Batch writer is closed");
+		}
+
+		DatabaseBuffer buffer;
+		synchronized (m_buffers) {
+			if (m_startTime==0) {
+				m_startTime = System.currentTimeMillis();
+			}
+			String key = op.m_server + "!!" + op.m_filePath + "!!" + op.m_asUserCanonical;
+			buffer = m_buffers.get(key);
+			if (buffer==null) {
+				buffer = new DatabaseBuffer(op.m_server, op.m_filePath, op.m_asUserCanonical);
+				m_buffers.put(key, buffer);
+			}
+		}
+		m_submittedOps.incrementAndGet();
+		buffer.add(op);
+		return op;
+	}
+
+	/**
+	 * Writes all buffered operations and waits until they are done
+	 *
+	 * @throws NotesError if a database could not be written, e.g. because it could not be opened; operations failing for other reasons are reported to the {@link IBatchWriterListener}
+	 */
+	public void flush() {
+		List<DatabaseBuffer> buffers;
+		synchronized (m_buffers) {
+			buffers = new ArrayList<>(m_buffers.values());
+		}
+
+		for (DatabaseBuffer currBuffer : buffers) {
+			currBuffer.submitBuffer();
+		}
+
+		NotesError firstError = null;
+		for (DatabaseBuffer currBuffer : buffers) {
+			Throwable error = currBuffer.awaitIdle();
+			if (error!=null && firstError==null) {
+				firstError = new NotesError(0, "Error writing to database "+currBuffer.m_server+"!!"+currBuffer.m_filePath, error);
+			}
+		}
+		if (firstError!=null) {
+			throw firstError;
+		}
+	}
+
+	/**
+	 * Writes all buffered operations and stops the worker threads
+	 */
+	@Override
+	public void close() {
+		if (m_closed) {
+			return;
+		}
+		try {
+			flush();
+		}
+		finally {
+			m_closed = true;
+			m_executor.shutdown();
+			try {
+				m_executor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns statistics about the written operations
+	 *
+	 * @return statistics
+	 */
+	public Stats getStats() {
+		int groupSizeSum = 0;
+		int numBuffers;
+		synchronized (m_buffers) {
+			numBuffers = m_buffers.size();
+			for (DatabaseBuffer currBuffer : m_buffers.values()) {
+				groupSizeSum += currBuffer.m_groupSize;
+			}
+		}
+		long duration = m_startTime==0 ? 0 : System.currentTimeMillis() - m_startTime;
+
+		return new Stats(m_submittedOps.get(), m_writtenOps.get(), m_failedOps.get(), m_retriedOps.get(),
+				m_commits.get(), m_rollbacks.get(), numBuffers==0 ? 0 : groupSizeSum / numBuffers, duration);
+	}
+
+	/**
+	 * Buffer and write queue for one database
+	 */
+	private class DatabaseBuffer {
+		private String m_server;
+		private String m_filePath;
+		private String m_asUserCanonical;
+		private List<Operation> m_buffer = new ArrayList<>();
+		private Deque<List<Operation>> m_pendingBatches = new ArrayDeque<>();
+		private List<Operation> m_currentBatch;
+		private boolean m_writing;
+		private volatile int m_groupSize = INITIAL_GROUP_SIZE;
+		private Throwable m_error;
+
+		public DatabaseBuffer(String server, String filePath, String asUserCanonical) {
+			m_server = server;
+			m_filePath = filePath;
+			m_asUserCanonical = asUserCanonical;
+		}
+
+		public synchronized void add(Operation op) {
+			m_buffer.add(op);
+			if (m_buffer.size() >= m_maxBufferedOperations) {
+				submitBuffer();
+			}
+		}
+
+		/**
+		 * Hands over the buffered operations to a worker thread. Only one thread writes
+		 * to the database at a time to keep the operations in order.
+		 */
+		public synchronized void submitBuffer() {
+			if (!m_buffer.isEmpty()) {
+				m_pendingBatches.add(m_buffer);
+				m_buffer = new ArrayList<>();
+			}
+			if (!m_writing && !m_pendingBatches.isEmpty()) {
+				m_writing = true;
+				m_executor.execute(this::writePendingBatches);
+			}
+		}
+
+		/**
+		 * Waits until all submitted operations have been written
+		 *
+		 * @return error that stopped the writing or null
+		 */
+		public synchronized Throwable awaitIdle() {
+			while (m_writing) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new NotesError(0, "Interrupted while waiting for batch writer", e);
+				}
+			}
+			Throwable error = m_error;
+			m_error = null;
+			return error;
+		}
+
+		private void writePendingBatches() {
+			try {
+				NotesGC.runWithAutoGC(() -> {
+					NotesDatabase db = new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+					boolean useTransactions = m_useTransactions && !db.isRemote() && Transactions.areTransactionsSupported(db);
+
+					while (true) {
+						synchronized (this) {
+							m_currentBatch = m_pendingBatches.poll();
+							if (m_currentBatch==null) {
+								m_writing = false;
+								notifyAll();
+								return null;
+							}
+						}
+
+						if (useTransactions) {
+							writeInTransactions(db, m_currentBatch);
+						}
+						else {
+							for (Operation currOp : m_currentBatch) {
+								writeSingle(db, currOp);
+							}
+						}
+					}
+				});
+			}
+			catch (Throwable t) {
+				synchronized (this) {
+					m_error = t;
+					//report all operations that we could not write
+					List<Operation> unwrittenOps = new ArrayList<>();
+					if (m_currentBatch!=null) {
+						unwrittenOps.addAll(m_currentBatch);
+					}
+					for (List<Operation> currBatch : m_pendingBatches) {
+						unwrittenOps.addAll(currBatch);
+					}
+					m_pendingBatches.clear();
+					m_currentBatch = null;
+
+					for (Operation currOp : unwrittenOps) {
+						if (!currOp.isDone()) {
+							operationFailed(currOp, t);
+						}
+					}
+					m_writing = false;
+					notifyAll();
+				}
+			}
+		}
+
+		private void writeInTransactions(NotesDatabase db, List<Operation> batch) {
+			int pos = 0;
+			while (pos < batch.size()) {
+				int groupSize = m_groupSize;
+				final List<Operation> group = batch.subList(pos, Math.min(batch.size(), pos + groupSize));
+				pos += group.size();
+
+				long t0 = System.currentTimeMillis();
+				try {
+					Transactions.runInDbTransaction(db, (txDb) -> {
+						for (Operation currOp : group) {
+							applyOperation(txDb, currOp);
+						}
+						return null;
+					});
+				}
+				catch (RollbackException e) {
+					m_rollbacks.incrementAndGet();
+					m_groupSize = Math.max(MIN_GROUP_SIZE, groupSize / 2);
+
+					//notes created in the rolled back transaction do not exist
+					for (Operation currOp : group) {
+						resetCreatedNoteIds(currOp);
+					}
+
+					//retry the operations one by one to find the failing ones
+					for (final Operation currOp : group) {
+						m_retriedOps.incrementAndGet();
+						try {
+							Transactions.runInDbTransaction(db, (txDb) -> {
+								applyOperation(txDb, currOp);
+								return null;
+							});
+							m_commits.incrementAndGet();
+							operationWritten(currOp);
+						}
+						catch (RollbackException e2) {
+							resetCreatedNoteIds(currOp);
+							operationFailed(currOp, e2.getCause()!=null ? e2.getCause() : e2);
+						}
+					}
+					continue;
+				}
+
+				m_commits.incrementAndGet();
+				for (Operation currOp : group) {
+					operationWritten(currOp);
+				}
+
+				//adapt the group size to the commit duration
+				long duration = System.currentTimeMillis() - t0;
+				if (duration > m_targetCommitMillis) {
+					m_groupSize = Math.max(MIN_GROUP_SIZE, groupSize / 2);
+				}
+				else if (duration < m_targetCommitMillis / 2 && group.size()==groupSize) {
+					m_groupSize = Math.min(MAX_GROUP_SIZE, groupSize * 2);
+				}
+			}
+		}
+
+		private void writeSingle(NotesDatabase db, Operation op) {
+			try {
+				applyOperation(db, op);
+			}
+			catch (Exception e) {
+				operationFailed(op, e);
+				return;
+			}
+			operationWritten(op);
+		}
+	}
+
+	private void applyOperation(NotesDatabase db, Operation op) {
+		NotesNote note = null;
+		try {
+			if (op.m_type==OperationType.CREATE) {
+				note = db.createNote();
+			}
+			else if (op.m_noteId!=0) {
+				if (op.m_type==OperationType.DELETE) {
+					db.deleteNote(op.m_noteId);
+					return;
+				}
+				note = db.openNoteById(op.m_noteId);
+			}
+			else {
+				note = db.openNoteByUnid(op.m_unid);
+			}
+
+			if (note==null) {
+				throw new NotesError(0, "Note not found: "+(op.m_noteId!=0 ? "noteid="+op.m_noteId : "unid="+op.m_unid));
+			}
+
+			if (op.m_type==OperationType.DELETE) {
+				note.delete();
+				return;
+			}
+
+			for (Entry<String,Object> currEntry : op.m_items.entrySet()) {
+				if (currEntry.getValue()==null) {
+					note.removeItem(currEntry.getKey());
+				}
+				else {
+					note.replaceItemValue(currEntry.getKey(), currEntry.getValue());
+				}
+			}
+			note.update();
+
+			op.m_noteId = note.getNoteId();
+			op.m_unid = note.getUNID();
+		}
+		finally {
+			if (note!=null && !note.isRecycled()) {
+				note.recycle();
+			}
+		}
+	}
+
+	/**
+	 * Clears the note id and UNID of a {@link OperationType#CREATE} operation after
+	 * its transaction has been rolled back
+	 *
+	 * @param op operation
+	 */
+	private void resetCreatedNoteIds(Operation op) {
+		if (op.m_type==OperationType.CREATE) {
+			op.m_noteId = 0;
+			op.m_unid = null;
+		}
+	}
+
+	private void operationWritten(Operation op) {
+		op.m_done = true;
+		op.m_error = null;
+		m_writtenOps.incrementAndGet();
+		if (m_listener!=null) {
+			m_listener.operationWritten(op);
+		}
+	}
+
+	private void operationFailed(Operation op, Throwable t) {
+		op.m_done = true;
+		op.m_error = t;
+		m_failedOps.incrementAndGet();
+		if (m_listener!=null) {
+			m_listener.operationFailed(op, t);
+		}
+	}
+
+	/**
+	 * Write operation added to the {@link NotesBatchWriter}
+	 */
+	public static class Operation {
+		private OperationType m_type;
+		private String m_server;
+		private String m_filePath;
+		private String m_asUserCanonical;
+		private volatile int m_noteId;
+		private volatile String m_unid;
+		private Map<String,Object> m_items;
+		private volatile boolean m_done;
+		private volatile Throwable m_error;
+
+		private Operation(OperationType type, NotesDatabase db, int noteId, String unid, Map<String,Object> items) {
+			if (type!=OperationType.CREATE && noteId==0 && StringUtil.isEmpty(unid)) {
+				throw new IllegalArgumentException("Note id or UNID required");
+			}
+			m_type = type;
+			m_server = db.getServer();
+			m_filePath = db.getRelativeFilePath();
+			m_asUserCanonical = db.getContextUser();
+			m_noteId = noteId;
+			m_unid = unid;
+			m_items = items==null ? Collections.emptyMap() : new LinkedHashMap<>(items);
+		}
+
+		public OperationType getType() {
+			return m_type;
+		}
+
+		public String getServer() {
+			return m_server;
+		}
+
+		public String getFilePath() {
+			return m_filePath;
+		}
+
+		/**
+		 * Returns the note id. For {@link OperationType#CREATE}, the id is set after the note has been written.
+		 *
+		 * @return note id or 0
+		 */
+		public int getNoteId() {
+			return m_noteId;
+		}
+
+		/**
+		 * Returns the UNID. For {@link OperationType#CREATE}, the UNID is set after the note has been written.
+		 *
+		 * @return UNID or null
+		 */
+		public String getUNID() {
+			return m_unid;
+		}
+
+		public Map<String,Object> getItems() {
+			return Collections.unmodifiableMap(m_items);
+		}
+
+		/**
+		 * Returns whether the operation has been processed
+		 *
+		 * @return true if written or failed
+		 */
+		public boolean isDone() {
+			return m_done;
+		}
+
+		/**
+		 * Returns the error if the operation failed
+		 *
+		 * @return error or null
+		 */
+		public Throwable getError() {
+			return m_error;
+		}
+
+		@Override
+		public String toString() {
+			return "Operation [type="+m_type+", db="+m_server+"!!"+m_filePath+", noteid="+m_noteId+", unid="+m_unid+
+					", done="+m_done+(m_error!=null ? ", error="+m_error.getMessage() : "")+"]";
+		}
+	}
+
+	/**
+	 * Statistics of a {@link NotesBatchWriter}
+	 */
+	public static class Stats {
+		private long m_submittedOps;
+		private long m_writtenOps;
+		private long m_failedOps;
+		private long m_retriedOps;
+		private long m_commits;
+		private long m_rollbacks;
+		private int m_avgGroupSize;
+		private long m_durationMillis;
+
+		private Stats(long submittedOps, long writtenOps, long failedOps, long retriedOps, long commits,
+				long rollbacks, int avgGroupSize, long durationMillis) {
+			m_submittedOps = submittedOps;
+			m_writtenOps = writtenOps;
+			m_failedOps = failedOps;
+			m_retriedOps = retriedOps;
+			m_commits = commits;
+			m_rollbacks = rollbacks;
+			m_avgGroupSize = avgGroupSize;
+			m_durationMillis = durationMillis;
+		}
+
+		public long getSubmittedOperations() {
+			return m_submittedOps;
+		}
+
+		public long getWrittenOperations() {
+			return m_writtenOps;
+		}
+
+		public long getFailedOperations() {
+			return m_failedOps;
+		}
+
+		/**
+		 * Returns the number of operations retried one by one after their group has been rolled back
+		 *
+		 * @return count
+		 */
+		public long getRetriedOperations() {
+			return m_retriedOps;
+		}
+
+		public long getCommits() {
+			return m_commits;
+		}
+
+		public long getRollbacks() {
+			return m_rollbacks;
+		}
+
+		/**
+		 * Returns the current transaction group size, averaged over all databases
+		 *
+		 * @return group size
+		 */
+		public int getAverageGroupSize() {
+			return m_avgGroupSize;
+		}
+
+		/**
+		 * Returns the time since the first operation has been added
+		 *
+		 * @return duration in milliseconds
+		 */
+		public long getDurationMillis() {
+			return m_durationMillis;
+		}
+
+		/**
+		 * Returns the number of written operations per second
+		 *
+		 * @return throughput
+		 */
+		public double getOperationsPerSecond() {
+			return m_durationMillis==0 ? 0 : (m_writtenOps * 1000d) / m_durationMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "Stats [submitted="+m_submittedOps+", written="+m_writtenOps+", failed="+m_failedOps+
+					", retried="+m_retriedOps+", commits="+m_commits+", rollbacks="+m_rollbacks+
+					", groupsize="+m_avgGroupSize+", ops/s="+String.format("%.1f", getOperationsPerSecond())+"]";
+		}
+	}
+}
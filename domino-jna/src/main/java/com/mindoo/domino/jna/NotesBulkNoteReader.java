@@ -0,0 +1,395 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.mindoo.domino.jna.constants.GetNotes;
+import com.mindoo.domino.jna.constants.OpenNote;
+import com.mindoo.domino.jna.errors.NotesError;
+
+/**
+ * High level API to read many notes from a database with a small number of
+ * network roundtrips. The notes are fetched in batches via
+ * {@link NotesDatabase#getNotes(int[], EnumSet[], int[], EnumSet, NotesDatabase, com.mindoo.domino.jna.NotesDatabase.IGetNotesCallback, com.mindoo.domino.jna.NotesDatabase.INoteOpenCallback, com.mindoo.domino.jna.NotesDatabase.IObjectAllocCallback, com.mindoo.domino.jna.NotesDatabase.IObjectWriteCallback, NotesTimeDate, com.mindoo.domino.jna.NotesDatabase.IFolderAddCallback)}
+ * (NSFDbGetNotes), which is much faster than calling {@link NotesDatabase#openNoteById(int)}
+ * in a loop when working with remote servers.<br>
+ * <br>
+ * Per note, a "since sequence number" can be specified so that only items with a higher
+ * sequence number are transferred, e.g. to incrementally read changes of documents that
+ * have been read before. Items that have not been transferred have the type {@link NotesItem#TYPE_UNAVAILABLE}.<br>
+ * <br>
+ * By default, the returned {@link NotesNote} objects are recycled automatically when
+ * the stream pipeline has processed them (see {@link #setAutoRecycle(boolean)}), so
+ * they should not be collected into lists. Use {@link #readSnapshots(int[])} to get detached item
+ * values instead. Streams need to be consumed in the thread that created them.<br>
+ * <br>
+ * Example:<br>
+ * <pre>
+ * try (Stream&lt;NotesNote&gt; notes = new NotesBulkNoteReader(db).setBatchSize(200).readNotes(idTable)) {
+ *    notes.forEach((note) -&gt; { ... });
+ * }
+ * </pre>
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesBulkNoteReader {
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	private NotesDatabase m_db;
+	private int m_batchSize = DEFAULT_BATCH_SIZE;
+	private boolean m_orderBySize = true;
+	private EnumSet<OpenNote> m_openFlags = EnumSet.noneOf(OpenNote.class);
+	private boolean m_autoRecycle = true;
+	private List<Integer> m_failedNoteIds = new ArrayList<>();
+
+	/**
+	 * Creates a new reader
+	 *
+	 * @param db database to read notes from
+	 */
+	public NotesBulkNoteReader(NotesDatabase db) {
+		m_db = db;
+	}
+
+	/**
+	 * Sets the number of notes to be fetched with one NSFDbGetNotes call
+	 *
+	 * @param batchSize batch size, default is 100
+	 * @return this reader
+	 */
+	public NotesBulkNoteReader setBatchSize(int batchSize) {
+		if (batchSize<=0) {
+			throw new IllegalArgumentException("Batch size must be greater than 0: "+batchSize);
+		}
+		m_batchSize = batchSize;
+		return this;
+	}
+
+	public int getBatchSize() {
+		return m_batchSize;
+	}
+
+	/**
+	 * Use true to let the server return the notes of each batch ordered by size
+	 * ({@link GetNotes#ORDER_BY_SIZE}), which is the most efficient way to transfer
+	 * them; use false to preserve the order of the note ids
+	 *
+	 * @param orderBySize true to order by size, default is true
+	 * @return this reader
+	 */
+	public NotesBulkNoteReader setOrderBySize(boolean orderBySize) {
+		m_orderBySize = orderBySize;
+		return this;
+	}
+
+	public boolean isOrderBySize() {
+		return m_orderBySize;
+	}
+
+	/**
+	 * Sets the flags to open the notes
+	 *
+	 * @param openFlags open flags
+	 * @return this reader
+	 */
+	public NotesBulkNoteReader setOpenFlags(EnumSet<OpenNote> openFlags) {
+		m_openFlags = openFlags==null ? EnumSet.noneOf(OpenNote.class) : EnumSet.copyOf(openFlags);
+		return this;
+	}
+
+	public EnumSet<OpenNote> getOpenFlags() {
+		return EnumSet.copyOf(m_openFlags);
+	}
+
+	/**
+	 * Use true to recycle each {@link NotesNote} returned by {@link #readNotes(int[])}
+	 * after it has been processed by the stream pipeline. Use false if you want to keep
+	 * the notes, in which case you are responsible for recycling them.
+	 *
+	 * @param autoRecycle true to recycle notes automatically, default is true
+	 * @return this reader
+	 */
+	public NotesBulkNoteReader setAutoRecycle(boolean autoRecycle) {
+		m_autoRecycle = autoRecycle;
+		return this;
+	}
+
+	public boolean isAutoRecycle() {
+		return m_autoRecycle;
+	}
+
+	/**
+	 * Returns the ids of notes that could not be read, e.g. because they have been
+	 * deleted in the meantime or the current user has no read access
+	 *
+	 * @return note ids
+	 */
+	public List<Integer> getFailedNoteIds() {
+		return Collections.unmodifiableList(m_failedNoteIds);
+	}
+
+	/**
+	 * Reads all notes of an ID table
+	 *
+	 * @param idTable ID table
+	 * @return stream of notes, should be closed after use to release pending notes
+	 */
+	public Stream<NotesNote> readNotes(NotesIDTable idTable) {
+		return readNotes(idTable.toArray(), null);
+	}
+
+	/**
+	 * Reads notes by their note ids
+	 *
+	 * @param noteIds note ids
+	 * @return stream of notes, should be closed after use to release pending notes
+	 */
+	public Stream<NotesNote> readNotes(int[] noteIds) {
+		return readNotes(noteIds, null);
+	}
+
+	/**
+	 * Reads notes by their note ids and only transfers items that have changed since
+	 * a sequence number
+	 *
+	 * @param noteIds note ids
+	 * @param sinceSeqNums sequence numbers with the same length as <code>noteIds</code> or null to read all items; items with a sequence number lower or equal this value are not transferred
+	 * @return stream of notes, should be closed after use to release pending notes
+	 */
+	public Stream<NotesNote> readNotes(int[] noteIds, int[] sinceSeqNums) {
+		return internalRead(noteIds, sinceSeqNums, m_autoRecycle);
+	}
+
+	/**
+	 * Reads notes and returns their item values as {@link NoteSnapshot}s that can be used
+	 * after the notes have been recycled
+	 *
+	 * @param idTable ID table
+	 * @return stream of snapshots
+	 */
+	public Stream<NoteSnapshot> readSnapshots(NotesIDTable idTable) {
+		return readSnapshots(idTable.toArray(), null);
+	}
+
+	/**
+	 * Reads notes and returns their item values as {@link NoteSnapshot}s that can be used
+	 * after the notes have been recycled
+	 *
+	 * @param noteIds note ids
+	 * @return stream of snapshots
+	 */
+	public Stream<NoteSnapshot> readSnapshots(int[] noteIds) {
+		return readSnapshots(noteIds, null);
+	}
+
+	/**
+	 * Reads notes and returns their item values as {@link NoteSnapshot}s that can be used
+	 * after the notes have been recycled
+	 *
+	 * @param noteIds note ids
+	 * @param sinceSeqNums sequence numbers with the same length as <code>noteIds</code> or null to read all items
+	 * @return stream of snapshots
+	 */
+	public Stream<NoteSnapshot> readSnapshots(int[] noteIds, int[] sinceSeqNums) {
+		return internalRead(noteIds, sinceSeqNums, true).map(NoteSnapshot::new);
+	}
+
+	private Stream<NotesNote> internalRead(int[] noteIds, int[] sinceSeqNums, boolean autoRecycle) {
+		if (sinceSeqNums!=null && sinceSeqNums.length!=noteIds.length) {
+			throw new IllegalArgumentException("Size of sinceSeqNums array does not match note ids array ("+
+					sinceSeqNums.length+"!="+noteIds.length+")");
+		}
+
+		BatchSpliterator spliterator = new BatchSpliterator(noteIds, sinceSeqNums, autoRecycle);
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+	}
+
+	/**
+	 * Spliterator that fetches the next batch of notes when all notes of the
+	 * current batch have been consumed
+	 */
+	private class BatchSpliterator extends Spliterators.AbstractSpliterator<NotesNote> {
+		private int[] m_noteIds;
+		private int[] m_sinceSeqNums;
+		private boolean m_autoRecycleNotes;
+		private int m_offset;
+		private LinkedList<NotesNote> m_currentBatch = new LinkedList<>();
+
+		private BatchSpliterator(int[] noteIds, int[] sinceSeqNums, boolean autoRecycle) {
+			super(noteIds.length, Spliterator.ORDERED | Spliterator.NONNULL);
+			m_noteIds = noteIds;
+			m_sinceSeqNums = sinceSeqNums;
+			m_autoRecycleNotes = autoRecycle;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super NotesNote> action) {
+			while (m_currentBatch.isEmpty()) {
+				if (m_offset >= m_noteIds.length) {
+					return false;
+				}
+				fetchNextBatch();
+			}
+
+			NotesNote note = m_currentBatch.removeFirst();
+			try {
+				action.accept(note);
+			}
+			finally {
+				if (m_autoRecycleNotes) {
+					note.recycle();
+				}
+			}
+			return true;
+		}
+
+		private void fetchNextBatch() {
+			int batchLength = Math.min(m_batchSize, m_noteIds.length - m_offset);
+			int[] batchNoteIds = Arrays.copyOfRange(m_noteIds, m_offset, m_offset + batchLength);
+			int[] batchSinceSeqNums = m_sinceSeqNums==null ? new int[batchLength] :
+				Arrays.copyOfRange(m_sinceSeqNums, m_offset, m_offset + batchLength);
+
+			@SuppressWarnings("unchecked")
+			EnumSet<OpenNote>[] batchOpenFlags = (EnumSet<OpenNote>[]) new EnumSet<?>[batchLength];
+			Arrays.fill(batchOpenFlags, m_openFlags);
+
+			EnumSet<GetNotes> controlFlags = EnumSet.of(GetNotes.CONTINUE_ON_ERROR);
+			controlFlags.add(m_orderBySize ? GetNotes.ORDER_BY_SIZE : GetNotes.PRESERVE_ORDER);
+
+			m_offset += batchLength;
+
+			try {
+				m_db.getNotes(batchNoteIds, batchOpenFlags, batchSinceSeqNums, controlFlags, null, null,
+						(note, noteId, status) -> {
+							if (status!=0) {
+								m_failedNoteIds.add(noteId);
+								return;
+							}
+							//the note is only valid during the callback
+							m_currentBatch.add(note.copyInMemory());
+						}, null, null, null, null);
+			}
+			catch (NotesError e) {
+				close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Recycles all notes that have been fetched but not consumed
+		 */
+		private void close() {
+			for (NotesNote currNote : m_currentBatch) {
+				currNote.recycle();
+			}
+			m_currentBatch.clear();
+			m_offset = m_noteIds.length;
+		}
+	}
+
+	/**
+	 * Detached copy of the note properties and item values. Contains values of
+	 * text, number and date/time items; other items like richtext and attachments
+	 * are skipped, just like items that have not been transferred because of the
+	 * since sequence number.
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static class NoteSnapshot {
+		private int m_noteId;
+		private String m_unid;
+		private int m_sequence;
+		private NotesTimeDate m_sequenceTime;
+		private Map<String,List<Object>> m_itemValues;
+
+		private NoteSnapshot(NotesNote note) {
+			m_noteId = note.getNoteId();
+			m_unid = note.getUNID();
+			NotesOriginatorId oid = note.getOID();
+			m_sequence = oid.getSequence();
+			m_sequenceTime = oid.getSequenceTime();
+			m_itemValues = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+			note.getItems((item, loop) -> {
+				if (!item.isAvailable() || !isSupportedType(item.getType())) {
+					return;
+				}
+				String itemName = item.getName();
+				if (!m_itemValues.containsKey(itemName)) {
+					m_itemValues.put(itemName, Collections.unmodifiableList(item.getValues()));
+				}
+			});
+		}
+
+		private static boolean isSupportedType(int type) {
+			switch (type) {
+			case NotesItem.TYPE_TEXT:
+			case NotesItem.TYPE_TEXT_LIST:
+			case NotesItem.TYPE_NUMBER:
+			case NotesItem.TYPE_NUMBER_RANGE:
+			case NotesItem.TYPE_TIME:
+			case NotesItem.TYPE_TIME_RANGE:
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		public int getNoteId() {
+			return m_noteId;
+		}
+
+		public String getUNID() {
+			return m_unid;
+		}
+
+		public int getSequence() {
+			return m_sequence;
+		}
+
+		public NotesTimeDate getSequenceTime() {
+			return m_sequenceTime;
+		}
+
+		/**
+		 * Returns the names of all items in the snapshot
+		 *
+		 * @return item names, case-insensitive
+		 */
+		public Set<String> getItemNames() {
+			return Collections.unmodifiableSet(m_itemValues.keySet());
+		}
+
+		public boolean hasItem(String itemName) {
+			return m_itemValues.containsKey(itemName);
+		}
+
+		/**
+		 * Returns the values of an item
+		 *
+		 * @param itemName item name, case-insensitive
+		 * @return values or empty list if the item does not exist
+		 */
+		public List<Object> getItemValue(String itemName) {
+			List<Object> values = m_itemValues.get(itemName);
+			return values==null ? Collections.emptyList() : values;
+		}
+
+		@Override
+		public String toString() {
+			return "NoteSnapshot [noteid="+m_noteId+", unid="+m_unid+", seq="+m_sequence+", items="+m_itemValues.keySet()+"]";
+		}
+	}
+}
@@ -5,12 +5,14 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -20,6 +22,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.mindoo.domino.jna.CollectionDataCache.CacheState;
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback.Action;
@@ -54,7 +61,11 @@ import com.mindoo.domino.jna.internal.structs.NIFFindByKeyContextStruct;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionDataStruct;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionPositionStruct;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
+import com.mindoo.domino.jna.metrics.NativeOperation;
+import com.mindoo.domino.jna.utils.LMBCSString;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.StringTokenizerExt;
 import com.mindoo.domino.jna.utils.StringUtil;
@@ -87,6 +98,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 	private String m_asUserCanonical;
 	private NotesDatabase m_parentDb;
 	private boolean m_autoUpdate;
+	private boolean m_compactColumnValues;
 	private CollationInfo m_collationInfo;
 	
 	private List<String> m_columnItemNames;
@@ -322,6 +334,31 @@ public class NotesCollection implements IRecyclableNotesObject {
 		m_autoUpdate = update;
 	}
 	
+	/**
+	 * Returns whether column values read via {@link ReadMask#SUMMARYVALUES} are kept in
+	 * compact format
+	 * 
+	 * @return true if compact
+	 * @see #setCompactColumnValues(boolean)
+	 */
+	public boolean isCompactColumnValues() {
+		return m_compactColumnValues;
+	}
+	
+	/**
+	 * Activates a compact format for column values read via {@link ReadMask#SUMMARYVALUES}.
+	 * Instead of decoding each column into a wrapper object, the {@link NotesViewEntryData}
+	 * keeps a copy of the summary buffer with data types and offsets. Use the typed accessors like
+	 * {@link NotesViewEntryData#getDouble(int)}, {@link NotesViewEntryData#getInnards(int, int[])}
+	 * or {@link NotesViewEntryData#getString(int)} to read values without allocating objects.
+	 * Methods like {@link NotesViewEntryData#get(String)} still work and decode all values on first use.
+	 * 
+	 * @param compact true to use the compact format (false by default)
+	 */
+	public void setCompactColumnValues(boolean compact) {
+		m_compactColumnValues = compact;
+	}
+	
 	/**
 	 * Returns the index modified sequence number that can be used to track view changes.
 	 * The method calls {@link #getLastModifiedTime()} and returns part of the result (Innards[0]).
@@ -1093,6 +1130,76 @@ public class NotesCollection implements IRecyclableNotesObject {
 			return Action.Continue;
 		}
 		
+		private int m_resumeCount;
+		private int m_reReadCount;
+		
+		/**
+		 * Override this method and return true to resume reading after a view index change
+		 * instead of restarting the lookup from the beginning.<br>
+		 * <br>
+		 * In resumable mode, {@link #startingLookup()} is only called once. After refreshing the
+		 * view, we locate the last document passed to {@link #entryRead(Object, NotesViewEntryData)} by its
+		 * note id and continue reading after it, as long as its column values (the sort key) have not changed.
+		 * Otherwise we read again from the start position. In both cases, entries that have
+		 * already been passed to {@link #entryRead(Object, NotesViewEntryData)} are skipped.<br>
+		 * <br>
+		 * Please note that documents are de-duplicated by note id, so this mode should not be used
+		 * for views with permuted columns ("Show multiple values as separate entries") and the
+		 * column value check requires {@link ReadMask#SUMMARYVALUES} or {@link ReadMask#SUMMARY}.
+		 * Categories are identified by their column values and the values of their parent categories
+		 * when reading forward; without column values, categories read again after a resume are
+		 * passed to the callback again.
+		 * {@link ReadMask#NOTEID} and {@link ReadMask#INDEXPOSITION} are always read in this mode.
+		 * 
+		 * @return true to resume, false to restart (default)
+		 */
+		public boolean isResumable() {
+			return false;
+		}
+		
+		/**
+		 * Returns how often the lookup has been resumed after a view index change
+		 * (only counted when {@link #isResumable()} returns true)
+		 * 
+		 * @return resume count
+		 */
+		public int getResumeCount() {
+			return m_resumeCount;
+		}
+		
+		/**
+		 * Returns the number of entries that have been read again after resuming the
+		 * lookup and that have been skipped because they had already been passed to
+		 * {@link #entryRead(Object, NotesViewEntryData)}
+		 * 
+		 * @return re-read count
+		 */
+		public int getReReadCount() {
+			return m_reReadCount;
+		}
+		
+		void setResumeStats(int resumeCount, int reReadCount) {
+			m_resumeCount = resumeCount;
+			m_reReadCount = reReadCount;
+		}
+		
+		/**
+		 * Override this method and return true to overlap reading and decoding of the view data.<br>
+		 * <br>
+		 * In pipelined mode, the next NIFReadEntries call is issued while a background thread
+		 * decodes the previously read buffer, and {@link #entryRead(Object, NotesViewEntryData)} is called
+		 * while the next buffer is decoded. The number of entries requested per call grows
+		 * automatically up to what fits into the 64K buffer, so the <code>preloadEntryCount</code> passed
+		 * to the lookup method is used as initial value.<br>
+		 * Since one buffer is read ahead, this mode is meant for large lookups, e.g. to read all
+		 * entries of a view, not for paging through a few entries.
+		 * 
+		 * @return true for pipelined mode, false to read and decode sequentially (default)
+		 */
+		public boolean isPipelined() {
+			return false;
+		}
+		
 		/**
 		 * The method is called when differential view reading is used to return the {@link NotesTimeDate}
 		 * to be used for the next lookups
@@ -1206,6 +1313,31 @@ public class NotesCollection implements IRecyclableNotesObject {
 		public Action retryingReadBecauseViewIndexChanged(int nrOfRetries, long durationSinceStart) {
 			return m_innerCallback.retryingReadBecauseViewIndexChanged(nrOfRetries, durationSinceStart);
 		}
+		
+		@Override
+		public boolean isResumable() {
+			return m_innerCallback.isResumable();
+		}
+		
+		@Override
+		public int getResumeCount() {
+			return m_innerCallback.getResumeCount();
+		}
+		
+		@Override
+		public int getReReadCount() {
+			return m_innerCallback.getReReadCount();
+		}
+		
+		@Override
+		void setResumeStats(int resumeCount, int reReadCount) {
+			m_innerCallback.setResumeStats(resumeCount, reReadCount);
+		}
+		
+		@Override
+		public boolean isPipelined() {
+			return m_innerCallback.isPipelined();
+		}
 	}
 	
 	/**
@@ -1783,6 +1915,39 @@ public class NotesCollection implements IRecyclableNotesObject {
 			int preloadEntryCount,
 			EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
 		
+		NativeOperation op = NativeCallMetrics.beginOperation("NotesCollection.getAllEntries");
+		PipelinedLookupReader pipeline = callback.isPipelined() ? new PipelinedLookupReader() : null;
+		try {
+			return getAllEntries(startPosRetriever, skipCount, returnNav, preloadEntryCount, returnMask, callback, pipeline);
+		}
+		finally {
+			if (pipeline!=null) {
+				pipeline.close();
+			}
+			if (op!=null) {
+				op.end();
+			}
+		}
+	}
+	
+	/**
+	 * Implementation of {@link #getAllEntries(IStartPositionRetriever, int, EnumSet, int, EnumSet, ViewLookupCallback)}
+	 * 
+	 * @param startPosRetriever callback to find the start position to read
+	 * @param skipCount number entries to skip before reading
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param preloadEntryCount amount of entries that is read from the view; if a filter is specified, this should be higher than returnCount
+	 * @param returnMask values to extract
+	 * @param callback callback that is called for each entry read from the collection
+	 * @param pipeline reader for pipelined mode or null to read and decode sequentially
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	private <T> T getAllEntries(IStartPositionRetriever startPosRetriever, int skipCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount,
+			EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback, PipelinedLookupReader pipeline) {
+		
 		EnumSet<ReadMask> useReturnMask = returnMask;
 
 		//decide whether we need to use the undocumented NIFReadEntriesExt
@@ -1819,13 +1984,49 @@ public class NotesCollection implements IRecyclableNotesObject {
 		long t0 = System.currentTimeMillis();
 		int runs = -1;
 		
+		NativeOperation op = NativeCallMetrics.getCurrentOperation();
+		
+		boolean resumable = callback.isResumable();
+		if (resumable && (!useReturnMask.contains(ReadMask.NOTEID) || !useReturnMask.contains(ReadMask.INDEXPOSITION))) {
+			//delivered documents and the resume position are identified by note id,
+			//without it all documents would look like categories (note id 0);
+			//the position tells us the parent categories of a category
+			useReturnMask = useReturnMask.clone();
+			useReturnMask.add(ReadMask.NOTEID);
+			useReturnMask.add(ReadMask.INDEXPOSITION);
+		}
+		//entries passed to the callback, used to skip them when reading again after a view index change;
+		//note ids are multiples of 4, so we store them shifted by two bits
+		BitSet deliveredNoteIds = resumable ? new BitSet() : null;
+		Set<String> deliveredCategories = resumable ? new HashSet<String>() : null;
+		//keys of the categories containing the current entry, by category level
+		List<String> categoryPath = resumable ? new ArrayList<String>() : null;
+		NotesViewEntryData lastDeliveredDoc = null;
+		boolean lookupStarted = false;
+		int resumeCount = 0;
+		int reReadCount = 0;
+		T result = null;
+		
 		while (true) {
 			runs++;
+			if (pipeline!=null) {
+				//data read ahead in a previous run is outdated
+				pipeline.discardPending();
+			}
 			int initialIndexModified = getIndexModifiedSequenceNo();
 			
-			String startPosStr = startPosRetriever.getStartPosition();
+			String resumePosStr = null;
+			if (resumable && lookupStarted) {
+				resumeCount++;
+				callback.setResumeStats(resumeCount, reReadCount);
+				resumePosStr = findResumePosition(lastDeliveredDoc);
+			}
+			
+			String startPosStr = resumePosStr!=null ? resumePosStr : startPosRetriever.getStartPosition();
 			if (StringUtil.isEmpty(startPosStr)) {
-				T result = callback.startingLookup();
+				if (!lookupStarted) {
+					result = callback.startingLookup();
+				}
 				result = callback.lookupDone(result);
 				return result;
 			}
@@ -1845,7 +2046,16 @@ public class NotesCollection implements IRecyclableNotesObject {
 			NotesCollectionPositionStruct pos = NotesCollectionPositionStruct.toPosition(("last".equalsIgnoreCase(startPosStr) || startPosStr==null) ? "0" : startPosStr);
 			NotesCollectionPosition posWrap = new NotesCollectionPosition(pos);
 
-			T result = callback.startingLookup();
+			if (!resumable || !lookupStarted) {
+				result = callback.startingLookup();
+				lookupStarted = true;
+			}
+			
+			if (resumePosStr!=null && useReturnMask.contains(ReadMask.INIT_POS_NOTEID)) {
+				//we continue at a position, not at a note id
+				useReturnMask = useReturnMask.clone();
+				useReturnMask.remove(ReadMask.INIT_POS_NOTEID);
+			}
 			
 			if (preloadEntryCount==0) {
 				//nothing to do
@@ -1854,7 +2064,8 @@ public class NotesCollection implements IRecyclableNotesObject {
 			}
 			
 			boolean viewModified = false;
-			boolean firstLoopRun = true;
+			//when resuming, we skip the last delivered entry like in subsequent reads
+			boolean firstLoopRun = resumePosStr==null;
 			
 			NotesTimeDate retDiffTime = null;
 			
@@ -1932,8 +2143,14 @@ public class NotesCollection implements IRecyclableNotesObject {
 					skipNav = returnNav;
 				}
 				NotesViewLookupResultData data;
-				data = readEntriesExt(posWrap, skipNav, useSkipCount, returnNav, preloadEntryCount, useReturnMask,
-						diffTime, diffIDTable, readSingleColumnIndex);
+				if (pipeline!=null) {
+					data = pipeline.read(!firstLoopRun, posWrap, skipNav, useSkipCount, returnNav, preloadEntryCount, useReturnMask,
+							diffTime, diffIDTable, readSingleColumnIndex);
+				}
+				else {
+					data = readEntriesExt(posWrap, skipNav, useSkipCount, returnNav, preloadEntryCount, useReturnMask,
+							diffTime, diffIDTable, readSingleColumnIndex);
+				}
 				
 				int indexModifiedAfterDataLookup = getIndexModifiedSequenceNo();
 
@@ -1992,7 +2209,25 @@ public class NotesCollection implements IRecyclableNotesObject {
 				
 				List<NotesViewEntryData> entries = data.getEntries();
 				for (NotesViewEntryData currEntry : entries) {
+					if (resumable) {
+						//before the first resume, every entry is read for the first time
+						boolean isReRead = !markDelivered(currEntry, deliveredNoteIds, deliveredCategories, categoryPath);
+						if (isReRead && resumeCount>0) {
+							//already passed to the callback before the view index change
+							reReadCount++;
+							callback.setResumeStats(resumeCount, reReadCount);
+							continue;
+						}
+						if (currEntry.isDocument()) {
+							lastDeliveredDoc = currEntry;
+						}
+					}
+					
+					long tCallback = op==null ? 0 : System.nanoTime();
 					Action action = callback.entryRead(result, currEntry);
+					if (op!=null) {
+						op.addCallbackNanos(System.nanoTime() - tCallback);
+					}
 					if (action==Action.Stop) {
 						result = callback.lookupDone(result);
 						
@@ -2036,6 +2271,119 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 	}
 	
+	/**
+	 * Remembers that an entry has been passed to the lookup callback
+	 * 
+	 * @param entry entry
+	 * @param deliveredNoteIds note ids of delivered documents, shifted by two bits
+	 * @param deliveredCategories keys of delivered categories
+	 * @param categoryPath keys of the categories containing the current entry, updated when reading a category
+	 * @return true if the entry has not been delivered before or cannot be identified
+	 */
+	private boolean markDelivered(NotesViewEntryData entry, BitSet deliveredNoteIds, Set<String> deliveredCategories,
+			List<String> categoryPath) {
+		int noteId = entry.getNoteId();
+		if (noteId!=0 && (noteId & NotesConstants.NOTEID_CATEGORY) != NotesConstants.NOTEID_CATEGORY) {
+			int bitIdx = noteId >>> 2;
+			if (deliveredNoteIds.get(bitIdx)) {
+				return false;
+			}
+			deliveredNoteIds.set(bitIdx);
+			return true;
+		}
+		
+		//categories have no stable note id or position, so we use the column values of the
+		//category and its parent categories, e.g. "2024" exists below each department
+		int level = Math.max(0, entry.getLevel());
+		while (categoryPath.size() > level) {
+			categoryPath.remove(categoryPath.size()-1);
+		}
+		Object[] columnValues = entry.getColumnValues();
+		String parentKey = categoryPath.isEmpty() ? null : categoryPath.get(categoryPath.size()-1);
+		String categoryKey = columnValues==null || (level>0 && parentKey==null) ? null :
+			(parentKey==null ? "" : parentKey + "\n") + toComparableValues(columnValues);
+		categoryPath.add(categoryKey);
+		
+		if (categoryKey==null) {
+			//category or one of its parents cannot be identified
+			return true;
+		}
+		return deliveredCategories.add(categoryKey);
+	}
+	
+	/**
+	 * Locates the last delivered document after a view index change
+	 * 
+	 * @param lastDeliveredDoc last document passed to the lookup callback or null
+	 * @return position to continue reading after or null if the document is not in the view anymore or has changed its column values
+	 */
+	private String findResumePosition(NotesViewEntryData lastDeliveredDoc) {
+		if (lastDeliveredDoc==null) {
+			return null;
+		}
+		
+		Object[] oldColumnValues = lastDeliveredDoc.getColumnValues();
+		EnumSet<ReadMask> readMask = EnumSet.of(ReadMask.INIT_POS_NOTEID, ReadMask.NOTEID, ReadMask.INDEXPOSITION);
+		if (oldColumnValues!=null) {
+			readMask.add(ReadMask.SUMMARYVALUES);
+		}
+		
+		NotesViewLookupResultData data;
+		try {
+			data = readEntries(new NotesCollectionPosition(Integer.toString(lastDeliveredDoc.getNoteId())),
+					EnumSet.of(Navigate.CURRENT), 0, EnumSet.of(Navigate.CURRENT), 1, readMask);
+		}
+		catch (NotesError e) {
+			//document has been removed from the view
+			return null;
+		}
+		
+		List<NotesViewEntryData> entries = data.getEntries();
+		if (entries.isEmpty()) {
+			return null;
+		}
+		NotesViewEntryData currEntry = entries.get(0);
+		if (currEntry.getNoteId() != lastDeliveredDoc.getNoteId()) {
+			return null;
+		}
+		if (oldColumnValues!=null && !toComparableValues(oldColumnValues).equals(toComparableValues(currEntry.getColumnValues()))) {
+			//sort key has changed, so the document may have moved
+			return null;
+		}
+		return currEntry.getPositionStr();
+	}
+	
+	/**
+	 * Converts column values to a list that can be compared with {@link Object#equals(Object)}, because
+	 * string values may be returned as {@link LMBCSString} or {@link String}
+	 * 
+	 * @param values column values
+	 * @return list
+	 */
+	private static List<Object> toComparableValues(Object[] values) {
+		List<Object> comparableValues = new ArrayList<Object>(values==null ? 0 : values.length);
+		if (values!=null) {
+			for (Object currValue : values) {
+				comparableValues.add(toComparableValue(currValue));
+			}
+		}
+		return comparableValues;
+	}
+	
+	private static Object toComparableValue(Object value) {
+		if (value instanceof LMBCSString) {
+			return ((LMBCSString) value).getValue();
+		}
+		else if (value instanceof List) {
+			List<Object> comparableList = new ArrayList<Object>(((List<?>) value).size());
+			for (Object currValue : (List<?>) value) {
+				comparableList.add(toComparableValue(currValue));
+			}
+			return comparableList;
+		}
+		return value;
+	}
+	
 	/**
 	 * Returns all view entries matching the specified search key(s) in the collection.
 	 * It internally takes care of view index changes while reading view data and restarts
@@ -3045,6 +3393,31 @@ public class NotesCollection implements IRecyclableNotesObject {
 			NotesIDTable diffIDTable,
 			Integer columnNumber) {
 		
+		return readEntriesExtRaw(startPos, skipNavigator, skipCount, returnNavigator, returnCount, returnMask,
+				diffTime, diffIDTable, columnNumber).decode();
+	}
+	
+	/**
+	 * Calls NIFReadEntriesExt without decoding the returned buffer, so that decoding
+	 * can be done later, e.g. in another thread
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read
+	 * @param diffTime If non-null, this is a "differential view read", see {@link #readEntriesExt(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * @param diffIDTable list of notes which the caller has current information on for differential view reads
+	 * @param columnNumber If not null, number of single column to return value for (0-based)
+	 * @return raw buffer
+	 */
+	private RawLookupBuffer readEntriesExtRaw(NotesCollectionPosition startPos,
+			EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator,
+			int returnCount, EnumSet<ReadMask> returnMask, NotesTimeDate diffTime,
+			NotesIDTable diffIDTable,
+			Integer columnNumber) {
+		
 		checkHandle();
 
 		IntByReference retNumEntriesSkipped = new IntByReference();
@@ -3068,6 +3441,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		NotesTimeDateStruct diffTimeStruct = diffTime==null ? null : NotesTimeDateStruct.newInstance(diffTime.getInnards());
 		
 		short result;
+		long hBuffer;
 		if (PlatformUtils.is64Bit()) {
 			LongByReference retBuffer = new LongByReference();
 			result = NotesNativeAPI64.get().NIFReadEntriesExt(m_hCollection64, startPosStruct,
@@ -3076,30 +3450,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 					diffTimeStruct, diffIDTable==null ? 0 : diffIDTable.getHandle64(), columnNumber==null ? NotesConstants.MAXDWORD : columnNumber, flags, retBuffer, retBufferLength,
 					retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags,
 					retDiffTimeStruct, retModifiedTimeStruct, retSequence);
-			
-			if ((result & NotesConstants.ERR_MASK)!=1028) {
-				NotesErrorUtils.checkResult(result);
-			}
-			
-			int indexModifiedSequenceNo = retModifiedTimeStruct.Innards[0]; //getIndexModifiedSequenceNo();
-			
-			NotesTimeDate retDiffTimeWrap = new NotesTimeDate(retDiffTimeStruct);
-
-			int iBufLength = (int) (retBufferLength.getValue() & 0xffff);
-			if (iBufLength==0 || ((result & NotesConstants.ERR_MASK)==1028)) {
-				return new NotesViewLookupResultData(null, new ArrayList<NotesViewEntryData>(0),
-						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(),
-						retSignalFlags.getValue(), null, indexModifiedSequenceNo, new NotesTimeDate(retDiffTimeStruct));
-			}
-			else {
-				boolean convertStringsLazily = true;
-				boolean convertNotesTimeDateToCalendar = false;
-				
-				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
-						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
-						indexModifiedSequenceNo, retDiffTimeWrap, convertStringsLazily, convertNotesTimeDateToCalendar, singleColumnLookupName);
-				return viewData;
-			}
+			hBuffer = retBuffer.getValue();
 		}
 		else {
 			IntByReference retBuffer = new IntByReference();
@@ -3109,28 +3460,236 @@ public class NotesCollection implements IRecyclableNotesObject {
 					diffTimeStruct, diffIDTable==null ? 0 : diffIDTable.getHandle32(), columnNumber==null ? NotesConstants.MAXDWORD : columnNumber, flags, retBuffer, retBufferLength,
 					retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags,
 					retDiffTimeStruct, retModifiedTimeStruct, retSequence);
+			hBuffer = retBuffer.getValue();
+		}
 
-			if ((result & NotesConstants.ERR_MASK)!=1028) {
-				NotesErrorUtils.checkResult(result);
-			}
-			int indexModifiedSequenceNo = retModifiedTimeStruct.Innards[0]; //getIndexModifiedSequenceNo();
+		if ((result & NotesConstants.ERR_MASK)!=1028) {
+			NotesErrorUtils.checkResult(result);
+		}
+		
+		int indexModifiedSequenceNo = retModifiedTimeStruct.Innards[0]; //getIndexModifiedSequenceNo();
+		
+		NotesTimeDate retDiffTimeWrap = new NotesTimeDate(retDiffTimeStruct);
+
+		int iBufLength = (int) (retBufferLength.getValue() & 0xffff);
+		if (iBufLength==0 || ((result & NotesConstants.ERR_MASK)==1028)) {
+			hBuffer = 0;
+			iBufLength = 0;
+		}
+		
+		return new RawLookupBuffer(hBuffer, iBufLength, retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(),
+				retSignalFlags.getValue(), indexModifiedSequenceNo, retDiffTimeWrap, returnMask, singleColumnLookupName);
+	}
 
-			NotesTimeDate retDiffTimeWrap = new NotesTimeDate(retDiffTimeStruct);
+	/** max size of the NIFReadEntries buffer */
+	private static final int MAX_LOOKUP_BUFFER_SIZE = 0xffff;
+	
+	/**
+	 * Reads view data for {@link ViewLookupCallback#isPipelined()}: after each NIFReadEntriesExt
+	 * call, the buffer is decoded in a background thread while the next buffer is
+	 * read ahead with the same navigation. The decoder thread is owned by the reader
+	 * and stopped in {@link #close()}.
+	 */
+	private class PipelinedLookupReader {
+		private ExecutorService m_decoder;
+		private PendingRead m_pending;
+		//number of entries to request, grows with measured buffer fill
+		private int m_returnCount;
+		
+		/**
+		 * Returns the decoded data of the next buffer
+		 * 
+		 * @param continuation true if this call continues the previous one (skipping one entry with the return navigator), which is when we can use the data read ahead
+		 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+		 * @param skipNavigator navigator to use for the skip operation
+		 * @param skipCount number of entries to skip
+		 * @param returnNavigator navigator to use for the read operation
+		 * @param returnCount number of entries to read on the first call
+		 * @param returnMask bitmask of data to read
+		 * @param diffTime diff time for differential view reads or null
+		 * @param diffIDTable list of notes which the caller has current information on for differential view reads
+		 * @param columnNumber If not null, number of single column to return value for (0-based)
+		 * @return read data
+		 */
+		public NotesViewLookupResultData read(boolean continuation, NotesCollectionPosition startPos,
+				EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator,
+				int returnCount, EnumSet<ReadMask> returnMask, NotesTimeDate diffTime,
+				NotesIDTable diffIDTable, Integer columnNumber) {
 			
-			int iBufLength = (int) (retBufferLength.getValue() & 0xffff);
-			if (iBufLength==0 || ((result & NotesConstants.ERR_MASK)==1028)) {
+			if (m_returnCount < returnCount) {
+				m_returnCount = returnCount;
+			}
+			
+			PendingRead current;
+			if (continuation && m_pending!=null) {
+				current = m_pending;
+				m_pending = null;
+			}
+			else {
+				discardPending();
+				current = readAndDecodeAsync(startPos, skipNavigator, skipCount, returnNavigator, returnMask,
+						diffTime, diffIDTable, columnNumber);
+			}
+			
+			if (current.m_hasMore) {
+				//read ahead while the current buffer gets decoded
+				EnumSet<ReadMask> nextReturnMask = returnMask;
+				if (nextReturnMask.contains(ReadMask.INIT_POS_NOTEID)) {
+					nextReturnMask = nextReturnMask.clone();
+					nextReturnMask.remove(ReadMask.INIT_POS_NOTEID);
+				}
+				m_pending = readAndDecodeAsync(startPos, returnNavigator, 1, returnNavigator, nextReturnMask,
+						diffTime, diffIDTable, columnNumber);
+			}
+			
+			return waitForDecoding(current.m_decodedData);
+		}
+		
+		private PendingRead readAndDecodeAsync(NotesCollectionPosition startPos,
+				EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator,
+				EnumSet<ReadMask> returnMask, NotesTimeDate diffTime,
+				NotesIDTable diffIDTable, Integer columnNumber) {
+			
+			int requestedCount = m_returnCount;
+			final RawLookupBuffer rawBuffer = readEntriesExtRaw(startPos, skipNavigator, skipCount, returnNavigator,
+					requestedCount, returnMask, diffTime, diffIDTable, columnNumber);
+			
+			int numReturned = rawBuffer.m_numEntriesReturned;
+			boolean bufferFull = (rawBuffer.m_signalFlags & NotesConstants.SIGNAL_MORE_TO_DO) == NotesConstants.SIGNAL_MORE_TO_DO;
+			boolean hasMore = numReturned>0 && (bufferFull || numReturned>=requestedCount);
+			
+			if (numReturned>=requestedCount && numReturned>0 && rawBuffer.m_bufferLength>0 &&
+					rawBuffer.m_bufferLength < MAX_LOOKUP_BUFFER_SIZE/2 && requestedCount < Integer.MAX_VALUE/2) {
+				//buffer is less than half full, so request more entries next time
+				int avgEntrySize = Math.max(1, rawBuffer.m_bufferLength / numReturned);
+				int fittingEntries = (MAX_LOOKUP_BUFFER_SIZE * 9 / 10) / avgEntrySize;
+				m_returnCount = Math.max(requestedCount, Math.min(2*requestedCount, fittingEntries));
+			}
+			
+			if (m_decoder==null) {
+				m_decoder = Executors.newSingleThreadExecutor(new NotesThreadFactory("NotesCollection-Decoder"));
+			}
+			Future<NotesViewLookupResultData> decodedData = m_decoder.submit(new Callable<NotesViewLookupResultData>() {
+
+				@Override
+				public NotesViewLookupResultData call() throws Exception {
+					return NotesGC.runWithAutoGC(new Callable<NotesViewLookupResultData>() {
+
+						@Override
+						public NotesViewLookupResultData call() throws Exception {
+							return rawBuffer.decode();
+						}
+					});
+				}
+			});
+			return new PendingRead(decodedData, hasMore);
+		}
+		
+		private NotesViewLookupResultData waitForDecoding(Future<NotesViewLookupResultData> decodedData) {
+			try {
+				return decodedData.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new NotesError(0, "Interrupted while decoding view data", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new NotesError(0, "Error decoding view data", cause);
+			}
+		}
+		
+		/**
+		 * Drops data that has been read ahead; the decoder frees the buffer memory
+		 */
+		public void discardPending() {
+			if (m_pending!=null) {
+				try {
+					m_pending.m_decodedData.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					//ignore, data is not used
+				}
+				m_pending = null;
+			}
+		}
+		
+		public void close() {
+			discardPending();
+			if (m_decoder!=null) {
+				m_decoder.shutdown();
+				m_decoder = null;
+			}
+		}
+	}
+	
+	private static class PendingRead {
+		private Future<NotesViewLookupResultData> m_decodedData;
+		private boolean m_hasMore;
+		
+		public PendingRead(Future<NotesViewLookupResultData> decodedData, boolean hasMore) {
+			m_decodedData = decodedData;
+			m_hasMore = hasMore;
+		}
+	}
+	
+	/**
+	 * Undecoded result of a NIFReadEntriesExt call
+	 */
+	private class RawLookupBuffer {
+		private long m_hBuffer;
+		private int m_bufferLength;
+		private int m_numEntriesSkipped;
+		private int m_numEntriesReturned;
+		private short m_signalFlags;
+		private int m_indexModifiedSequenceNo;
+		private NotesTimeDate m_diffTime;
+		private EnumSet<ReadMask> m_returnMask;
+		private String m_singleColumnLookupName;
+		
+		public RawLookupBuffer(long hBuffer, int bufferLength, int numEntriesSkipped, int numEntriesReturned,
+				short signalFlags, int indexModifiedSequenceNo, NotesTimeDate diffTime, EnumSet<ReadMask> returnMask,
+				String singleColumnLookupName) {
+			m_hBuffer = hBuffer;
+			m_bufferLength = bufferLength;
+			m_numEntriesSkipped = numEntriesSkipped;
+			m_numEntriesReturned = numEntriesReturned;
+			m_signalFlags = signalFlags;
+			m_indexModifiedSequenceNo = indexModifiedSequenceNo;
+			m_diffTime = diffTime;
+			m_returnMask = returnMask;
+			m_singleColumnLookupName = singleColumnLookupName;
+		}
+		
+		/**
+		 * Decodes the buffer and frees its memory
+		 * 
+		 * @return lookup data
+		 */
+		public NotesViewLookupResultData decode() {
+			if (m_hBuffer==0) {
 				return new NotesViewLookupResultData(null, new ArrayList<NotesViewEntryData>(0),
-						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(),
-						retSignalFlags.getValue(), null, indexModifiedSequenceNo, retDiffTimeWrap);
+						m_numEntriesSkipped, m_numEntriesReturned,
+						m_signalFlags, null, m_indexModifiedSequenceNo, m_diffTime);
+			}
+			
+			boolean convertStringsLazily = true;
+			boolean convertNotesTimeDateToCalendar = false;
+			
+			long hBuffer = m_hBuffer;
+			m_hBuffer = 0;
+			
+			if (PlatformUtils.is64Bit()) {
+				return NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(NotesCollection.this, hBuffer,
+						m_numEntriesSkipped, m_numEntriesReturned, m_returnMask, m_signalFlags, null,
+						m_indexModifiedSequenceNo, m_diffTime, convertStringsLazily, convertNotesTimeDateToCalendar, m_singleColumnLookupName);
 			}
 			else {
-				boolean convertStringsLazily = true;
-				boolean convertNotesTimeDateToCalendar = false;
-				
-				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
-						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
-						indexModifiedSequenceNo, retDiffTimeWrap, convertStringsLazily, convertNotesTimeDateToCalendar, singleColumnLookupName);
-				return viewData;
+				return NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(NotesCollection.this, (int) hBuffer,
+						m_numEntriesSkipped, m_numEntriesReturned, m_returnMask, m_signalFlags, null,
+						m_indexModifiedSequenceNo, m_diffTime, convertStringsLazily, convertNotesTimeDateToCalendar, m_singleColumnLookupName);
 			}
 		}
 	}
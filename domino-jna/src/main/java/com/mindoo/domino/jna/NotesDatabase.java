@@ -4,7 +4,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
@@ -16,7 +15,6 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.Formatter;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -128,6 +126,7 @@ import com.mindoo.domino.jna.utils.SignalHandlerUtil;
 import com.mindoo.domino.jna.utils.SignalHandlerUtil.IBreakHandler;
 import com.mindoo.domino.jna.utils.StringTokenizerExt;
 import com.mindoo.domino.jna.utils.StringUtil;
+import com.mindoo.domino.jna.utils.UnidCodec;
 import com.sun.jna.Memory;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
@@ -168,6 +167,7 @@ public class NotesDatabase implements IRecyclableNotesObject, IAdaptable {
 	private boolean m_passNamesListToViewOpen;
 	private DbMode m_dbMode;
 	private Boolean m_hasLargeItemSupport;
+	private NotesUnidCache m_unidCache;
 	
 	private final RecycleHierarchy m_recycleHierarchy = new RecycleHierarchy();
 	
@@ -1706,13 +1706,7 @@ public class NotesDatabase implements IRecyclableNotesObject, IAdaptable {
 	 * @return unid
 	 */
 	private static String toUNID(Memory buf) {
-		Formatter formatter = new Formatter();
-		ByteBuffer data = buf.getByteBuffer(0, buf.size()).order(ByteOrder.LITTLE_ENDIAN);
-		formatter.format("%016x", data.getLong());
-		formatter.format("%016x", data.getLong());
-		String unid = formatter.toString().toUpperCase();
-		formatter.close();
-		return unid;
+		return UnidCodec.read(buf);
 	}
 	
 	/**
@@ -3768,6 +3762,24 @@ public class NotesDatabase implements IRecyclableNotesObject, IAdaptable {
 		
 	}
 	
+	/**
+	 * Returns a cache for note id / UNID conversions in this database, which reads
+	 * the database only for entries it does not already contain. Call
+	 * {@link NotesUnidCache#refresh()} to remove the entries of deleted notes.
+	 * 
+	 * @return cache
+	 */
+	public NotesUnidCache getUnidCache() {
+		checkHandle();
+		
+		synchronized (this) {
+			if (m_unidCache==null) {
+				m_unidCache = new NotesUnidCache(this);
+			}
+			return m_unidCache;
+		}
+	}
+	
 	/**
 	 * Convenience method to convert a single note unid to a note id. Currently only calls
 	 * the bulk function {@link NotesDatabase#toNoteIds(String[], Map, Set)}.
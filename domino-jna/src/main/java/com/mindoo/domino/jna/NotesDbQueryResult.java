@@ -15,15 +15,33 @@ public class NotesDbQueryResult {
 	private int idTableCountSaved;
 	private String explainTxt;
 	private long durationInMillis;
+	private boolean fromCache;
 	
 	NotesDbQueryResult(NotesDatabase parentDb,
 			String query, NotesIDTable idTable, String explainTxt, long durationInMillis) {
+		this(parentDb, query, idTable, explainTxt, durationInMillis, false);
+	}
+
+	/**
+	 * Creates a new query result, e.g. for results reused from a cache like
+	 * in {@link com.mindoo.domino.jna.dql.PreparedDQL}
+	 * 
+	 * @param parentDb database that was used to run the query
+	 * @param query DQL query
+	 * @param idTable note ids of matching documents
+	 * @param explainTxt explain text or empty string
+	 * @param durationInMillis duration to compute the result
+	 * @param fromCache true if the result has not been computed by a DQL query run
+	 */
+	public NotesDbQueryResult(NotesDatabase parentDb,
+			String query, NotesIDTable idTable, String explainTxt, long durationInMillis, boolean fromCache) {
 		this.parentDb = parentDb;
 		this.query = query;
 		this.idTable = idTable;
 		this.idTableCountSaved = idTable==null ? 0 : idTable.getCount();
 		this.explainTxt = explainTxt;
 		this.durationInMillis = durationInMillis;
+		this.fromCache = fromCache;
 	}
 
 	/**
@@ -78,13 +96,23 @@ public class NotesDbQueryResult {
 		return this.durationInMillis;
 	}
 	
+	/**
+	 * Returns true if the result has been reused from a cache instead of
+	 * running the DQL query
+	 * 
+	 * @return true if cached
+	 */
+	public boolean isFromCache() {
+		return this.fromCache;
+	}
+	
 	@Override
 	public String toString() {
 		if (this.idTable!=null && this.idTable.isRecycled()) {
-			return "NotesDbQueryResult [duration="+this.durationInMillis+", count="+this.idTableCountSaved+", IDTable recycled, query="+this.query+"]";
+			return "NotesDbQueryResult [duration="+this.durationInMillis+", count="+this.idTableCountSaved+", IDTable recycled, cached="+this.fromCache+", query="+this.query+"]";
 		}
 		else {
-			return "NotesDbQueryResult [duration="+this.durationInMillis+", count="+(this.idTable==null ? "0" : this.idTable.getCount())+", query="+this.query+"]";
+			return "NotesDbQueryResult [duration="+this.durationInMillis+", count="+(this.idTable==null ? "0" : this.idTable.getCount())+", cached="+this.fromCache+", query="+this.query+"]";
 		}
 	}
 
@@ -134,6 +134,7 @@ public class NotesItem {
 	 */
 	public void convertRFC822TextItem() {
 		m_parentNote.checkHandle();
+		m_parentNote.markModified();
 
 		NotesBlockIdStruct.ByValue itemBlockIdByVal = NotesBlockIdStruct.ByValue.newInstance();
 		itemBlockIdByVal.pool = m_itemBlockId.pool;
@@ -253,6 +254,7 @@ public class NotesItem {
 	 */
 	public void setItemType(int newType) {
 		m_parentNote.checkHandle();
+		m_parentNote.markModified();
 
 		loadItemNameAndFlags();
 
@@ -626,6 +628,7 @@ public class NotesItem {
 
 	private void setItemFlags(short newFlags) {
 		m_parentNote.checkHandle();
+		m_parentNote.markModified();
 
 		loadItemNameAndFlags();
 
@@ -810,6 +813,7 @@ public class NotesItem {
 	public void copyToNote(NotesNote targetNote, boolean overwrite) {
 		m_parentNote.checkHandle();
 		targetNote.checkHandle();
+		targetNote.markModified();
 
 		if (overwrite) {
 			String itemName = getName();
@@ -841,6 +845,7 @@ public class NotesItem {
 	public void copyToNote(NotesNote targetNote, String newItemName, boolean overwrite) {
 		m_parentNote.checkHandle();
 		targetNote.checkHandle();
+		targetNote.markModified();
 
 		if (overwrite) {
 			if (targetNote.hasItem(newItemName)) {
@@ -870,6 +875,7 @@ public class NotesItem {
 	 */
 	public void remove() {
 		m_parentNote.checkHandle();
+		m_parentNote.markModified();
 
 		NotesBlockIdStruct.ByValue itemBlockIdByVal = NotesBlockIdStruct.ByValue.newInstance();
 		itemBlockIdByVal.pool = m_itemBlockId.pool;
@@ -7,7 +7,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -62,15 +64,20 @@ import com.mindoo.domino.jna.formula.FormulaExecution;
 import com.mindoo.domino.jna.gc.IRecyclableNotesObject;
 import com.mindoo.domino.jna.gc.NotesGC;
 import com.mindoo.domino.jna.html.CommandId;
+import com.mindoo.domino.jna.html.HtmlConversionCacheEntry;
+import com.mindoo.domino.jna.html.HtmlConversionCacheKey;
 import com.mindoo.domino.jna.html.HtmlConvertProperties;
 import com.mindoo.domino.jna.html.HtmlConvertProperties.HtmlLinkHandling;
 import com.mindoo.domino.jna.html.IHtmlApiReference;
 import com.mindoo.domino.jna.html.IHtmlApiUrlTargetComponent;
 import com.mindoo.domino.jna.html.IHtmlAttachmentRef;
+import com.mindoo.domino.jna.html.IHtmlConversionCache;
+import com.mindoo.domino.jna.html.IHtmlConversionReferences;
 import com.mindoo.domino.jna.html.IHtmlConversionResult;
 import com.mindoo.domino.jna.html.IHtmlImageRef;
 import com.mindoo.domino.jna.html.ReferenceType;
 import com.mindoo.domino.jna.html.TargetType;
+import com.mindoo.domino.jna.internal.CDRecordBuffer;
 import com.mindoo.domino.jna.internal.CalNoteOpenData32;
 import com.mindoo.domino.jna.internal.CalNoteOpenData64;
 import com.mindoo.domino.jna.internal.CollationDecoder;
@@ -81,6 +88,7 @@ import com.mindoo.domino.jna.internal.DisposableMemory;
 import com.mindoo.domino.jna.internal.FieldPropAdaptable;
 import com.mindoo.domino.jna.internal.INotesNativeAPIV1201;
 import com.mindoo.domino.jna.internal.ItemDecoder;
+import com.mindoo.domino.jna.internal.LMBCSToUTF8OutputStream;
 import com.mindoo.domino.jna.internal.Mem;
 import com.mindoo.domino.jna.internal.Mem.LockedMemory;
 import com.mindoo.domino.jna.internal.Mem32;
@@ -93,8 +101,11 @@ import com.mindoo.domino.jna.internal.NotesNativeAPI64;
 import com.mindoo.domino.jna.internal.NotesNativeAPIV1201;
 import com.mindoo.domino.jna.internal.ReadOnlyMemory;
 import com.mindoo.domino.jna.internal.RecycleHierarchy;
+import com.mindoo.domino.jna.internal.SizeLimitedByteArrayOutputStream;
+import com.mindoo.domino.jna.internal.TeeOutputStream;
 import com.mindoo.domino.jna.internal.ViewFormatDecoder;
 import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
+import com.mindoo.domino.jna.internal.WriterOutputStream;
 import com.mindoo.domino.jna.internal.handles.DHANDLE;
 import com.mindoo.domino.jna.internal.handles.DHANDLE32;
 import com.mindoo.domino.jna.internal.handles.DHANDLE64;
@@ -124,8 +135,8 @@ import com.mindoo.domino.jna.richtext.ICompoundText;
 import com.mindoo.domino.jna.richtext.IRichTextNavigator;
 import com.mindoo.domino.jna.richtext.IRichTextNavigator.RichTextNavPosition;
 import com.mindoo.domino.jna.richtext.RichTextBuilder;
-import com.mindoo.domino.jna.richtext.StandaloneRichText;
 import com.mindoo.domino.jna.richtext.conversion.IRichTextConversion;
+import com.mindoo.domino.jna.richtext.conversion.RichTextConversionPipeline;
 import com.mindoo.domino.jna.utils.IDUtils;
 import com.mindoo.domino.jna.utils.LegacyAPIUtils;
 import com.mindoo.domino.jna.utils.ListUtil;
@@ -160,6 +171,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	private int m_hNote32;
 	private long m_hNote64;
 	private boolean m_noRecycle;
+	private boolean m_modified;
 	private NotesDatabase m_parentDb;
 	private Document m_legacyDocRef;
 	private EnumSet<NoteClass> m_noteClass;
@@ -336,6 +348,23 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 		return retNoteId.getInt(0);
 	}
 	
+	/**
+	 * Returns whether the note has been changed via this API since it was opened or
+	 * last saved. Changes made directly via the note handle are not tracked.
+	 * 
+	 * @return true if modified in memory
+	 */
+	public boolean isModified() {
+		return m_modified;
+	}
+	
+	/**
+	 * Marks the note as modified in memory, called by all methods that change the note
+	 */
+	void markModified() {
+		m_modified = true;
+	}
+	
 	/**
 	 * Method to check whether a note has already been saved
 	 * 
@@ -376,6 +405,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void setNoteClass(EnumSet<NoteClass> noteClass) {
 		checkHandle();
+		markModified();
 
 		EnumSet<NoteClass> noteClassToWrite = noteClass.clone();
 		noteClassToWrite.remove(NoteClass.ALL);
@@ -473,6 +503,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void setUNID(String newUnid) {
 		checkHandle();
+		markModified();
 
 		DisposableMemory retOid = new DisposableMemory(NotesConstants.oidSize);
 		try {
@@ -784,6 +815,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	
 	private void setFlags(short flags) {
 		checkHandle();
+		markModified();
 
 		DisposableMemory flagsMem = new DisposableMemory(2);
 		try {
@@ -910,6 +942,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void unsign() {
 		checkHandle();
+		markModified();
 		
 		if (PlatformUtils.is64Bit()) {
 			short result = NotesNativeAPI64.get().NSFNoteUnsign(m_hNote64);
@@ -943,6 +976,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void update(Set<UpdateNote> updateFlags) {
 		if (checkForProfileAndUpdate()) {
+			m_modified = false;
 			return;
 		}
 		checkHandle();
@@ -957,6 +991,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 			short result = NotesNativeAPI32.get().NSFNoteUpdateExtended(m_hNote32, updateFlagsBitmask);
 			NotesErrorUtils.checkResult(result);
 		}
+		m_modified = false;
 	}
 
 	/**
@@ -1335,6 +1370,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void removeItem(String itemName) {
 		checkHandle();
+		markModified();
 		
 		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, false);
 		
@@ -1355,6 +1391,8 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	private static final int DEFAULT_STRINGRETVALUE_LENGTH = 16384;
 	/** max size of return buffer for operations returning strings like NSFItemGetText  */
 	private static final int MAX_STRINGRETVALUE_LENGTH = 65535;
+	/** default number of bytes read per HTMLGetText call */
+	private static final int DEFAULT_HTML_CHUNK_SIZE = 4000;
 
 	private ThreadLocal<DisposableMemory> stringretBuffer = new ThreadLocal<DisposableMemory>();
 	private boolean m_saveMessageOnSend;
@@ -1405,6 +1443,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void setItemValueString(String itemName, String itemValue, boolean isSummary) {
 		checkHandle();
+		markModified();
 		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, true);
 		Memory itemValueMem = NotesStringUtils.toLMBCS(itemValue, false);
 		
@@ -1426,6 +1465,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void setItemValueDouble(String itemName, double value) {
 		checkHandle();
+		markModified();
 
 		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, true);
 		
@@ -1455,6 +1495,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 		}
 		
 		checkHandle();
+		markModified();
 
 		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, true);
 
@@ -2140,6 +2181,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	public NotesAttachment attachFile(IAttachmentProducer producer, String uniqueFileNameInNote, 
 			NotesTimeDate fileCreated, NotesTimeDate fileModified) {
 		checkHandle();
+		markModified();
 
 		//currently we do not support compression, because we could not find a Java OutputStream
 		//implementation for Huffman that produced compatible result and no implementation at all
@@ -2292,6 +2334,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public NotesAttachment attachFile(String filePathOnDisk, String uniqueFileNameInNote, Compression compression) {
 		checkHandle();
+		markModified();
 
 		//make sure that the unique filename is really unique, since it will be used to return the NotesAttachment object
 		List<Object> existingFileItems = FormulaExecution.evaluate("@AttachmentNames", this);
@@ -2812,6 +2855,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void compileLotusScript() {
 		checkHandle();
+		markModified();
 		
 		final Ref<NotesError> exception = new Ref<NotesError>();
 		final NotesCallbacks.LSCompilerErrorProc errorProc;
@@ -2929,6 +2973,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void computeWithForm(NotesForm form, boolean continueOnError, final ComputeWithFormCallback callback) {
 		checkHandle();
+		markModified();
 
 		if (form!=null && form.isRecycled()) {
 			throw new NotesError(0, "Form note is recycled");
@@ -3239,6 +3284,34 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 		}
 	}
 	
+	/**
+	 * Creates an in-memory copy of this note with the same note id, OID and parent database,
+	 * e.g. to keep a note received in a callback after the callback has returned
+	 *
+	 * @return note copy
+	 */
+	NotesNote copyInMemory() {
+		checkHandle();
+
+		NotesNote copyNote;
+		if (PlatformUtils.is64Bit()) {
+			LongByReference note_handle_dst = new LongByReference();
+			short result = NotesNativeAPI64.get().NSFNoteCopy(m_hNote64, note_handle_dst);
+			NotesErrorUtils.checkResult(result);
+
+			copyNote = new NotesNote(m_parentDb, note_handle_dst.getValue());
+		}
+		else {
+			IntByReference note_handle_dst = new IntByReference();
+			short result = NotesNativeAPI32.get().NSFNoteCopy(m_hNote32, note_handle_dst);
+			NotesErrorUtils.checkResult(result);
+
+			copyNote = new NotesNote(m_parentDb, note_handle_dst.getValue());
+		}
+		NotesGC.__objectCreated(NotesNote.class, copyNote);
+		return copyNote;
+	}
+
 	/**
 	 * Creates an in-memory copy of this note with an empty note id, a new OID (so a new UNID as well)
 	 * and with the parent database handle set to the specified target database
@@ -3322,6 +3395,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void decrypt(NotesUserId id) {
 		checkHandle();
+		markModified();
 		
 		short decryptFlags = NotesConstants.DECRYPT_ATTACHMENTS_IN_PLACE;
 		
@@ -4378,6 +4452,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	private NotesItem appendItemValue(String itemName, EnumSet<ItemType> flags, int itemType, DHANDLE hItemValue, int valueLength) {
 		checkHandle();
+		markModified();
 
 		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, false);
 		
@@ -4421,6 +4496,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	private NotesItem appendItemValue(String itemName, EnumSet<ItemType> flags, int itemType, Pointer ptr, int valueLength) {
 		checkHandle();
+		markModified();
 
 		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, false);
 		
@@ -4473,6 +4549,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void sign() {
 		checkHandle();
+		markModified();
 
 		short result;
 		if (PlatformUtils.is64Bit()) {
@@ -4525,6 +4602,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void sign(NotesUserId id, boolean signNotesIfMimePresent) {
 		checkHandle();
+		markModified();
 
 		short result;
 		if (PlatformUtils.is64Bit()) {
@@ -4578,6 +4656,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public boolean signHotSpots() {
 		checkHandle();
+		markModified();
 		
 		IntByReference retfSigned = new IntByReference();
 		
@@ -4862,6 +4941,159 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 		return internalConvertItemToHtml(itemName, props, refTypeFilter, targetTypeFilter);
 	}
 
+	/**
+	 * Method to convert the whole note to HTML and write the HTML code as UTF-8
+	 * to an {@link OutputStream}. The HTML is not kept in memory, which makes this method
+	 * a better choice for large documents than {@link #convertNoteToHtml(HtmlConvertProperties)}.
+	 * 
+	 * @param props conversion properties
+	 * @param out stream to receive the UTF-8 encoded HTML, will not be closed
+	 * @return references found in the HTML code
+	 */
+	public IHtmlConversionReferences convertNoteToHtml(HtmlConvertProperties props, OutputStream out) {
+		return convertToHtml(null, props, out, DEFAULT_HTML_CHUNK_SIZE, null);
+	}
+
+	/**
+	 * Method to convert the whole note to HTML and write the HTML code to a {@link Writer}.
+	 * 
+	 * @param props conversion properties
+	 * @param writer writer to receive the HTML, will be flushed but not closed
+	 * @return references found in the HTML code
+	 */
+	public IHtmlConversionReferences convertNoteToHtml(HtmlConvertProperties props, Writer writer) {
+		return convertToHtml(null, props, writer, DEFAULT_HTML_CHUNK_SIZE, null);
+	}
+
+	/**
+	 * Method to convert a single item of this note to HTML and write the HTML code as UTF-8
+	 * to an {@link OutputStream}.
+	 * 
+	 * @param itemName item name
+	 * @param props conversion properties
+	 * @param out stream to receive the UTF-8 encoded HTML, will not be closed
+	 * @return references found in the HTML code
+	 */
+	public IHtmlConversionReferences convertItemToHtml(String itemName, HtmlConvertProperties props, OutputStream out) {
+		if (StringUtil.isEmpty(itemName))
+			throw new NullPointerException("Item name cannot be null");
+
+		return convertToHtml(itemName, props, out, DEFAULT_HTML_CHUNK_SIZE, null);
+	}
+
+	/**
+	 * Method to convert a single item of this note to HTML and write the HTML code to a {@link Writer}.
+	 * 
+	 * @param itemName item name
+	 * @param props conversion properties
+	 * @param writer writer to receive the HTML, will be flushed but not closed
+	 * @return references found in the HTML code
+	 */
+	public IHtmlConversionReferences convertItemToHtml(String itemName, HtmlConvertProperties props, Writer writer) {
+		if (StringUtil.isEmpty(itemName))
+			throw new NullPointerException("Item name cannot be null");
+
+		return convertToHtml(itemName, props, writer, DEFAULT_HTML_CHUNK_SIZE, null);
+	}
+
+	/**
+	 * Method to convert the whole note or a single item to HTML and write the HTML code
+	 * to a {@link Writer}.
+	 * 
+	 * @param itemNameOrNull item name or null to convert the whole note
+	 * @param props conversion properties
+	 * @param writer writer to receive the HTML, will be flushed but not closed
+	 * @param chunkSize number of bytes to read from the HTML converter per native call
+	 * @param cache optional cache for rendered HTML or null
+	 * @return references found in the HTML code
+	 */
+	public IHtmlConversionReferences convertToHtml(String itemNameOrNull, HtmlConvertProperties props, Writer writer,
+			int chunkSize, IHtmlConversionCache cache) {
+		WriterOutputStream out = new WriterOutputStream(writer, StandardCharsets.UTF_8);
+		IHtmlConversionReferences refs = convertToHtml(itemNameOrNull, props, out, chunkSize, cache);
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new NotesError(0, "Error writing HTML of document with UNID "+getUNID(), e);
+		}
+		return refs;
+	}
+
+	/**
+	 * Method to convert the whole note or a single item to HTML and write the HTML code as UTF-8
+	 * to an {@link OutputStream}.<br>
+	 * <br>
+	 * The HTML converter output is read in chunks of <code>chunkSize</code> bytes and converted from
+	 * LMBCS to UTF-8 on the fly, so memory usage does not depend on the size of the document.<br>
+	 * <br>
+	 * If a <code>cache</code> is specified, we first look for a cached result for the database
+	 * replica id, UNID, sequence number/time of this note, the item name and the conversion properties
+	 * and write it to <code>out</code> without running the HTML converter. Otherwise the rendered
+	 * HTML is added to the cache after the conversion, unless it is larger than
+	 * {@link IHtmlConversionCache#getMaxEntrySize()}. Notes that have not been saved yet or that have
+	 * been modified in memory (see {@link #isModified()}) bypass the cache, because the sequence
+	 * number of their OID does not reflect their content.
+	 * 
+	 * @param itemNameOrNull item name or null to convert the whole note
+	 * @param props conversion properties
+	 * @param out stream to receive the UTF-8 encoded HTML, will be flushed but not closed
+	 * @param chunkSize number of bytes to read from the HTML converter per native call
+	 * @param cache optional cache for rendered HTML or null
+	 * @return references found in the HTML code
+	 */
+	public IHtmlConversionReferences convertToHtml(String itemNameOrNull, HtmlConvertProperties props, OutputStream out,
+			int chunkSize, IHtmlConversionCache cache) {
+		checkHandle();
+		
+		if (chunkSize<=0) {
+			throw new IllegalArgumentException("Chunk size must be greater than 0: "+chunkSize);
+		}
+		
+		HtmlConversionCacheKey cacheKey = null;
+		if (cache!=null && getNoteId()!=0 && !isModified()) {
+			NotesOriginatorId oid = getOID();
+			cacheKey = new HtmlConversionCacheKey(getParent().getReplicaID(), getUNID(), oid.getSequence(),
+					oid.getSequenceTime(), itemNameOrNull, props);
+			
+			HtmlConversionCacheEntry cachedEntry = cache.get(cacheKey);
+			if (cachedEntry!=null) {
+				try {
+					out.write(cachedEntry.getHtmlUTF8());
+					out.flush();
+				} catch (IOException e) {
+					throw new NotesError(0, "Error writing HTML of document with UNID "+getUNID(), e);
+				}
+				return new HtmlConversionResult(null, cachedEntry.getReferences(), props);
+			}
+		}
+		
+		SizeLimitedByteArrayOutputStream cacheOut = cacheKey==null ? null : new SizeLimitedByteArrayOutputStream(cache.getMaxEntrySize());
+		OutputStream utf8Out = cacheOut==null ? out : new TeeOutputStream(out, cacheOut);
+		
+		List<IHtmlApiReference> references;
+		try {
+			String txtContentAsHtml = getTextItemAsHtml(itemNameOrNull);
+			if (txtContentAsHtml!=null) {
+				utf8Out.write(txtContentAsHtml.getBytes(StandardCharsets.UTF_8));
+				utf8Out.flush();
+				references = Collections.emptyList();
+			}
+			else {
+				LMBCSToUTF8OutputStream lmbcsOut = new LMBCSToUTF8OutputStream(utf8Out, chunkSize);
+				references = internalConvertItemToHtml(itemNameOrNull, props, null, null, lmbcsOut, chunkSize);
+				lmbcsOut.finish();
+			}
+		} catch (IOException e) {
+			throw new NotesError(0, "Error writing HTML of document with UNID "+getUNID(), e);
+		}
+		
+		if (cacheOut!=null && !cacheOut.isSizeExceeded()) {
+			cache.put(cacheKey, new HtmlConversionCacheEntry(cacheOut.toByteArray(), references));
+		}
+		
+		return new HtmlConversionResult(null, references, props);
+	}
+
 	/**
 	 * Implementation of {@link IHtmlConversionResult} that contains the HTML conversion result
 	 * 
@@ -5581,16 +5813,62 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 		
 		checkHandle();
 		
+		String txtContentAsHtml = getTextItemAsHtml(itemName);
+		if (txtContentAsHtml!=null) {
+			return new HtmlConversionResult(txtContentAsHtml, Collections.emptyList(), props);
+		}
+		
+		ByteArrayOutputStream htmlTextLMBCSOut = new ByteArrayOutputStream();
+		List<IHtmlApiReference> references;
+		try {
+			references = internalConvertItemToHtml(itemName, props, refTypeFilter, targetTypeFilter,
+					htmlTextLMBCSOut, DEFAULT_HTML_CHUNK_SIZE);
+		} catch (IOException e) {
+			//not expected for a ByteArrayOutputStream
+			throw new UncheckedIOException(e);
+		}
+		
+		String htmlText = NotesStringUtils.fromLMBCS(htmlTextLMBCSOut.toByteArray());
+		return new HtmlConversionResult(htmlText, references, props);
+	}
+	
+	/**
+	 * Text items are not supported by the HTML converter, so we escape their
+	 * content ourselves
+	 * 
+	 * @param itemName item name or null for whole note
+	 * @return HTML or null if the item is not a text item
+	 */
+	private String getTextItemAsHtml(String itemName) {
 		if (itemName!=null) {
 			//fix to handle text items
 			NotesItem itm = getFirstItem(itemName);
 			if (itm!=null) {
 				if (itm.getType() == NotesItem.TYPE_TEXT || itm.getType() == NotesItem.TYPE_TEXT_LIST) {
-					String txtContentAsHtml = simpleHtmlEscape(getItemValueAsText(itemName, '\n'));
-					return new HtmlConversionResult(txtContentAsHtml, Collections.emptyList(), props);
+					return simpleHtmlEscape(getItemValueAsText(itemName, '\n'));
 				}
 			}
 		}
+		return null;
+	}
+	
+	/**
+	 * Internal method doing the HTML conversion work, writing the HTML code in LMBCS format
+	 * to an {@link OutputStream}
+	 * 
+	 * @param itemName item name to be converted or null for whole note
+	 * @param props conversion properties
+	 * @param refTypeFilter optional filter for ref types to be returned or null for no filter
+	 * @param targetTypeFilter optional filter for target types to be returned or null for no filter
+	 * @param htmlTextLMBCSOut stream to receive the HTML code in LMBCS format
+	 * @param chunkSize number of bytes to read from the converter per call
+	 * @return references
+	 * @throws IOException in case of I/O errors writing to the stream
+	 */
+	private List<IHtmlApiReference> internalConvertItemToHtml(String itemName,
+			HtmlConvertProperties props, Set<ReferenceType> refTypeFilter,
+			Map<ReferenceType,EnumSet<TargetType>> targetTypeFilter,
+			OutputStream htmlTextLMBCSOut, int chunkSize) throws IOException {
 		
 		HtmlConverter htmlConverter = setupHtmlConverter(props);
 		
@@ -5648,13 +5926,11 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 			
 			IntByReference len = new IntByReference();
 			int startOffset=0;
-			int bufSize = 4000;
+			int bufSize = chunkSize;
 			int iLen = bufSize;
 			
 			byte[] bufArr = new byte[bufSize];
 			
-			ByteArrayOutputStream htmlTextLMBCSOut = new ByteArrayOutputStream();
-			
 			DisposableMemory textMem = new DisposableMemory(bufSize+1);
 			try {
 				while (result==0 && iLen>0 && startOffset<totalLen) {
@@ -5683,8 +5959,6 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 				textMem.dispose();
 			}
 
-			String htmlText = NotesStringUtils.fromLMBCS(htmlTextLMBCSOut.toByteArray());
-			
 			Memory refCount = new Memory(4);
 			
 			if (PlatformUtils.is64Bit()) {
@@ -5832,7 +6106,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 				}
 			}
 			
-			return new HtmlConversionResult(htmlText, references, props);
+			return references;
 		}
 		finally {
 			htmlConverter.recycle();
@@ -5865,28 +6139,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 		if (conversions==null || conversions.length==0)
 			return false;
 		
-		IRichTextNavigator navFromNote = getRichtextNavigator(itemName);
-		IRichTextNavigator currNav = navFromNote;
-		
-		StandaloneRichText tmpRichText = null;
-		for (int i=0; i<conversions.length; i++) {
-			IRichTextConversion currConversion = conversions[i];
-			if (currConversion.isMatch(currNav)) {
-				tmpRichText = new StandaloneRichText();
-				currConversion.convert(currNav, tmpRichText);
-				
-				IRichTextNavigator nextNav = tmpRichText.closeAndGetRichTextNavigator();
-				currNav = nextNav;
-			}
-		}
-		
-		if (tmpRichText!=null) {
-			tmpRichText.closeAndCopyToNote(targetNote, targetItemName);
-			return true;
-		}
-		else {
-			return false;
-		}
+		return new RichTextConversionPipeline(conversions).convert(this, itemName, targetNote, targetItemName);
 	}
 	
 	/**
@@ -5903,6 +6156,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public RichTextBuilder createRichTextItem(String itemName) {
 		checkHandle();
+		markModified();
 
 		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, true);
 		
@@ -6431,6 +6685,14 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 			if (ct.isRecycled())
 				throw new NotesError(0, "ICompoundText already recycled");
 			
+			if (ct instanceof CDRecordBuffer) {
+				CDRecordMemory record = getCurrentRecord();
+				if (record==null)
+					throw new IllegalStateException("Current record is null");
+				((CDRecordBuffer) ct).addCDRecords(record.getRecordDataWithHeader(), record.getCDRecordLength());
+				return;
+			}
+			
 			CompoundTextWriter writer = ct.getAdapter(CompoundTextWriter.class);
 			if (writer==null)
 				throw new NotesError(0, "Unable to get CompoundTextWriter from RichTextBuilder");
@@ -6728,6 +6990,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void convertToMime(MimeConversionControl concCtrl) {
 		checkHandle();
+		markModified();
 		
 		if (concCtrl!=null && concCtrl.isRecycled()) {
 			throw new NotesError(0, "The conversion control object is recycled");
@@ -6776,6 +7039,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void convertToRichtext(String itemName, MimeConversionControl concCtrl) {
 		checkHandle();
+		markModified();
 		
 		if (concCtrl!=null && concCtrl.isRecycled()) {
 			throw new NotesError(0, "The conversion control object is recycled");
@@ -6829,6 +7093,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void convertToRichtext(MimeConversionControl concCtrl) {
 		checkHandle();
+		markModified();
 		
 		if (concCtrl!=null && concCtrl.isRecycled()) {
 			throw new NotesError(0, "The conversion control object is recycled");
@@ -7086,6 +7351,7 @@ public class NotesNote implements IRecyclableNotesObject, IAdaptable {
 	 */
 	public void send(boolean attachform, Collection<String> recipients) {
 		checkHandle();
+		markModified();
 		
 		if (m_parentDb.isRecycled()) {
 			throw new NotesError("Parent database is recycled");
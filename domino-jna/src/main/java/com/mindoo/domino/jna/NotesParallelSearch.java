@@ -0,0 +1,297 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.errors.FormulaCompilationError;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
+
+/**
+ * Runs an NSF search in parallel by splitting the candidate note ids into
+ * disjoint {@link NotesIDTable} segments and searching each segment with
+ * {@link NotesSearch#search(NotesDatabase, NotesIDTable, String, Map, String, Set, Set, NotesTimeDate, SearchCallback)}
+ * on a worker thread with its own database handle (see {@link NotesDatabase#reopenDatabase()})
+ * and {@link NotesGC} context.<br>
+ * <br>
+ * The candidate note ids are either taken from the specified search filter or computed with
+ * {@link NotesDatabase#getModifiedNoteTable(Set, NotesTimeDate, NotesTimeDate)}, so
+ * the search can also be used for incremental runs with a <code>since</code> date.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesParallelSearch {
+	/** number of segments per worker thread, used to balance segments of different search costs */
+	private static final int SEGMENTS_PER_THREAD = 4;
+
+	/**
+	 * Searches the database in parallel using one worker thread per CPU core.
+	 *
+	 * @param db database to search in
+	 * @param searchFilter optional search scope as {@link NotesIDTable} or null to search all notes matching <code>noteClasses</code>
+	 * @param formula formula or null
+	 * @param columnFormulas map with programmatic column names (key) and formulas (value) with keys sorted in column order or null to output all items
+	 * @param viewTitle optional view title that will be returned for "@ ViewTitle" within the formula or null
+	 * @param searchFlags flags to control searching ({@link Search})
+	 * @param noteClasses note classes to search
+	 * @param since The date of the earliest modified note that is matched or null
+	 * @param callback callback to be called for every found note; <b>called concurrently from the worker threads</b>
+	 * @return The ending (current) time/date of this search to be used as the "since" argument of the next incremental search or null if the search has been cancelled
+	 * @throws FormulaCompilationError if formula syntax is invalid
+	 */
+	public static NotesTimeDate search(NotesDatabase db, NotesIDTable searchFilter, String formula, Map<String,String> columnFormulas,
+			String viewTitle, Set<Search> searchFlags, Set<NoteClass> noteClasses, NotesTimeDate since,
+			SearchCallback callback) throws FormulaCompilationError {
+
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, new NotesThreadFactory("NotesParallelSearch"));
+		try {
+			return search(db, searchFilter, formula, columnFormulas, viewTitle, searchFlags, noteClasses, since,
+					executor, numThreads * SEGMENTS_PER_THREAD, callback);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Searches the database in parallel using the specified executor.
+	 *
+	 * @param db database to search in
+	 * @param searchFilter optional search scope as {@link NotesIDTable} or null to search all notes matching <code>noteClasses</code>
+	 * @param formula formula or null
+	 * @param columnFormulas map with programmatic column names (key) and formulas (value) with keys sorted in column order or null to output all items
+	 * @param viewTitle optional view title that will be returned for "@ ViewTitle" within the formula or null
+	 * @param searchFlags flags to control searching ({@link Search})
+	 * @param noteClasses note classes to search
+	 * @param since The date of the earliest modified note that is matched or null
+	 * @param executor executor to run the segment searches; its threads must be initialized for Notes API calls, e.g. created by a {@link NotesThreadFactory}
+	 * @param numSegments number of disjoint segments to split the note ids into
+	 * @param callback callback to be called for every found note; <b>called concurrently from the worker threads</b>
+	 * @return The ending (current) time/date of this search to be used as the "since" argument of the next incremental search or null if the search has been cancelled
+	 * @throws FormulaCompilationError if formula syntax is invalid
+	 */
+	public static NotesTimeDate search(final NotesDatabase db, NotesIDTable searchFilter, final String formula, final Map<String,String> columnFormulas,
+			final String viewTitle, final Set<Search> searchFlags, final Set<NoteClass> noteClasses, final NotesTimeDate since,
+			ExecutorService executor, int numSegments, final SearchCallback callback) throws FormulaCompilationError {
+
+		if (db.isRecycled()) {
+			throw new NotesError(0, "Database already recycled");
+		}
+		if (numSegments<1) {
+			throw new IllegalArgumentException("Number of segments must be greater than 0: "+numSegments);
+		}
+
+		//collect candidate note ids
+		NotesTimeDate retUntil = null;
+		int[] candidateIds;
+		if (searchFilter!=null) {
+			candidateIds = searchFilter.toArray();
+		}
+		else {
+			//EnumSet.copyOf fails for empty collections that are not an EnumSet
+			EnumSet<NoteClass> noteClassesForTable = noteClasses.isEmpty() ? EnumSet.noneOf(NoteClass.class) : EnumSet.copyOf(noteClasses);
+			noteClassesForTable.remove(NoteClass.NOTIFYDELETION);
+
+			NotesTimeDate tableSince;
+			if (since==null) {
+				//all notes, without deletions
+				tableSince = new NotesTimeDate();
+				tableSince.setMinimum();
+			}
+			else {
+				tableSince = since;
+			}
+			retUntil = new NotesTimeDate();
+			NotesIDTable modifiedTable = db.getModifiedNoteTable(noteClassesForTable, tableSince, retUntil);
+			try {
+				candidateIds = modifiedTable.toArray();
+			}
+			finally {
+				modifiedTable.recycle();
+			}
+		}
+
+		//deleted notes are flagged with RRV_DELETED; NSFSearchExtended3 requires the
+		//high order bit for every id anyway, so we just sort by the plain note id
+		for (int i=0; i<candidateIds.length; i++) {
+			candidateIds[i] = (int) (candidateIds[i] & ~NotesConstants.RRV_DELETED);
+		}
+		Arrays.sort(candidateIds);
+
+		if (candidateIds.length==0) {
+			return retUntil!=null ? retUntil : new NotesTimeDate();
+		}
+
+		List<int[]> segments = splitIntoSegments(candidateIds, numSegments);
+
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final SearchCallback threadSafeCallback = new StoppableSearchCallback(callback, stopped);
+
+		List<Future<NotesTimeDate>> futures = new ArrayList<Future<NotesTimeDate>>(segments.size());
+		for (final int[] currSegment : segments) {
+			futures.add(executor.submit(new Callable<NotesTimeDate>() {
+
+				@Override
+				public NotesTimeDate call() throws Exception {
+					if (stopped.get()) {
+						return null;
+					}
+
+					return NotesGC.runWithAutoGC(new Callable<NotesTimeDate>() {
+
+						@Override
+						public NotesTimeDate call() throws Exception {
+							//reopen source database in this thread
+							NotesDatabase dbInThread = db.reopenDatabase();
+							NotesIDTable segmentTable = new NotesIDTable(currSegment);
+							try {
+								return NotesSearch.search(dbInThread, segmentTable, formula, columnFormulas, viewTitle,
+										searchFlags, noteClasses, since, threadSafeCallback);
+							}
+							finally {
+								segmentTable.recycle();
+								dbInThread.recycle();
+							}
+						}
+					});
+				}
+			}));
+		}
+
+		Throwable firstError = null;
+		NotesTimeDate minSegmentUntil = null;
+
+		for (Future<NotesTimeDate> currFuture : futures) {
+			try {
+				NotesTimeDate currSegmentUntil = currFuture.get();
+				if (currSegmentUntil!=null && (minSegmentUntil==null || currSegmentUntil.isBefore(minSegmentUntil))) {
+					minSegmentUntil = currSegmentUntil;
+				}
+			} catch (InterruptedException e) {
+				stopped.set(true);
+				Thread.currentThread().interrupt();
+				if (firstError==null) {
+					firstError = e;
+				}
+			} catch (ExecutionException e) {
+				//make the other workers stop early
+				stopped.set(true);
+				if (firstError==null) {
+					firstError = e.getCause();
+				}
+			}
+		}
+
+		if (firstError!=null) {
+			if (firstError instanceof FormulaCompilationError) {
+				throw (FormulaCompilationError) firstError;
+			}
+			//special case for JUnit testcases
+			if (firstError instanceof AssertionError) {
+				throw (AssertionError) firstError;
+			}
+			throw new NotesError(0, "Error searching database", firstError);
+		}
+
+		if (stopped.get()) {
+			//search has been cancelled by the callback
+			return null;
+		}
+
+		//when we computed the candidates ourselves, notes modified after that are not part of the result,
+		//so the time of the id table computation is the right start for the next incremental search
+		return retUntil!=null ? retUntil : minSegmentUntil;
+	}
+
+	/**
+	 * Splits a sorted array of note ids into disjoint consecutive ranges of similar size
+	 *
+	 * @param sortedIds sorted note ids
+	 * @param numSegments max number of segments
+	 * @return segments
+	 */
+	static List<int[]> splitIntoSegments(int[] sortedIds, int numSegments) {
+		int segmentCount = Math.max(1, Math.min(numSegments, sortedIds.length));
+		List<int[]> segments = new ArrayList<int[]>(segmentCount);
+
+		int segmentSize = sortedIds.length / segmentCount;
+		int remainder = sortedIds.length % segmentCount;
+		int startIdx = 0;
+		for (int i=0; i<segmentCount; i++) {
+			int currSize = segmentSize + (i < remainder ? 1 : 0);
+			segments.add(Arrays.copyOfRange(sortedIds, startIdx, startIdx + currSize));
+			startIdx += currSize;
+		}
+		return segments;
+	}
+
+	/**
+	 * Callback wrapper that stops all segment searches as soon as one
+	 * invocation of the wrapped callback returns {@link SearchCallback.Action#Stop}
+	 */
+	private static class StoppableSearchCallback extends SearchCallback {
+		private SearchCallback m_callback;
+		private AtomicBoolean m_stopped;
+
+		public StoppableSearchCallback(SearchCallback callback, AtomicBoolean stopped) {
+			m_callback = callback;
+			m_stopped = stopped;
+		}
+
+		private Action checkStop(Action action) {
+			if (action==Action.Stop) {
+				m_stopped.set(true);
+			}
+			return action;
+		}
+
+		@Override
+		public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+				IItemTableData summaryBufferData) {
+			if (m_stopped.get()) {
+				return Action.Stop;
+			}
+			return checkStop(m_callback.noteFound(parentDb, searchMatch, summaryBufferData));
+		}
+
+		@Override
+		public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+				IItemTableData summaryBufferData) {
+			if (m_stopped.get()) {
+				return Action.Stop;
+			}
+			return checkStop(m_callback.deletionStubFound(parentDb, searchMatch, summaryBufferData));
+		}
+
+		@Override
+		public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch,
+				IItemTableData summaryBufferData) {
+			if (m_stopped.get()) {
+				return Action.Stop;
+			}
+			return checkStop(m_callback.noteFoundNotMatchingFormula(parentDb, searchMatch, summaryBufferData));
+		}
+
+		@Override
+		public boolean isReuseMatchObjects() {
+			return m_callback.isReuseMatchObjects();
+		}
+	}
+}
@@ -1,9 +1,14 @@
 package com.mindoo.domino.jna;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -17,6 +22,7 @@ import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.gc.IAllocatedMemory;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.DisposableMemory;
 import com.mindoo.domino.jna.internal.LMBCSStringList;
 import com.mindoo.domino.jna.internal.Mem;
 import com.mindoo.domino.jna.internal.Mem.LockedMemory;
@@ -90,7 +96,7 @@ public class NotesQueryResultsProcessor implements IAllocatedMemory {
 
 	private NotesDatabase m_db;
 	private NotesQueryResultsHandles m_queryResultsHandles;
-	private List<Reader> m_pendingJsonReader;
+	private List<Closeable> m_pendingJsonReader;
 	//GC stuff
 	private boolean m_freed;
 	private int m_pseudoHandle;
@@ -157,7 +163,7 @@ public class NotesQueryResultsProcessor implements IAllocatedMemory {
 
 		synchronized (m_pendingJsonReader) {
 			//make sure that all created readers have been closed
-			for (Reader currReader : new ArrayList<>(m_pendingJsonReader)) { //prevent ConcurrentModificationException by creating a copy of the list
+			for (Closeable currReader : new ArrayList<>(m_pendingJsonReader)) { //prevent ConcurrentModificationException by creating a copy of the list
 				try {
 					currReader.close();
 				}
@@ -932,6 +938,349 @@ public class NotesQueryResultsProcessor implements IAllocatedMemory {
 		}
 	}
 
+	/**
+	 * Processes the input collections like {@link #executeToJSON(Appendable, Set)}, but writes
+	 * the JSON output as UTF-8 directly into the specified {@link OutputStream}.<br>
+	 * <br>
+	 * The LMBCS chunks read from the result queue are translated to UTF-8 bytes without decoding
+	 * them into Java strings first, so this is the fastest way to pass QRP results to
+	 * a HTTP response or file.
+	 * 
+	 * @param out stream to write the UTF-8 encoded JSON data
+	 * @param options options to tweak the JSON output or null/empty for default
+	 *                format
+	 */
+	public void executeToJSON(OutputStream out, Set<QRPOptions> options) {
+		if (out==null) {
+			throw new IllegalArgumentException("OutputStream is null");
+		}
+
+		InputStream jsonStream = executeToJSONStream(options);
+		try {
+			if (jsonStream instanceof QueryResultsJSONInputStream) {
+				((QueryResultsJSONInputStream) jsonStream).writeTo(out);
+			}
+			else {
+				byte[] buf = new byte[1024];
+				int len;
+				while ((len = jsonStream.read(buf))>0) {
+					out.write(buf, 0, len);
+				}
+			}
+		} catch (IOException e) {
+			throw new NotesError(0, "Error writing data to OutputStream", e);
+		}
+		finally {
+			try {
+				jsonStream.close();
+			} catch (IOException e) {
+				//
+			}
+		}
+	}
+
+	/**
+	 * Processes the input collections like {@link #executeToJSON(Set)}, but returns the JSON
+	 * output as UTF-8 encoded {@link InputStream} that reads the result queue chunk by chunk.<br>
+	 * <br>
+	 * Closing the stream before all data has been read releases the result queue early.
+	 * Streams not closed are closed when this processor gets recycled.
+	 * 
+	 * @param options options to tweak the JSON output or null/empty for default
+	 *                format
+	 * @return stream with UTF-8 encoded JSON data
+	 */
+	public InputStream executeToJSONStream(Set<QRPOptions> options) {
+		checkHandle();
+
+		if (m_totalNotesAdded==0) {
+			//workaround for 12.0.0 / 12.0.1 issue where the produced json string is invalid
+			return new ByteArrayInputStream("{\"StreamResults\" :[]} ".getBytes(Charset.forName("UTF-8")));
+		}
+
+		m_queryResultsHandles.read();
+
+		if (m_queryResultsHandles.hOutFields == 0) {
+			throw new NotesError("No column has been defined");
+		}
+
+		if (m_db.isRecycled()) {
+			throw new NotesError("Database is recycled");
+		}
+
+		IntByReference hErrorText = new IntByReference();
+		hErrorText.setValue(0);
+		DHANDLE.ByReference hqueue = DHANDLE.newInstanceByReference();
+
+		int dwFlags = NotesConstants.PROCRES_JSON_OUTPUT;
+		if (options!=null) {
+			if (options.contains(QRPOptions.RETURN_UNID)) {
+				dwFlags |= NotesConstants.PROCRES_RETURN_UNID;
+			}
+			if (options.contains(QRPOptions.RETURN_REPLICAID)) {
+				dwFlags |= NotesConstants.PROCRES_RETURN_REPLICAID;
+			}
+		}
+
+		short result = NotesNativeAPIV1200.get().NSFProcessResults(m_db.getHandle().getByValue(), null,
+				dwFlags, m_queryResultsHandles.hInResults, m_queryResultsHandles.hOutFields,
+				m_queryResultsHandles.hFieldRules, m_queryResultsHandles.hCombineRules, hErrorText, hqueue);
+
+		if (result!=0) {
+			if (hErrorText.getValue()!=0) {
+				try (LockedMemory errMsgMem = Mem.OSMemoryLock(hErrorText.getValue(), true);) {
+					Pointer errMsgPtr = errMsgMem.getPointer();
+					String errMsg = NotesStringUtils.fromLMBCS(errMsgPtr, -1);
+					throw new NotesError(result, errMsg);
+				}
+			}
+			else {
+				NotesErrorUtils.checkResult(result);
+			}
+		}
+
+		if (hqueue.isNull()) {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		QueryResultsJSONInputStream stream = new QueryResultsJSONInputStream(this, hqueue, hErrorText);
+		//register this stream to ensure it is closed on GC
+		registerReaderForClose(stream);
+		return stream;
+	}
+
+	/**
+	 * Processes the input collections like {@link #executeToJSON(Set)} and returns
+	 * a pull iterator over the top level result rows with typed column values.<br>
+	 * <br>
+	 * The JSON data is parsed incrementally while the result queue is read, so only
+	 * the current row is held in the Java heap. Call {@link NotesQueryResultsRowReader#close()}
+	 * to stop early once enough rows have been read; the result queue is released
+	 * automatically when the last row has been read.
+	 * 
+	 * @param options options to tweak the JSON output or null/empty for default
+	 *                format
+	 * @return row reader
+	 */
+	public NotesQueryResultsRowReader executeToRows(Set<QRPOptions> options) {
+		return new NotesQueryResultsRowReader(executeToJSONStream(options));
+	}
+
+	/**
+	 * Stream implementation to receive the JSON data from the queue as UTF-8
+	 */
+	private static class QueryResultsJSONInputStream extends InputStream {
+		private NotesQueryResultsProcessor m_processor;
+		private DHANDLE.ByReference m_hqueue;
+		private DHANDLE.ByReference m_hHoldQueueEntry;
+		private IntByReference m_hErrorText;
+
+		//the last read chunk of UTF-8 data
+		private byte[] m_chunk;
+		//position of the byte to return next
+		private int m_chunkPos;
+		//buffer for LMBCS to UTF-8 translation, reused for all chunks
+		private DisposableMemory m_translateBuf;
+
+		private boolean m_eof;
+		private boolean m_isClosed;
+
+		public QueryResultsJSONInputStream(NotesQueryResultsProcessor processor, DHANDLE.ByReference hqueue,
+				IntByReference hErrorText) {
+			m_processor = processor;
+			m_hqueue = hqueue;
+			m_hErrorText = hErrorText;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (m_isClosed) {
+				return;
+			}
+
+			try {
+				if (m_hqueue!=null && !m_hqueue.isNull()) {
+					short resultQueueDelete = NotesNativeAPI.get().QueueDelete(m_hqueue.getByValue());
+					NotesErrorUtils.checkResult(resultQueueDelete);
+					m_hqueue.clear();
+				}
+
+				if (m_hHoldQueueEntry!=null && !m_hHoldQueueEntry.isNull()) {
+					short resultMemFree = Mem.OSMemFree(m_hHoldQueueEntry.getByValue());
+					NotesErrorUtils.checkResult(resultMemFree);
+					m_hHoldQueueEntry.clear();
+				}
+			}
+			finally {
+				if (m_translateBuf!=null) {
+					m_translateBuf.dispose();
+					m_translateBuf = null;
+				}
+				m_chunk = null;
+				m_processor.unregisterReaderForClose(this);
+				m_isClosed = true;
+			}
+		}
+
+		/**
+		 * Makes sure that there is unread data in the current chunk
+		 * 
+		 * @return true if data is available, false on EOF
+		 * @throws IOException if stream is closed
+		 */
+		private boolean fillChunk() throws IOException {
+			if (m_isClosed) {
+				throw new IOException("Stream is closed");
+			}
+
+			while (m_chunk==null || m_chunkPos>=m_chunk.length) {
+				if (m_eof) {
+					return false;
+				}
+				m_chunk = readNextChunk();
+				m_chunkPos = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fillChunk()) {
+				return -1;
+			}
+			return m_chunk[m_chunkPos++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len==0) {
+				return 0;
+			}
+			if (!fillChunk()) {
+				return -1;
+			}
+
+			int numBytes = Math.min(len, m_chunk.length - m_chunkPos);
+			System.arraycopy(m_chunk, m_chunkPos, b, off, numBytes);
+			m_chunkPos += numBytes;
+			return numBytes;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return m_chunk==null || m_isClosed ? 0 : m_chunk.length - m_chunkPos;
+		}
+
+		/**
+		 * Writes the remaining data to the specified stream without copying
+		 * it into an intermediate buffer
+		 * 
+		 * @param out target stream
+		 * @throws IOException in case of I/O errors
+		 */
+		public void writeTo(OutputStream out) throws IOException {
+			while (fillChunk()) {
+				out.write(m_chunk, m_chunkPos, m_chunk.length - m_chunkPos);
+				m_chunkPos = m_chunk.length;
+			}
+		}
+
+		private byte[] readNextChunk() {
+			m_processor.checkHandle();
+
+			DHANDLE.ByReference hQueueEntry = DHANDLE.newInstanceByReference();
+
+			short readQueueError = NotesNativeAPI.get().QueueGet(m_hqueue.getByValue(), hQueueEntry);
+
+			/* hqueueentry is reused for each segment. last time it is NULLHANDLE,
+			so remember the handle for release */
+			if (m_hHoldQueueEntry == null) {
+				m_hHoldQueueEntry = hQueueEntry;
+			}
+
+			byte[] data = new byte[0];
+			if (readQueueError == 0 & !hQueueEntry.isNull()) {
+				DHANDLE.ByValue hqueueentryByVal = hQueueEntry.getByValue();
+
+				Pointer pinbuf = Mem.OSLockObject(hqueueentryByVal);
+				try {
+					//skip header
+					pinbuf = pinbuf.share(NotesConstants.queueEntryHeaderSize);
+					pinbuf = pinbuf.share(NotesConstants.resultsStreamBufferHeaderSize);
+
+					data = toUTF8(pinbuf);
+				}
+				finally {
+					Mem.OSUnlockObject(hqueueentryByVal);	/* note: do not free until done with queue */
+				}
+			}
+
+			/* not an error condition */
+			if (readQueueError == INotesErrorConstants.ERR_QUEUE_EMPTY) {
+				readQueueError = 0;
+			}
+
+			if (readQueueError!=0) {
+				if (m_hErrorText.getValue()!=0) {
+					try (LockedMemory errMsgMem = Mem.OSMemoryLock(m_hErrorText.getValue(), true);) {
+						Pointer errMsgPtr = errMsgMem.getPointer();
+						String errMsg = NotesStringUtils.fromLMBCS(errMsgPtr, -1);
+						throw new NotesError(readQueueError, errMsg);
+					}
+				}
+				else {
+					NotesErrorUtils.checkResult(readQueueError);
+				}
+			}
+
+			if (data.length==0) {
+				m_eof = true;
+			}
+
+			return data;
+		}
+
+		/**
+		 * Converts a null terminated LMBCS string to UTF-8 bytes. Printable 7 bit ASCII,
+		 * tabs and line breaks are identical in both encodings, so we only call OSTranslate32
+		 * for chunks containing other characters.
+		 * 
+		 * @param lmbcsPtr pointer to LMBCS data
+		 * @return UTF-8 data
+		 */
+		private byte[] toUTF8(Pointer lmbcsPtr) {
+			int lmbcsLen = NotesStringUtils.getNullTerminatedLength(lmbcsPtr);
+			if (lmbcsLen==0) {
+				return new byte[0];
+			}
+
+			byte[] lmbcsData = lmbcsPtr.getByteArray(0, lmbcsLen);
+			boolean isAscii = true;
+			for (int i=0; i<lmbcsData.length; i++) {
+				byte b = lmbcsData[i];
+				if ((b < 0x20 && b!='\t' && b!='\n' && b!='\r') || b > 0x7e) {
+					isAscii = false;
+					break;
+				}
+			}
+			if (isAscii) {
+				return lmbcsData;
+			}
+
+			int worstCaseLength = 3*lmbcsLen;
+			if (m_translateBuf==null || m_translateBuf.size() < worstCaseLength) {
+				if (m_translateBuf!=null) {
+					m_translateBuf.dispose();
+				}
+				m_translateBuf = new DisposableMemory(worstCaseLength);
+			}
+
+			int retLength = NotesNativeAPI.get().OSTranslate32(NotesConstants.OS_TRANSLATE_LMBCS_TO_UTF8,
+					lmbcsPtr, lmbcsLen, m_translateBuf, (int) m_translateBuf.size());
+			return m_translateBuf.getByteArray(0, retLength);
+		}
+	}
+
 	/**
 	 * Saves sorted QueryResultsProcessor results to a "results view" in a database.<br>
 	 * Processes the input collections in the manner specified by the Sort Columns,
@@ -1044,23 +1393,23 @@ public class NotesQueryResultsProcessor implements IAllocatedMemory {
 	}
 
 	/**
-	 * Registers a reader to be closed when this allocations object is disposed
+	 * Registers a reader or stream to be closed when this allocations object is disposed
 	 * 
 	 * @param reader reader
 	 */
-	private void registerReaderForClose(Reader reader) {
+	private void registerReaderForClose(Closeable reader) {
 		synchronized (m_pendingJsonReader) {
 			m_pendingJsonReader.add(reader);
 		}
 	}
 
 	/**
-	 * Unregisters a reader from the auto close list. Used if it has been closed
+	 * Unregisters a reader or stream from the auto close list. Used if it has been closed
 	 * manually.
 	 * 
 	 * @param reader reader
 	 */
-	private void unregisterReaderForClose(Reader reader) {
+	private void unregisterReaderForClose(Closeable reader) {
 		synchronized (m_pendingJsonReader) {
 			m_pendingJsonReader.remove(reader);
 		}
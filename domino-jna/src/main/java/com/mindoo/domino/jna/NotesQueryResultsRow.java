@@ -0,0 +1,285 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One row of the JSON output of the {@link NotesQueryResultsProcessor} read by a
+ * {@link NotesQueryResultsRowReader}.<br>
+ * <br>
+ * Column values are typed like in the JSON data: {@link String}, {@link Double},
+ * {@link Boolean}, {@link List} for multi-value fields, {@link NotesQueryResultsRow}
+ * for nested objects or null.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesQueryResultsRow {
+	/** key for the note id (or UNID with {@link NotesQueryResultsProcessor.QRPOptions#RETURN_UNID}) of the document */
+	public static final String KEY_NOTEID = "@nid";
+	/** key for the database path (or replica id with {@link NotesQueryResultsProcessor.QRPOptions#RETURN_REPLICAID}) */
+	public static final String KEY_DBPATH = "@DbPath";
+	/** key for the documents of a category row */
+	public static final String KEY_DOCUMENTS = "Documents";
+
+	private Map<String,Object> m_values;
+
+	NotesQueryResultsRow(Map<String,Object> values) {
+		m_values = values;
+	}
+
+	/**
+	 * Returns the names of all columns in the order they appear in the JSON data
+	 *
+	 * @return column names
+	 */
+	public Set<String> getColumnNames() {
+		return Collections.unmodifiableSet(m_values.keySet());
+	}
+
+	/**
+	 * Checks if the row contains a value for a column
+	 *
+	 * @param columnName column name
+	 * @return true if value exists
+	 */
+	public boolean has(String columnName) {
+		return m_values.containsKey(columnName);
+	}
+
+	/**
+	 * Returns the raw column value
+	 *
+	 * @param columnName column name
+	 * @return value or null if missing
+	 */
+	public Object get(String columnName) {
+		return m_values.get(columnName);
+	}
+
+	/**
+	 * Returns a column value as string. Multi-value columns return the first value.
+	 *
+	 * @param columnName column name
+	 * @param defaultValue default value if column is missing or null
+	 * @return value
+	 */
+	public String getAsString(String columnName, String defaultValue) {
+		Object val = getFirstValue(columnName);
+		if (val==null) {
+			return defaultValue;
+		}
+		else if (val instanceof Double) {
+			double dblVal = ((Double) val).doubleValue();
+			if (dblVal == Math.rint(dblVal) && !Double.isInfinite(dblVal)) {
+				return Long.toString((long) dblVal);
+			}
+		}
+		return val.toString();
+	}
+
+	/**
+	 * Returns a column value as double. Multi-value columns return the first value.
+	 *
+	 * @param columnName column name
+	 * @param defaultValue default value if column is missing, null or not numeric
+	 * @return value
+	 */
+	public double getAsDouble(String columnName, double defaultValue) {
+		Object val = getFirstValue(columnName);
+		if (val instanceof Double) {
+			return ((Double) val).doubleValue();
+		}
+		else if (val instanceof String) {
+			try {
+				return Double.parseDouble((String) val);
+			}
+			catch (NumberFormatException e) {
+				return defaultValue;
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns a column value as int. Multi-value columns return the first value.
+	 *
+	 * @param columnName column name
+	 * @param defaultValue default value if column is missing, null or not numeric
+	 * @return value
+	 */
+	public int getAsInt(String columnName, int defaultValue) {
+		Object val = getFirstValue(columnName);
+		if (val instanceof Double) {
+			return ((Double) val).intValue();
+		}
+		else if (val instanceof String) {
+			try {
+				return Integer.parseInt((String) val);
+			}
+			catch (NumberFormatException e) {
+				return defaultValue;
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns a column value as boolean. Multi-value columns return the first value.
+	 *
+	 * @param columnName column name
+	 * @param defaultValue default value if column is missing or not boolean
+	 * @return value
+	 */
+	public boolean getAsBoolean(String columnName, boolean defaultValue) {
+		Object val = getFirstValue(columnName);
+		if (val instanceof Boolean) {
+			return ((Boolean) val).booleanValue();
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns a column value as list. Single values are returned as list with
+	 * one element.
+	 *
+	 * @param columnName column name
+	 * @param defaultValue default value if column is missing or null
+	 * @return value
+	 */
+	public List<Object> getAsList(String columnName, List<Object> defaultValue) {
+		Object val = m_values.get(columnName);
+		if (val==null) {
+			return defaultValue;
+		}
+		else if (val instanceof List) {
+			//lists are created as List<Object> by the row reader
+			@SuppressWarnings("unchecked")
+			List<Object> valAsList = (List<Object>) val;
+			return valAsList;
+		}
+		else {
+			return Collections.singletonList(val);
+		}
+	}
+
+	/**
+	 * Returns a column value as string list. Single values are returned as list with
+	 * one element.
+	 *
+	 * @param columnName column name
+	 * @param defaultValue default value if column is missing or null
+	 * @return value
+	 */
+	public List<String> getAsStringList(String columnName, List<String> defaultValue) {
+		List<Object> values = getAsList(columnName, null);
+		if (values==null) {
+			return defaultValue;
+		}
+		List<String> strValues = new ArrayList<String>(values.size());
+		for (Object currVal : values) {
+			strValues.add(currVal==null ? null : currVal.toString());
+		}
+		return strValues;
+	}
+
+	private Object getFirstValue(String columnName) {
+		Object val = m_values.get(columnName);
+		if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			return valAsList.isEmpty() ? null : valAsList.get(0);
+		}
+		return val;
+	}
+
+	/**
+	 * Returns the note id of the document
+	 *
+	 * @return note id or 0 if not available (e.g. for category rows or if
+	 *         the UNID has been requested via {@link NotesQueryResultsProcessor.QRPOptions#RETURN_UNID})
+	 */
+	public int getNoteId() {
+		Object val = m_values.get(KEY_NOTEID);
+		if (val instanceof Double) {
+			return ((Double) val).intValue();
+		}
+		else if (val instanceof String) {
+			String noteIdStr = (String) val;
+			try {
+				if (noteIdStr.startsWith("NT")) {
+					return Integer.parseInt(noteIdStr.substring(2), 16);
+				}
+				else if (noteIdStr.length()<=8) {
+					return Integer.parseInt(noteIdStr, 16);
+				}
+			}
+			catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the raw value of the {@link #KEY_NOTEID} key, which is either the
+	 * note id or the UNID of the document
+	 *
+	 * @return note id or UNID or null for category rows
+	 */
+	public String getNoteIdOrUNID() {
+		return getAsString(KEY_NOTEID, null);
+	}
+
+	/**
+	 * Returns the database path (or replica id) of the document
+	 *
+	 * @return path or null for category rows
+	 */
+	public String getDbPath() {
+		return getAsString(KEY_DBPATH, null);
+	}
+
+	/**
+	 * Checks if this row is a category containing nested document rows
+	 *
+	 * @return true if category
+	 */
+	public boolean isCategory() {
+		return m_values.get(KEY_DOCUMENTS) instanceof List;
+	}
+
+	/**
+	 * Returns the nested rows of a category row
+	 *
+	 * @return rows, empty list for document rows
+	 */
+	public List<NotesQueryResultsRow> getDocuments() {
+		Object val = m_values.get(KEY_DOCUMENTS);
+		if (!(val instanceof List)) {
+			return Collections.emptyList();
+		}
+		List<NotesQueryResultsRow> rows = new ArrayList<NotesQueryResultsRow>();
+		for (Object currVal : (List<?>) val) {
+			if (currVal instanceof NotesQueryResultsRow) {
+				rows.add((NotesQueryResultsRow) currVal);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns all column values
+	 *
+	 * @return unmodifiable map
+	 */
+	public Map<String,Object> asMap() {
+		return Collections.unmodifiableMap(m_values);
+	}
+
+	@Override
+	public String toString() {
+		return "NotesQueryResultsRow [values="+m_values+"]";
+	}
+}
@@ -0,0 +1,489 @@
+package com.mindoo.domino.jna;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.mindoo.domino.jna.errors.NotesError;
+
+/**
+ * Pull iterator over the rows of the <code>"StreamResults"</code> array produced by
+ * {@link NotesQueryResultsProcessor#executeToRows(java.util.Set)}.<br>
+ * <br>
+ * The UTF-8 JSON data is parsed incrementally from the result queue without building
+ * the whole JSON text in memory, so only the current row is held in the Java heap.
+ * Calling {@link #close()} stops reading early and releases the result queue.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesQueryResultsRowReader implements Iterator<NotesQueryResultsRow>, Closeable {
+	private static final Charset charsetUTF8 = Charset.forName("UTF-8");
+	private static final String KEY_STREAMRESULTS = "StreamResults";
+
+	private InputStream m_in;
+	private byte[] m_buf = new byte[8192];
+	private int m_bufPos;
+	private int m_bufLen;
+
+	//reused buffer to collect the UTF-8 bytes of string values
+	private byte[] m_strBuf = new byte[256];
+	private int m_strLen;
+	//column names are repeated in every row, so we share their String instances
+	private Map<String,String> m_internedKeys = new HashMap<String,String>();
+
+	private boolean m_inResultsArray;
+	private boolean m_isFirstRow = true;
+	private NotesQueryResultsRow m_nextRow;
+	private boolean m_eof;
+	private boolean m_closed;
+	private int m_rowsRead;
+
+	NotesQueryResultsRowReader(InputStream in) {
+		m_in = in;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (m_nextRow==null && !m_eof && !m_closed) {
+			try {
+				m_nextRow = readNextRow();
+			} catch (IOException e) {
+				closeQuietly();
+				throw new NotesError(0, "Error reading query results", e);
+			} catch (RuntimeException e) {
+				closeQuietly();
+				throw e;
+			}
+			if (m_nextRow==null) {
+				//release the queue as soon as we are done
+				m_eof = true;
+				closeQuietly();
+			}
+		}
+		return m_nextRow!=null;
+	}
+
+	@Override
+	public NotesQueryResultsRow next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		NotesQueryResultsRow row = m_nextRow;
+		m_nextRow = null;
+		m_rowsRead++;
+		return row;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the number of rows returned by {@link #next()} so far
+	 *
+	 * @return count
+	 */
+	public int getRowsRead() {
+		return m_rowsRead;
+	}
+
+	/**
+	 * Stops reading and releases the result queue
+	 */
+	@Override
+	public void close() throws IOException {
+		if (m_closed) {
+			return;
+		}
+		m_closed = true;
+		m_nextRow = null;
+		m_in.close();
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			//
+		}
+	}
+
+	private NotesQueryResultsRow readNextRow() throws IOException {
+		if (!m_inResultsArray) {
+			if (!skipToResultsArray()) {
+				return null;
+			}
+			m_inResultsArray = true;
+		}
+
+		int c = nextNonWhitespace();
+		if (c==']') {
+			return null;
+		}
+		if (!m_isFirstRow) {
+			if (c!=',') {
+				throw syntaxError("Expected ',' or ']'", c);
+			}
+			c = nextNonWhitespace();
+		}
+		m_isFirstRow = false;
+
+		if (c!='{') {
+			throw syntaxError("Expected '{'", c);
+		}
+		return readObject();
+	}
+
+	/**
+	 * Reads the top level object until the value of the "StreamResults" key
+	 *
+	 * @return true if array found
+	 * @throws IOException in case of I/O errors
+	 */
+	private boolean skipToResultsArray() throws IOException {
+		int c = nextNonWhitespace();
+		if (c==-1) {
+			return false;
+		}
+		if (c!='{') {
+			throw syntaxError("Expected '{'", c);
+		}
+
+		while (true) {
+			c = nextNonWhitespace();
+			if (c=='}' || c==-1) {
+				return false;
+			}
+			if (c==',') {
+				c = nextNonWhitespace();
+			}
+			if (c!='"') {
+				throw syntaxError("Expected object key", c);
+			}
+			String key = readString();
+			expect(':');
+
+			if (KEY_STREAMRESULTS.equals(key)) {
+				expect('[');
+				return true;
+			}
+			else {
+				readValue(nextNonWhitespace());
+			}
+		}
+	}
+
+	private NotesQueryResultsRow readObject() throws IOException {
+		Map<String,Object> values = new LinkedHashMap<String,Object>();
+
+		int c = nextNonWhitespace();
+		if (c=='}') {
+			return new NotesQueryResultsRow(values);
+		}
+
+		while (true) {
+			if (c!='"') {
+				throw syntaxError("Expected object key", c);
+			}
+			String key = internKey(readString());
+			expect(':');
+			values.put(key, readValue(nextNonWhitespace()));
+
+			c = nextNonWhitespace();
+			if (c=='}') {
+				return new NotesQueryResultsRow(values);
+			}
+			else if (c!=',') {
+				throw syntaxError("Expected ',' or '}'", c);
+			}
+			c = nextNonWhitespace();
+		}
+	}
+
+	private List<Object> readArray() throws IOException {
+		List<Object> values = new ArrayList<Object>();
+
+		int c = nextNonWhitespace();
+		if (c==']') {
+			return values;
+		}
+
+		while (true) {
+			values.add(readValue(c));
+
+			c = nextNonWhitespace();
+			if (c==']') {
+				return values;
+			}
+			else if (c!=',') {
+				throw syntaxError("Expected ',' or ']'", c);
+			}
+			c = nextNonWhitespace();
+		}
+	}
+
+	private Object readValue(int c) throws IOException {
+		switch (c) {
+		case '"':
+			return readString();
+		case '{':
+			return readObject();
+		case '[':
+			return readArray();
+		case 't':
+			expectLiteral("rue");
+			return Boolean.TRUE;
+		case 'f':
+			expectLiteral("alse");
+			return Boolean.FALSE;
+		case 'n':
+			expectLiteral("ull");
+			return null;
+		default:
+			if (c=='-' || (c>='0' && c<='9')) {
+				return readNumber(c);
+			}
+			throw syntaxError("Unexpected character", c);
+		}
+	}
+
+	private Double readNumber(int firstChar) throws IOException {
+		m_strLen = 0;
+		appendStrByte(firstChar);
+
+		while (true) {
+			int c = peek();
+			if ((c>='0' && c<='9') || c=='.' || c=='e' || c=='E' || c=='+' || c=='-') {
+				appendStrByte(read());
+			}
+			else {
+				break;
+			}
+		}
+
+		String numStr = new String(m_strBuf, 0, m_strLen, charsetUTF8);
+		try {
+			return Double.valueOf(numStr);
+		}
+		catch (NumberFormatException e) {
+			throw new NotesError(0, "Invalid number in query results: "+numStr);
+		}
+	}
+
+	/**
+	 * Reads a string value after the opening quote. The UTF-8 bytes are collected
+	 * in a reused buffer and decoded once.
+	 *
+	 * @return string
+	 * @throws IOException in case of I/O errors
+	 */
+	private String readString() throws IOException {
+		m_strLen = 0;
+
+		while (true) {
+			int c = read();
+			if (c==-1) {
+				throw syntaxError("Unterminated string", c);
+			}
+			else if (c=='"') {
+				break;
+			}
+			else if (c=='\\') {
+				readEscape(read());
+			}
+			else {
+				appendStrByte(c);
+			}
+		}
+
+		return new String(m_strBuf, 0, m_strLen, charsetUTF8);
+	}
+
+	/**
+	 * Appends the character of an escape sequence to the string buffer
+	 *
+	 * @param escaped character after the backslash
+	 * @throws IOException in case of I/O errors
+	 */
+	private void readEscape(int escaped) throws IOException {
+		switch (escaped) {
+		case '"':
+		case '\\':
+		case '/':
+			appendStrByte(escaped);
+			break;
+		case 'b':
+			appendStrByte('\b');
+			break;
+		case 'f':
+			appendStrByte('\f');
+			break;
+		case 'n':
+			appendStrByte('\n');
+			break;
+		case 'r':
+			appendStrByte('\r');
+			break;
+		case 't':
+			appendStrByte('\t');
+			break;
+		case 'u':
+			readUnicodeEscape();
+			break;
+		default:
+			throw syntaxError("Invalid escape sequence", escaped);
+		}
+	}
+
+	/**
+	 * Appends the character of a unicode escape sequence to the string buffer. A high surrogate
+	 * is combined with a following unicode escape of a low surrogate. Unpaired surrogates are
+	 * replaced with '?', and an escape sequence following an unpaired high surrogate is
+	 * still processed.
+	 *
+	 * @throws IOException in case of I/O errors
+	 */
+	private void readUnicodeEscape() throws IOException {
+		char c = readHexChar();
+		while (Character.isHighSurrogate(c)) {
+			if (peek()!='\\') {
+				appendCodePoint('?');
+				return;
+			}
+			read();
+			int escaped = read();
+			if (escaped!='u') {
+				appendCodePoint('?');
+				readEscape(escaped);
+				return;
+			}
+			char next = readHexChar();
+			if (Character.isLowSurrogate(next)) {
+				appendCodePoint(Character.toCodePoint(c, next));
+				return;
+			}
+			//unpaired high surrogate, the next code unit may start a new pair
+			appendCodePoint('?');
+			c = next;
+		}
+		appendCodePoint(Character.isLowSurrogate(c) ? '?' : c);
+	}
+
+	private char readHexChar() throws IOException {
+		int val = 0;
+		for (int i=0; i<4; i++) {
+			int c = read();
+			int digit = Character.digit(c, 16);
+			if (c==-1 || digit==-1) {
+				throw syntaxError("Invalid unicode escape", c);
+			}
+			val = (val << 4) | digit;
+		}
+		return (char) val;
+	}
+
+	private void appendCodePoint(int codePoint) {
+		if (codePoint < 0x80) {
+			appendStrByte(codePoint);
+		}
+		else if (codePoint < 0x800) {
+			appendStrByte(0xc0 | (codePoint >> 6));
+			appendStrByte(0x80 | (codePoint & 0x3f));
+		}
+		else if (codePoint < 0x10000) {
+			appendStrByte(0xe0 | (codePoint >> 12));
+			appendStrByte(0x80 | ((codePoint >> 6) & 0x3f));
+			appendStrByte(0x80 | (codePoint & 0x3f));
+		}
+		else {
+			appendStrByte(0xf0 | (codePoint >> 18));
+			appendStrByte(0x80 | ((codePoint >> 12) & 0x3f));
+			appendStrByte(0x80 | ((codePoint >> 6) & 0x3f));
+			appendStrByte(0x80 | (codePoint & 0x3f));
+		}
+	}
+
+	private void appendStrByte(int b) {
+		if (m_strLen==m_strBuf.length) {
+			byte[] newBuf = new byte[m_strBuf.length * 2];
+			System.arraycopy(m_strBuf, 0, newBuf, 0, m_strLen);
+			m_strBuf = newBuf;
+		}
+		m_strBuf[m_strLen++] = (byte) b;
+	}
+
+	private String internKey(String key) {
+		String interned = m_internedKeys.get(key);
+		if (interned==null) {
+			m_internedKeys.put(key, key);
+			interned = key;
+		}
+		return interned;
+	}
+
+	private void expect(char expected) throws IOException {
+		int c = nextNonWhitespace();
+		if (c!=expected) {
+			throw syntaxError("Expected '"+expected+"'", c);
+		}
+	}
+
+	private void expectLiteral(String remainder) throws IOException {
+		for (int i=0; i<remainder.length(); i++) {
+			int c = read();
+			if (c!=remainder.charAt(i)) {
+				throw syntaxError("Invalid literal", c);
+			}
+		}
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		while (true) {
+			int c = read();
+			if (c!=' ' && c!='\t' && c!='\n' && c!='\r') {
+				return c;
+			}
+		}
+	}
+
+	private boolean fillBuffer() throws IOException {
+		if (m_bufPos<m_bufLen) {
+			return true;
+		}
+		int len = m_in.read(m_buf, 0, m_buf.length);
+		if (len<=0) {
+			return false;
+		}
+		m_bufPos = 0;
+		m_bufLen = len;
+		return true;
+	}
+
+	private int read() throws IOException {
+		if (!fillBuffer()) {
+			return -1;
+		}
+		return m_buf[m_bufPos++] & 0xff;
+	}
+
+	private int peek() throws IOException {
+		if (!fillBuffer()) {
+			return -1;
+		}
+		return m_buf[m_bufPos] & 0xff;
+	}
+
+	private NotesError syntaxError(String msg, int c) {
+		return new NotesError(0, "Invalid JSON in query results: "+msg+", found "+
+				(c==-1 ? "end of data" : "'"+(char) c+"'")+" after "+m_rowsRead+" rows");
+	}
+}
@@ -35,10 +35,13 @@ import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
 import com.mindoo.domino.jna.internal.SearchMatchDecoder;
+import com.mindoo.domino.jna.internal.SearchMatchDecoder.ReusableSearchMatch;
 import com.mindoo.domino.jna.internal.TypedItemAccess;
 import com.mindoo.domino.jna.internal.ViewFormulaCompiler;
 import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
+import com.mindoo.domino.jna.metrics.NativeOperation;
 import com.mindoo.domino.jna.sync.NotesOriginatorIdData;
 import com.mindoo.domino.jna.utils.LMBCSString;
 import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
@@ -372,6 +375,36 @@ public class NotesSearch {
 	private static NotesTimeDate search(final NotesDatabase db, Object searchFilter, final String formula, Map<String,String> columnFormulas, String viewTitle,
 			final Set<Search> searchFlags, int noteClassMask, NotesTimeDate since,
 			final SearchCallback callback) throws FormulaCompilationError {
+		NativeOperation op = NativeCallMetrics.beginOperation("NotesSearch.search");
+		try {
+			return doSearch(db, searchFilter, formula, columnFormulas, viewTitle, searchFlags, noteClassMask, since, callback, op);
+		}
+		finally {
+			if (op!=null) {
+				op.end();
+			}
+		}
+	}
+
+	/**
+	 * Implementation of {@link #search(NotesDatabase, Object, String, Map, String, Set, int, NotesTimeDate, SearchCallback)}
+	 * 
+	 * @param db database to search in
+	 * @param searchFilter optional search scope as {@link NotesIDTable} or null
+	 * @param formula formula or null
+	 * @param columnFormulas map with programmatic column names (key) and formulas (value) with keys sorted in column order or null to output all items
+	 * @param viewTitle optional view title that will be returned for "@ ViewTitle" within the formula or null
+	 * @param searchFlags flags to control searching ({@link Search})
+	 * @param noteClassMask bitmask of {@link NoteClass} or {@link FileType} to search
+	 * @param since The date of the earliest modified note that is matched or null
+	 * @param callback callback to be called for every found note
+	 * @param op operation to report callback durations or null if metrics are disabled
+	 * @return The ending (current) time/date of this search
+	 * @throws FormulaCompilationError if formula syntax is invalid
+	 */
+	private static NotesTimeDate doSearch(final NotesDatabase db, Object searchFilter, final String formula, Map<String,String> columnFormulas, String viewTitle,
+			final Set<Search> searchFlags, int noteClassMask, NotesTimeDate since,
+			final SearchCallback callback, final NativeOperation op) throws FormulaCompilationError {
 		if (db.isRecycled()) {
 			throw new NotesError(0, "Database already recycled");
 		}
@@ -403,6 +436,11 @@ public class NotesSearch {
 		
 		final String[] columnItemNames = columnFormulasFixedOrder==null ? new String[0] : columnFormulasFixedOrder.keySet().toArray(new String[0]);
 		
+		//optionally reuse the search match and summary buffer objects across callback invocations
+		final boolean reuseMatchObjects = callback.isReuseMatchObjects();
+		final ReusableSearchMatch reusableSearchMatch = reuseMatchObjects ? new ReusableSearchMatch() : null;
+		final IItemTableData[] reusableItemTableData = new IItemTableData[1];
+		
 		DbMode mode = db.getMode();
 
 		if (PlatformUtils.is64Bit()) {
@@ -414,7 +452,7 @@ public class NotesSearch {
 				public short invoke(Pointer enumRoutineParameter, Pointer searchMatchPtr,
 						Pointer summaryBufferPtr) {
 
-					ISearchMatch searchMatch = SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
+					ISearchMatch searchMatch = reuseMatchObjects ? reusableSearchMatch.read(searchMatchPtr) : SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
 					
 					IItemTableData itemTableData=null;
 					NotesNote note=null;
@@ -440,17 +478,22 @@ public class NotesSearch {
 									//in the column order instead of an ITEM_TABLE with columnname/columnvalue
 									//pairs
 									//create an ItemTableData by adding the column names to make this invisible to callers
-									itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(columnItemNames, summaryBufferPtr, convertStringsLazily, !isPreferNotesTimeDate, false);
+									itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(columnItemNames, summaryBufferPtr, convertStringsLazily, !isPreferNotesTimeDate, false,
+											reusableItemTableData[0]);
 								}
 								else {
 									itemTableData = NotesLookupResultBufferDecoder.decodeItemTable(summaryBufferPtr,
-											convertStringsLazily, !isPreferNotesTimeDate, false);
+											convertStringsLazily, !isPreferNotesTimeDate, false, reusableItemTableData[0]);
+								}
+								if (reuseMatchObjects) {
+									reusableItemTableData[0] = itemTableData;
 								}
 							}
 						}
 
 
 						Action action;
+						long tCallback = op==null ? 0 : System.nanoTime();
 						if (searchMatch.getNoteClass().contains(NoteClass.NOTIFYDELETION)) {
 							action = callback.deletionStubFound(db, searchMatch, itemTableData);
 						}
@@ -462,6 +505,9 @@ public class NotesSearch {
 								action = callback.noteFound(db, searchMatch, itemTableData);
 							}
 						}
+						if (op!=null) {
+							op.addCallbackNanos(System.nanoTime() - tCallback);
+						}
 						if (action==Action.Stop) {
 							return INotesErrorConstants.ERR_CANCEL;
 						}
@@ -623,7 +669,7 @@ public class NotesSearch {
 					public short invoke(Pointer enumRoutineParameter, Pointer searchMatchPtr,
 							Pointer summaryBufferPtr) {
 
-						ISearchMatch searchMatch = SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
+						ISearchMatch searchMatch = reuseMatchObjects ? reusableSearchMatch.read(searchMatchPtr) : SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
 
 						IItemTableData itemTableData=null;
 						NotesNote note=null;
@@ -649,16 +695,21 @@ public class NotesSearch {
 										//in the column order instead of an ITEM_TABLE with columnname/columnvalue
 										//pairs
 										//create an ItemTableData by adding the column names to make this invisible to callers
-										itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(columnItemNames, summaryBufferPtr, convertStringsLazily, !isPreferNotesTimeDate, false);
+										itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(columnItemNames, summaryBufferPtr, convertStringsLazily, !isPreferNotesTimeDate, false,
+												reusableItemTableData[0]);
 									}
 									else {
-										itemTableData = NotesLookupResultBufferDecoder.decodeItemTable(summaryBufferPtr, 
-												convertStringsLazily, !isPreferNotesTimeDate, false);
+										itemTableData = NotesLookupResultBufferDecoder.decodeItemTable(summaryBufferPtr,
+												convertStringsLazily, !isPreferNotesTimeDate, false, reusableItemTableData[0]);
+									}
+									if (reuseMatchObjects) {
+										reusableItemTableData[0] = itemTableData;
 									}
 								}
 							}
 
 							Action action;
+							long tCallback = op==null ? 0 : System.nanoTime();
 							if (searchMatch.getNoteClass().contains(NoteClass.NOTIFYDELETION)) {
 								action = callback.deletionStubFound(db, searchMatch, itemTableData);
 							}
@@ -670,6 +721,9 @@ public class NotesSearch {
 									action = callback.noteFound(db, searchMatch, itemTableData);
 								}
 							}
+							if (op!=null) {
+								op.addCallbackNanos(System.nanoTime() - tCallback);
+							}
 							if (action==Action.Stop) {
 								return INotesErrorConstants.ERR_CANCEL;
 							}
@@ -700,7 +754,7 @@ public class NotesSearch {
 					public short invoke(Pointer enumRoutineParameter, Pointer searchMatchPtr,
 							Pointer summaryBufferPtr) {
 
-						ISearchMatch searchMatch = SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
+						ISearchMatch searchMatch = reuseMatchObjects ? reusableSearchMatch.read(searchMatchPtr) : SearchMatchDecoder.decodeSearchMatch(searchMatchPtr);
 						
 						IItemTableData itemTableData=null;
 						NotesNote note=null;
@@ -726,16 +780,21 @@ public class NotesSearch {
 										//in the column order instead of an ITEM_TABLE with columnname/columnvalue
 										//pairs
 										//create an ItemTableData by adding the column names to make this invisible to callers
-										itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(columnItemNames, summaryBufferPtr, convertStringsLazily, !isPreferNotesTimeDate, false);
+										itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTableWithColumnNames(columnItemNames, summaryBufferPtr, convertStringsLazily, !isPreferNotesTimeDate, false,
+												reusableItemTableData[0]);
 									}
 									else {
 										itemTableData = NotesLookupResultBufferDecoder.decodeItemTable(summaryBufferPtr,
-												convertStringsLazily, !isPreferNotesTimeDate, false);
+												convertStringsLazily, !isPreferNotesTimeDate, false, reusableItemTableData[0]);
+									}
+									if (reuseMatchObjects) {
+										reusableItemTableData[0] = itemTableData;
 									}
 								}
 							}
 
 							Action action;
+							long tCallback = op==null ? 0 : System.nanoTime();
 							if (searchMatch.getNoteClass().contains(NoteClass.NOTIFYDELETION)) {
 								action = callback.deletionStubFound(db, searchMatch, itemTableData);
 							}
@@ -747,6 +806,9 @@ public class NotesSearch {
 									action = callback.noteFound(db, searchMatch, itemTableData);
 								}
 							}
+							if (op!=null) {
+								op.addCallbackNanos(System.nanoTime() - tCallback);
+							}
 							if (action==Action.Stop) {
 								return INotesErrorConstants.ERR_CANCEL;
 							}
@@ -959,6 +1021,20 @@ public class NotesSearch {
 			return Action.Continue;
 		}
 		
+		/**
+		 * Override this method and return true to receive the same {@link ISearchMatch} and
+		 * {@link IItemTableData} objects for every found note, overwritten with the data of the
+		 * current note. This saves a few allocations per note for large searches.<br>
+		 * <br>
+		 * The objects are only valid until the callback method returns. Call
+		 * {@link ISearchMatch#snapshot()} or {@link IItemTableData#snapshot()} to keep a copy.
+		 * 
+		 * @return true to reuse the objects, false by default
+		 */
+		public boolean isReuseMatchObjects() {
+			return false;
+		}
+		
 	}
 	
 	/**
@@ -1134,6 +1210,19 @@ public class NotesSearch {
 		 */
 		public NotesTimeDate getSeqTime();
 		
+		/**
+		 * Returns a copy of the search match data that stays valid after the callback
+		 * has returned (see {@link SearchCallback#isReuseMatchObjects()}).<br>
+		 * <br>
+		 * The default implementation returns this object, implementations that reuse
+		 * the object for multiple matches need to override it.
+		 * 
+		 * @return copy or this object if it is not reused
+		 */
+		default ISearchMatch snapshot() {
+			return this;
+		}
+		
 	}
 	
 	/**
@@ -1454,6 +1543,12 @@ public class NotesSearch {
 		public boolean isFreed() {
 			return m_doc.isRecycled();
 		}
+		
+		@Override
+		public IItemTableData snapshot() {
+			checkDisposed();
+			return NotesLookupResultBufferDecoder.copyItemTableData(this);
+		}
 	}
 	
 }
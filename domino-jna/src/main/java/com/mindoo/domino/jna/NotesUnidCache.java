@@ -0,0 +1,626 @@
+package com.mindoo.domino.jna;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.NotesDatabase.NoteInfo;
+import com.mindoo.domino.jna.NotesIDTable.IEnumerateCallback;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.utils.UnidCodec;
+
+/**
+ * Bidirectional cache of note id / UNID mappings for one database.<br>
+ * <br>
+ * The cache is meant for code that converts lots of UNIDs, e.g. to resolve links or
+ * to sync data. UNIDs are stored as two longs in primitive arrays, so that a cached
+ * entry does not produce any objects: note ids are looked up in an open addressing hash map,
+ * UNIDs by binary search in an index sorted by UNID. Only the entries missing in the cache
+ * are read from the database, using one {@link NotesDatabase#getMultiNoteInfo(int[])} or
+ * {@link NotesDatabase#getMultiNoteInfo(String[])} call per bulk conversion.<br>
+ * <br>
+ * The cache does not notice deleted notes on its own. Call {@link #refresh()} to remove
+ * the entries of all notes that have been changed or deleted since the last refresh,
+ * computed via {@link NotesDatabase#getModifiedNoteTable(java.util.Set, NotesTimeDate, NotesTimeDate)}.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesUnidCache {
+	/** number of unsorted entries we scan linearly before the UNID index gets rebuilt */
+	private static final int MAX_UNSORTED_ENTRIES = 64;
+	private static final int NOTEID_MASK = ~((int) NotesConstants.RRV_DELETED);
+
+	private NotesDatabase m_db;
+	private NotesTimeDate m_since;
+
+	//entry data, the index in the arrays is the slot number; removed entries have note id 0
+	private int[] m_slotNoteIds;
+	private long[] m_slotUnidFile;
+	private long[] m_slotUnidNote;
+	private int m_slotCount;
+	private int m_removedCount;
+
+	//open addressing hash map, note id -> slot number
+	private int[] m_mapKeys;
+	private int[] m_mapValues;
+	private int m_mapSize;
+
+	//slot numbers sorted by UNID, covering all slots below m_sortedSlotLimit
+	private int[] m_sortedSlots;
+	private int m_sortedCount;
+	private int m_sortedSlotLimit;
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param db database
+	 */
+	public NotesUnidCache(NotesDatabase db) {
+		m_db = db;
+		m_since = getLastModified(db);
+		clear();
+	}
+
+	private static NotesTimeDate getLastModified(NotesDatabase db) {
+		NotesTimeDate[] lastModified = db.getLastModifiedTimes();
+		return lastModified[0].isAfter(lastModified[1]) ? lastModified[0] : lastModified[1];
+	}
+
+	/**
+	 * Removes all entries
+	 */
+	public synchronized void clear() {
+		m_slotNoteIds = new int[64];
+		m_slotUnidFile = new long[64];
+		m_slotUnidNote = new long[64];
+		m_slotCount = 0;
+		m_removedCount = 0;
+
+		m_mapKeys = new int[128];
+		m_mapValues = new int[128];
+		m_mapSize = 0;
+
+		m_sortedSlots = new int[0];
+		m_sortedCount = 0;
+		m_sortedSlotLimit = 0;
+	}
+
+	/**
+	 * Returns the number of cached entries
+	 *
+	 * @return size
+	 */
+	public synchronized int size() {
+		return m_mapSize;
+	}
+
+	/**
+	 * Removes the entries of all notes that have been changed or deleted since the last
+	 * refresh or since the cache has been created
+	 *
+	 * @return number of removed entries
+	 */
+	public int refresh() {
+		NotesTimeDate retUntil = new NotesTimeDate();
+		NotesIDTable changes = m_db.getModifiedNoteTable(EnumSet.of(NoteClass.ALL), m_since, retUntil);
+		final int[] removed = new int[1];
+		try {
+			synchronized (this) {
+				changes.enumerate(new IEnumerateCallback() {
+
+					@Override
+					public Action noteVisited(int noteId) {
+						if (removeEntry(noteId & NOTEID_MASK)) {
+							removed[0]++;
+						}
+						return Action.Continue;
+					}
+				});
+				if (!changes.isEmpty()) {
+					m_since = retUntil;
+				}
+			}
+		}
+		finally {
+			changes.recycle();
+		}
+		return removed[0];
+	}
+
+	/**
+	 * Converts a UNID to a note id
+	 *
+	 * @param unid UNID
+	 * @return note id or 0 if not found
+	 * @throws IllegalArgumentException if the UNID is invalid
+	 */
+	public int toNoteId(String unid) {
+		long file = UnidCodec.parseFile(unid);
+		long note = UnidCodec.parseNote(unid);
+
+		synchronized (this) {
+			int slot = findSlotByUnid(file, note);
+			if (slot!=-1) {
+				return m_slotNoteIds[slot];
+			}
+		}
+
+		NoteInfo[] infos = m_db.getMultiNoteInfo(new String[] {unid});
+		if (infos[0].exists()) {
+			int noteId = infos[0].getNoteId();
+			put(noteId, file, note);
+			return noteId;
+		}
+		return 0;
+	}
+
+	/**
+	 * Converts UNIDs to note ids. UNIDs missing in the cache are read from the
+	 * database with a single {@link NotesDatabase#getMultiNoteInfo(String[])} call.
+	 *
+	 * @param unids UNIDs
+	 * @param retNoteIds array of the same size, populated with the note ids or 0 if not found
+	 * @return number of UNIDs found
+	 */
+	public int toNoteIds(String[] unids, int[] retNoteIds) {
+		if (retNoteIds.length < unids.length) {
+			throw new IllegalArgumentException("Return array is too small: "+retNoteIds.length+"<"+unids.length);
+		}
+
+		int found = 0;
+		int missing = 0;
+		synchronized (this) {
+			for (int i=0; i<unids.length; i++) {
+				int slot = findSlotByUnid(UnidCodec.parseFile(unids[i]), UnidCodec.parseNote(unids[i]));
+				retNoteIds[i] = slot==-1 ? 0 : m_slotNoteIds[slot];
+				if (slot==-1) {
+					missing++;
+				}
+				else {
+					found++;
+				}
+			}
+		}
+
+		if (missing>0) {
+			int[] missingIdx = new int[missing];
+			String[] missingUnids = new String[missing];
+			int pos = 0;
+			for (int i=0; i<unids.length; i++) {
+				if (retNoteIds[i]==0) {
+					missingIdx[pos] = i;
+					missingUnids[pos] = unids[i];
+					pos++;
+				}
+			}
+
+			NoteInfo[] infos = m_db.getMultiNoteInfo(missingUnids);
+			synchronized (this) {
+				for (int i=0; i<missing; i++) {
+					if (infos[i].exists()) {
+						int noteId = infos[i].getNoteId();
+						retNoteIds[missingIdx[i]] = noteId;
+						putEntry(noteId, UnidCodec.parseFile(missingUnids[i]), UnidCodec.parseNote(missingUnids[i]));
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Converts a note id to a UNID
+	 *
+	 * @param noteId note id
+	 * @return UNID or null if not found
+	 */
+	public String toUnid(int noteId) {
+		synchronized (this) {
+			int slot = findSlotByNoteId(noteId);
+			if (slot!=-1) {
+				return UnidCodec.toString(m_slotUnidFile[slot], m_slotUnidNote[slot]);
+			}
+		}
+
+		NoteInfo[] infos = m_db.getMultiNoteInfo(new int[] {noteId});
+		if (infos[0].exists()) {
+			String unid = infos[0].getUnid();
+			put(noteId, UnidCodec.parseFile(unid), UnidCodec.parseNote(unid));
+			return unid;
+		}
+		return null;
+	}
+
+	/**
+	 * Appends the UNID of a note to a {@link StringBuilder}. Does not produce any
+	 * objects if the note id is already cached.
+	 *
+	 * @param noteId note id
+	 * @param sb target
+	 * @return true if found
+	 */
+	public boolean appendUnid(int noteId, StringBuilder sb) {
+		synchronized (this) {
+			int slot = findSlotByNoteId(noteId);
+			if (slot!=-1) {
+				UnidCodec.append(m_slotUnidFile[slot], m_slotUnidNote[slot], sb);
+				return true;
+			}
+		}
+
+		String unid = toUnid(noteId);
+		if (unid!=null) {
+			sb.append(unid);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Converts note ids to UNIDs. Note ids missing in the cache are read from the
+	 * database with a single {@link NotesDatabase#getMultiNoteInfo(int[])} call.
+	 *
+	 * @param noteIds note ids
+	 * @param retUnids array of the same size, populated with the UNIDs or null if not found
+	 * @return number of note ids found
+	 */
+	public int toUnids(int[] noteIds, String[] retUnids) {
+		if (retUnids.length < noteIds.length) {
+			throw new IllegalArgumentException("Return array is too small: "+retUnids.length+"<"+noteIds.length);
+		}
+
+		int found = 0;
+		int missing = 0;
+		synchronized (this) {
+			for (int i=0; i<noteIds.length; i++) {
+				int slot = findSlotByNoteId(noteIds[i]);
+				if (slot==-1) {
+					retUnids[i] = null;
+					missing++;
+				}
+				else {
+					retUnids[i] = UnidCodec.toString(m_slotUnidFile[slot], m_slotUnidNote[slot]);
+					found++;
+				}
+			}
+		}
+
+		if (missing>0) {
+			int[] missingIdx = new int[missing];
+			int[] missingNoteIds = new int[missing];
+			int pos = 0;
+			for (int i=0; i<noteIds.length; i++) {
+				if (retUnids[i]==null) {
+					missingIdx[pos] = i;
+					missingNoteIds[pos] = noteIds[i];
+					pos++;
+				}
+			}
+
+			NoteInfo[] infos = m_db.getMultiNoteInfo(missingNoteIds);
+			synchronized (this) {
+				for (int i=0; i<missing; i++) {
+					if (infos[i].exists()) {
+						String unid = infos[i].getUnid();
+						retUnids[missingIdx[i]] = unid;
+						putEntry(missingNoteIds[i], UnidCodec.parseFile(unid), UnidCodec.parseNote(unid));
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Adds a mapping to the cache, e.g. for a note that has just been created
+	 *
+	 * @param noteId note id
+	 * @param unid UNID
+	 */
+	public void put(int noteId, String unid) {
+		put(noteId, UnidCodec.parseFile(unid), UnidCodec.parseNote(unid));
+	}
+
+	/**
+	 * Adds a mapping to the cache
+	 *
+	 * @param noteId note id
+	 * @param unidFile file part of the UNID, see {@link UnidCodec#parseFile(CharSequence)}
+	 * @param unidNote note part of the UNID, see {@link UnidCodec#parseNote(CharSequence)}
+	 */
+	public synchronized void put(int noteId, long unidFile, long unidNote) {
+		putEntry(noteId, unidFile, unidNote);
+	}
+
+	/**
+	 * Removes the mapping of a note id from the cache, e.g. for a deleted note
+	 *
+	 * @param noteId note id
+	 * @return true if the note id was cached
+	 */
+	public synchronized boolean remove(int noteId) {
+		return removeEntry(noteId);
+	}
+
+	private void putEntry(int noteId, long unidFile, long unidNote) {
+		if (noteId==0) {
+			throw new IllegalArgumentException("Note id cannot be 0");
+		}
+
+		int existingSlot = findSlotByNoteId(noteId);
+		if (existingSlot!=-1) {
+			if (m_slotUnidFile[existingSlot]==unidFile && m_slotUnidNote[existingSlot]==unidNote) {
+				return;
+			}
+			removeEntry(noteId);
+		}
+		int unidSlot = findSlotByUnid(unidFile, unidNote);
+		if (unidSlot!=-1) {
+			removeEntry(m_slotNoteIds[unidSlot]);
+		}
+
+		if (m_slotCount == m_slotNoteIds.length) {
+			if (m_removedCount > m_slotCount/2) {
+				compact();
+			}
+			else {
+				int newLength = m_slotNoteIds.length * 2;
+				m_slotNoteIds = Arrays.copyOf(m_slotNoteIds, newLength);
+				m_slotUnidFile = Arrays.copyOf(m_slotUnidFile, newLength);
+				m_slotUnidNote = Arrays.copyOf(m_slotUnidNote, newLength);
+			}
+		}
+
+		int slot = m_slotCount++;
+		m_slotNoteIds[slot] = noteId;
+		m_slotUnidFile[slot] = unidFile;
+		m_slotUnidNote[slot] = unidNote;
+		mapPut(noteId, slot);
+
+		if (m_slotCount - m_sortedSlotLimit > MAX_UNSORTED_ENTRIES) {
+			rebuildSortedIndex();
+		}
+	}
+
+	private boolean removeEntry(int noteId) {
+		int slot = mapRemove(noteId);
+		if (slot==-1) {
+			return false;
+		}
+		m_slotNoteIds[slot] = 0;
+		m_removedCount++;
+		return true;
+	}
+
+	private int findSlotByNoteId(int noteId) {
+		if (noteId==0) {
+			return -1;
+		}
+		int mask = m_mapKeys.length - 1;
+		int idx = hash(noteId) & mask;
+		while (true) {
+			int key = m_mapKeys[idx];
+			if (key==noteId) {
+				return m_mapValues[idx];
+			}
+			else if (key==0) {
+				return -1;
+			}
+			idx = (idx + 1) & mask;
+		}
+	}
+
+	private int findSlotByUnid(long unidFile, long unidNote) {
+		//binary search in sorted index
+		int low = 0;
+		int high = m_sortedCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(m_sortedSlots[mid], unidFile, unidNote);
+			if (cmp < 0) {
+				low = mid + 1;
+			}
+			else if (cmp > 0) {
+				high = mid - 1;
+			}
+			else {
+				//removed entries stay in the index until the next rebuild, so check the neighbors
+				for (int i=mid; i>=0 && compare(m_sortedSlots[i], unidFile, unidNote)==0; i--) {
+					if (m_slotNoteIds[m_sortedSlots[i]]!=0) {
+						return m_sortedSlots[i];
+					}
+				}
+				for (int i=mid+1; i<m_sortedCount && compare(m_sortedSlots[i], unidFile, unidNote)==0; i++) {
+					if (m_slotNoteIds[m_sortedSlots[i]]!=0) {
+						return m_sortedSlots[i];
+					}
+				}
+				break;
+			}
+		}
+
+		//linear scan of entries added after the last index rebuild
+		for (int slot=m_sortedSlotLimit; slot<m_slotCount; slot++) {
+			if (m_slotNoteIds[slot]!=0 && m_slotUnidFile[slot]==unidFile && m_slotUnidNote[slot]==unidNote) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	private int compare(int slot, long unidFile, long unidNote) {
+		int cmp = Long.compare(m_slotUnidFile[slot], unidFile);
+		return cmp!=0 ? cmp : Long.compare(m_slotUnidNote[slot], unidNote);
+	}
+
+	private int compareSlots(int slot1, int slot2) {
+		return compare(slot1, m_slotUnidFile[slot2], m_slotUnidNote[slot2]);
+	}
+
+	/**
+	 * Removes the entries of deleted notes from the slot arrays
+	 */
+	private void compact() {
+		int newLength = Math.max(64, Integer.highestOneBit(Math.max(1, m_mapSize)) * 4);
+		int[] newNoteIds = new int[newLength];
+		long[] newUnidFile = new long[newLength];
+		long[] newUnidNote = new long[newLength];
+
+		int newCount = 0;
+		for (int slot=0; slot<m_slotCount; slot++) {
+			if (m_slotNoteIds[slot]!=0) {
+				newNoteIds[newCount] = m_slotNoteIds[slot];
+				newUnidFile[newCount] = m_slotUnidFile[slot];
+				newUnidNote[newCount] = m_slotUnidNote[slot];
+				newCount++;
+			}
+		}
+		m_slotNoteIds = newNoteIds;
+		m_slotUnidFile = newUnidFile;
+		m_slotUnidNote = newUnidNote;
+		m_slotCount = newCount;
+		m_removedCount = 0;
+
+		m_mapKeys = new int[m_mapKeys.length];
+		m_mapValues = new int[m_mapValues.length];
+		m_mapSize = 0;
+		for (int slot=0; slot<m_slotCount; slot++) {
+			mapPut(m_slotNoteIds[slot], slot);
+		}
+
+		m_sortedCount = 0;
+		m_sortedSlotLimit = 0;
+		rebuildSortedIndex();
+	}
+
+	private void rebuildSortedIndex() {
+		int[] sorted = m_sortedSlots.length >= m_mapSize ? m_sortedSlots : new int[m_mapSize + m_mapSize/2];
+		int count = 0;
+		for (int slot=0; slot<m_slotCount; slot++) {
+			if (m_slotNoteIds[slot]!=0) {
+				sorted[count++] = slot;
+			}
+		}
+		m_sortedSlots = sorted;
+		m_sortedCount = count;
+		m_sortedSlotLimit = m_slotCount;
+		sort(0, count - 1);
+	}
+
+	/**
+	 * Quicksort of the slot index, we don't use {@link java.util.Arrays#sort(Object[], java.util.Comparator)}
+	 * to avoid boxing the slot numbers
+	 */
+	private void sort(int low, int high) {
+		while (low < high) {
+			if (high - low < 16) {
+				//insertion sort for small ranges
+				for (int i=low+1; i<=high; i++) {
+					int slot = m_sortedSlots[i];
+					int j = i - 1;
+					while (j >= low && compareSlots(m_sortedSlots[j], slot) > 0) {
+						m_sortedSlots[j+1] = m_sortedSlots[j];
+						j--;
+					}
+					m_sortedSlots[j+1] = slot;
+				}
+				return;
+			}
+
+			int pivot = m_sortedSlots[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compareSlots(m_sortedSlots[i], pivot) < 0) {
+					i++;
+				}
+				while (compareSlots(m_sortedSlots[j], pivot) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = m_sortedSlots[i];
+					m_sortedSlots[i] = m_sortedSlots[j];
+					m_sortedSlots[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			//recurse into the smaller part to limit the stack depth
+			if (j - low < high - i) {
+				sort(low, j);
+				low = i;
+			}
+			else {
+				sort(i, high);
+				high = j;
+			}
+		}
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void mapPut(int noteId, int slot) {
+		if ((m_mapSize + 1) * 2 > m_mapKeys.length) {
+			int[] oldKeys = m_mapKeys;
+			int[] oldValues = m_mapValues;
+			m_mapKeys = new int[oldKeys.length * 2];
+			m_mapValues = new int[oldKeys.length * 2];
+			m_mapSize = 0;
+			for (int i=0; i<oldKeys.length; i++) {
+				if (oldKeys[i]!=0) {
+					mapPut(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		int mask = m_mapKeys.length - 1;
+		int idx = hash(noteId) & mask;
+		while (m_mapKeys[idx]!=0) {
+			if (m_mapKeys[idx]==noteId) {
+				m_mapValues[idx] = slot;
+				return;
+			}
+			idx = (idx + 1) & mask;
+		}
+		m_mapKeys[idx] = noteId;
+		m_mapValues[idx] = slot;
+		m_mapSize++;
+	}
+
+	private int mapRemove(int noteId) {
+		if (noteId==0) {
+			return -1;
+		}
+		int mask = m_mapKeys.length - 1;
+		int idx = hash(noteId) & mask;
+		while (m_mapKeys[idx]!=noteId) {
+			if (m_mapKeys[idx]==0) {
+				return -1;
+			}
+			idx = (idx + 1) & mask;
+		}
+		int slot = m_mapValues[idx];
+
+		//shift following entries of the probe sequence back, so we don't need tombstones
+		int gap = idx;
+		int next = (gap + 1) & mask;
+		while (m_mapKeys[next]!=0) {
+			int home = hash(m_mapKeys[next]) & mask;
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				m_mapKeys[gap] = m_mapKeys[next];
+				m_mapValues[gap] = m_mapValues[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		m_mapKeys[gap] = 0;
+		m_mapValues[gap] = 0;
+		m_mapSize--;
+		return slot;
+	}
+}
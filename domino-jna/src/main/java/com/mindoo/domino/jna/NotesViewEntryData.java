@@ -2,6 +2,7 @@ package com.mindoo.domino.jna;
 
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
@@ -12,10 +13,14 @@ import java.util.TreeMap;
 
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.CompactItemValueTable;
+import com.mindoo.domino.jna.internal.DisposableMemory;
 import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
 import com.mindoo.domino.jna.internal.TypedItemAccess;
 import com.mindoo.domino.jna.utils.EmptyIterator;
 import com.mindoo.domino.jna.utils.LMBCSString;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 
 /**
@@ -40,6 +45,8 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 	private Integer m_ftScore;
 	private Boolean m_isUnread;
 	private Object[] m_columnValues;
+	private int[] m_columnValueTypes;
+	private CompactItemValueTable m_compactColumnValues;
 	private int[] m_columnValueSizes;
 	private Map<String, Object> m_summaryData;
 	private SoftReference<Map<String, Object>> m_convertedDataRef;
@@ -72,6 +79,8 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 		private Integer m_ftScore;
 		private Boolean m_isUnread;
 		private Object[] m_columnValues;
+		private int[] m_columnValueTypes;
+		private CompactItemValueTable m_compactColumnValues;
 		private int[] m_columnValueSizes;
 		private Map<String, Object> m_summaryData;
 		private SoftReference<Map<String, Object>> m_convertedDataRef;
@@ -99,6 +108,8 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 		data.m_ftScore = m_ftScore;
 		data.m_isUnread = m_isUnread;
 		data.m_columnValues = m_columnValues;
+		data.m_columnValueTypes = m_columnValueTypes;
+		data.m_compactColumnValues = m_compactColumnValues;
 		data.m_columnValueSizes = m_columnValueSizes;
 		data.m_summaryData = m_summaryData;
 		data.m_convertedDataRef = m_convertedDataRef;
@@ -129,6 +140,8 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 		m_ftScore = data.m_ftScore;
 		m_isUnread = data.m_isUnread;
 		m_columnValues = data.m_columnValues;
+		m_columnValueTypes = data.m_columnValueTypes;
+		m_compactColumnValues = data.m_compactColumnValues;
 		m_columnValueSizes = data.m_columnValueSizes;
 		m_summaryData = data.m_summaryData;
 		m_convertedDataRef = data.m_convertedDataRef;
@@ -153,17 +166,18 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 	public boolean isConflict() {
 		//C API documentation regarding conflict flags in views
 		//VIEW_TABLE_FLAG_CONFLICT	  -  Replication conflicts will be flagged. If TRUE, the '$Conflict' item must be SECOND-TO-LAST in the list of summary items for this view.
-		if (m_columnValues!=null) {
+		int columnValueCount = getColumnValueCount();
+		if (columnValueCount!=-1) {
 			if (!m_parentCollection.isConflict()) {
 				return false;
 			}
 			else if (m_parentCollection.isHierarchical()) {
-				return m_columnValues.length>=2 && m_columnValues[m_columnValues.length-2] != null;
+				return hasColumnValue(columnValueCount-2);
 			}
 			else {
 				//special case for views which have "show response hierarchy" = false:
 				//here the response column value is missing
-				return m_columnValues.length>=1 && m_columnValues[m_columnValues.length-1] != null;
+				return hasColumnValue(columnValueCount-1);
 			}
 		}
 		else if (m_summaryData!=null) {
@@ -181,9 +195,10 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 	public boolean isResponse() {
 		//C API documentation regarding response flags in views
 		//VIEW_TABLE_FLAG_FLATINDEX	  -  Do not index hierarchically If FALSE, the '$REF' item must be LAST in the list of summary items for this view.
-		if (m_columnValues!=null) {
+		int columnValueCount = getColumnValueCount();
+		if (columnValueCount!=-1) {
 			if (m_parentCollection.isHierarchical()) {
-				return m_columnValues.length>=1 && m_columnValues[m_columnValues.length-1] != null;
+				return hasColumnValue(columnValueCount-1);
 			}
 			else {
 				//fallback to isConflict as this is the only info we have
@@ -511,13 +526,277 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 	 * @param itemValues new values
 	 */
 	public void setColumnValues(Object[] itemValues) {
+		setColumnValues(itemValues, null);
+	}
+	
+	/**
+	 * Sets the collection entry column values and their data types as declared in the summary buffer.
+	 * 
+	 * @param itemValues new values
+	 * @param itemTypes data types of the values, e.g. {@link NotesItem#TYPE_NUMBER_RANGE}, or null if unknown
+	 */
+	public void setColumnValues(Object[] itemValues, int[] itemTypes) {
 		m_columnValues = itemValues;
+		m_columnValueTypes = itemTypes;
+		m_compactColumnValues = null;
 	}
 	
+	/**
+	 * Returns the collection entry column values. If the data has been read in compact format
+	 * (see {@link NotesCollection#setCompactColumnValues(boolean)}), the values get decoded on the first call.
+	 * 
+	 * @return values or null if {@link ReadMask#SUMMARYVALUES} has not been used for the lookup
+	 */
 	public Object[] getColumnValues() {
+		if (m_columnValues==null && m_compactColumnValues!=null) {
+			m_columnValues = decodeCompactColumnValues(m_compactColumnValues);
+		}
 		return m_columnValues;
 	}
 	
+	private static Object[] decodeCompactColumnValues(CompactItemValueTable compactValues) {
+		byte[] data = compactValues.getData();
+		DisposableMemory mem = new DisposableMemory(data.length);
+		try {
+			mem.write(0, data, 0, data.length);
+			IItemValueTableData itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTable(mem,
+					compactValues.isConvertStringsLazily(), compactValues.isConvertNotesTimeDateToCalendar(), true);
+			
+			Object[] decodedItemValues = new Object[itemTableData.getItemsCount()];
+			for (int c=0; c<decodedItemValues.length; c++) {
+				decodedItemValues[c] = itemTableData.getItemValue(c);
+			}
+			return decodedItemValues;
+		}
+		finally {
+			mem.dispose();
+		}
+	}
+	
+	/**
+	 * Sets the collection entry column values in compact format as a copy of the
+	 * ITEM_VALUE_TABLE structure. Boxed values for {@link #getColumnValues()}
+	 * are only created on demand.
+	 * 
+	 * @param compactValues compact values
+	 */
+	public void setCompactColumnValues(CompactItemValueTable compactValues) {
+		m_compactColumnValues = compactValues;
+		m_columnValues = null;
+		m_columnValueTypes = null;
+	}
+	
+	/**
+	 * Returns whether the column values have been read in compact format, which
+	 * makes the typed accessors like {@link #getDouble(int)} allocation free
+	 * 
+	 * @return true if compact
+	 */
+	public boolean isCompactColumnValues() {
+		return m_compactColumnValues!=null;
+	}
+	
+	/**
+	 * Returns the number of column values
+	 * 
+	 * @return count or -1 if no column values have been read
+	 */
+	private int getColumnValueCount() {
+		if (m_compactColumnValues!=null) {
+			return m_compactColumnValues.getItemsCount();
+		}
+		else if (m_columnValues!=null) {
+			return m_columnValues.length;
+		}
+		else {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Checks if a column value is not null without decoding compact data
+	 * 
+	 * @param colIdx column values index
+	 * @return true if not null
+	 */
+	private boolean hasColumnValue(int colIdx) {
+		if (m_compactColumnValues!=null) {
+			return m_compactColumnValues.getType(colIdx) != 0;
+		}
+		else if (m_columnValues!=null) {
+			return colIdx>=0 && colIdx<m_columnValues.length && m_columnValues[colIdx] != null;
+		}
+		else {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the boxed column value at an index or null
+	 * 
+	 * @param colIdx column values index
+	 * @return value, first value for lists
+	 */
+	private Object getFirstBoxedColumnValue(int colIdx) {
+		Object val = colIdx>=0 && m_columnValues!=null && colIdx<m_columnValues.length ? m_columnValues[colIdx] : null;
+		if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			val = valAsList.isEmpty() ? null : valAsList.get(0);
+		}
+		return val;
+	}
+	
+	/**
+	 * Returns the data type of a column value
+	 * 
+	 * @param colIdx column values index, see {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @return type, e.g. {@link NotesItem#TYPE_NUMBER}, or 0 if the value is empty; types of
+	 *         boxed values set without their data types are derived from the Java objects
+	 */
+	public int getColumnValueType(int colIdx) {
+		if (m_compactColumnValues!=null) {
+			return m_compactColumnValues.getType(colIdx);
+		}
+		else if (m_columnValueTypes!=null) {
+			return colIdx>=0 && colIdx<m_columnValueTypes.length && hasColumnValue(colIdx) ? m_columnValueTypes[colIdx] : 0;
+		}
+		
+		Object val = colIdx>=0 && m_columnValues!=null && colIdx<m_columnValues.length ? m_columnValues[colIdx] : null;
+		boolean isList = val instanceof List;
+		if (isList) {
+			val = getFirstBoxedColumnValue(colIdx);
+		}
+		
+		if (val instanceof Number || val instanceof double[]) {
+			return isList ? NotesItem.TYPE_NUMBER_RANGE : NotesItem.TYPE_NUMBER;
+		}
+		else if (val instanceof NotesTimeDate || val instanceof NotesDateRange || val instanceof Calendar) {
+			return isList ? NotesItem.TYPE_TIME_RANGE : NotesItem.TYPE_TIME;
+		}
+		else if (isList) {
+			return NotesItem.TYPE_TEXT_LIST;
+		}
+		else if (val instanceof String || val instanceof LMBCSString) {
+			return NotesItem.TYPE_TEXT;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Returns a number column value. For number lists, the first value is returned.<br>
+	 * Decodes the value straight from the lookup buffer if the data has been read in
+	 * compact format.
+	 * 
+	 * @param colIdx column values index, see {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @return number or {@link Double#NaN} if the value is empty or not a number
+	 */
+	public double getDouble(int colIdx) {
+		return getDouble(colIdx, Double.NaN);
+	}
+	
+	/**
+	 * Returns a number column value. For number lists, the first value is returned.<br>
+	 * Decodes the value straight from the lookup buffer if the data has been read in
+	 * compact format.
+	 * 
+	 * @param colIdx column values index, see {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @param defaultValue value to return if the value is empty or not a number
+	 * @return number
+	 */
+	public double getDouble(int colIdx, double defaultValue) {
+		if (m_compactColumnValues!=null) {
+			return m_compactColumnValues.getDouble(colIdx, defaultValue);
+		}
+		
+		Object val = getFirstBoxedColumnValue(colIdx);
+		if (val instanceof Number) {
+			return ((Number) val).doubleValue();
+		}
+		return defaultValue;
+	}
+	
+	/**
+	 * Returns a number column value as long. For number lists, the first value is returned.
+	 * 
+	 * @param colIdx column values index, see {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @return number or 0 if the value is empty or not a number
+	 */
+	public long getLong(int colIdx) {
+		return getLong(colIdx, 0);
+	}
+	
+	/**
+	 * Returns a number column value as long. For number lists, the first value is returned.
+	 * 
+	 * @param colIdx column values index, see {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @param defaultValue value to return if the value is empty or not a number
+	 * @return number
+	 */
+	public long getLong(int colIdx, long defaultValue) {
+		double val = getDouble(colIdx, Double.NaN);
+		if (Double.isNaN(val)) {
+			return defaultValue;
+		}
+		return (long) val;
+	}
+	
+	/**
+	 * Reads the innards of a timedate column value. For timedate lists, the first value is returned.<br>
+	 * Decodes the value straight from the lookup buffer if the data has been read in
+	 * compact format.
+	 * 
+	 * @param colIdx column values index, see {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @param retInnards array of at least two elements to receive the innards
+	 * @return true if the value is a timedate and the innards have been written
+	 */
+	public boolean getInnards(int colIdx, int[] retInnards) {
+		if (m_compactColumnValues!=null) {
+			return m_compactColumnValues.getInnards(colIdx, retInnards);
+		}
+		
+		Object val = getFirstBoxedColumnValue(colIdx);
+		if (val instanceof NotesDateRange) {
+			val = ((NotesDateRange) val).getStartDateTime();
+		}
+		
+		int[] innards;
+		if (val instanceof NotesTimeDate) {
+			innards = ((NotesTimeDate) val).getInnards();
+		}
+		else if (val instanceof Calendar) {
+			innards = NotesDateTimeUtils.calendarToInnards((Calendar) val);
+		}
+		else {
+			return false;
+		}
+		retInnards[0] = innards[0];
+		retInnards[1] = innards[1];
+		return true;
+	}
+	
+	/**
+	 * Returns a text column value. For text lists, the first value is returned.<br>
+	 * Decodes the value straight from the lookup buffer if the data has been read in
+	 * compact format.
+	 * 
+	 * @param colIdx column values index, see {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @return string or null if the value is empty or not text
+	 */
+	public String getString(int colIdx) {
+		if (m_compactColumnValues!=null) {
+			return m_compactColumnValues.getString(colIdx);
+		}
+		
+		Object val = getFirstBoxedColumnValue(colIdx);
+		if (val instanceof LMBCSString) {
+			return ((LMBCSString) val).getValue();
+		}
+		else if (val instanceof String) {
+			return (String) val;
+		}
+		return null;
+	}
+	
 	/**
 	 * Returns an iterator of all available columns for which we can read column values
 	 * (e.g. does not return static column names).<br>
@@ -573,10 +852,10 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 				
 				if (isPreferNotesTimeDates()) {
 					if (currColValue instanceof Calendar) {
-						currColValue = new NotesTimeDate((Calendar) currColValue);
+						currColValue = new NotesTimeDate(NotesDateTimeUtils.calendarToInnards((Calendar) currColValue));
 					}
 					else if (currColValue instanceof Date) {
-						currColValue = new NotesTimeDate((Date) currColValue);
+						currColValue = new NotesTimeDate(NotesDateTimeUtils.dateToInnards((Date) currColValue));
 					}
 				}
 				
@@ -598,7 +877,11 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 	public List<String> getReadersList() {
 		Object readersList = get("$C1$");
 		if (readersList instanceof List) {
-			return (List<String>) readersList;
+			List<String> readers = new ArrayList<String>();
+			for (Object currReader : (List<?>) readersList) {
+				readers.add(currReader==null ? null : currReader.toString());
+			}
+			return readers;
 		}
 		else if (readersList instanceof String) {
 			return Arrays.asList((String) readersList);
@@ -619,13 +902,13 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 		if (m_summaryData!=null) {
 			return m_summaryData.containsKey(columnName);
 		}
-		else if (m_columnValues!=null) {
+		else if (getColumnValueCount()!=-1) {
 			int colIdx = m_parentCollection.getColumnValuesIndex(columnName);
 			if (colIdx==-1) {
 				return false;
 			}
 			else {
-				return m_columnValues[colIdx] != null;
+				return hasColumnValue(colIdx);
 			}
 		}
 		else {
@@ -720,7 +1003,7 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 				
 			}
 		}
-		else if (m_columnValues!=null) {
+		else if (getColumnValues()!=null) {
 			int colIdx = m_parentCollection.getColumnValuesIndex(columnNameOrTitle);
 			if (colIdx!=-1 && colIdx!=65535) {
 				if (colIdx < m_columnValues.length) {
@@ -733,16 +1016,15 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 		}
 		
 		if (val instanceof List) {
-			List<Object> valAsList = (List<Object>) val;
-			for (int i=0; i<valAsList.size(); i++) {
-				Object currListValue = valAsList.get(i);
-				
+			List<?> valAsList = (List<?>) val;
+			List<Object> convertedList = new ArrayList<Object>(valAsList.size());
+			for (Object currListValue : valAsList) {
 				if (currListValue instanceof LMBCSString) {
-					valAsList.set(i, ((LMBCSString)currListValue).getValue());
+					currListValue = ((LMBCSString)currListValue).getValue();
 				}
 				else if (currListValue instanceof NotesTimeDate) {
 					if (convertNotesTimeDateToCalendar) {
-						valAsList.set(i, ((NotesTimeDate)currListValue).toCalendar());
+						currListValue = NotesDateTimeUtils.innardsToCalendar(((NotesTimeDate)currListValue).getInnards());
 					}
 				}
 				else if (currListValue instanceof NotesDateRange) {
@@ -750,17 +1032,20 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 						NotesTimeDate startDateTime = ((NotesDateRange)currListValue).getStartDateTime();
 						NotesTimeDate endDateTime = ((NotesDateRange)currListValue).getEndDateTime();
 						
-						valAsList.set(i, new Calendar[] {startDateTime.toCalendar(), endDateTime.toCalendar()});
+						currListValue = new Calendar[] {NotesDateTimeUtils.innardsToCalendar(startDateTime.getInnards()),
+								NotesDateTimeUtils.innardsToCalendar(endDateTime.getInnards())};
 					}
 				}
+				convertedList.add(currListValue);
 			}
+			val = convertedList;
 		}
 		else if (val instanceof LMBCSString) {
 			val = ((LMBCSString)val).getValue();
 		}
 		else if (val instanceof NotesTimeDate) {
 			if (convertNotesTimeDateToCalendar) {
-				val = ((NotesTimeDate)val).toCalendar();
+				val = NotesDateTimeUtils.innardsToCalendar(((NotesTimeDate)val).getInnards());
 			}
 		}
 		else if (val instanceof NotesDateRange) {
@@ -768,7 +1053,8 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 				NotesTimeDate startDateTime = ((NotesDateRange)val).getStartDateTime();
 				NotesTimeDate endDateTime = ((NotesDateRange)val).getEndDateTime();
 				
-				val = new Calendar[] {startDateTime.toCalendar(), endDateTime.toCalendar()};
+				val = new Calendar[] {NotesDateTimeUtils.innardsToCalendar(startDateTime.getInnards()),
+						NotesDateTimeUtils.innardsToCalendar(endDateTime.getInnards())};
 			}
 		}
 		return val;
@@ -785,11 +1071,10 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 				return true;
 			}
 		}
-		if (m_columnValues!=null) {
-			for (int i=0; i<m_columnValues.length; i++) {
-				if (m_columnValues[i]!=null) {
-					return true;
-				}
+		int columnValueCount = getColumnValueCount();
+		for (int i=0; i<columnValueCount; i++) {
+			if (hasColumnValue(i)) {
+				return true;
 			}
 		}
 		return false;
@@ -897,7 +1182,7 @@ public class NotesViewEntryData extends TypedItemAccess implements IViewEntryDat
 			sb.append(",summary="+m_summaryData.toString());
 		}
 		
-		if (m_columnValues!=null) {
+		if (getColumnValues()!=null) {
 			sb.append(",columns=[");
 			for (int i=0; i<m_columnValues.length; i++) {
 				if (i>0)
@@ -0,0 +1,634 @@
+package com.mindoo.domino.jna.directory;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesSearch;
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.SizeLimitedLRUCache;
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Cache for person and group documents of the Domino directories configured for a server
+ * (see {@link NotesDatabase#getAddressBookPaths(String)}).<br>
+ * <br>
+ * The cache uses incremental NSF searches to stay up to date and builds an immutable
+ * index after each change, so lookups never block and never call into the C API:
+ * exact lookups by full name (canonical, abbreviated and common name), short name
+ * and internet address, type-ahead lookups via binary search on a sorted key array
+ * and resolution of nested groups.<br>
+ * <br>
+ * Call {@link #sync()} to fetch changes, e.g. from a background thread, or
+ * {@link #syncOncePerGCContext()} to run the incremental search at most once
+ * per {@link NotesGC#runWithAutoGC(java.util.concurrent.Callable)} block.
+ *
+ * @author Karsten Lehmann
+ */
+public class DirectoryCache {
+	private static final String ITEM_TYPE = "Type";
+	private static final String ITEM_FULLNAME = "FullName";
+	private static final String ITEM_LISTNAME = "ListName";
+	private static final String ITEM_SHORTNAME = "ShortName";
+	private static final String ITEM_INTERNETADDRESS = "InternetAddress";
+	private static final String ITEM_FIRSTNAME = "FirstName";
+	private static final String ITEM_LASTNAME = "LastName";
+	private static final String ITEM_MEMBERS = "Members";
+
+	private static final String SEARCH_FORMULA = "Type=\"Person\" | Type=\"Group\"";
+
+	//max size of the memoized group memberships per index (key and group name chars), in bytes
+	private static final int MAX_MEMBERSHIPCACHE_SIZE_BYTES = 5000000;
+
+	private String m_server;
+	private Collection<String> m_addressBookPaths;
+
+	/** entries by address book key and UNID, only accessed while holding m_syncLock */
+	private Map<String,Map<String,DirectoryEntry>> m_entriesByAddressBook;
+	/** last search time per address book key, only accessed while holding m_syncLock */
+	private Map<String,NotesTimeDate> m_lastSyncByAddressBook;
+	private final Object m_syncLock = new Object();
+
+	private volatile DirectoryIndex m_index = DirectoryIndex.EMPTY;
+
+	/**
+	 * Creates a new cache for the address books configured for a server
+	 *
+	 * @param server server name (abbreviated or canonical) or empty string for the local directories
+	 */
+	public DirectoryCache(String server) {
+		this(server, null);
+	}
+
+	/**
+	 * Creates a new cache for a fixed list of address books
+	 *
+	 * @param server server name (abbreviated or canonical) or empty string for local
+	 * @param addressBookPaths filepaths of the address books, either relative to the server data directory or in the format "server!!path"; null to use {@link NotesDatabase#getAddressBookPaths(String)}
+	 */
+	public DirectoryCache(String server, Collection<String> addressBookPaths) {
+		m_server = server==null ? "" : server;
+		m_addressBookPaths = addressBookPaths==null ? null : new ArrayList<String>(addressBookPaths);
+		m_entriesByAddressBook = new HashMap<String,Map<String,DirectoryEntry>>();
+		m_lastSyncByAddressBook = new HashMap<String,NotesTimeDate>();
+	}
+
+	/**
+	 * Runs {@link #sync()} if it has not been called yet during the current
+	 * {@link NotesGC#runWithAutoGC(java.util.concurrent.Callable)} block, e.g.
+	 * once per HTTP request.
+	 */
+	public void syncOncePerGCContext() {
+		String cacheKey = DirectoryCache.class.getName()+"."+System.identityHashCode(this)+".synced";
+		if (Boolean.TRUE.equals(NotesGC.getCustomValue(cacheKey))) {
+			return;
+		}
+		sync();
+		NotesGC.setCustomValue(cacheKey, Boolean.TRUE);
+	}
+
+	/**
+	 * Runs an incremental NSF search in all address books and rebuilds the lookup
+	 * index if any person or group has been added, changed or removed.
+	 * Concurrent lookups keep using the previous index until the new one is ready.
+	 *
+	 * @return true if the cache content has changed
+	 */
+	public boolean sync() {
+		synchronized (m_syncLock) {
+			Collection<String> paths = m_addressBookPaths!=null ? m_addressBookPaths : NotesDatabase.getAddressBookPaths(m_server);
+
+			boolean changed = false;
+			Set<String> syncedKeys = new HashSet<String>();
+
+			for (String currPath : paths) {
+				String currServer = m_server;
+				String currFilePath = currPath;
+				int iPos = currPath.indexOf("!!");
+				if (iPos!=-1) {
+					currServer = currPath.substring(0, iPos);
+					currFilePath = currPath.substring(iPos+2);
+				}
+				String addressBookKey = currServer.toLowerCase() + "!!" + currFilePath.toLowerCase();
+				syncedKeys.add(addressBookKey);
+
+				if (syncAddressBook(addressBookKey, currServer, currFilePath)) {
+					changed = true;
+				}
+			}
+
+			//remove data of address books that are no longer configured
+			Iterator<String> abKeysIt = m_entriesByAddressBook.keySet().iterator();
+			while (abKeysIt.hasNext()) {
+				String currKey = abKeysIt.next();
+				if (!syncedKeys.contains(currKey)) {
+					abKeysIt.remove();
+					m_lastSyncByAddressBook.remove(currKey);
+					changed = true;
+				}
+			}
+
+			if (changed) {
+				List<DirectoryEntry> allEntries = new ArrayList<DirectoryEntry>();
+				for (Map<String,DirectoryEntry> currEntries : m_entriesByAddressBook.values()) {
+					allEntries.addAll(currEntries.values());
+				}
+				m_index = new DirectoryIndex(allEntries);
+			}
+			return changed;
+		}
+	}
+
+	private boolean syncAddressBook(String addressBookKey, final String server, final String filePath) {
+		Map<String,DirectoryEntry> entries = m_entriesByAddressBook.get(addressBookKey);
+		if (entries==null) {
+			entries = new HashMap<String,DirectoryEntry>();
+			m_entriesByAddressBook.put(addressBookKey, entries);
+		}
+		final Map<String,DirectoryEntry> fEntries = entries;
+
+		LinkedHashMap<String,String> columns = new LinkedHashMap<String,String>();
+		//value="" for normal document fields
+		columns.put(ITEM_TYPE, "");
+		columns.put(ITEM_FULLNAME, "");
+		columns.put(ITEM_LISTNAME, "");
+		columns.put(ITEM_SHORTNAME, "");
+		columns.put(ITEM_INTERNETADDRESS, "");
+		columns.put(ITEM_FIRSTNAME, "");
+		columns.put(ITEM_LASTNAME, "");
+		columns.put(ITEM_MEMBERS, "");
+
+		final boolean[] changed = new boolean[1];
+
+		NotesDatabase db = new NotesDatabase(server, filePath, (String) null);
+		try {
+			NotesTimeDate since = m_lastSyncByAddressBook.get(addressBookKey);
+
+			NotesTimeDate newSince = NotesSearch.search(db, null, SEARCH_FORMULA, columns, "-",
+					EnumSet.of(Search.SUMMARY, Search.ALL_VERSIONS, Search.NOTIFYDELETIONS),
+					EnumSet.of(NoteClass.DATA, NoteClass.NOTIFYDELETION), since, new SearchCallback() {
+
+				@Override
+				public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+						IItemTableData summaryBufferData) {
+					if (summaryBufferData!=null) {
+						DirectoryEntry entry = toEntry(server, filePath, searchMatch.getUNID(), summaryBufferData);
+						if (entry!=null) {
+							fEntries.put(searchMatch.getUNID(), entry);
+							changed[0] = true;
+						}
+					}
+					return Action.Continue;
+				}
+
+				@Override
+				public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+						IItemTableData summaryBufferData) {
+					if (fEntries.remove(searchMatch.getUNID())!=null) {
+						changed[0] = true;
+					}
+					return Action.Continue;
+				}
+
+				@Override
+				public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch,
+						IItemTableData summaryBufferData) {
+					//document type may have changed
+					if (fEntries.remove(searchMatch.getUNID())!=null) {
+						changed[0] = true;
+					}
+					return Action.Continue;
+				}
+			});
+
+			if (newSince!=null) {
+				m_lastSyncByAddressBook.put(addressBookKey, newSince);
+			}
+		}
+		finally {
+			db.recycle();
+		}
+
+		return changed[0];
+	}
+
+	private static DirectoryEntry toEntry(String server, String filePath, String unid, IItemTableData data) {
+		String type = data.getAsString(ITEM_TYPE, "");
+		List<String> emptyList = Collections.emptyList();
+
+		if ("Person".equalsIgnoreCase(type)) {
+			return new DirectoryEntry(DirectoryEntry.Type.Person, server, filePath, unid,
+					data.getAsStringList(ITEM_FULLNAME, emptyList),
+					data.getAsStringList(ITEM_SHORTNAME, emptyList),
+					data.getAsString(ITEM_INTERNETADDRESS, ""),
+					data.getAsString(ITEM_FIRSTNAME, ""),
+					data.getAsString(ITEM_LASTNAME, ""),
+					emptyList);
+		}
+		else if ("Group".equalsIgnoreCase(type)) {
+			return new DirectoryEntry(DirectoryEntry.Type.Group, server, filePath, unid,
+					data.getAsStringList(ITEM_LISTNAME, emptyList),
+					emptyList,
+					data.getAsString(ITEM_INTERNETADDRESS, ""),
+					"",
+					"",
+					data.getAsStringList(ITEM_MEMBERS, emptyList));
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of cached persons and groups
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return m_index.m_size;
+	}
+
+	/**
+	 * Looks up persons and groups by exact name. The method compares the name case insensitive
+	 * with the canonical, abbreviated and common name, alternate names, short names and the
+	 * internet address.
+	 *
+	 * @param name name or email address
+	 * @return matching entries, empty if not found
+	 */
+	public List<DirectoryEntry> lookupName(String name) {
+		if (StringUtil.isEmpty(name)) {
+			return Collections.emptyList();
+		}
+		DirectoryIndex index = m_index;
+		DirectoryEntry[] entries = index.get(name);
+		if (entries==null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(entries));
+	}
+
+	/**
+	 * Looks up a person by exact name or email address
+	 *
+	 * @param nameOrEmail name or email address
+	 * @return person or null if not found
+	 */
+	public DirectoryEntry findPerson(String nameOrEmail) {
+		for (DirectoryEntry currEntry : lookupName(nameOrEmail)) {
+			if (currEntry.isPerson()) {
+				return currEntry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Looks up a group by its name
+	 *
+	 * @param groupName group name
+	 * @return group or null if not found
+	 */
+	public DirectoryEntry findGroup(String groupName) {
+		for (DirectoryEntry currEntry : lookupName(groupName)) {
+			if (currEntry.isGroup()) {
+				return currEntry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Type-ahead lookup for persons and groups where one of the lookup keys starts
+	 * with the specified prefix (case insensitive). Matches are returned in lookup key order,
+	 * each entry only once.
+	 *
+	 * @param prefix prefix to search for
+	 * @param types entry types to return
+	 * @param start start index for paging
+	 * @param count max number of entries to return
+	 * @return lookup result
+	 */
+	public LookupResult lookupByPrefix(String prefix, EnumSet<DirectoryEntry.Type> types, int start, int count) {
+		DirectoryIndex index = m_index;
+		String prefixKey = DirectoryEntry.toLookupKey(prefix==null ? "" : prefix);
+
+		String[] sortedKeys = index.m_sortedKeys;
+		int pos = lowerBound(sortedKeys, prefixKey);
+
+		Set<DirectoryEntry> uniqueMatches = new LinkedHashSet<DirectoryEntry>();
+		while (pos<sortedKeys.length && sortedKeys[pos].startsWith(prefixKey)) {
+			DirectoryEntry currEntry = index.m_sortedKeyEntries[pos];
+			if (types.contains(currEntry.getType())) {
+				uniqueMatches.add(currEntry);
+			}
+			pos++;
+		}
+
+		List<DirectoryEntry> matches = new ArrayList<DirectoryEntry>(uniqueMatches);
+		int total = matches.size();
+		List<DirectoryEntry> matchesOnPage;
+		if (start >= total) {
+			matchesOnPage = Collections.emptyList();
+		}
+		else {
+			long end = Math.min((long) total, (long) start + (long) count);
+			matchesOnPage = new ArrayList<DirectoryEntry>(matches.subList(start, (int) end));
+		}
+		return new LookupResult(matchesOnPage, total, total > (long) start + (long) count);
+	}
+
+	private static int lowerBound(String[] sortedKeys, String key) {
+		int low = 0;
+		int high = sortedKeys.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedKeys[mid].compareTo(key) < 0) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Resolves the members of a group including the members of nested groups.
+	 * Nested group names are not part of the result.
+	 *
+	 * @param groupName group name
+	 * @return members with hierarchical names in canonical format, empty if the group does not exist
+	 */
+	public Set<String> getGroupMembersExpanded(String groupName) {
+		DirectoryIndex index = m_index;
+		Set<String> members = new LinkedHashSet<String>();
+		Set<String> visitedGroups = new HashSet<String>();
+		Deque<String> groupsToProcess = new ArrayDeque<String>();
+		groupsToProcess.add(groupName);
+
+		while (!groupsToProcess.isEmpty()) {
+			String currGroupName = groupsToProcess.poll();
+			if (!visitedGroups.add(DirectoryEntry.toLookupKey(currGroupName))) {
+				//cyclic group definition
+				continue;
+			}
+			DirectoryEntry group = index.getGroup(currGroupName);
+			if (group==null) {
+				continue;
+			}
+			for (String currMember : group.getMembers()) {
+				if (index.getGroup(currMember)!=null) {
+					groupsToProcess.add(currMember);
+				}
+				else {
+					members.add(currMember);
+				}
+			}
+		}
+		return Collections.unmodifiableSet(members);
+	}
+
+	/**
+	 * Returns the names of all groups a person or group is a member of, including
+	 * the groups containing those groups and groups with a matching wildcard member like "*&#47;O=Org".
+	 * The result is similar to the group part of a {@link com.mindoo.domino.jna.NotesNamesList}
+	 * and can be used for readers checks without a NAMELookup call.
+	 *
+	 * @param name person or group name, hierarchical names either abbreviated or canonical
+	 * @return group names
+	 */
+	public Set<String> getGroupMembershipsExpanded(String name) {
+		if (StringUtil.isEmpty(name)) {
+			return Collections.emptySet();
+		}
+		DirectoryIndex index = m_index;
+		String cacheKey = DirectoryEntry.toLookupKey(name);
+		Set<String> groups = index.m_expandedMemberships.get(cacheKey);
+		if (groups==null) {
+			groups = Collections.unmodifiableSet(index.computeGroupMemberships(name));
+			index.m_expandedMemberships.put(cacheKey, groups);
+		}
+		return groups;
+	}
+
+	/**
+	 * Result of a type-ahead lookup
+	 */
+	public static class LookupResult {
+		private List<DirectoryEntry> m_matches;
+		private int m_total;
+		private boolean m_hasMore;
+
+		private LookupResult(List<DirectoryEntry> matches, int total, boolean hasMore) {
+			m_matches = matches;
+			m_total = total;
+			m_hasMore = hasMore;
+		}
+
+		/**
+		 * Returns the entries on the requested page
+		 *
+		 * @return entries
+		 */
+		public List<DirectoryEntry> getMatches() {
+			return m_matches;
+		}
+
+		/**
+		 * Returns the total number of matching entries
+		 *
+		 * @return total
+		 */
+		public int getTotal() {
+			return m_total;
+		}
+
+		/**
+		 * Returns true if there are more entries after the requested page
+		 *
+		 * @return true if more
+		 */
+		public boolean hasMore() {
+			return m_hasMore;
+		}
+	}
+
+	/**
+	 * Immutable lookup index, replaced as a whole after each cache change
+	 */
+	private static class DirectoryIndex {
+		static final DirectoryIndex EMPTY = new DirectoryIndex(Collections.<DirectoryEntry>emptyList());
+
+		private final int m_size;
+		private final Map<String,DirectoryEntry[]> m_entriesByKey;
+		private final String[] m_sortedKeys;
+		private final DirectoryEntry[] m_sortedKeyEntries;
+		private final Map<String,List<DirectoryEntry>> m_groupsByMember;
+		private final List<DirectoryEntry> m_groupsWithWildcards;
+		/** memoized group memberships; safe since the index does not change */
+		private final SizeLimitedLRUCache<String,Set<String>> m_expandedMemberships = new SizeLimitedLRUCache<String,Set<String>>(MAX_MEMBERSHIPCACHE_SIZE_BYTES) {
+			@Override
+			protected int computeSize(String key, Set<String> value) {
+				int size = key.length();
+				for (String currGroup : value) {
+					size += currGroup.length();
+				}
+				return size * 2;
+			}
+		};
+
+		DirectoryIndex(Collection<DirectoryEntry> entries) {
+			m_size = entries.size();
+
+			Map<String,List<DirectoryEntry>> entriesByKey = new HashMap<String,List<DirectoryEntry>>();
+			Map<String,List<DirectoryEntry>> groupsByMember = new HashMap<String,List<DirectoryEntry>>();
+			List<DirectoryEntry> groupsWithWildcards = new ArrayList<DirectoryEntry>();
+			int numKeys = 0;
+
+			for (DirectoryEntry currEntry : entries) {
+				for (String currKey : currEntry.getLookupKeys()) {
+					List<DirectoryEntry> entriesForKey = entriesByKey.get(currKey);
+					if (entriesForKey==null) {
+						entriesForKey = new ArrayList<DirectoryEntry>(1);
+						entriesByKey.put(currKey, entriesForKey);
+					}
+					entriesForKey.add(currEntry);
+					numKeys++;
+				}
+
+				if (currEntry.isGroup()) {
+					boolean hasWildcard = false;
+					for (String currMember : currEntry.getMembers()) {
+						if (currMember.startsWith("*")) {
+							hasWildcard = true;
+						}
+						else {
+							String memberKey = DirectoryEntry.toLookupKey(currMember);
+							List<DirectoryEntry> groupsForMember = groupsByMember.get(memberKey);
+							if (groupsForMember==null) {
+								groupsForMember = new ArrayList<DirectoryEntry>(1);
+								groupsByMember.put(memberKey, groupsForMember);
+							}
+							groupsForMember.add(currEntry);
+						}
+					}
+					if (hasWildcard) {
+						groupsWithWildcards.add(currEntry);
+					}
+				}
+			}
+
+			m_entriesByKey = new HashMap<String,DirectoryEntry[]>(entriesByKey.size());
+			List<Entry<String,DirectoryEntry>> keyEntryPairs = new ArrayList<Entry<String,DirectoryEntry>>(numKeys);
+			for (Entry<String,List<DirectoryEntry>> currEntry : entriesByKey.entrySet()) {
+				List<DirectoryEntry> entriesForKey = currEntry.getValue();
+				m_entriesByKey.put(currEntry.getKey(), entriesForKey.toArray(new DirectoryEntry[entriesForKey.size()]));
+				for (DirectoryEntry currDirEntry : entriesForKey) {
+					keyEntryPairs.add(new AbstractMap.SimpleImmutableEntry<String,DirectoryEntry>(currEntry.getKey(), currDirEntry));
+				}
+			}
+
+			Collections.sort(keyEntryPairs, (o1, o2) -> {
+				int c = o1.getKey().compareTo(o2.getKey());
+				if (c!=0) {
+					return c;
+				}
+				return o1.getValue().getNameCanonical().compareToIgnoreCase(o2.getValue().getNameCanonical());
+			});
+
+			m_sortedKeys = new String[keyEntryPairs.size()];
+			m_sortedKeyEntries = new DirectoryEntry[keyEntryPairs.size()];
+			for (int i=0; i<keyEntryPairs.size(); i++) {
+				m_sortedKeys[i] = keyEntryPairs.get(i).getKey();
+				m_sortedKeyEntries[i] = keyEntryPairs.get(i).getValue();
+			}
+
+			m_groupsByMember = groupsByMember;
+			m_groupsWithWildcards = groupsWithWildcards;
+		}
+
+		DirectoryEntry[] get(String name) {
+			return m_entriesByKey.get(DirectoryEntry.toLookupKey(name));
+		}
+
+		DirectoryEntry getGroup(String name) {
+			DirectoryEntry[] entries = get(name);
+			if (entries!=null) {
+				for (DirectoryEntry currEntry : entries) {
+					if (currEntry.isGroup()) {
+						return currEntry;
+					}
+				}
+			}
+			return null;
+		}
+
+		Set<String> computeGroupMemberships(String name) {
+			Set<String> groupNames = new LinkedHashSet<String>();
+			Set<String> visitedKeys = new HashSet<String>();
+			Deque<String> namesToProcess = new ArrayDeque<String>();
+
+			String nameCanonical = name.indexOf('/')!=-1 && name.indexOf('=')==-1 ? NotesNamingUtils.toCanonicalName(name) : name;
+			namesToProcess.add(nameCanonical);
+
+			//a person may be listed with one of its alternate names
+			DirectoryEntry[] entries = get(nameCanonical);
+			if (entries!=null) {
+				for (DirectoryEntry currEntry : entries) {
+					if (currEntry.isPerson()) {
+						namesToProcess.addAll(currEntry.getAlternateNames());
+					}
+				}
+			}
+
+			if (nameCanonical.indexOf('/')!=-1) {
+				for (DirectoryEntry currGroup : m_groupsWithWildcards) {
+					for (String currMember : currGroup.getMembers()) {
+						if (currMember.startsWith("*") && NotesNamingUtils.nameMatchesWildcard(nameCanonical, currMember)) {
+							namesToProcess.add(currGroup.getNameCanonical());
+							groupNames.add(currGroup.getNameCanonical());
+							break;
+						}
+					}
+				}
+			}
+
+			while (!namesToProcess.isEmpty()) {
+				String currName = namesToProcess.poll();
+				String currKey = DirectoryEntry.toLookupKey(currName);
+				if (!visitedKeys.add(currKey)) {
+					continue;
+				}
+				List<DirectoryEntry> groups = m_groupsByMember.get(currKey);
+				if (groups!=null) {
+					for (DirectoryEntry currGroup : groups) {
+						groupNames.add(currGroup.getNameCanonical());
+						namesToProcess.add(currGroup.getNameCanonical());
+					}
+				}
+			}
+			return groupNames;
+		}
+	}
+}
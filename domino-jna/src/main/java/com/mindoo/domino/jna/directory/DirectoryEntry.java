@@ -0,0 +1,263 @@
+package com.mindoo.domino.jna.directory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Immutable person or group document read from a Domino directory
+ * by the {@link DirectoryCache}.
+ *
+ * @author Karsten Lehmann
+ */
+public class DirectoryEntry {
+	public static enum Type {Person, Group}
+
+	private Type m_type;
+	private String m_addressBookServer;
+	private String m_addressBookPath;
+	private String m_unid;
+	private String m_nameCanonical;
+	private String m_nameAbbreviated;
+	private String m_commonName;
+	private List<String> m_alternateNames;
+	private List<String> m_shortNames;
+	private String m_internetAddress;
+	private String m_firstName;
+	private String m_lastName;
+	private List<String> m_membersCanonical;
+	private List<String> m_lookupKeys;
+
+	DirectoryEntry(Type type, String addressBookServer, String addressBookPath, String unid,
+			List<String> fullNames, List<String> shortNames, String internetAddress,
+			String firstName, String lastName, List<String> members) {
+		m_type = type;
+		m_addressBookServer = addressBookServer;
+		m_addressBookPath = addressBookPath;
+		m_unid = unid;
+
+		String primaryName = fullNames.isEmpty() ? "" : fullNames.get(0);
+		m_nameCanonical = toCanonicalIfHierarchical(primaryName);
+		m_nameAbbreviated = NotesNamingUtils.toAbbreviatedName(m_nameCanonical);
+		m_commonName = NotesNamingUtils.toCommonName(m_nameCanonical);
+
+		List<String> alternateNames = new ArrayList<String>();
+		for (int i=1; i<fullNames.size(); i++) {
+			String currName = fullNames.get(i);
+			if (!StringUtil.isEmpty(currName)) {
+				alternateNames.add(currName);
+			}
+		}
+		m_alternateNames = Collections.unmodifiableList(alternateNames);
+		m_shortNames = Collections.unmodifiableList(new ArrayList<String>(shortNames));
+		m_internetAddress = internetAddress==null ? "" : internetAddress;
+		m_firstName = firstName==null ? "" : firstName;
+		m_lastName = lastName==null ? "" : lastName;
+
+		List<String> membersCanonical = new ArrayList<String>(members.size());
+		for (String currMember : members) {
+			if (!StringUtil.isEmpty(currMember)) {
+				membersCanonical.add(toCanonicalIfHierarchical(currMember));
+			}
+		}
+		m_membersCanonical = Collections.unmodifiableList(membersCanonical);
+
+		Set<String> lookupKeys = new LinkedHashSet<String>();
+		addLookupKey(lookupKeys, m_nameCanonical);
+		addLookupKey(lookupKeys, m_nameAbbreviated);
+		addLookupKey(lookupKeys, m_commonName);
+		for (String currAltName : m_alternateNames) {
+			addLookupKey(lookupKeys, currAltName);
+			addLookupKey(lookupKeys, NotesNamingUtils.toAbbreviatedName(currAltName));
+			addLookupKey(lookupKeys, NotesNamingUtils.toCommonName(currAltName));
+		}
+		for (String currShortName : m_shortNames) {
+			addLookupKey(lookupKeys, currShortName);
+		}
+		//no key for the last name, it is not unique enough for exact name lookups
+		addLookupKey(lookupKeys, m_internetAddress);
+		m_lookupKeys = Collections.unmodifiableList(new ArrayList<String>(lookupKeys));
+	}
+
+	private static String toCanonicalIfHierarchical(String name) {
+		if (name.indexOf('/')!=-1 && name.indexOf('=')==-1) {
+			return NotesNamingUtils.toCanonicalName(name);
+		}
+		return name;
+	}
+
+	private static void addLookupKey(Set<String> keys, String key) {
+		if (!StringUtil.isEmpty(key)) {
+			keys.add(toLookupKey(key));
+		}
+	}
+
+	/**
+	 * Normalizes a name for index lookups
+	 *
+	 * @param name name
+	 * @return lookup key
+	 */
+	static String toLookupKey(String name) {
+		return name.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the entry type
+	 *
+	 * @return type
+	 */
+	public Type getType() {
+		return m_type;
+	}
+
+	/**
+	 * Returns true if this entry is a person document
+	 *
+	 * @return true for persons
+	 */
+	public boolean isPerson() {
+		return m_type == Type.Person;
+	}
+
+	/**
+	 * Returns true if this entry is a group document
+	 *
+	 * @return true for groups
+	 */
+	public boolean isGroup() {
+		return m_type == Type.Group;
+	}
+
+	/**
+	 * Returns the server of the address book containing the document
+	 *
+	 * @return server, empty string for local
+	 */
+	public String getAddressBookServer() {
+		return m_addressBookServer;
+	}
+
+	/**
+	 * Returns the filepath of the address book containing the document
+	 *
+	 * @return filepath
+	 */
+	public String getAddressBookPath() {
+		return m_addressBookPath;
+	}
+
+	/**
+	 * Returns the UNID of the person or group document
+	 *
+	 * @return UNID
+	 */
+	public String getUNID() {
+		return m_unid;
+	}
+
+	/**
+	 * Returns the primary name in canonical format for hierarchical names (first value of
+	 * the FullName item for persons, ListName for groups)
+	 *
+	 * @return name
+	 */
+	public String getNameCanonical() {
+		return m_nameCanonical;
+	}
+
+	/**
+	 * Returns the primary name in abbreviated format
+	 *
+	 * @return name
+	 */
+	public String getNameAbbreviated() {
+		return m_nameAbbreviated;
+	}
+
+	/**
+	 * Returns the common name part of the primary name
+	 *
+	 * @return common name
+	 */
+	public String getCommonName() {
+		return m_commonName;
+	}
+
+	/**
+	 * Returns the additional values of the FullName item
+	 *
+	 * @return alternate names
+	 */
+	public List<String> getAlternateNames() {
+		return m_alternateNames;
+	}
+
+	/**
+	 * Returns the short names of a person
+	 *
+	 * @return short names
+	 */
+	public List<String> getShortNames() {
+		return m_shortNames;
+	}
+
+	/**
+	 * Returns the internet address of a person or mail-in group
+	 *
+	 * @return internet address or empty string
+	 */
+	public String getInternetAddress() {
+		return m_internetAddress;
+	}
+
+	/**
+	 * Returns the first name of a person
+	 *
+	 * @return first name or empty string
+	 */
+	public String getFirstName() {
+		return m_firstName;
+	}
+
+	/**
+	 * Returns the last name of a person
+	 *
+	 * @return last name or empty string
+	 */
+	public String getLastName() {
+		return m_lastName;
+	}
+
+	/**
+	 * Returns the direct members of a group, hierarchical names are returned in
+	 * canonical format. Use {@link DirectoryCache#getGroupMembersExpanded(String)} to resolve
+	 * nested groups.
+	 *
+	 * @return members, empty for persons
+	 */
+	public List<String> getMembers() {
+		return m_membersCanonical;
+	}
+
+	/**
+	 * Returns all lower case keys this entry can be found with
+	 *
+	 * @return lookup keys
+	 */
+	public List<String> getLookupKeys() {
+		return m_lookupKeys;
+	}
+
+	@Override
+	public String toString() {
+		return "DirectoryEntry [type="+m_type+", name="+m_nameCanonical+", email="+m_internetAddress+
+				", db="+m_addressBookServer+"!!"+m_addressBookPath+", unid="+m_unid+"]";
+	}
+}
@@ -0,0 +1,423 @@
+package com.mindoo.domino.jna.dql;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesDbQueryResult;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.constants.DBQuery;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.dql.DQL.DQLTerm;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.internal.SizeLimitedLRUCache;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * DQL query that is prepared once and executed many times. The query text is normalized
+ * and the note ids of the results are cached per database and user.<br>
+ * <br>
+ * Before returning a cached result, we compare the data modified date of the database
+ * ({@link NotesDatabase#getLastModifiedTimes()}). If it has changed, we use
+ * {@link NotesDatabase#getModifiedNoteTable(java.util.Set, NotesTimeDate, NotesTimeDate)} to
+ * find out what happened: if documents have only been deleted, they get removed from the
+ * cached result, otherwise the DQL query is run again.<br>
+ * <br>
+ * Instances are thread-safe and meant to be shared, e.g. as static fields. Queries
+ * that depend on the current time (like date comparisons with relative values computed
+ * by the caller) should not be cached with this class.
+ *
+ * @author Karsten Lehmann
+ */
+public class PreparedDQL {
+	/** default size of the result cache in note ids across all databases */
+	private static final int DEFAULT_CACHE_SIZE = 1000000;
+
+	private String m_query;
+	private EnumSet<DBQuery> m_flags;
+	private int m_maxDocsScanned;
+	private int m_maxEntriesScanned;
+	private int m_maxMsecs;
+	private boolean m_cacheable;
+
+	private ResultCache m_cache;
+
+	private AtomicLong m_executions = new AtomicLong();
+	private AtomicLong m_cacheHits = new AtomicLong();
+	private AtomicLong m_revalidations = new AtomicLong();
+	private AtomicLong m_queryRuns = new AtomicLong();
+	private AtomicLong m_totalQueryMillis = new AtomicLong();
+	private AtomicLong m_maxQueryMillis = new AtomicLong();
+	private volatile long m_lastQueryMillis;
+	private volatile String m_lastExplainText = "";
+
+	/**
+	 * Prepares a DQL query generated via {@link DQL} factory class
+	 *
+	 * @param query query
+	 * @return prepared query
+	 */
+	public static PreparedDQL prepare(DQLTerm query) {
+		return prepare(query.toString(), null);
+	}
+
+	/**
+	 * Prepares a DQL query generated via {@link DQL} factory class
+	 *
+	 * @param query query
+	 * @param flags flags controlling execution, see {@link DBQuery}
+	 * @return prepared query
+	 */
+	public static PreparedDQL prepare(DQLTerm query, EnumSet<DBQuery> flags) {
+		return prepare(query.toString(), flags);
+	}
+
+	/**
+	 * Prepares a DQL query
+	 *
+	 * @param query Domino query (DQL) as a single string (max 64K in length)
+	 * @return prepared query
+	 */
+	public static PreparedDQL prepare(String query) {
+		return prepare(query, null);
+	}
+
+	/**
+	 * Prepares a DQL query
+	 *
+	 * @param query Domino query (DQL) as a single string (max 64K in length)
+	 * @param flags flags controlling execution, see {@link DBQuery}
+	 * @return prepared query
+	 */
+	public static PreparedDQL prepare(String query, EnumSet<DBQuery> flags) {
+		return new PreparedDQL(query, flags, 0, 0, 0, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a new prepared query
+	 *
+	 * @param query Domino query (DQL) as a single string (max 64K in length)
+	 * @param flags flags controlling execution, see {@link DBQuery}
+	 * @param maxDocsScanned maximum number of document scans allowed
+	 * @param maxEntriesScanned maximum number of view entries processed allows
+	 * @param maxMsecs max milliseconds of executiion allow
+	 * @param maxCachedNoteIds maximum number of note ids to cache across all databases and users
+	 */
+	public PreparedDQL(String query, EnumSet<DBQuery> flags, int maxDocsScanned, int maxEntriesScanned,
+			int maxMsecs, int maxCachedNoteIds) {
+		if (StringUtil.isEmpty(query)) {
+			throw new IllegalArgumentException("Query is empty");
+		}
+		m_query = normalize(query);
+		m_flags = flags==null ? EnumSet.noneOf(DBQuery.class) : EnumSet.copyOf(flags);
+		m_maxDocsScanned = maxDocsScanned;
+		m_maxEntriesScanned = maxEntriesScanned;
+		m_maxMsecs = maxMsecs;
+		//these modes do not produce results worth caching
+		m_cacheable = !m_flags.contains(DBQuery.NO_EXEC) && !m_flags.contains(DBQuery.PARSEONLY);
+		m_cache = new ResultCache(maxCachedNoteIds);
+	}
+
+	/**
+	 * Normalizes a DQL query by trimming it and collapsing whitespace outside of
+	 * quoted strings, so that equivalent query strings share the same cache entries
+	 *
+	 * @param query query
+	 * @return normalized query
+	 */
+	public static String normalize(String query) {
+		StringBuilder sb = new StringBuilder(query.length());
+		char quoteChar = 0;
+		boolean pendingSpace = false;
+
+		for (int i=0; i<query.length(); i++) {
+			char c = query.charAt(i);
+
+			if (quoteChar!=0) {
+				sb.append(c);
+				if (c==quoteChar) {
+					//doubled quotes are escaped quote characters and get handled by toggling twice
+					quoteChar = 0;
+				}
+			}
+			else if (Character.isWhitespace(c)) {
+				pendingSpace = sb.length()>0;
+			}
+			else {
+				if (pendingSpace) {
+					sb.append(' ');
+					pendingSpace = false;
+				}
+				if (c=='\'' || c=='"') {
+					quoteChar = c;
+				}
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the normalized query text
+	 *
+	 * @return query
+	 */
+	public String getQuery() {
+		return m_query;
+	}
+
+	/**
+	 * Returns the query flags
+	 *
+	 * @return flags
+	 */
+	public EnumSet<DBQuery> getFlags() {
+		return EnumSet.copyOf(m_flags);
+	}
+
+	/**
+	 * Runs the query against the database or returns a cached result if the documents
+	 * in the database have not changed in a way that could affect it.<br>
+	 * <br>
+	 * Every call returns a new {@link NotesIDTable} owned by the caller.
+	 *
+	 * @param db database
+	 * @return query result, see {@link NotesDbQueryResult#isFromCache()}
+	 */
+	public NotesDbQueryResult execute(NotesDatabase db) {
+		m_executions.incrementAndGet();
+
+		if (!m_cacheable) {
+			return runQuery(db);
+		}
+
+		String cacheKey = getCacheKey(db);
+		NotesTimeDate dataModified = db.getLastModifiedTimes()[0];
+
+		CachedResult cachedResult = m_cache.get(cacheKey);
+		if (cachedResult!=null) {
+			long t0=System.currentTimeMillis();
+
+			if (cachedResult.m_dataModified.equals(dataModified)) {
+				m_cacheHits.incrementAndGet();
+				return toQueryResult(db, cachedResult, System.currentTimeMillis()-t0);
+			}
+
+			CachedResult revalidatedResult = revalidate(db, cachedResult, dataModified);
+			if (revalidatedResult!=null) {
+				m_revalidations.incrementAndGet();
+				m_cache.put(cacheKey, revalidatedResult);
+				return toQueryResult(db, revalidatedResult, System.currentTimeMillis()-t0);
+			}
+		}
+
+		NotesDbQueryResult result = runQuery(db);
+		NotesIDTable idTable = result.getIDTable();
+		int[] noteIds = idTable==null ? new int[0] : idTable.toArray();
+		m_cache.put(cacheKey, new CachedResult(noteIds, dataModified, result.getExplainText()));
+		return result;
+	}
+
+	/**
+	 * Checks which data notes have been changed since the cached result has been
+	 * computed and removes deleted notes from the result
+	 *
+	 * @param db database
+	 * @param cachedResult cached result
+	 * @param dataModified current data modified date of the database
+	 * @return updated result or null if the query needs to be run again
+	 */
+	private CachedResult revalidate(NotesDatabase db, CachedResult cachedResult, NotesTimeDate dataModified) {
+		NotesTimeDate retUntil = new NotesTimeDate();
+		NotesIDTable modifiedTable = db.getModifiedNoteTable(EnumSet.of(NoteClass.DATA),
+				cachedResult.m_dataModified, retUntil);
+		int[] modifiedIds;
+		try {
+			modifiedIds = modifiedTable.toArray();
+		}
+		finally {
+			modifiedTable.recycle();
+		}
+
+		int[] remainingIds = cachedResult.m_noteIds.clone();
+		int remainingCount = remainingIds.length;
+
+		for (int currId : modifiedIds) {
+			if ((currId & NotesConstants.RRV_DELETED) != NotesConstants.RRV_DELETED) {
+				//a created or changed document might now match the query
+				return null;
+			}
+
+			int deletedId = (int) (currId & ~NotesConstants.RRV_DELETED);
+			int idx = Arrays.binarySearch(remainingIds, 0, remainingCount, deletedId);
+			if (idx>=0) {
+				System.arraycopy(remainingIds, idx+1, remainingIds, idx, remainingCount-idx-1);
+				remainingCount--;
+			}
+		}
+
+		if (remainingCount<remainingIds.length) {
+			remainingIds = Arrays.copyOf(remainingIds, remainingCount);
+		}
+		return new CachedResult(remainingIds, dataModified, cachedResult.m_explainText);
+	}
+
+	private NotesDbQueryResult runQuery(NotesDatabase db) {
+		NotesDbQueryResult result = db.query(m_query, m_flags, m_maxDocsScanned, m_maxEntriesScanned, m_maxMsecs);
+
+		long duration = result.getDurationInMillis();
+		m_queryRuns.incrementAndGet();
+		m_totalQueryMillis.addAndGet(duration);
+		m_lastQueryMillis = duration;
+		long maxDuration;
+		while (duration > (maxDuration = m_maxQueryMillis.get())) {
+			if (m_maxQueryMillis.compareAndSet(maxDuration, duration)) {
+				break;
+			}
+		}
+		if (!StringUtil.isEmpty(result.getExplainText())) {
+			m_lastExplainText = result.getExplainText();
+		}
+		return result;
+	}
+
+	private NotesDbQueryResult toQueryResult(NotesDatabase db, CachedResult cachedResult, long durationInMillis) {
+		NotesIDTable idTable = new NotesIDTable(cachedResult.m_noteIds);
+		return new NotesDbQueryResult(db, m_query, idTable, cachedResult.m_explainText, durationInMillis, true);
+	}
+
+	private String getCacheKey(NotesDatabase db) {
+		//results depend on reader access, so they are cached per user
+		String contextUser = db.getContextUser();
+		return db.getServer() + "!!" + db.getReplicaID() + "!!" + (contextUser==null ? "" : contextUser);
+	}
+
+	/**
+	 * Removes all cached results, e.g. after design changes that affect the query
+	 */
+	public void clearCache() {
+		m_cache.clear();
+	}
+
+	/**
+	 * Returns the number of {@link #execute(NotesDatabase)} calls
+	 *
+	 * @return count
+	 */
+	public long getExecutionCount() {
+		return m_executions.get();
+	}
+
+	/**
+	 * Returns the number of executions that returned a cached result
+	 * without changes in the database
+	 *
+	 * @return count
+	 */
+	public long getCacheHitCount() {
+		return m_cacheHits.get();
+	}
+
+	/**
+	 * Returns the number of executions where the database had changed, but
+	 * the cached result could be reused after removing deleted documents
+	 *
+	 * @return count
+	 */
+	public long getRevalidationCount() {
+		return m_revalidations.get();
+	}
+
+	/**
+	 * Returns the number of executions that ran the DQL query
+	 *
+	 * @return count
+	 */
+	public long getQueryRunCount() {
+		return m_queryRuns.get();
+	}
+
+	/**
+	 * Returns the total milliseconds spent running the DQL query
+	 *
+	 * @return duration
+	 */
+	public long getTotalQueryMillis() {
+		return m_totalQueryMillis.get();
+	}
+
+	/**
+	 * Returns the average milliseconds spent per DQL query run
+	 *
+	 * @return duration or 0 if the query never ran
+	 */
+	public long getAverageQueryMillis() {
+		long runs = m_queryRuns.get();
+		return runs==0 ? 0 : m_totalQueryMillis.get() / runs;
+	}
+
+	/**
+	 * Returns the longest DQL query run in milliseconds
+	 *
+	 * @return duration
+	 */
+	public long getMaxQueryMillis() {
+		return m_maxQueryMillis.get();
+	}
+
+	/**
+	 * Returns the duration of the last DQL query run in milliseconds
+	 *
+	 * @return duration
+	 */
+	public long getLastQueryMillis() {
+		return m_lastQueryMillis;
+	}
+
+	/**
+	 * Returns the explain text of the last query run if {@link DBQuery#EXPLAIN}
+	 * has been specified as query flag
+	 *
+	 * @return explain text or empty string
+	 */
+	public String getLastExplainText() {
+		return m_lastExplainText;
+	}
+
+	@Override
+	public String toString() {
+		return "PreparedDQL [query="+m_query+", flags="+m_flags+", executions="+m_executions.get()+
+				", hits="+m_cacheHits.get()+", revalidations="+m_revalidations.get()+
+				", runs="+m_queryRuns.get()+", avgms="+getAverageQueryMillis()+"]";
+	}
+
+	/**
+	 * Cached note ids of a query result, sorted ascending
+	 */
+	private static class CachedResult {
+		private int[] m_noteIds;
+		private NotesTimeDate m_dataModified;
+		private String m_explainText;
+
+		public CachedResult(int[] noteIds, NotesTimeDate dataModified, String explainText) {
+			m_noteIds = noteIds;
+			Arrays.sort(m_noteIds);
+			m_dataModified = dataModified;
+			m_explainText = explainText==null ? "" : explainText;
+		}
+	}
+
+	private static class ResultCache extends SizeLimitedLRUCache<String,CachedResult> {
+
+		public ResultCache(int maxSizeUnits) {
+			super(maxSizeUnits);
+		}
+
+		@Override
+		protected int computeSize(String key, CachedResult value) {
+			return 1 + value.m_noteIds.length;
+		}
+	}
+}
@@ -549,6 +549,27 @@ public class DXLExporter extends AbstractDXLTransfer implements IAllocatedMemory
 		setBooleanProperty(NotesConstants.eOutputDOCTYPE, b);
 	}
 	
+	/**
+	 * Returns whether the root element of the export gets the xmlns, version and
+	 * replica id attributes
+	 * 
+	 * @return true to output root attributes (default)
+	 */
+	public boolean isOutputRootAttrs() {
+		return getBooleanProperty(NotesConstants.eOutputRootAttrs);
+	}
+	
+	/**
+	 * Sets whether the root element of the export gets the xmlns, version and
+	 * replica id attributes. Use false to export notes that get embedded into
+	 * another DXL document.
+	 * 
+	 * @param b true to output root attributes
+	 */
+	public void setOutputRootAttrs(boolean b) {
+		setBooleanProperty(NotesConstants.eOutputRootAttrs, b);
+	}
+	
 	public boolean isConvertNotesbitmapsToGIF() {
 		return getBooleanProperty(NotesConstants.eConvertNotesbitmapsToGIF);
 	}
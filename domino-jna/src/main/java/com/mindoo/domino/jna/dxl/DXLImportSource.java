@@ -0,0 +1,88 @@
+package com.mindoo.domino.jna.dxl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DXL input for the {@link ParallelDXLImporter}. The data can be read more than once,
+ * because we validate it before the import.
+ *
+ * @author Karsten Lehmann
+ */
+public abstract class DXLImportSource {
+	private String m_name;
+
+	protected DXLImportSource(String name) {
+		m_name = name;
+	}
+
+	/**
+	 * Returns the name of the source, e.g. a filename, used to report the import result
+	 *
+	 * @return name
+	 */
+	public String getName() {
+		return m_name;
+	}
+
+	/**
+	 * Opens a new stream to read the DXL
+	 *
+	 * @return stream
+	 * @throws IOException in case of I/O errors
+	 */
+	public abstract InputStream openStream() throws IOException;
+
+	@Override
+	public String toString() {
+		return "DXLImportSource [name="+m_name+"]";
+	}
+
+	/**
+	 * Creates a source for a DXL file
+	 *
+	 * @param file file
+	 * @return source
+	 */
+	public static DXLImportSource fromFile(final File file) {
+		return new DXLImportSource(file.getAbsolutePath()) {
+
+			@Override
+			public InputStream openStream() throws IOException {
+				return new FileInputStream(file);
+			}
+		};
+	}
+
+	/**
+	 * Creates a source for DXL data in memory
+	 *
+	 * @param name name of the source
+	 * @param dxl DXL data
+	 * @return source
+	 */
+	public static DXLImportSource fromBytes(String name, final byte[] dxl) {
+		return new DXLImportSource(name) {
+
+			@Override
+			public InputStream openStream() throws IOException {
+				return new ByteArrayInputStream(dxl);
+			}
+		};
+	}
+
+	/**
+	 * Creates a source for a DXL string
+	 *
+	 * @param name name of the source
+	 * @param dxl DXL string
+	 * @return source
+	 */
+	public static DXLImportSource fromString(String name, String dxl) {
+		return fromBytes(name, dxl.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,649 @@
+package com.mindoo.domino.jna.dxl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.dxl.DXLExporter.DXLExportCharset;
+import com.mindoo.domino.jna.dxl.DXLExporter.DXLValidationStyle;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
+
+/**
+ * DXL export that splits the notes of a database into chunks and exports the chunks
+ * in parallel, each on its own thread with its own {@link DXLExporter}, database handle and
+ * {@link NotesGC} context.<br>
+ * <br>
+ * Notes are exported one by one and embedded into a DXL &lt;database&gt; envelope
+ * that we produce once per export. This way a note that cannot be exported (e.g. because
+ * it has been deleted in the meantime) is skipped without breaking the XML, and
+ * we can compute a hash of each note's DXL for change detection
+ * (see {@link INoteExportListener}).<br>
+ * <br>
+ * The result can either be written as one DXL file per chunk
+ * ({@link #exportToDirectory(NotesIDTable, File, String)}) or as a single DXL document
+ * ({@link #export(NotesIDTable, OutputStream)}), where chunks are buffered in temporary
+ * files and merged in the order of the note ids.
+ *
+ * @author Karsten Lehmann
+ */
+public class ParallelDXLExporter {
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	private static final String DATABASE_END_TAG = "</database>";
+
+	private String m_server;
+	private String m_filePath;
+	private String m_asUserCanonical;
+	private int m_chunkSize = DEFAULT_CHUNK_SIZE;
+	private int m_numThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+	private IDXLExporterConfigurer m_configurer;
+	private INoteExportListener m_listener;
+	private String m_hashAlgorithm = "SHA-256";
+	private File m_tempDir;
+
+	/**
+	 * Creates a new exporter for the same database and user context as the specified database
+	 *
+	 * @param db database
+	 */
+	public ParallelDXLExporter(NotesDatabase db) {
+		this(db.getServer(), db.getRelativeFilePath(), db.getContextUser());
+	}
+
+	/**
+	 * Creates a new exporter
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param asUserCanonical user context to open the database or null/empty string to open as ID owner
+	 */
+	public ParallelDXLExporter(String server, String filePath, String asUserCanonical) {
+		m_server = server;
+		m_filePath = filePath;
+		m_asUserCanonical = asUserCanonical;
+	}
+
+	/**
+	 * Callback to apply export settings to the {@link DXLExporter} instances
+	 * created by the worker threads
+	 */
+	public static interface IDXLExporterConfigurer {
+
+		/**
+		 * Method is called for each new exporter. The charset, XML declaration, doctype and
+		 * root attribute settings get overwritten afterwards, because the exported notes
+		 * are embedded into a shared envelope.
+		 *
+		 * @param exporter exporter
+		 */
+		public void configure(DXLExporter exporter);
+
+	}
+
+	/**
+	 * Listener that gets notified about exported notes. Methods are called from the worker
+	 * threads, so implementations need to be thread-safe.
+	 */
+	public static interface INoteExportListener {
+
+		/**
+		 * Method is called when a note has been exported
+		 *
+		 * @param noteId note id
+		 * @param dxlHash hash of the note's DXL (UTF-8), see {@link ParallelDXLExporter#setHashAlgorithm(String)}
+		 * @param dxlSize size of the note's DXL in bytes
+		 */
+		public void noteExported(int noteId, byte[] dxlHash, long dxlSize);
+
+		/**
+		 * Method is called when a note could not be exported. The export continues
+		 * with the next note.
+		 *
+		 * @param noteId note id
+		 * @param t error or null if the note does not exist anymore
+		 */
+		public void noteExportFailed(int noteId, Throwable t);
+
+	}
+
+	/**
+	 * Sets the number of notes exported per chunk
+	 *
+	 * @param chunkSize chunk size, {@link #DEFAULT_CHUNK_SIZE} by default
+	 * @return this exporter
+	 */
+	public ParallelDXLExporter setChunkSize(int chunkSize) {
+		if (chunkSize<1) {
+			throw new IllegalArgumentException("Chunk size must be greater than 0");
+		}
+		m_chunkSize = chunkSize;
+		return this;
+	}
+
+	public int getChunkSize() {
+		return m_chunkSize;
+	}
+
+	/**
+	 * Sets the number of threads used for the export
+	 *
+	 * @param numThreads number of threads, number of processors by default
+	 * @return this exporter
+	 */
+	public ParallelDXLExporter setNumThreads(int numThreads) {
+		if (numThreads<1) {
+			throw new IllegalArgumentException("Number of threads must be greater than 0");
+		}
+		m_numThreads = numThreads;
+		return this;
+	}
+
+	public int getNumThreads() {
+		return m_numThreads;
+	}
+
+	/**
+	 * Sets a callback to apply export settings like {@link DXLExporter#setOmitItemNames(List)}
+	 *
+	 * @param configurer configurer or null
+	 * @return this exporter
+	 */
+	public ParallelDXLExporter setExporterConfigurer(IDXLExporterConfigurer configurer) {
+		m_configurer = configurer;
+		return this;
+	}
+
+	/**
+	 * Sets a listener to receive the DXL hashes of the exported notes
+	 *
+	 * @param listener listener or null
+	 * @return this exporter
+	 */
+	public ParallelDXLExporter setNoteExportListener(INoteExportListener listener) {
+		m_listener = listener;
+		return this;
+	}
+
+	/**
+	 * Sets the {@link MessageDigest} algorithm to hash the DXL of each note
+	 *
+	 * @param algorithm algorithm, "SHA-256" by default
+	 * @return this exporter
+	 */
+	public ParallelDXLExporter setHashAlgorithm(String algorithm) {
+		try {
+			MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("Unsupported hash algorithm: "+algorithm, e);
+		}
+		m_hashAlgorithm = algorithm;
+		return this;
+	}
+
+	public String getHashAlgorithm() {
+		return m_hashAlgorithm;
+	}
+
+	/**
+	 * Sets the directory for the temporary chunk files used by {@link #export(NotesIDTable, OutputStream)}
+	 *
+	 * @param tempDir directory or null for the default temp directory
+	 * @return this exporter
+	 */
+	public ParallelDXLExporter setTempDirectory(File tempDir) {
+		m_tempDir = tempDir;
+		return this;
+	}
+
+	/**
+	 * Exports the notes as one DXL file per chunk. Each file is a complete DXL document.
+	 *
+	 * @param idTable ids of notes to export
+	 * @param directory target directory, will be created if it does not exist
+	 * @param filePrefix prefix for the filenames, followed by the chunk number and ".xml"
+	 * @return export result
+	 * @throws IOException in case of I/O errors
+	 */
+	public ExportResult exportToDirectory(NotesIDTable idTable, File directory, final String filePrefix) throws IOException {
+		long t0 = System.currentTimeMillis();
+		List<int[]> chunks = createChunks(idTable);
+		final DXLEnvelope envelope = createEnvelope();
+		final ExportResult result = new ExportResult();
+
+		if (!directory.exists()) {
+			Files.createDirectories(directory.toPath());
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(m_numThreads, new NotesThreadFactory("ParallelDXLExporter"));
+		try {
+			List<Future<File>> futures = new ArrayList<>(chunks.size());
+			for (int i=0; i<chunks.size(); i++) {
+				final int[] currChunk = chunks.get(i);
+				final File currFile = new File(directory, String.format("%s-%05d.xml", filePrefix, i+1));
+
+				futures.add(executor.submit(() -> {
+					try (OutputStream out = new BufferedOutputStream(new FileOutputStream(currFile))) {
+						out.write(envelope.m_head);
+						exportChunk(currChunk, out, result);
+						out.write(envelope.m_tail);
+					}
+					return currFile;
+				}));
+			}
+
+			for (Future<File> currFuture : futures) {
+				File currFile = waitForChunk(currFuture, futures);
+				result.m_files.add(currFile);
+				result.m_bytesWritten.addAndGet(currFile.length());
+			}
+		}
+		finally {
+			shutdownAndWait(executor);
+		}
+		result.m_durationMillis = System.currentTimeMillis() - t0;
+		return result;
+	}
+
+	/**
+	 * Exports the notes as a single DXL document. Chunks are exported in parallel to temporary
+	 * files and appended to the output stream in the order of the note ids. The number of
+	 * temporary files is limited to twice the number of threads.
+	 *
+	 * @param idTable ids of notes to export
+	 * @param out output stream for the DXL (UTF-8)
+	 * @return export result
+	 * @throws IOException in case of I/O errors
+	 */
+	public ExportResult export(NotesIDTable idTable, OutputStream out) throws IOException {
+		long t0 = System.currentTimeMillis();
+		List<int[]> chunks = createChunks(idTable);
+		DXLEnvelope envelope = createEnvelope();
+		final ExportResult result = new ExportResult();
+
+		ExecutorService executor = Executors.newFixedThreadPool(m_numThreads, new NotesThreadFactory("ParallelDXLExporter"));
+		Deque<Future<File>> pendingChunks = new ArrayDeque<>();
+		//temp files that have not been appended to the output yet
+		final Set<File> chunkFiles = ConcurrentHashMap.newKeySet();
+		try {
+			out.write(envelope.m_head);
+			result.m_bytesWritten.addAndGet(envelope.m_head.length);
+
+			int maxPendingChunks = 2 * m_numThreads;
+			int nextChunkIdx = 0;
+
+			while (nextChunkIdx < chunks.size() || !pendingChunks.isEmpty()) {
+				while (nextChunkIdx < chunks.size() && pendingChunks.size() < maxPendingChunks) {
+					final int[] currChunk = chunks.get(nextChunkIdx++);
+
+					pendingChunks.add(executor.submit(() -> {
+						File tmpFile = File.createTempFile("dxlchunk", ".xml", m_tempDir);
+						chunkFiles.add(tmpFile);
+						try (OutputStream tmpOut = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+							exportChunk(currChunk, tmpOut, result);
+						}
+						catch (IOException | RuntimeException e) {
+							tmpFile.delete();
+							throw e;
+						}
+						return tmpFile;
+					}));
+				}
+
+				File chunkFile = waitForChunk(pendingChunks.removeFirst(), pendingChunks);
+				try {
+					result.m_bytesWritten.addAndGet(Files.copy(chunkFile.toPath(), out));
+				}
+				finally {
+					chunkFile.delete();
+					chunkFiles.remove(chunkFile);
+				}
+			}
+
+			out.write(envelope.m_tail);
+			result.m_bytesWritten.addAndGet(envelope.m_tail.length);
+			out.flush();
+		}
+		finally {
+			//running chunk exports may still be writing their files, even if cancelled
+			shutdownAndWait(executor);
+
+			//remove the files of chunks we did not write because of an error
+			for (File currFile : chunkFiles) {
+				currFile.delete();
+			}
+		}
+		result.m_durationMillis = System.currentTimeMillis() - t0;
+		return result;
+	}
+
+	/**
+	 * Interrupts the running chunk exports and waits until they have stopped
+	 *
+	 * @param executor executor
+	 */
+	private void shutdownAndWait(ExecutorService executor) {
+		executor.shutdownNow();
+
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+						break;
+					}
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private List<int[]> createChunks(NotesIDTable idTable) {
+		int[] noteIds = idTable.toArray();
+		List<int[]> chunks = new ArrayList<>((noteIds.length + m_chunkSize - 1) / m_chunkSize);
+		for (int i=0; i<noteIds.length; i+=m_chunkSize) {
+			chunks.add(Arrays.copyOfRange(noteIds, i, Math.min(noteIds.length, i+m_chunkSize)));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Waits for a chunk export to finish and cancels the other chunks on error
+	 *
+	 * @param future chunk future
+	 * @param otherFutures other chunks
+	 * @return file of chunk
+	 * @throws IOException in case of I/O errors during the chunk export
+	 */
+	private File waitForChunk(Future<File> future, Iterable<Future<File>> otherFutures) throws IOException {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for DXL export of "+m_server+"!!"+m_filePath, e);
+		}
+		catch (ExecutionException e) {
+			for (Future<File> currOtherFuture : otherFutures) {
+				currOtherFuture.cancel(true);
+			}
+
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			else if (cause instanceof NotesError) {
+				throw (NotesError) cause;
+			}
+			throw new NotesError(0, "Error during DXL export of "+m_server+"!!"+m_filePath, cause);
+		}
+	}
+
+	private NotesDatabase openDatabase() {
+		return new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+	}
+
+	/**
+	 * Exports an empty id table to get the &lt;database&gt; envelope with the
+	 * database info
+	 *
+	 * @return envelope
+	 * @throws IOException in case of I/O errors
+	 */
+	private DXLEnvelope createEnvelope() throws IOException {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+
+		NotesDatabase db = openDatabase();
+		DXLExporter exporter = new DXLExporter();
+		NotesIDTable emptyTable = new NotesIDTable();
+		try {
+			if (m_configurer!=null) {
+				m_configurer.configure(exporter);
+			}
+			exporter.setExportCharset(DXLExportCharset.UTF8);
+			exporter.exportIDTable(db, emptyTable, bOut);
+		}
+		finally {
+			emptyTable.recycle();
+			exporter.free();
+			db.recycle();
+		}
+
+		String dxl = new String(bOut.toByteArray(), StandardCharsets.UTF_8);
+
+		int endTagIdx = dxl.lastIndexOf(DATABASE_END_TAG);
+		if (endTagIdx!=-1) {
+			return new DXLEnvelope(dxl.substring(0, endTagIdx), dxl.substring(endTagIdx));
+		}
+
+		//no content, so the database element might be written as empty element
+		int startTagIdx = dxl.indexOf("<database");
+		int emptyTagEndIdx = startTagIdx==-1 ? -1 : dxl.indexOf("/>", startTagIdx);
+		if (emptyTagEndIdx==-1) {
+			throw new NotesError(0, "Unable to find the <database> element in the DXL export of "+m_server+"!!"+m_filePath);
+		}
+		return new DXLEnvelope(dxl.substring(0, emptyTagEndIdx) + ">\n",
+				DATABASE_END_TAG + dxl.substring(emptyTagEndIdx+2));
+	}
+
+	/**
+	 * Exports the notes of a chunk. Runs on a worker thread.
+	 *
+	 * @param noteIds note ids
+	 * @param out output stream to append the DXL of the notes
+	 * @param result result to update
+	 * @throws Exception in case of errors
+	 */
+	private void exportChunk(final int[] noteIds, final OutputStream out, final ExportResult result) throws Exception {
+		final MessageDigest digest = MessageDigest.getInstance(m_hashAlgorithm);
+
+		NotesGC.runWithAutoGC(() -> {
+			NotesDatabase db = openDatabase();
+
+			DXLExporter exporter = new DXLExporter();
+			try {
+				if (m_configurer!=null) {
+					m_configurer.configure(exporter);
+				}
+				//notes are embedded into the shared envelope
+				exporter.setExportCharset(DXLExportCharset.UTF8);
+				exporter.setValidationStyle(DXLValidationStyle.NONE);
+				exporter.setOutputXmlDecl(false);
+				exporter.setOutputDoctype(false);
+				exporter.setOutputRootAttrs(false);
+
+				exportNotes(db, exporter, noteIds, out, result, digest);
+			}
+			finally {
+				exporter.free();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Exports the notes of a chunk with a configured exporter
+	 *
+	 * @param db database
+	 * @param exporter exporter
+	 * @param noteIds note ids
+	 * @param out output stream to append the DXL of the notes
+	 * @param result result to update
+	 * @param digest digest to compute the note hashes
+	 * @throws Exception in case of errors
+	 */
+	private void exportNotes(NotesDatabase db, DXLExporter exporter, int[] noteIds, OutputStream out,
+			ExportResult result, MessageDigest digest) throws Exception {
+		NoteBuffer noteBuf = new NoteBuffer();
+
+		for (int currNoteId : noteIds) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedException();
+			}
+
+			noteBuf.reset();
+			NotesNote note = null;
+			try {
+				note = db.openNoteById(currNoteId);
+				if (note==null) {
+					//deleted in the meantime
+					noteExportFailed(result, currNoteId, null);
+					continue;
+				}
+				exporter.exportNote(note, noteBuf);
+			}
+			catch (NotesError e) {
+				noteExportFailed(result, currNoteId, e);
+				continue;
+			}
+			finally {
+				if (note!=null) {
+					note.recycle();
+				}
+			}
+
+			noteBuf.writeTo(out);
+			result.m_exportedNotes.incrementAndGet();
+
+			if (m_listener!=null) {
+				digest.reset();
+				noteBuf.updateDigest(digest);
+				m_listener.noteExported(currNoteId, digest.digest(), noteBuf.size());
+			}
+		}
+	}
+
+	private void noteExportFailed(ExportResult result, int noteId, Throwable t) {
+		synchronized (result.m_failedNoteIds) {
+			result.m_failedNoteIds.add(noteId);
+		}
+		if (m_listener!=null) {
+			m_listener.noteExportFailed(noteId, t);
+		}
+	}
+
+	/**
+	 * Reusable buffer for the DXL of one note
+	 */
+	private static class NoteBuffer extends ByteArrayOutputStream {
+
+		public NoteBuffer() {
+			super(64 * 1024);
+		}
+
+		public void updateDigest(MessageDigest digest) {
+			digest.update(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Start and end of the DXL document that contains the exported notes
+	 */
+	private static class DXLEnvelope {
+		private byte[] m_head;
+		private byte[] m_tail;
+
+		public DXLEnvelope(String head, String tail) {
+			m_head = head.getBytes(StandardCharsets.UTF_8);
+			m_tail = tail.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Result of a parallel DXL export
+	 */
+	public static class ExportResult {
+		private AtomicInteger m_exportedNotes = new AtomicInteger();
+		private List<Integer> m_failedNoteIds = new ArrayList<>();
+		private List<File> m_files = new ArrayList<>();
+		private AtomicLong m_bytesWritten = new AtomicLong();
+		private long m_durationMillis;
+
+		/**
+		 * Returns the number of exported notes
+		 *
+		 * @return count
+		 */
+		public int getExportedNoteCount() {
+			return m_exportedNotes.get();
+		}
+
+		/**
+		 * Returns the ids of notes that could not be exported
+		 *
+		 * @return note ids
+		 */
+		public List<Integer> getFailedNoteIds() {
+			synchronized (m_failedNoteIds) {
+				List<Integer> sortedIds = new ArrayList<>(m_failedNoteIds);
+				Collections.sort(sortedIds);
+				return sortedIds;
+			}
+		}
+
+		/**
+		 * Returns the files written by {@link ParallelDXLExporter#exportToDirectory(NotesIDTable, File, String)}
+		 *
+		 * @return files in chunk order
+		 */
+		public List<File> getFiles() {
+			return Collections.unmodifiableList(m_files);
+		}
+
+		/**
+		 * Returns the number of DXL bytes written
+		 *
+		 * @return bytes
+		 */
+		public long getBytesWritten() {
+			return m_bytesWritten.get();
+		}
+
+		/**
+		 * Returns the duration of the export
+		 *
+		 * @return duration in milliseconds
+		 */
+		public long getDurationMillis() {
+			return m_durationMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "ExportResult [exported="+getExportedNoteCount()+", failed="+m_failedNoteIds.size()+
+					", bytes="+getBytesWritten()+", duration="+m_durationMillis+"ms]";
+		}
+	}
+}
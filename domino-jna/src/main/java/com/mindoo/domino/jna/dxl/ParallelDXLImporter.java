@@ -0,0 +1,622 @@
+package com.mindoo.domino.jna.dxl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.transactions.RollbackException;
+import com.mindoo.domino.jna.transactions.Transactions;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Bulk DXL import that processes many DXL fragments or files in a pipeline:<br>
+ * <ol>
+ * <li>worker threads check that the DXL is well-formed XML, so broken input is reported
+ * before anything gets written to the database</li>
+ * <li>several import threads, each with its own database handle, {@link DXLImporter}
+ * and {@link NotesGC} context, import the validated sources</li>
+ * </ol>
+ * For local databases, the sources are imported in groups within one
+ * {@link Transactions#runInDbTransaction(NotesDatabase, com.mindoo.domino.jna.transactions.ITransactionCallable)}
+ * call to reduce the number of commits. Each source runs in a nested transaction,
+ * so a failing source is rolled back and reported without aborting the rest of its group.
+ * Since transactions lock the database, import threads of a local database take turns writing;
+ * parsing and reading the input still runs in parallel.<br>
+ * <br>
+ * Remote databases are imported without transactions, one source at a time per import thread.
+ *
+ * @author Karsten Lehmann
+ */
+public class ParallelDXLImporter {
+	public static final int DEFAULT_TRANSACTION_GROUP_SIZE = 50;
+
+	private String m_server;
+	private String m_filePath;
+	private String m_asUserCanonical;
+	private int m_numImportThreads = 2;
+	private int m_numParseThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+	private int m_transactionGroupSize = DEFAULT_TRANSACTION_GROUP_SIZE;
+	private boolean m_useTransactions = true;
+	private boolean m_validateXml = true;
+	private IDXLImporterConfigurer m_configurer;
+	private IDXLImportListener m_listener;
+
+	/**
+	 * Creates a new importer for the same database and user context as the specified database
+	 *
+	 * @param db target database
+	 */
+	public ParallelDXLImporter(NotesDatabase db) {
+		this(db.getServer(), db.getRelativeFilePath(), db.getContextUser());
+	}
+
+	/**
+	 * Creates a new importer
+	 *
+	 * @param server server of target database
+	 * @param filePath filepath of target database
+	 * @param asUserCanonical user context to open the database or null/empty string to open as ID owner
+	 */
+	public ParallelDXLImporter(String server, String filePath, String asUserCanonical) {
+		m_server = server;
+		m_filePath = filePath;
+		m_asUserCanonical = asUserCanonical;
+	}
+
+	/**
+	 * Callback to apply import settings to the {@link DXLImporter} instances
+	 * created by the import threads
+	 */
+	public static interface IDXLImporterConfigurer {
+
+		/**
+		 * Method is called for each new importer
+		 *
+		 * @param importer importer
+		 */
+		public void configure(DXLImporter importer);
+
+	}
+
+	/**
+	 * Listener that gets notified about each processed source. Methods are called from the
+	 * worker threads, so implementations need to be thread-safe.
+	 */
+	public static interface IDXLImportListener {
+
+		/**
+		 * Method is called when a source has been imported or could not be imported
+		 *
+		 * @param result result
+		 */
+		public void sourceProcessed(SourceResult result);
+
+	}
+
+	/**
+	 * Sets the number of threads that import into the database
+	 *
+	 * @param numThreads number of threads, 2 by default
+	 * @return this importer
+	 */
+	public ParallelDXLImporter setNumImportThreads(int numThreads) {
+		if (numThreads<1) {
+			throw new IllegalArgumentException("Number of threads must be greater than 0");
+		}
+		m_numImportThreads = numThreads;
+		return this;
+	}
+
+	public int getNumImportThreads() {
+		return m_numImportThreads;
+	}
+
+	/**
+	 * Sets the number of threads that validate the input
+	 *
+	 * @param numThreads number of threads, number of processors by default
+	 * @return this importer
+	 */
+	public ParallelDXLImporter setNumParseThreads(int numThreads) {
+		if (numThreads<1) {
+			throw new IllegalArgumentException("Number of threads must be greater than 0");
+		}
+		m_numParseThreads = numThreads;
+		return this;
+	}
+
+	public int getNumParseThreads() {
+		return m_numParseThreads;
+	}
+
+	/**
+	 * Sets the maximum number of sources imported in one transaction
+	 *
+	 * @param groupSize group size, {@link #DEFAULT_TRANSACTION_GROUP_SIZE} by default
+	 * @return this importer
+	 */
+	public ParallelDXLImporter setTransactionGroupSize(int groupSize) {
+		if (groupSize<1) {
+			throw new IllegalArgumentException("Group size must be greater than 0");
+		}
+		m_transactionGroupSize = groupSize;
+		return this;
+	}
+
+	public int getTransactionGroupSize() {
+		return m_transactionGroupSize;
+	}
+
+	/**
+	 * Sets whether imports into local databases should be grouped in transactions
+	 *
+	 * @param b true to use transactions if supported (default)
+	 * @return this importer
+	 */
+	public ParallelDXLImporter setUseTransactions(boolean b) {
+		m_useTransactions = b;
+		return this;
+	}
+
+	public boolean isUseTransactions() {
+		return m_useTransactions;
+	}
+
+	/**
+	 * Sets whether the sources should be checked for well-formed XML before the import
+	 *
+	 * @param b true to validate (default)
+	 * @return this importer
+	 */
+	public ParallelDXLImporter setValidateXml(boolean b) {
+		m_validateXml = b;
+		return this;
+	}
+
+	public boolean isValidateXml() {
+		return m_validateXml;
+	}
+
+	/**
+	 * Sets a callback to apply import settings like {@link DXLImporter#setDocumentsImportOption(DXLImporter.DXLImportOption)}
+	 *
+	 * @param configurer configurer or null
+	 * @return this importer
+	 */
+	public ParallelDXLImporter setImporterConfigurer(IDXLImporterConfigurer configurer) {
+		m_configurer = configurer;
+		return this;
+	}
+
+	/**
+	 * Sets a listener that gets notified about each processed source
+	 *
+	 * @param listener listener or null
+	 * @return this importer
+	 */
+	public ParallelDXLImporter setImportListener(IDXLImportListener listener) {
+		m_listener = listener;
+		return this;
+	}
+
+	/**
+	 * Imports the sources. Failing sources are reported in the result and
+	 * do not abort the import of the other sources.
+	 *
+	 * @param sources sources to import
+	 * @return result
+	 */
+	public ImportResult importDxl(List<DXLImportSource> sources) {
+		long t0 = System.currentTimeMillis();
+
+		final SourceResult[] results = new SourceResult[sources.size()];
+		final BlockingQueue<Integer> importQueue = new ArrayBlockingQueue<>(
+				Math.max(1, 2 * m_numImportThreads * m_transactionGroupSize));
+		//set when an import thread fails, so that we do not wait for free space in the queue forever
+		final AtomicBoolean aborted = new AtomicBoolean();
+
+		ExecutorService parseExecutor = Executors.newFixedThreadPool(m_numParseThreads,
+				new NotesThreadFactory("ParallelDXLImporter-parse"));
+		ExecutorService importExecutor = Executors.newFixedThreadPool(m_numImportThreads,
+				new NotesThreadFactory("ParallelDXLImporter-import"));
+		try {
+			List<Future<Object>> importFutures = new ArrayList<>(m_numImportThreads);
+			for (int i=0; i<m_numImportThreads; i++) {
+				importFutures.add(importExecutor.submit(() -> {
+					try {
+						return NotesGC.runWithAutoGC(() -> {
+							runImportWorker(sources, importQueue, results);
+							return null;
+						});
+					}
+					catch (Exception e) {
+						aborted.set(true);
+						throw e;
+					}
+				}));
+			}
+
+			List<Future<?>> parseFutures = new ArrayList<>(sources.size());
+			for (int i=0; i<sources.size(); i++) {
+				final int currIdx = i;
+				parseFutures.add(parseExecutor.submit(() -> {
+					DXLImportSource currSource = sources.get(currIdx);
+					if (m_validateXml) {
+						try {
+							validate(currSource);
+						}
+						catch (Exception e) {
+							sourceProcessed(results, new SourceResult(currSource, currIdx, null, e, null));
+							return null;
+						}
+					}
+					enqueue(importQueue, currIdx, aborted);
+					return null;
+				}));
+			}
+
+			for (Future<?> currFuture : parseFutures) {
+				waitFor(currFuture);
+			}
+			//tell the import workers that we are done
+			for (int i=0; i<m_numImportThreads; i++) {
+				enqueue(importQueue, -1, aborted);
+			}
+			for (Future<Object> currFuture : importFutures) {
+				waitFor(currFuture);
+			}
+		}
+		finally {
+			parseExecutor.shutdownNow();
+			importExecutor.shutdownNow();
+		}
+
+		return new ImportResult(Arrays.asList(results), System.currentTimeMillis() - t0);
+	}
+
+	private void waitFor(Future<?> future) {
+		try {
+			future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for DXL import into "+m_server+"!!"+m_filePath, e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof NotesError) {
+				throw (NotesError) cause;
+			}
+			throw new NotesError(0, "Error during DXL import into "+m_server+"!!"+m_filePath, cause);
+		}
+	}
+
+	/**
+	 * Adds a source index to the import queue, waiting for free space as long as the import
+	 * threads are running
+	 * 
+	 * @param queue queue
+	 * @param value source index or -1 to stop an import thread
+	 * @param aborted flag set when an import thread failed
+	 */
+	private void enqueue(BlockingQueue<Integer> queue, int value, AtomicBoolean aborted) {
+		try {
+			while (!aborted.get()) {
+				if (queue.offer(value, 100, TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for DXL import into "+m_server+"!!"+m_filePath, e);
+		}
+	}
+
+	/**
+	 * Checks if the source contains well-formed XML
+	 *
+	 * @param source source
+	 * @throws Exception if not well-formed or not readable
+	 */
+	private void validate(DXLImportSource source) throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		try {
+			//do not try to load the DTD referenced in the DOCTYPE
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		}
+		catch (SAXException e) {
+			//feature not supported by the parser
+		}
+		SAXParser parser = factory.newSAXParser();
+
+		try (InputStream in = source.openStream()) {
+			parser.parse(new InputSource(in), new DefaultHandler());
+		}
+	}
+
+	/**
+	 * Import loop of one import thread. Runs in a {@link NotesGC} context.
+	 *
+	 * @param sources sources
+	 * @param importQueue queue of validated source indices, -1 to stop
+	 * @param results array to store the results
+	 * @throws Exception in case of errors
+	 */
+	private void runImportWorker(List<DXLImportSource> sources, BlockingQueue<Integer> importQueue,
+			SourceResult[] results) throws Exception {
+		NotesDatabase db = new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+		DXLImporter importer = new DXLImporter();
+		if (m_configurer!=null) {
+			m_configurer.configure(importer);
+		}
+
+		boolean useTransactions = m_useTransactions && !db.isRemote() && Transactions.areTransactionsSupported(db);
+		int groupSize = useTransactions ? m_transactionGroupSize : 1;
+
+		List<Integer> group = new ArrayList<>(groupSize);
+		boolean done = false;
+
+		while (!done) {
+			group.clear();
+
+			int firstIdx = importQueue.take();
+			if (firstIdx==-1) {
+				break;
+			}
+			group.add(firstIdx);
+
+			//add sources that are already validated to the group
+			while (group.size() < groupSize) {
+				Integer nextIdx = importQueue.poll();
+				if (nextIdx==null) {
+					break;
+				}
+				else if (nextIdx.intValue()==-1) {
+					done = true;
+					break;
+				}
+				group.add(nextIdx);
+			}
+
+			if (useTransactions) {
+				importGroupInTransaction(db, importer, sources, group, results);
+			}
+			else {
+				for (Integer currIdx : group) {
+					sourceProcessed(results, importSource(db, importer, sources.get(currIdx), currIdx));
+				}
+			}
+		}
+	}
+
+	private void importGroupInTransaction(NotesDatabase db, final DXLImporter importer, final List<DXLImportSource> sources,
+			final List<Integer> group, SourceResult[] results) {
+		final List<SourceResult> groupResults = new ArrayList<>(group.size());
+
+		try {
+			Transactions.runInDbTransaction(db, (txDb) -> {
+				for (Integer currIdx : group) {
+					final DXLImportSource currSource = sources.get(currIdx);
+
+					try {
+						//nested transaction, so that we can roll back a single source
+						SourceResult currResult = Transactions.runInDbTransaction(txDb, (nestedTxDb) -> {
+							SourceResult nestedResult = importSource(nestedTxDb, importer, currSource, currIdx);
+							if (nestedResult.getError()!=null) {
+								throw new RollbackException(nestedResult.getError());
+							}
+							return nestedResult;
+						});
+						groupResults.add(currResult);
+					}
+					catch (RollbackException e) {
+						Throwable cause = e.getCause()!=null ? e.getCause() : e;
+						groupResults.add(new SourceResult(currSource, currIdx, null, cause, importer.getResultLog()));
+					}
+				}
+				return null;
+			});
+		}
+		catch (RollbackException e) {
+			//commit of the group failed, so none of the sources has been imported
+			Throwable cause = e.getCause()!=null ? e.getCause() : e;
+			groupResults.clear();
+			for (Integer currIdx : group) {
+				groupResults.add(new SourceResult(sources.get(currIdx), currIdx, null, cause, null));
+			}
+		}
+
+		for (SourceResult currResult : groupResults) {
+			sourceProcessed(results, currResult);
+		}
+	}
+
+	private SourceResult importSource(NotesDatabase db, DXLImporter importer, DXLImportSource source, int sourceIdx) {
+		try (InputStream in = source.openStream()) {
+			importer.importDxl(in, db);
+		}
+		catch (Exception e) {
+			return new SourceResult(source, sourceIdx, null, e, importer.getResultLog());
+		}
+
+		int[] importedNoteIds = null;
+		NotesIDTable importedNotes = importer.getImportedNoteList();
+		if (importedNotes!=null) {
+			importedNoteIds = importedNotes.toArray();
+			importedNotes.recycle();
+		}
+		return new SourceResult(source, sourceIdx, importedNoteIds, null, null);
+	}
+
+	private void sourceProcessed(SourceResult[] results, SourceResult result) {
+		results[result.getSourceIndex()] = result;
+		if (m_listener!=null) {
+			m_listener.sourceProcessed(result);
+		}
+	}
+
+	/**
+	 * Import result of a single source
+	 */
+	public static class SourceResult {
+		private DXLImportSource m_source;
+		private int m_sourceIdx;
+		private int[] m_importedNoteIds;
+		private Throwable m_error;
+		private String m_resultLog;
+
+		private SourceResult(DXLImportSource source, int sourceIdx, int[] importedNoteIds, Throwable error, String resultLog) {
+			m_source = source;
+			m_sourceIdx = sourceIdx;
+			m_importedNoteIds = importedNoteIds;
+			m_error = error;
+			m_resultLog = resultLog;
+		}
+
+		public DXLImportSource getSource() {
+			return m_source;
+		}
+
+		/**
+		 * Returns the index of the source in the list passed to {@link ParallelDXLImporter#importDxl(List)}
+		 *
+		 * @return index
+		 */
+		public int getSourceIndex() {
+			return m_sourceIdx;
+		}
+
+		/**
+		 * Returns whether the source has been imported
+		 *
+		 * @return true if imported
+		 */
+		public boolean isSuccess() {
+			return m_error==null;
+		}
+
+		/**
+		 * Returns the ids of the notes created or updated by the import
+		 *
+		 * @return note ids, empty if the import failed
+		 */
+		public int[] getImportedNoteIds() {
+			return m_importedNoteIds==null ? new int[0] : m_importedNoteIds.clone();
+		}
+
+		/**
+		 * Returns the reason why the import failed
+		 *
+		 * @return error or null if imported
+		 */
+		public Throwable getError() {
+			return m_error;
+		}
+
+		/**
+		 * Returns the log of the {@link DXLImporter} if the import failed
+		 *
+		 * @return log or null
+		 */
+		public String getResultLog() {
+			return StringUtil.isEmpty(m_resultLog) ? null : m_resultLog;
+		}
+
+		@Override
+		public String toString() {
+			return "SourceResult [source="+m_source.getName()+", success="+isSuccess()+
+					(m_error!=null ? ", error="+m_error.getMessage() : "")+"]";
+		}
+	}
+
+	/**
+	 * Result of a bulk DXL import
+	 */
+	public static class ImportResult {
+		private List<SourceResult> m_results;
+		private long m_durationMillis;
+
+		private ImportResult(List<SourceResult> results, long durationMillis) {
+			m_results = Collections.unmodifiableList(results);
+			m_durationMillis = durationMillis;
+		}
+
+		/**
+		 * Returns the results for all sources
+		 *
+		 * @return results in the order of the sources
+		 */
+		public List<SourceResult> getResults() {
+			return m_results;
+		}
+
+		/**
+		 * Returns the results of sources that could not be imported
+		 *
+		 * @return results
+		 */
+		public List<SourceResult> getFailures() {
+			List<SourceResult> failures = new ArrayList<>();
+			for (SourceResult currResult : m_results) {
+				if (currResult!=null && !currResult.isSuccess()) {
+					failures.add(currResult);
+				}
+			}
+			return failures;
+		}
+
+		/**
+		 * Returns the number of imported sources
+		 *
+		 * @return count
+		 */
+		public int getSuccessCount() {
+			int count = 0;
+			for (SourceResult currResult : m_results) {
+				if (currResult!=null && currResult.isSuccess()) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Returns the duration of the import
+		 *
+		 * @return duration in milliseconds
+		 */
+		public long getDurationMillis() {
+			return m_durationMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "ImportResult [sources="+m_results.size()+", imported="+getSuccessCount()+
+					", failed="+getFailures().size()+", duration="+m_durationMillis+"ms]";
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.mindoo.domino.jna.html;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+import com.mindoo.domino.jna.errors.NotesError;
+
+/**
+ * {@link IHtmlConversionCache} that persists conversion results as files in a directory,
+ * so they survive application restarts. Files are stored in one subdirectory per
+ * database replica id and named after a hash of the cache key.<br>
+ * <br>
+ * Entries of older note sequence numbers are not deleted automatically, call
+ * {@link #clear(String)} or {@link #clear()} to remove them.
+ * 
+ * @author Karsten Lehmann
+ */
+public class FileHtmlConversionCache implements IHtmlConversionCache {
+	private static final String FILE_SUFFIX = ".htmlcache";
+	
+	private final Path m_baseDir;
+	
+	/**
+	 * Creates a new cache
+	 * 
+	 * @param baseDir base directory, created if it does not exist
+	 */
+	public FileHtmlConversionCache(File baseDir) {
+		m_baseDir = baseDir.toPath();
+	}
+	
+	private Path getFile(HtmlConversionCacheKey key) {
+		return m_baseDir.resolve(key.getReplicaId()).resolve(hash(key.getKeyString()) + FILE_SUFFIX);
+	}
+	
+	private static String hash(String str) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(str.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(hash.length*2);
+			for (byte b : hash) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new NotesError(0, "SHA-256 not available", e);
+		}
+	}
+	
+	@Override
+	public HtmlConversionCacheEntry get(HtmlConversionCacheKey key) {
+		Path file = getFile(key);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+			DataInputStream dataIn = new DataInputStream(in);
+			//compare the full key in case of hash collisions
+			String storedKey = dataIn.readUTF();
+			if (!key.getKeyString().equals(storedKey)) {
+				return null;
+			}
+			return HtmlConversionCacheEntry.readFrom(dataIn);
+		}
+		catch (IOException e) {
+			//treat unreadable files as cache miss, they get overwritten on the next put
+			return null;
+		}
+	}
+
+	@Override
+	public void put(HtmlConversionCacheKey key, HtmlConversionCacheEntry entry) {
+		Path file = getFile(key);
+		Path tmpFile = null;
+		try {
+			Files.createDirectories(file.getParent());
+			
+			//write to a temp file first so that concurrent readers never see partial data
+			tmpFile = Files.createTempFile(file.getParent(), "tmp", FILE_SUFFIX);
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpFile))) {
+				DataOutputStream dataOut = new DataOutputStream(out);
+				dataOut.writeUTF(key.getKeyString());
+				entry.writeTo(dataOut);
+			}
+			
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			tmpFile = null;
+		}
+		catch (IOException e) {
+			throw new NotesError(0, "Error writing HTML cache file "+file, e);
+		}
+		finally {
+			if (tmpFile!=null) {
+				try {
+					Files.deleteIfExists(tmpFile);
+				} catch (IOException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries of one database
+	 * 
+	 * @param replicaId replica id of the database
+	 */
+	public void clear(String replicaId) {
+		deleteCacheFiles(m_baseDir.resolve(replicaId.toUpperCase(Locale.ENGLISH)));
+	}
+	
+	@Override
+	public void clear() {
+		if (!Files.isDirectory(m_baseDir)) {
+			return;
+		}
+		try (DirectoryStream<Path> dirs = Files.newDirectoryStream(m_baseDir)) {
+			for (Path currDir : dirs) {
+				deleteCacheFiles(currDir);
+			}
+		}
+		catch (IOException e) {
+			throw new NotesError(0, "Error clearing HTML cache directory "+m_baseDir, e);
+		}
+	}
+	
+	private void deleteCacheFiles(Path dir) {
+		if (!Files.isDirectory(dir)) {
+			return;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*"+FILE_SUFFIX)) {
+			for (Path currFile : files) {
+				Files.deleteIfExists(currFile);
+			}
+		}
+		catch (IOException e) {
+			throw new NotesError(0, "Error clearing HTML cache directory "+dir, e);
+		}
+	}
+}
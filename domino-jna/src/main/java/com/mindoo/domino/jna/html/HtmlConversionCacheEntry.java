@@ -0,0 +1,277 @@
+package com.mindoo.domino.jna.html;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rendered HTML code and references of a richtext-HTML conversion stored in
+ * an {@link IHtmlConversionCache}
+ * 
+ * @author Karsten Lehmann
+ */
+public class HtmlConversionCacheEntry {
+	//version of the serialization format
+	private static final int FORMAT_VERSION = 1;
+	
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_STRING = 1;
+	private static final byte VALUE_INTEGER = 2;
+	
+	private final byte[] m_htmlUTF8;
+	private final List<IHtmlApiReference> m_references;
+	
+	/**
+	 * Creates a new entry
+	 * 
+	 * @param htmlUTF8 HTML code in UTF-8 format
+	 * @param references references of the HTML code
+	 */
+	public HtmlConversionCacheEntry(byte[] htmlUTF8, List<IHtmlApiReference> references) {
+		m_htmlUTF8 = htmlUTF8;
+		m_references = Collections.unmodifiableList(new ArrayList<>(references));
+	}
+	
+	/**
+	 * Returns the HTML code
+	 * 
+	 * @return HTML code in UTF-8 format, do not modify the returned array
+	 */
+	public byte[] getHtmlUTF8() {
+		return m_htmlUTF8;
+	}
+	
+	/**
+	 * Returns the HTML code as string
+	 * 
+	 * @return HTML code
+	 */
+	public String getHtml() {
+		return new String(m_htmlUTF8, StandardCharsets.UTF_8);
+	}
+	
+	public List<IHtmlApiReference> getReferences() {
+		return m_references;
+	}
+	
+	/**
+	 * Returns the approximate memory size of this entry
+	 * 
+	 * @return size in bytes
+	 */
+	public int getSize() {
+		int size = m_htmlUTF8.length;
+		for (IHtmlApiReference currRef : m_references) {
+			String refText = currRef.getReferenceText();
+			size += 64 + (refText==null ? 0 : refText.length()*2);
+		}
+		return size;
+	}
+	
+	/**
+	 * Writes the entry in a binary format that can be read with {@link #readFrom(InputStream)}
+	 * 
+	 * @param out stream
+	 * @throws IOException in case of I/O errors
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(FORMAT_VERSION);
+		
+		dataOut.writeInt(m_references.size());
+		for (IHtmlApiReference currRef : m_references) {
+			writeEnumName(dataOut, currRef.getType());
+			writeString(dataOut, currRef.getReferenceText());
+			writeString(dataOut, currRef.getFragment());
+			writeEnumName(dataOut, currRef.getCommandId());
+			
+			List<IHtmlApiUrlTargetComponent<?>> targets = currRef.getTargets();
+			dataOut.writeInt(targets==null ? 0 : targets.size());
+			if (targets!=null) {
+				for (IHtmlApiUrlTargetComponent<?> currTarget : targets) {
+					writeEnumName(dataOut, currTarget.getType());
+					Object val = currTarget.getValue();
+					if (val instanceof String) {
+						dataOut.writeByte(VALUE_STRING);
+						writeString(dataOut, (String) val);
+					}
+					else if (val instanceof Integer) {
+						dataOut.writeByte(VALUE_INTEGER);
+						dataOut.writeInt((Integer) val);
+					}
+					else {
+						dataOut.writeByte(VALUE_NULL);
+					}
+				}
+			}
+		}
+		
+		dataOut.writeInt(m_htmlUTF8.length);
+		dataOut.write(m_htmlUTF8);
+		dataOut.flush();
+	}
+	
+	/**
+	 * Reads an entry written with {@link #writeTo(OutputStream)}
+	 * 
+	 * @param in stream
+	 * @return entry
+	 * @throws IOException in case of I/O errors or an unsupported format
+	 */
+	public static HtmlConversionCacheEntry readFrom(InputStream in) throws IOException {
+		DataInputStream dataIn = new DataInputStream(in);
+		int version = dataIn.readInt();
+		if (version!=FORMAT_VERSION) {
+			throw new IOException("Unsupported format version: "+version);
+		}
+		
+		int refCount = dataIn.readInt();
+		List<IHtmlApiReference> references = new ArrayList<>(refCount);
+		for (int i=0; i<refCount; i++) {
+			String refTypeName = readString(dataIn);
+			String refText = readString(dataIn);
+			String fragment = readString(dataIn);
+			String cmdIdName = readString(dataIn);
+			
+			int targetCount = dataIn.readInt();
+			List<IHtmlApiUrlTargetComponent<?>> targets = new ArrayList<>(targetCount);
+			for (int t=0; t<targetCount; t++) {
+				String targetTypeName = readString(dataIn);
+				TargetType targetType = targetTypeName==null ? null : TargetType.valueOf(targetTypeName);
+				
+				byte valueType = dataIn.readByte();
+				if (valueType==VALUE_STRING) {
+					targets.add(new CachedTargetComponent<>(targetType, String.class, readString(dataIn)));
+				}
+				else if (valueType==VALUE_INTEGER) {
+					targets.add(new CachedTargetComponent<>(targetType, Integer.class, dataIn.readInt()));
+				}
+				else {
+					targets.add(new CachedTargetComponent<>(targetType, Object.class, null));
+				}
+			}
+			
+			references.add(new CachedReference(refTypeName==null ? null : ReferenceType.valueOf(refTypeName),
+					refText, fragment, cmdIdName==null ? null : CommandId.valueOf(cmdIdName), targets));
+		}
+		
+		int htmlLen = dataIn.readInt();
+		byte[] htmlUTF8 = new byte[htmlLen];
+		dataIn.readFully(htmlUTF8);
+		
+		return new HtmlConversionCacheEntry(htmlUTF8, references);
+	}
+	
+	private static void writeEnumName(DataOutputStream dataOut, Enum<?> val) throws IOException {
+		writeString(dataOut, val==null ? null : val.name());
+	}
+	
+	private static void writeString(DataOutputStream dataOut, String str) throws IOException {
+		if (str==null) {
+			dataOut.writeInt(-1);
+		}
+		else {
+			byte[] strData = str.getBytes(StandardCharsets.UTF_8);
+			dataOut.writeInt(strData.length);
+			dataOut.write(strData);
+		}
+	}
+	
+	private static String readString(DataInputStream dataIn) throws IOException {
+		int len = dataIn.readInt();
+		if (len==-1) {
+			return null;
+		}
+		byte[] strData = new byte[len];
+		dataIn.readFully(strData);
+		return new String(strData, StandardCharsets.UTF_8);
+	}
+	
+	private static class CachedReference implements IHtmlApiReference {
+		private ReferenceType m_type;
+		private String m_refText;
+		private String m_fragment;
+		private CommandId m_commandId;
+		private List<IHtmlApiUrlTargetComponent<?>> m_targets;
+		private Map<TargetType, IHtmlApiUrlTargetComponent<?>> m_targetByType;
+		
+		private CachedReference(ReferenceType type, String refText, String fragment, CommandId commandId,
+				List<IHtmlApiUrlTargetComponent<?>> targets) {
+			m_type = type;
+			m_refText = refText;
+			m_fragment = fragment;
+			m_commandId = commandId;
+			m_targets = targets;
+			
+			m_targetByType = new HashMap<>();
+			for (IHtmlApiUrlTargetComponent<?> currTarget : m_targets) {
+				m_targetByType.put(currTarget.getType(), currTarget);
+			}
+		}
+		
+		@Override
+		public ReferenceType getType() {
+			return m_type;
+		}
+
+		@Override
+		public String getReferenceText() {
+			return m_refText;
+		}
+
+		@Override
+		public String getFragment() {
+			return m_fragment;
+		}
+
+		@Override
+		public CommandId getCommandId() {
+			return m_commandId;
+		}
+
+		@Override
+		public List<IHtmlApiUrlTargetComponent<?>> getTargets() {
+			return m_targets;
+		}
+
+		@Override
+		public IHtmlApiUrlTargetComponent<?> getTargetByType(TargetType type) {
+			return m_targetByType.get(type);
+		}
+	}
+	
+	private static class CachedTargetComponent<T> implements IHtmlApiUrlTargetComponent<T> {
+		private TargetType m_type;
+		private Class<T> m_valueClazz;
+		private T m_value;
+		
+		private CachedTargetComponent(TargetType type, Class<T> valueClazz, T value) {
+			m_type = type;
+			m_valueClazz = valueClazz;
+			m_value = value;
+		}
+		
+		@Override
+		public TargetType getType() {
+			return m_type;
+		}
+
+		@Override
+		public Class<T> getValueClass() {
+			return m_valueClazz;
+		}
+
+		@Override
+		public T getValue() {
+			return m_value;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.mindoo.domino.jna.html;
+
+import java.util.Locale;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * Key of an {@link IHtmlConversionCache} entry
+ * 
+ * @author Karsten Lehmann
+ */
+public class HtmlConversionCacheKey {
+	private final String m_replicaId;
+	private final String m_unid;
+	private final int m_sequence;
+	private final int[] m_sequenceTimeInnards;
+	private final String m_itemName;
+	private final String m_propsKey;
+	private final String m_keyString;
+	
+	/**
+	 * Creates a new key
+	 * 
+	 * @param replicaId replica id of the database
+	 * @param unid UNID of the note
+	 * @param sequence sequence number of the note
+	 * @param sequenceTime sequence time of the note
+	 * @param itemName converted item or null for the whole note
+	 * @param props conversion properties
+	 */
+	public HtmlConversionCacheKey(String replicaId, String unid, int sequence, NotesTimeDate sequenceTime,
+			String itemName, HtmlConvertProperties props) {
+		m_replicaId = replicaId.toUpperCase(Locale.ENGLISH);
+		m_unid = unid.toUpperCase(Locale.ENGLISH);
+		m_sequence = sequence;
+		m_sequenceTimeInnards = sequenceTime==null ? new int[2] : sequenceTime.getInnards();
+		m_itemName = itemName==null ? "" : itemName.toLowerCase(Locale.ENGLISH);
+		m_propsKey = props.getCacheKey();
+		
+		m_keyString = m_replicaId + "/" + m_unid + "/" + m_sequence + "/" +
+				Integer.toHexString(m_sequenceTimeInnards[0]) + "." + Integer.toHexString(m_sequenceTimeInnards[1]) + "/" +
+				m_itemName + "/" + m_propsKey;
+	}
+	
+	public String getReplicaId() {
+		return m_replicaId;
+	}
+	
+	public String getUNID() {
+		return m_unid;
+	}
+	
+	public int getSequence() {
+		return m_sequence;
+	}
+	
+	/**
+	 * Returns the converted item
+	 * 
+	 * @return item name in lowercase or empty string for the whole note
+	 */
+	public String getItemName() {
+		return m_itemName;
+	}
+	
+	/**
+	 * Returns a string representation of all key parts, e.g. to be used as key of
+	 * an external storage
+	 * 
+	 * @return key string
+	 */
+	public String getKeyString() {
+		return m_keyString;
+	}
+	
+	@Override
+	public int hashCode() {
+		return m_keyString.hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HtmlConversionCacheKey)) {
+			return false;
+		}
+		return m_keyString.equals(((HtmlConversionCacheKey) obj).m_keyString);
+	}
+	
+	@Override
+	public String toString() {
+		return "HtmlConversionCacheKey [" + m_keyString + "]";
+	}
+}
@@ -4,6 +4,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
 
 /**
  * Properties to control the fidality of the richtext-html conversion
@@ -131,6 +133,38 @@ public class HtmlConvertProperties {
 	public Map<String,String> getOptions() {
 		return Collections.unmodifiableMap(this.options);
 	}
+	
+	/**
+	 * Returns a string with all properties in a stable order, used to cache
+	 * conversion results (see {@link IHtmlConversionCache})
+	 * 
+	 * @return cache key
+	 */
+	public String getCacheKey() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("ua=").append(userAgent==null ? "" : userAgent);
+		sb.append(";lh=").append(linkHandling==null ? "" : linkHandling.name());
+		for (Entry<String,String> currEntry : new TreeMap<>(options).entrySet()) {
+			sb.append(';').append(currEntry.getKey()).append('=').append(currEntry.getValue());
+		}
+		return sb.toString();
+	}
+	
+	@Override
+	public int hashCode() {
+		return getCacheKey().hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HtmlConvertProperties)) {
+			return false;
+		}
+		return getCacheKey().equals(((HtmlConvertProperties) obj).getCacheKey());
+	}
 
 	/**
 	 * Indicates how LINKs should be handled.<br>
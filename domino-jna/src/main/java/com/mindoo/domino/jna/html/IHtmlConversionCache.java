@@ -0,0 +1,48 @@
+package com.mindoo.domino.jna.html;
+
+/**
+ * Cache for rendered HTML code and references of richtext-HTML conversions, used by
+ * {@link com.mindoo.domino.jna.NotesNote#convertToHtml(String, HtmlConvertProperties, java.io.OutputStream, int, IHtmlConversionCache)}.<br>
+ * <br>
+ * Entries are keyed by database replica id, UNID, sequence number and sequence time of the note,
+ * so a note that has been modified and saved automatically produces a cache miss.
+ * 
+ * @author Karsten Lehmann
+ */
+public interface IHtmlConversionCache {
+	/** default value for {@link #getMaxEntrySize()} */
+	public static final int DEFAULT_MAX_ENTRY_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Returns a cached conversion result
+	 * 
+	 * @param key cache key
+	 * @return entry or null if not cached
+	 */
+	HtmlConversionCacheEntry get(HtmlConversionCacheKey key);
+	
+	/**
+	 * Adds a conversion result to the cache
+	 * 
+	 * @param key cache key
+	 * @param entry entry
+	 */
+	void put(HtmlConversionCacheKey key, HtmlConversionCacheEntry entry);
+	
+	/**
+	 * Returns the max size of the UTF-8 encoded HTML of a conversion result that gets added
+	 * to the cache. While converting, the HTML is buffered up to this size; larger results
+	 * are only written to the output stream.
+	 * 
+	 * @return size in bytes, default is {@link #DEFAULT_MAX_ENTRY_SIZE}
+	 */
+	default int getMaxEntrySize() {
+		return DEFAULT_MAX_ENTRY_SIZE;
+	}
+	
+	/**
+	 * Removes all entries from the cache
+	 */
+	void clear();
+	
+}
@@ -0,0 +1,37 @@
+package com.mindoo.domino.jna.html;
+
+import java.util.List;
+
+/**
+ * Information about the external references (e.g. links / images) of a richtext-HTML conversion.
+ * Returned directly by the methods that stream the HTML code, e.g.
+ * {@link com.mindoo.domino.jna.NotesNote#convertNoteToHtml(HtmlConvertProperties, java.io.OutputStream)}.
+ * 
+ * @author Karsten Lehmann
+ */
+public interface IHtmlConversionReferences {
+
+	/**
+	 * Method to access all external references located in the HTML code (e.g. links or img tags)
+	 * 
+	 * @return references
+	 */
+	List<IHtmlApiReference> getReferences();
+	
+	/**
+	 * Convenience method that calls {@link #getReferences()} and extracts the relevant
+	 * data for all embedded img tags
+	 * 
+	 * @return embedded images
+	 */
+	List<IHtmlImageRef> getImages();
+
+	/**
+	 * Convenience method that calls {@link #getReferences()} and extracts the relevant
+	 * data for all embedded attachment links
+	 * 
+	 * @return attachment links
+	 */
+	List<IHtmlAttachmentRef> getAttachments();
+	
+}
@@ -1,7 +1,5 @@
 package com.mindoo.domino.jna.html;
 
-import java.util.List;
-
 import com.mindoo.domino.jna.NotesItem;
 import com.mindoo.domino.jna.NotesNote;
 import com.mindoo.domino.jna.mime.MIMEData;
@@ -12,7 +10,7 @@ import com.mindoo.domino.jna.mime.MIMEData;
  * 
  * @author Karsten Lehmann
  */
-public interface IHtmlConversionResult {
+public interface IHtmlConversionResult extends IHtmlConversionReferences {
 
 	/**
 	 * Returns the HTML code of the conversion result
@@ -21,29 +19,6 @@ public interface IHtmlConversionResult {
 	 */
 	String getText();
 	
-	/**
-	 * Method to access all external references located in the HTML code (e.g. links or img tags)
-	 * 
-	 * @return references
-	 */
-	List<IHtmlApiReference> getReferences();
-	
-	/**
-	 * Convenience method that calls {@link #getReferences()} and extracts the relevant
-	 * data for all embedded img tags
-	 * 
-	 * @return embedded images
-	 */
-	List<IHtmlImageRef> getImages();
-
-	/**
-	 * Convenience method that calls {@link #getReferences()} and extracts the relevant
-	 * data for all embedded attachment links
-	 * 
-	 * @return attachment links
-	 */
-	List<IHtmlAttachmentRef> getAttachments();
-	
 	/**
 	 * Converts the HTML conversion result to a {@link MIMEData} object that can be
 	 * written to a new item of type {@link NotesItem#TYPE_MIME_PART} via
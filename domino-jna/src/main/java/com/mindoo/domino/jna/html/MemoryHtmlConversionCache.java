@@ -0,0 +1,60 @@
+package com.mindoo.domino.jna.html;
+
+import com.mindoo.domino.jna.internal.SizeLimitedLRUCache;
+
+/**
+ * {@link IHtmlConversionCache} that keeps the most recently used conversion results in
+ * memory, limited by the total size of the HTML code in bytes.
+ * 
+ * @author Karsten Lehmann
+ */
+public class MemoryHtmlConversionCache implements IHtmlConversionCache {
+	private SizeLimitedLRUCache<HtmlConversionCacheKey, HtmlConversionCacheEntry> m_cache;
+	private int m_maxSizeInBytes;
+	
+	/**
+	 * Creates a new cache
+	 * 
+	 * @param maxSizeInBytes max size of all cached entries
+	 */
+	public MemoryHtmlConversionCache(int maxSizeInBytes) {
+		m_maxSizeInBytes = maxSizeInBytes;
+		m_cache = new SizeLimitedLRUCache<HtmlConversionCacheKey, HtmlConversionCacheEntry>(maxSizeInBytes) {
+
+			@Override
+			protected int computeSize(HtmlConversionCacheKey key, HtmlConversionCacheEntry value) {
+				return key.getKeyString().length()*2 + value.getSize();
+			}
+		};
+	}
+	
+	@Override
+	public HtmlConversionCacheEntry get(HtmlConversionCacheKey key) {
+		return m_cache.get(key);
+	}
+
+	@Override
+	public void put(HtmlConversionCacheKey key, HtmlConversionCacheEntry entry) {
+		m_cache.put(key, entry);
+	}
+
+	@Override
+	public int getMaxEntrySize() {
+		//results larger than the whole cache would be evicted right away
+		return Math.min(DEFAULT_MAX_ENTRY_SIZE, m_maxSizeInBytes);
+	}
+
+	@Override
+	public void clear() {
+		m_cache.clear();
+	}
+	
+	/**
+	 * Returns the current size of all cached entries
+	 * 
+	 * @return size in bytes
+	 */
+	public long getCacheSize() {
+		return m_cache.getCurrentCacheSizeInUnits();
+	}
+}
@@ -361,6 +361,11 @@ public class CDFileRichTextNavigator implements IRichTextNavigator {
 		if (m_currentCDRecord==null)
 			throw new IllegalStateException("Current CD record is null");
 		
+		if (target instanceof CDRecordBuffer) {
+			((CDRecordBuffer) target).addCDRecords(m_currentCDRecord.getRecordDataWithHeader(), m_currentCDRecord.getCDRecordLength());
+			return;
+		}
+		
 		CompoundTextWriter ctWriter = target.getAdapter(CompoundTextWriter.class);
 		if (ctWriter==null)
 			throw new NotesError(0, "Could not get "+CompoundTextWriter.class.getSimpleName()+" from "+RichTextBuilder.class.getSimpleName());
@@ -0,0 +1,380 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Set;
+
+import com.mindoo.domino.jna.constants.CDRecordType;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.richtext.ICompoundText;
+import com.mindoo.domino.jna.richtext.IRichTextNavigator;
+import com.mindoo.domino.jna.richtext.RichTextBuilder;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of {@link IRichTextNavigator} that works with CD records in memory,
+ * e.g. the content of a {@link CDRecordBuffer}. The record data returned by this navigator
+ * points directly into the memory, so it is only valid as long as the memory is not changed or freed.
+ *
+ * @author Karsten Lehmann
+ */
+public class CDMemoryRichTextNavigator implements IRichTextNavigator {
+	private Pointer m_data;
+	private int m_size;
+	private int m_position;
+	private int m_currentCDRecordIndex;
+	private CDRecordMemory m_currentCDRecord;
+	//offsets of all records visited so far, used to move backwards
+	private int[] m_recordOffsets = new int[16];
+	private int m_knownRecords;
+
+	/**
+	 * Creates a new navigator
+	 *
+	 * @param data CD records, starting with the header of the first record
+	 * @param size size of record data
+	 */
+	public CDMemoryRichTextNavigator(Pointer data, int size) {
+		m_data = data;
+		m_size = size;
+		gotoFirst();
+	}
+
+	/**
+	 * Computes the total length of a CD record, excluding a padding byte
+	 *
+	 * @param ptr pointer to the record header
+	 * @return length
+	 */
+	public static int getRecordLength(Pointer ptr) {
+		short typeAsShort = ptr.getShort(0);
+		short highOrderByte = (short) (typeAsShort & 0xFF00);
+
+		switch (highOrderByte) {
+		case NotesConstants.LONGRECORDLENGTH:      /* LSIG */
+			return ptr.getInt(2);
+		case NotesConstants.WORDRECORDLENGTH:      /* WSIG */
+			return ptr.getShort(2) & 0xffff;
+		default:                    /* BSIG */
+			return (typeAsShort >> 8) & 0x00ff;
+		}
+	}
+
+	private CDRecordMemory readCurrentCDRecord() {
+		Pointer recordPtr = m_data.share(m_position);
+		short typeAsShort = recordPtr.getShort(0);
+		short highOrderByte = (short) (typeAsShort & 0xFF00);
+		int fixedSize;
+		int dwLength;
+
+		switch (highOrderByte) {
+		case NotesConstants.LONGRECORDLENGTH:      /* LSIG */
+			dwLength = recordPtr.getInt(2);
+			fixedSize = 6; //sizeof(LSIG);
+			break;
+		case NotesConstants.WORDRECORDLENGTH:      /* WSIG */
+			dwLength = recordPtr.getShort(2) & 0xffff;
+			fixedSize = 4; //sizeof(WSIG);
+			break;
+		default:                    /* BSIG */
+			dwLength = (typeAsShort >> 8) & 0x00ff;
+			typeAsShort &= 0x00FF; /* Length not part of signature */
+			fixedSize = 2; //sizeof(BSIG);
+		}
+
+		if (dwLength < fixedSize || m_position + dwLength > m_size) {
+			throw new NotesError(0, "Invalid CD record length "+dwLength+" at position "+m_position+" of "+m_size+" bytes");
+		}
+
+		if (m_currentCDRecordIndex == m_knownRecords) {
+			if (m_knownRecords == m_recordOffsets.length) {
+				m_recordOffsets = Arrays.copyOf(m_recordOffsets, m_recordOffsets.length * 2);
+			}
+			m_recordOffsets[m_knownRecords++] = m_position;
+		}
+
+		return new CDRecordMemory(new MemoryFromPointer(recordPtr, dwLength), typeAsShort, dwLength-fixedSize, dwLength);
+	}
+
+	@Override
+	public String getText() {
+		StringWriter sWriter = new StringWriter();
+		RichTextNavPosition oldPos = getCurrentRecordPosition();
+		try {
+			if (gotoFirst()) {
+				do {
+					if (getCurrentRecordTypeAsShort() == CDRecordType.TEXT.getConstant()) {
+						int txtMemLength = getCurrentRecordDataLength() - 4;
+						if (txtMemLength > 0) {
+							//skip FONTID
+							Pointer txtPtr = getCurrentRecordData().share(4);
+							String txt = NotesStringUtils.fromLMBCS(txtPtr, txtMemLength);
+							sWriter.append(txt);
+						}
+					}
+				}
+				while (gotoNext());
+			}
+		}
+		finally {
+			if (oldPos!=null) {
+				restoreCurrentRecordPosition(oldPos);
+			}
+		}
+
+		return sWriter.toString();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_size==0;
+	}
+
+	@Override
+	public boolean gotoFirst() {
+		if (isEmpty())
+			return false;
+
+		if (m_position!=0 || m_currentCDRecord==null) {
+			m_position = 0;
+			m_currentCDRecordIndex = 0;
+			m_currentCDRecord = readCurrentCDRecord();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean gotoLast() {
+		if (!gotoFirst()) {
+			return false;
+		}
+		if (m_knownRecords>0) {
+			//continue with the last known record
+			m_currentCDRecordIndex = m_knownRecords-1;
+			m_position = m_recordOffsets[m_currentCDRecordIndex];
+			m_currentCDRecord = readCurrentCDRecord();
+		}
+		while (gotoNext()) {
+			//
+		}
+		return true;
+	}
+
+	private int getNextPosition() {
+		int nextPosition = m_position + m_currentCDRecord.getCDRecordLength();
+		if ((nextPosition & 1)==1) {
+			nextPosition += 1;
+		}
+		return nextPosition;
+	}
+
+	@Override
+	public boolean gotoNext() {
+		if (m_currentCDRecord==null)
+			return false;
+
+		int nextPosition = getNextPosition();
+		if (nextPosition>=m_size)
+			return false;
+
+		m_position = nextPosition;
+		m_currentCDRecordIndex++;
+		m_currentCDRecord = readCurrentCDRecord();
+		return true;
+	}
+
+	@Override
+	public boolean gotoPrev() {
+		if (m_currentCDRecordIndex>0) {
+			m_currentCDRecordIndex--;
+			m_position = m_recordOffsets[m_currentCDRecordIndex];
+			m_currentCDRecord = readCurrentCDRecord();
+			return true;
+		}
+		else {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (m_currentCDRecord==null)
+			return false;
+		return getNextPosition() < m_size;
+	}
+
+	@Override
+	public boolean hasPrev() {
+		return m_currentCDRecordIndex>0;
+	}
+
+	@Override
+	public Memory getCurrentRecordData() {
+		if (m_currentCDRecord==null)
+			return null;
+		return m_currentCDRecord.getRecordDataWithoutHeader();
+	}
+
+	@Override
+	public Memory getCurrentRecordDataWithHeader() {
+		if (m_currentCDRecord==null)
+			return null;
+		return m_currentCDRecord.getRecordDataWithHeader();
+	}
+
+	@Override
+	public int getCurrentRecordHeaderLength() {
+		if (m_currentCDRecord==null)
+			return 0;
+		return m_currentCDRecord.getRecordHeaderLength();
+	}
+
+	@Override
+	public short getCurrentRecordTypeAsShort() {
+		if (m_currentCDRecord==null)
+			return 0;
+		return m_currentCDRecord.getTypeAsShort();
+	}
+
+	@Override
+	public Set<CDRecordType> getCurrentRecordType() {
+		if (m_currentCDRecord==null)
+			return null;
+		return m_currentCDRecord.getType();
+	}
+
+	@Override
+	public int getCurrentRecordDataLength() {
+		if (m_currentCDRecord==null)
+			return 0;
+		return m_currentCDRecord.getDataSize();
+	}
+
+	@Override
+	public int getCurrentRecordTotalLength() {
+		if (m_currentCDRecord==null)
+			return 0;
+		return m_currentCDRecord.getCDRecordLength();
+	}
+
+	@Override
+	public RichTextNavPosition getCurrentRecordPosition() {
+		if (m_currentCDRecord==null)
+			return null;
+		return new RichTextNavPositionImpl(m_currentCDRecordIndex);
+	}
+
+	@Override
+	public void restoreCurrentRecordPosition(RichTextNavPosition pos) {
+		if (!(pos instanceof RichTextNavPositionImpl))
+			throw new IllegalArgumentException("Invalid position, not generated by this navigator");
+
+		RichTextNavPositionImpl posImpl = (RichTextNavPositionImpl) pos;
+		if (posImpl.getParent()!=this || posImpl.m_recordIndex>=m_knownRecords)
+			throw new IllegalArgumentException("Invalid position, not generated by this navigator");
+
+		m_currentCDRecordIndex = posImpl.m_recordIndex;
+		m_position = m_recordOffsets[m_currentCDRecordIndex];
+		m_currentCDRecord = readCurrentCDRecord();
+	}
+
+	@Override
+	public void copyCurrentRecordTo(ICompoundText<?> target) {
+		if (m_currentCDRecord==null)
+			throw new IllegalStateException("Current CD record is null");
+
+		Memory cdRecordMem = m_currentCDRecord.getRecordDataWithHeader();
+		int totalCDRecordLength = m_currentCDRecord.getCDRecordLength();
+
+		if (target instanceof CDRecordBuffer) {
+			((CDRecordBuffer) target).addCDRecords(cdRecordMem, totalCDRecordLength);
+			return;
+		}
+
+		CompoundTextWriter ctWriter = target.getAdapter(CompoundTextWriter.class);
+		if (ctWriter==null)
+			throw new NotesError(0, "Could not get "+CompoundTextWriter.class.getSimpleName()+" from "+RichTextBuilder.class.getSimpleName());
+		if (ctWriter.isClosed())
+			throw new NotesError(0, "Target compound text is already closed");
+
+		ctWriter.addCDRecords(cdRecordMem, totalCDRecordLength);
+	}
+
+	private class RichTextNavPositionImpl implements RichTextNavPosition {
+		private int m_recordIndex;
+
+		public RichTextNavPositionImpl(int recordIndex) {
+			m_recordIndex = recordIndex;
+		}
+
+		private CDMemoryRichTextNavigator getParent() {
+			return CDMemoryRichTextNavigator.this;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * getParent().hashCode() + m_recordIndex;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			RichTextNavPositionImpl other = (RichTextNavPositionImpl) obj;
+			return getParent()==other.getParent() && m_recordIndex==other.m_recordIndex;
+		}
+	}
+
+	/**
+	 * Data container for a single CD record
+	 *
+	 * @author Karsten Lehmann
+	 */
+	private static class CDRecordMemory {
+		private Memory m_cdRecordBuf;
+		private short m_typeAsShort;
+		private int m_dataSize;
+		private int m_cdRecordLength;
+
+		public CDRecordMemory(Memory recordBuf, short typeAsShort, int dataSize, int cdRecordLength) {
+			m_cdRecordBuf = recordBuf;
+			m_typeAsShort = typeAsShort;
+			m_dataSize = dataSize;
+			m_cdRecordLength = cdRecordLength;
+		}
+
+		public Memory getRecordDataWithHeader() {
+			return m_cdRecordBuf;
+		}
+
+		public Memory getRecordDataWithoutHeader() {
+			return (Memory) m_cdRecordBuf.share(m_cdRecordLength - m_dataSize);
+		}
+
+		public int getRecordHeaderLength() {
+			return m_cdRecordLength - m_dataSize;
+		}
+
+		public short getTypeAsShort() {
+			return m_typeAsShort;
+		}
+
+		public Set<CDRecordType> getType() {
+			return CDRecordType.getRecordTypesForConstant(m_typeAsShort);
+		}
+
+		public int getDataSize() {
+			return m_dataSize;
+		}
+
+		public int getCDRecordLength() {
+			return m_cdRecordLength;
+		}
+	}
+}
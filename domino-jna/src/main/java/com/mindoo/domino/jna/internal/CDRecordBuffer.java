@@ -0,0 +1,611 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+
+import com.mindoo.domino.jna.IAdaptable;
+import com.mindoo.domino.jna.NotesAttachment;
+import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesNote.IItemCallback;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.internal.CompoundTextWriter.CloseResult;
+import com.mindoo.domino.jna.internal.CompoundTextWriter.CloseResultType;
+import com.mindoo.domino.jna.internal.CompoundTextWriter.CompoundTextStandaloneBuffer;
+import com.mindoo.domino.jna.richtext.CaptionPosition;
+import com.mindoo.domino.jna.richtext.FontStyle;
+import com.mindoo.domino.jna.richtext.ICompoundText;
+import com.mindoo.domino.jna.richtext.IRichTextNavigator;
+import com.mindoo.domino.jna.richtext.RichTextBuilder;
+import com.mindoo.domino.jna.richtext.StandaloneRichText;
+import com.mindoo.domino.jna.richtext.TextStyle;
+import com.mindoo.domino.jna.utils.PlatformUtils;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of {@link ICompoundText} that collects CD records in native memory
+ * instead of a C API CompoundText context. Used for the intermediate results of
+ * richtext conversions, so that they do not need to be written to temp files.<br>
+ * <br>
+ * Raw CD records (e.g. from {@link IRichTextNavigator#copyCurrentRecordTo(ICompoundText)}) are
+ * appended directly. Content exceeding the memory threshold is moved to a temp file.
+ * The first call to one of the high level methods like {@link #addText(String)} moves the
+ * content into a {@link StandaloneRichText}, because only the C API can produce these records;
+ * the result is read back into memory when the buffer is read.
+ *
+ * @author Karsten Lehmann
+ */
+public class CDRecordBuffer implements ICompoundText<CDRecordBuffer>, IAdaptable {
+	private static final int INITIAL_CAPACITY = 4096;
+	/** max number of bytes we pass to CompoundTextAddCDRecords in one call */
+	private static final int MAX_CHUNK_SIZE = 16384;
+
+	private long m_memoryThreshold;
+	private DisposableMemory m_mem;
+	private int m_size;
+	private File m_spillFile;
+	private OutputStream m_spillOut;
+	private long m_spillSize;
+	private StandaloneRichText m_compoundText;
+	private boolean m_disposed;
+
+	/**
+	 * Creates a new buffer
+	 *
+	 * @param memoryThreshold max number of bytes to keep in memory before the content gets moved to a temp file
+	 */
+	public CDRecordBuffer(long memoryThreshold) {
+		m_memoryThreshold = memoryThreshold;
+	}
+
+	private void checkDisposed() {
+		if (m_disposed)
+			throw new NotesError(0, "CD record buffer already disposed");
+	}
+
+	@Override
+	public boolean isRecycled() {
+		return m_disposed;
+	}
+
+	/**
+	 * Returns whether the buffer contains any data
+	 *
+	 * @return true if not empty
+	 */
+	public boolean hasData() {
+		return m_size>0 || m_spillSize>2 || (m_compoundText!=null && m_compoundText.hasData());
+	}
+
+	/**
+	 * Returns whether the content has been moved to a temp file
+	 *
+	 * @return true if on disk
+	 */
+	public boolean isOnDisk() {
+		return m_spillFile!=null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T getAdapter(Class<T> clazz) {
+		if (clazz==CompoundTextWriter.class) {
+			return (T) getCompoundText().getAdapter(CompoundTextWriter.class);
+		}
+		return null;
+	}
+
+	/**
+	 * Appends one or more complete CD records
+	 *
+	 * @param ptr pointer to CD record data including BSIG/WSIG/LSIG prefix
+	 * @param len length of the data
+	 */
+	public void addCDRecords(Pointer ptr, int len) {
+		checkDisposed();
+
+		if (m_compoundText!=null) {
+			m_compoundText.getAdapter(CompoundTextWriter.class).addCDRecords(ptr, len);
+			return;
+		}
+		appendRaw(ptr, len);
+	}
+
+	private void appendRaw(Pointer ptr, int len) {
+		//CD records start at even addresses
+		int paddedLen = len + (len & 1);
+
+		if (m_spillOut==null && m_spillFile==null && ((long) m_size + paddedLen) > m_memoryThreshold) {
+			spillToDisk();
+		}
+
+		if (m_spillFile!=null) {
+			try {
+				OutputStream out = getSpillOutputStream();
+				out.write(ptr.getByteArray(0, len));
+				if (paddedLen!=len) {
+					out.write(0);
+				}
+				m_spillSize += paddedLen;
+			} catch (IOException e) {
+				throw new NotesError(0, "Error writing CD records to temp file "+m_spillFile, e);
+			}
+		}
+		else {
+			ensureCapacity(m_size + paddedLen);
+			m_mem.getByteBuffer(m_size, len).put(ptr.getByteBuffer(0, len));
+			if (paddedLen!=len) {
+				m_mem.setByte(m_size + len, (byte) 0);
+			}
+			m_size += paddedLen;
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (m_mem==null) {
+			m_mem = new DisposableMemory(Math.max(INITIAL_CAPACITY, capacity));
+		}
+		else if (m_mem.size() < capacity) {
+			DisposableMemory newMem = new DisposableMemory(Math.max(m_mem.size() * 2, capacity));
+			if (m_size>0) {
+				newMem.getByteBuffer(0, m_size).put(m_mem.getByteBuffer(0, m_size));
+			}
+			m_mem.dispose();
+			m_mem = newMem;
+		}
+	}
+
+	private OutputStream getSpillOutputStream() throws IOException {
+		if (m_spillOut==null) {
+			m_spillOut = new BufferedOutputStream(new FileOutputStream(m_spillFile, true));
+		}
+		return m_spillOut;
+	}
+
+	/**
+	 * Moves the content to a temp file in the format used by
+	 * {@link CDFileRichTextNavigator} and CompoundTextAssimilateFile
+	 */
+	private void spillToDisk() {
+		try {
+			m_spillFile = File.createTempFile("cdrecords", ".tmp");
+		} catch (IOException e) {
+			throw new NotesError(0, "Could not create temp file for CD records", e);
+		}
+
+		try {
+			OutputStream out = getSpillOutputStream();
+			//datatype TYPE_COMPOSITE (WORD)
+			Memory typeMem = new Memory(2);
+			typeMem.setShort(0, (short) NotesItem.TYPE_COMPOSITE);
+			out.write(typeMem.getByteArray(0, 2));
+			m_spillSize = 2;
+
+			if (m_size>0) {
+				out.write(m_mem.getByteArray(0, m_size));
+				m_spillSize += m_size;
+			}
+		} catch (IOException e) {
+			throw new NotesError(0, "Error writing CD records to temp file "+m_spillFile, e);
+		}
+
+		if (m_mem!=null) {
+			m_mem.dispose();
+			m_mem = null;
+		}
+		m_size = 0;
+	}
+
+	private void closeSpillOutputStream() {
+		if (m_spillOut!=null) {
+			try {
+				m_spillOut.close();
+			} catch (IOException e) {
+				throw new NotesError(0, "Error writing CD records to temp file "+m_spillFile, e);
+			}
+			m_spillOut = null;
+		}
+	}
+
+	/**
+	 * Moves the current content into a C API CompoundText so that we can use the high level methods
+	 *
+	 * @return compound text
+	 */
+	private StandaloneRichText getCompoundText() {
+		checkDisposed();
+
+		if (m_compoundText==null) {
+			StandaloneRichText rt = new StandaloneRichText();
+			CompoundTextWriter writer = rt.getAdapter(CompoundTextWriter.class);
+			writeTo(writer);
+			clearContent();
+			m_compoundText = rt;
+		}
+		return m_compoundText;
+	}
+
+	/**
+	 * Closes the C API CompoundText and reads its content back
+	 */
+	private void closeCompoundText() {
+		if (m_compoundText==null) {
+			return;
+		}
+
+		StandaloneRichText rt = m_compoundText;
+		m_compoundText = null;
+
+		CompoundTextWriter writer = rt.getAdapter(CompoundTextWriter.class);
+		CloseResult result = writer.closeStandaloneContext();
+		if (result.getType()==CloseResultType.Buffer) {
+			CompoundTextStandaloneBuffer buffer = result.getBuffer();
+			try {
+				Pointer ptr;
+				if (PlatformUtils.is64Bit()) {
+					ptr = Mem64.OSLockObject(buffer.getHandle64());
+				}
+				else {
+					ptr = Mem32.OSLockObject(buffer.getHandle32());
+				}
+				try {
+					//skip datatype WORD
+					if (buffer.getSize() > 2) {
+						appendRaw(ptr.share(2), buffer.getSize() - 2);
+					}
+				}
+				finally {
+					if (PlatformUtils.is64Bit()) {
+						Mem64.OSUnlockObject(buffer.getHandle64());
+					}
+					else {
+						Mem32.OSUnlockObject(buffer.getHandle32());
+					}
+				}
+			}
+			finally {
+				buffer.free();
+			}
+		}
+		else {
+			File file = new File(result.getFilePath());
+			long contentSize = file.length() - 2;
+			if (contentSize > m_memoryThreshold) {
+				//too large for memory, take over the temp file Domino created
+				m_spillFile = file;
+				m_spillSize = file.length();
+			}
+			else {
+				try {
+					if (contentSize > 0) {
+						readIntoMemory(file, (int) contentSize);
+					}
+				}
+				finally {
+					if (!file.delete()) {
+						file.deleteOnExit();
+					}
+				}
+			}
+		}
+	}
+
+	private void readIntoMemory(File file, int contentSize) {
+		ensureCapacity(m_size + contentSize + 1);
+		try (FileInputStream fIn = new FileInputStream(file)) {
+			FileChannel channel = fIn.getChannel();
+			channel.position(2);
+			ByteBuffer target = m_mem.getByteBuffer(m_size, contentSize);
+			while (target.hasRemaining()) {
+				if (channel.read(target) < 0) {
+					break;
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new NotesError(0, "Error reading CD records from file "+file, e);
+		}
+		if ((contentSize & 1)==1) {
+			m_mem.setByte(m_size + contentSize, (byte) 0);
+		}
+		m_size += contentSize + (contentSize & 1);
+	}
+
+	/**
+	 * Transfers the raw content to a compound text writer
+	 *
+	 * @param writer writer
+	 */
+	private void writeTo(CompoundTextWriter writer) {
+		if (m_spillFile!=null) {
+			closeSpillOutputStream();
+			writer.addCompoundTextFromFile(m_spillFile.getAbsolutePath());
+		}
+		else if (m_size>0) {
+			//pass multiple complete records per call
+			int chunkStart = 0;
+			int pos = 0;
+			while (pos < m_size) {
+				int recordLength = CDMemoryRichTextNavigator.getRecordLength(m_mem.share(pos));
+				int nextPos = pos + recordLength + (recordLength & 1);
+				if (nextPos - chunkStart > MAX_CHUNK_SIZE && pos > chunkStart) {
+					writer.addCDRecords(m_mem.share(chunkStart), pos - chunkStart);
+					chunkStart = pos;
+				}
+				pos = nextPos;
+			}
+			writer.addCDRecords(m_mem.share(chunkStart), m_size - chunkStart);
+		}
+	}
+
+	private void clearContent() {
+		m_size = 0;
+		closeSpillOutputStream();
+		if (m_spillFile!=null) {
+			if (!m_spillFile.delete()) {
+				m_spillFile.deleteOnExit();
+			}
+			m_spillFile = null;
+		}
+		m_spillSize = 0;
+	}
+
+	/**
+	 * Removes all content so that the buffer can be reused
+	 */
+	public void reset() {
+		checkDisposed();
+		clearContent();
+		if (m_compoundText!=null) {
+			m_compoundText.recycle();
+			m_compoundText = null;
+		}
+	}
+
+	/**
+	 * Frees the memory and deletes temp files
+	 */
+	public void dispose() {
+		if (m_disposed) {
+			return;
+		}
+		clearContent();
+		if (m_compoundText!=null) {
+			if (!m_compoundText.isRecycled()) {
+				m_compoundText.recycle();
+			}
+			m_compoundText = null;
+		}
+		if (m_mem!=null) {
+			m_mem.dispose();
+			m_mem = null;
+		}
+		m_disposed = true;
+	}
+
+	/**
+	 * Returns a navigator to read the buffer content. The navigator is only valid
+	 * until the buffer gets changed, reset or disposed.
+	 *
+	 * @return navigator
+	 */
+	public IRichTextNavigator getNavigator() {
+		checkDisposed();
+		closeCompoundText();
+
+		if (m_spillFile!=null) {
+			closeSpillOutputStream();
+			try {
+				return new CDFileRichTextNavigator(new FileInputStream(m_spillFile), m_spillFile.getAbsolutePath(), m_spillSize);
+			} catch (IOException e) {
+				throw new NotesError(0, "Error creating richtext navigator for file "+m_spillFile, e);
+			}
+		}
+		else {
+			return new CDMemoryRichTextNavigator(m_mem, m_size);
+		}
+	}
+
+	/**
+	 * Writes the buffer content to a richtext item
+	 *
+	 * @param note target note
+	 * @param richTextItemName name of richtext item in target note, existing richtext items with this name will be removed
+	 */
+	public void copyToNote(NotesNote note, String richTextItemName) {
+		checkDisposed();
+		closeCompoundText();
+
+		//collect old composite items to prepare later deletion
+		final LinkedList<NotesItem> items = new LinkedList<NotesItem>();
+
+		note.getItems(richTextItemName, new IItemCallback() {
+
+			@Override
+			public void itemNotFound() {
+			}
+
+			@Override
+			public Action itemFound(NotesItem item) {
+				if (item.getType()==NotesItem.TYPE_COMPOSITE) {
+					items.add(item);
+				}
+				return Action.Continue;
+			}
+		});
+
+		try (RichTextBuilder rt = note.createRichTextItem(richTextItemName);) {
+			CompoundTextWriter ctWriter = rt.getAdapter(CompoundTextWriter.class);
+			if (ctWriter==null) {
+				throw new NotesError(0, "Could not get "+CompoundTextWriter.class.getSimpleName()+" instance");
+			}
+			writeTo(ctWriter);
+		}
+
+		//cleanup obsolete items read earlier
+		for (NotesItem currOldItem : items) {
+			currOldItem.remove();
+		}
+	}
+
+	@Override
+	public CDRecordBuffer addDatabaseLink(NotesDatabase db, String comment) {
+		getCompoundText().addDatabaseLink(db, comment);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addCollectionLink(NotesCollection collection, String comment) {
+		getCompoundText().addCollectionLink(collection, comment);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addDocLink(NotesNote note, String comment) {
+		getCompoundText().addDocLink(note, comment);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addDocLink(String dbReplicaId, String viewUnid, String noteUNID, String comment) {
+		getCompoundText().addDocLink(dbReplicaId, viewUnid, noteUNID, comment);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addRenderedNote(NotesNote note) {
+		getCompoundText().addRenderedNote(note);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addRenderedNote(NotesNote note, String form) {
+		getCompoundText().addRenderedNote(note, form);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addText(String txt) {
+		getCompoundText().addText(txt);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addText(String txt, TextStyle textStyle, FontStyle fontStyle) {
+		getCompoundText().addText(txt, textStyle, fontStyle);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addText(String txt, TextStyle textStyle, FontStyle fontStyle, boolean createParagraphForLinebreak) {
+		getCompoundText().addText(txt, textStyle, fontStyle, createParagraphForLinebreak);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addRichTextItem(NotesNote otherNote, String itemName) {
+		getCompoundText().addRichTextItem(otherNote, itemName);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addImage(File f) throws IOException {
+		getCompoundText().addImage(f);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addImage(int resizeToWidth, int resizeToHeight, File f) throws IOException {
+		getCompoundText().addImage(resizeToWidth, resizeToHeight, f);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addImage(int fileSize, InputStream imageData) throws IOException {
+		getCompoundText().addImage(fileSize, imageData);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addImage(int resizeToWidth, int resizeToHeight, int fileSize, InputStream imageData)
+			throws IOException {
+		getCompoundText().addImage(resizeToWidth, resizeToHeight, fileSize, imageData);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addFileHotspot(NotesAttachment attachment, String filenameToDisplay) {
+		getCompoundText().addFileHotspot(attachment, filenameToDisplay);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addFileHotspot(NotesAttachment attachment, String filenameToDisplay, String captionText,
+			File image) throws IOException {
+		getCompoundText().addFileHotspot(attachment, filenameToDisplay, captionText, image);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addFileHotspot(NotesAttachment attachment, String filenameToDisplay, String captionText,
+			FontStyle captionStyle, CaptionPosition captionPos, int captionColorRed, int captionColorGreen,
+			int captionColorBlue, int resizeToWidth, int resizeToHeight, int fileSize, InputStream imageData)
+					throws IOException {
+		getCompoundText().addFileHotspot(attachment, filenameToDisplay, captionText, captionStyle, captionPos,
+				captionColorRed, captionColorGreen, captionColorBlue, resizeToWidth, resizeToHeight, fileSize, imageData);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addFileHotspot(String attachmentProgrammaticName, String filenameToDisplay) {
+		getCompoundText().addFileHotspot(attachmentProgrammaticName, filenameToDisplay);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addFileHotspot(String attachmentProgrammaticName, String filenameToDisplay,
+			String captionText, File image) throws IOException {
+		getCompoundText().addFileHotspot(attachmentProgrammaticName, filenameToDisplay, captionText, image);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addFileHotspot(String attachmentProgrammaticName, String filenameToDisplay,
+			String captionText, FontStyle captionStyle, CaptionPosition captionPos, int captionColorRed,
+			int captionColorGreen, int captionColorBlue, int resizeToWidth, int resizeToHeight, int fileSize,
+			InputStream imageData) throws IOException {
+		getCompoundText().addFileHotspot(attachmentProgrammaticName, filenameToDisplay, captionText, captionStyle,
+				captionPos, captionColorRed, captionColorGreen, captionColorBlue, resizeToWidth, resizeToHeight,
+				fileSize, imageData);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addClosedStandaloneRichText(StandaloneRichText rt) {
+		getCompoundText().addClosedStandaloneRichText(rt);
+		return this;
+	}
+
+	@Override
+	public CDRecordBuffer addCDRecords(Memory cdRecordMem) {
+		addCDRecords(cdRecordMem, (int) cdRecordMem.size());
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "CDRecordBuffer [size="+(m_spillFile!=null ? m_spillSize : m_size)+", ondisk="+(m_spillFile!=null)+
+				", compoundtext="+(m_compoundText!=null)+", disposed="+m_disposed+"]";
+	}
+}
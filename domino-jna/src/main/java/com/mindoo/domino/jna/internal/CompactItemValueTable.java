@@ -0,0 +1,323 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.Serializable;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.sun.jna.Pointer;
+
+/**
+ * Compact copy of an ITEM_VALUE_TABLE structure as returned in view lookup buffers.<br>
+ * <br>
+ * Instead of decoding every column into wrapper objects, we keep the raw bytes together
+ * with the data type and offset of each value. The typed accessors decode numbers
+ * and timedates straight from the byte array without allocating objects.
+ *
+ * @author Karsten Lehmann
+ */
+public class CompactItemValueTable implements Serializable {
+	private static final long serialVersionUID = 3484474913946236816L;
+
+	private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+	private byte[] m_data;
+	private int[] m_types;
+	private int[] m_offsets;
+	private int[] m_valueLengths;
+	//decode options of the lookup, used when all values get decoded
+	private boolean m_convertStringsLazily;
+	private boolean m_convertNotesTimeDateToCalendar;
+
+	private CompactItemValueTable(byte[] data, int[] types, int[] offsets, int[] valueLengths,
+			boolean convertStringsLazily, boolean convertNotesTimeDateToCalendar) {
+		m_data = data;
+		m_types = types;
+		m_offsets = offsets;
+		m_valueLengths = valueLengths;
+		m_convertStringsLazily = convertStringsLazily;
+		m_convertNotesTimeDateToCalendar = convertNotesTimeDateToCalendar;
+	}
+
+	/**
+	 * Copies an ITEM_VALUE_TABLE structure from native memory. When all values get decoded,
+	 * strings are converted lazily and timedates are returned as {@link com.mindoo.domino.jna.NotesTimeDate}.
+	 *
+	 * @param bufferPtr pointer to the ITEM_VALUE_TABLE header
+	 * @return table
+	 */
+	public static CompactItemValueTable read(Pointer bufferPtr) {
+		return read(bufferPtr, true, false);
+	}
+
+	/**
+	 * Copies an ITEM_VALUE_TABLE structure from native memory
+	 *
+	 * @param bufferPtr pointer to the ITEM_VALUE_TABLE header
+	 * @param convertStringsLazily true to delay string conversion when all values get decoded
+	 * @param convertNotesTimeDateToCalendar true to decode timedates as {@link java.util.Calendar}
+	 * @return table
+	 */
+	public static CompactItemValueTable read(Pointer bufferPtr, boolean convertStringsLazily,
+			boolean convertNotesTimeDateToCalendar) {
+		int totalBufferLength = bufferPtr.getShort(0) & 0xffff;
+		byte[] data = new byte[totalBufferLength];
+		bufferPtr.read(0, data, 0, totalBufferLength);
+		return parse(data, convertStringsLazily, convertNotesTimeDateToCalendar);
+	}
+
+	/**
+	 * Parses the header of an ITEM_VALUE_TABLE structure copied to a byte array
+	 *
+	 * @param data table data
+	 * @return table
+	 */
+	public static CompactItemValueTable parse(byte[] data) {
+		return parse(data, true, false);
+	}
+
+	/**
+	 * Parses the header of an ITEM_VALUE_TABLE structure copied to a byte array
+	 *
+	 * @param data table data
+	 * @param convertStringsLazily true to delay string conversion when all values get decoded
+	 * @param convertNotesTimeDateToCalendar true to decode timedates as {@link java.util.Calendar}
+	 * @return table
+	 */
+	public static CompactItemValueTable parse(byte[] data, boolean convertStringsLazily,
+			boolean convertNotesTimeDateToCalendar) {
+//		ITEM_VALUE_TABLE containing header information (total length of summary, number of items in summary)
+//		WORD containing the length of item #1 (including data type)
+//		...
+//		USHORT containing the data type of item #1
+//		value of item #1
+//		....
+		int itemsCount = readShort(data, 2) & 0xffff;
+		int[] types = new int[itemsCount];
+		int[] offsets = new int[itemsCount];
+		int[] valueLengths = new int[itemsCount];
+
+		int lengthPos = NotesConstants.itemValueTableSize;
+		int bufferPos = lengthPos + 2 * itemsCount;
+
+		for (int i=0; i<itemsCount; i++) {
+			int itemLength = readShort(data, lengthPos) & 0xffff;
+			lengthPos += 2;
+
+			if (itemLength==0) {
+				//empty item, e.g. a category already displayed on a higher level
+				offsets[i] = -1;
+				continue;
+			}
+
+			types[i] = readShort(data, bufferPos) & 0xffff;
+			offsets[i] = bufferPos + 2;
+			valueLengths[i] = itemLength - 2;
+			bufferPos += itemLength;
+		}
+		return new CompactItemValueTable(data, types, offsets, valueLengths,
+				convertStringsLazily, convertNotesTimeDateToCalendar);
+	}
+
+	/**
+	 * Returns whether strings are converted lazily when all values get decoded
+	 *
+	 * @return true if lazy
+	 */
+	public boolean isConvertStringsLazily() {
+		return m_convertStringsLazily;
+	}
+
+	/**
+	 * Returns whether timedates are decoded as {@link java.util.Calendar} when all values get decoded
+	 *
+	 * @return true for {@link java.util.Calendar}, false for {@link com.mindoo.domino.jna.NotesTimeDate}
+	 */
+	public boolean isConvertNotesTimeDateToCalendar() {
+		return m_convertNotesTimeDateToCalendar;
+	}
+
+	/**
+	 * Returns the raw ITEM_VALUE_TABLE data
+	 *
+	 * @return data, not copied
+	 */
+	public byte[] getData() {
+		return m_data;
+	}
+
+	/**
+	 * Returns the number of values in the table
+	 *
+	 * @return count
+	 */
+	public int getItemsCount() {
+		return m_types.length;
+	}
+
+	/**
+	 * Returns the data type of a value
+	 *
+	 * @param index value index
+	 * @return type, e.g. {@link NotesItem#TYPE_TEXT} or 0 for an empty or missing value
+	 */
+	public int getType(int index) {
+		if (index<0 || index>=m_types.length) {
+			return 0;
+		}
+		return m_types[index];
+	}
+
+	/**
+	 * Returns the length of a value in bytes, excluding the data type
+	 *
+	 * @param index value index
+	 * @return length
+	 */
+	public int getValueLength(int index) {
+		if (index<0 || index>=m_valueLengths.length) {
+			return 0;
+		}
+		return m_valueLengths[index];
+	}
+
+	/**
+	 * Returns the value lengths in bytes including the data type in the same
+	 * format as the lengths array in the ITEM_VALUE_TABLE
+	 *
+	 * @return lengths
+	 */
+	public int[] getItemValueLengthsInBytes() {
+		int[] lengths = new int[m_valueLengths.length];
+		for (int i=0; i<lengths.length; i++) {
+			lengths[i] = m_offsets[i]==-1 ? 0 : m_valueLengths[i] + 2;
+		}
+		return lengths;
+	}
+
+	/**
+	 * Reads a number value. For {@link NotesItem#TYPE_NUMBER_RANGE} values,
+	 * the first list entry is returned.
+	 *
+	 * @param index value index
+	 * @param defaultValue value returned if the value is missing or not a number
+	 * @return number
+	 */
+	public double getDouble(int index, double defaultValue) {
+		int type = getType(index);
+		if (type == NotesItem.TYPE_NUMBER) {
+			return readDouble(m_data, m_offsets[index]);
+		}
+		else if (type == NotesItem.TYPE_NUMBER_RANGE) {
+			int offset = m_offsets[index];
+			int listEntries = readShort(m_data, offset) & 0xffff;
+			if (listEntries>0) {
+				return readDouble(m_data, offset + NotesConstants.rangeSize);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads the innards of a timedate value. For {@link NotesItem#TYPE_TIME_RANGE} values,
+	 * the first list entry is returned.
+	 *
+	 * @param index value index
+	 * @param retInnards array of at least two elements to receive the innards
+	 * @return true if the value is a timedate
+	 */
+	public boolean getInnards(int index, int[] retInnards) {
+		int type = getType(index);
+		int offset;
+		if (type == NotesItem.TYPE_TIME) {
+			offset = m_offsets[index];
+		}
+		else if (type == NotesItem.TYPE_TIME_RANGE) {
+			int listEntries = readShort(m_data, m_offsets[index]) & 0xffff;
+			if (listEntries==0) {
+				return false;
+			}
+			offset = m_offsets[index] + NotesConstants.rangeSize;
+		}
+		else {
+			return false;
+		}
+		retInnards[0] = readInt(m_data, offset);
+		retInnards[1] = readInt(m_data, offset + 4);
+		return true;
+	}
+
+	/**
+	 * Reads a text value. For {@link NotesItem#TYPE_TEXT_LIST} values,
+	 * the first list entry is returned. Pure ASCII strings are converted
+	 * without native calls.
+	 *
+	 * @param index value index
+	 * @return string or null if the value is missing or not text
+	 */
+	public String getString(int index) {
+		int type = getType(index);
+		int offset;
+		int len;
+		if (type == NotesItem.TYPE_TEXT) {
+			offset = m_offsets[index];
+			len = m_valueLengths[index];
+		}
+		else if (type == NotesItem.TYPE_TEXT_LIST) {
+			if (m_valueLengths[index]==0) {
+				return "";
+			}
+			//LIST header followed by the WORD lengths and the packed text
+			int listEntries = readShort(m_data, m_offsets[index]) & 0xffff;
+			if (listEntries==0) {
+				return "";
+			}
+			len = readShort(m_data, m_offsets[index] + 2) & 0xffff;
+			offset = m_offsets[index] + 2 + 2 * listEntries;
+		}
+		else {
+			return null;
+		}
+
+		if (len==0) {
+			return "";
+		}
+		for (int i=offset; i<offset+len; i++) {
+			byte b = m_data[i];
+			if (b <= 0x1f) {
+				//LMBCS group byte or non-ASCII character
+				return NotesStringUtils.fromLMBCS(Arrays.copyOfRange(m_data, offset, offset+len));
+			}
+		}
+		return new String(m_data, offset, len, StandardCharsets.US_ASCII);
+	}
+
+	private static short readShort(byte[] data, int offset) {
+		if (LITTLE_ENDIAN) {
+			return (short) ((data[offset] & 0xff) | ((data[offset+1] & 0xff) << 8));
+		}
+		else {
+			return (short) (((data[offset] & 0xff) << 8) | (data[offset+1] & 0xff));
+		}
+	}
+
+	private static int readInt(byte[] data, int offset) {
+		if (LITTLE_ENDIAN) {
+			return (data[offset] & 0xff) | ((data[offset+1] & 0xff) << 8) |
+					((data[offset+2] & 0xff) << 16) | ((data[offset+3] & 0xff) << 24);
+		}
+		else {
+			return ((data[offset] & 0xff) << 24) | ((data[offset+1] & 0xff) << 16) |
+					((data[offset+2] & 0xff) << 8) | (data[offset+3] & 0xff);
+		}
+	}
+
+	private static double readDouble(byte[] data, int offset) {
+		long low = readInt(data, offset) & 0xffffffffL;
+		long high = readInt(data, offset + 4) & 0xffffffffL;
+		long bits = LITTLE_ENDIAN ? (high << 32) | low : (low << 32) | high;
+		return Double.longBitsToDouble(bits);
+	}
+}
@@ -0,0 +1,136 @@
+package com.mindoo.domino.jna.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.sun.jna.Pointer;
+
+/**
+ * Dictionary of item names keyed by their raw LMBCS bytes. Summary buffers of
+ * searches and view lookups repeat the same few item names for every note, so
+ * we convert each name only once and return the shared {@link String} instance
+ * afterwards.<br>
+ * <br>
+ * Lookups copy the name bytes into a thread local key buffer, so hits do not
+ * allocate any objects.
+ *
+ * @author Karsten Lehmann
+ */
+public class ItemNameDictionary {
+	//item names are limited to 255 bytes; we use a bit more to be on the safe side
+	private static final int MAX_NAME_LENGTH = 256;
+	//stop adding names when this is reached, e.g. for databases with generated item names
+	private static final int MAX_ENTRIES = 10000;
+
+	private static final ConcurrentHashMap<NameKey,String> m_names = new ConcurrentHashMap<NameKey,String>();
+
+	private static final ThreadLocal<NameKey> m_lookupKey = new ThreadLocal<NameKey>() {
+		@Override
+		protected NameKey initialValue() {
+			return new NameKey(new byte[MAX_NAME_LENGTH], 0);
+		}
+	};
+
+	/**
+	 * Returns the number of cached item names
+	 *
+	 * @return size
+	 */
+	public static int getCacheSize() {
+		return m_names.size();
+	}
+
+	/**
+	 * Converts an LMBCS encoded item name to a Java String. If already cached, no native call is made.
+	 *
+	 * @param ptr pointer
+	 * @param offset offset of the name
+	 * @param len length of the name in bytes
+	 * @return item name
+	 */
+	public static String get(Pointer ptr, int offset, int len) {
+		if (len==0) {
+			return "";
+		}
+		if (len>MAX_NAME_LENGTH) {
+			return NotesStringUtils.fromLMBCS(ptr.share(offset), len);
+		}
+
+		NameKey lookupKey = m_lookupKey.get();
+		lookupKey.read(ptr, offset, len);
+
+		String name = m_names.get(lookupKey);
+		if (name==null) {
+			name = NotesStringUtils.fromLMBCS(ptr.share(offset), len);
+
+			if (m_names.size() < MAX_ENTRIES) {
+				String existingName = m_names.putIfAbsent(lookupKey.copy(), name);
+				if (existingName!=null) {
+					name = existingName;
+				}
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Key with the LMBCS bytes of an item name. The thread local lookup keys are
+	 * mutable, the keys stored in the map are immutable copies.
+	 */
+	private static class NameKey {
+		private final byte[] m_data;
+		private int m_len;
+		private int m_hashCode;
+
+		public NameKey(byte[] data, int len) {
+			m_data = data;
+			m_len = len;
+			m_hashCode = computeHashCode();
+		}
+
+		void read(Pointer ptr, int offset, int len) {
+			ptr.read(offset, m_data, 0, len);
+			m_len = len;
+			m_hashCode = computeHashCode();
+		}
+
+		NameKey copy() {
+			byte[] dataCopy = new byte[m_len];
+			System.arraycopy(m_data, 0, dataCopy, 0, m_len);
+			return new NameKey(dataCopy, m_len);
+		}
+
+		private int computeHashCode() {
+			int hash = 1;
+			for (int i=0; i<m_len; i++) {
+				hash = 31 * hash + m_data[i];
+			}
+			return hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return m_hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this==obj) {
+				return true;
+			}
+			if (!(obj instanceof NameKey)) {
+				return false;
+			}
+			NameKey other = (NameKey) obj;
+			if (m_len!=other.m_len || m_hashCode!=other.m_hashCode) {
+				return false;
+			}
+			for (int i=0; i<m_len; i++) {
+				if (m_data[i]!=other.m_data[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@link OutputStream} that receives LMBCS encoded text in chunks of any size and writes
+ * it as UTF-8 to another stream.<br>
+ * <br>
+ * Chunks are only translated up to the last position where no LMBCS multi-byte
+ * character can be split; the remainder is kept until more data arrives or
+ * {@link #finish()} is called. Like {@link com.mindoo.domino.jna.utils.NotesStringUtils#fromLMBCS(byte[])},
+ * null bytes are written as line breaks.
+ *
+ * @author Karsten Lehmann
+ */
+public class LMBCSToUTF8OutputStream extends OutputStream {
+	private OutputStream m_out;
+	private byte[] m_pending;
+	private int m_pendingLen;
+	//native buffers for OSTranslate32, reused for all chunks
+	private DisposableMemory m_inMem;
+	private DisposableMemory m_outMem;
+	private boolean m_closed;
+
+	/**
+	 * Creates a new stream
+	 *
+	 * @param out target stream for the UTF-8 data
+	 */
+	public LMBCSToUTF8OutputStream(OutputStream out) {
+		this(out, 4096);
+	}
+
+	/**
+	 * Creates a new stream
+	 *
+	 * @param out target stream for the UTF-8 data
+	 * @param initialBufferSize initial size of the buffer for pending LMBCS data
+	 */
+	public LMBCSToUTF8OutputStream(OutputStream out, int initialBufferSize) {
+		m_out = out;
+		m_pending = new byte[Math.max(16, initialBufferSize)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (m_closed) {
+			throw new IOException("Stream is closed");
+		}
+		if (len==0) {
+			return;
+		}
+
+		if (m_pendingLen + len > m_pending.length) {
+			byte[] newPending = new byte[Math.max(m_pending.length * 2, m_pendingLen + len)];
+			System.arraycopy(m_pending, 0, newPending, 0, m_pendingLen);
+			m_pending = newPending;
+		}
+		System.arraycopy(b, off, m_pending, m_pendingLen, len);
+		m_pendingLen += len;
+
+		int safeLen = findSafeLength(m_pending, m_pendingLen);
+		if (safeLen>0) {
+			translate(m_pending, safeLen);
+
+			m_pendingLen -= safeLen;
+			System.arraycopy(m_pending, safeLen, m_pending, 0, m_pendingLen);
+		}
+	}
+
+	/**
+	 * Returns the length of the data that can be translated without splitting an LMBCS
+	 * multi-byte character. We only cut after a printable ASCII character
+	 * that is not the trail byte of a group sequence.
+	 *
+	 * @param data LMBCS data
+	 * @param len length of data
+	 * @return length, 0 if we need more data
+	 */
+	private static int findSafeLength(byte[] data, int len) {
+		for (int i=len-1; i>=0; i--) {
+			byte b = data[i];
+			if (b>=0x20 && b<=0x7e) {
+				boolean prevIsGroupByte = (i>=1 && isGroupByte(data[i-1])) || (i>=2 && isGroupByte(data[i-2]));
+				if (!prevIsGroupByte) {
+					return i+1;
+				}
+			}
+		}
+		return 0;
+	}
+
+	private static boolean isGroupByte(byte b) {
+		return b>=0x01 && b<=0x1f && !isTabOrLineBreak(b);
+	}
+
+	/**
+	 * Tab, line feed and carriage return are not LMBCS group bytes but represent themselves
+	 *
+	 * @param b byte
+	 * @return true for \t, \n and \r
+	 */
+	private static boolean isTabOrLineBreak(byte b) {
+		return b==0x09 || b==0x0a || b==0x0d;
+	}
+
+	private void translate(byte[] data, int len) throws IOException {
+		boolean isAscii = true;
+		for (int i=0; i<len; i++) {
+			byte b = data[i];
+			if ((b < 0x20 && !isTabOrLineBreak(b)) || b > 0x7e) {
+				isAscii = false;
+				break;
+			}
+		}
+		if (isAscii) {
+			//printable 7 bit ASCII, tabs and line breaks are identical in both encodings
+			m_out.write(data, 0, len);
+			return;
+		}
+
+		//null bytes are line breaks in LMBCS
+		int startOffset = 0;
+		for (int i=0; i<len; i++) {
+			if (data[i]==0) {
+				translateSegment(data, startOffset, i-startOffset);
+				m_out.write('\n');
+				startOffset = i+1;
+			}
+		}
+		translateSegment(data, startOffset, len-startOffset);
+	}
+
+	private void translateSegment(byte[] data, int off, int len) throws IOException {
+		if (len==0) {
+			return;
+		}
+
+		if (m_inMem==null || m_inMem.size() < len) {
+			if (m_inMem!=null) {
+				m_inMem.dispose();
+			}
+			m_inMem = new DisposableMemory(Math.max(len, m_pending.length));
+		}
+		int worstCaseLength = 3*len;
+		if (m_outMem==null || m_outMem.size() < worstCaseLength) {
+			if (m_outMem!=null) {
+				m_outMem.dispose();
+			}
+			m_outMem = new DisposableMemory(Math.max(worstCaseLength, 3*m_pending.length));
+		}
+
+		m_inMem.write(0, data, off, len);
+		int retLength = NotesNativeAPI.get().OSTranslate32(NotesConstants.OS_TRANSLATE_LMBCS_TO_UTF8,
+				m_inMem, len, m_outMem, (int) m_outMem.size());
+
+		byte[] utf8Data = m_outMem.getByteArray(0, retLength);
+		m_out.write(utf8Data);
+	}
+
+	/**
+	 * Translates all pending data and flushes the target stream. The target stream
+	 * is not closed.
+	 *
+	 * @throws IOException in case of I/O errors
+	 */
+	public void finish() throws IOException {
+		if (m_closed) {
+			return;
+		}
+		try {
+			if (m_pendingLen>0) {
+				translate(m_pending, m_pendingLen);
+				m_pendingLen = 0;
+			}
+			m_out.flush();
+		}
+		finally {
+			m_closed = true;
+			if (m_inMem!=null) {
+				m_inMem.dispose();
+				m_inMem = null;
+			}
+			if (m_outMem!=null) {
+				m_outMem.dispose();
+				m_outMem = null;
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		m_out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		}
+		finally {
+			m_out.close();
+		}
+	}
+}
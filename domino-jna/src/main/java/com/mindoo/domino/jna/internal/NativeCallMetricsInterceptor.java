@@ -0,0 +1,94 @@
+package com.mindoo.domino.jna.internal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
+import com.sun.jna.ptr.ShortByReference;
+
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+
+/**
+ * {@link MethodInterceptor} that reports duration, transferred bytes and returned
+ * error code of each native call to {@link NativeCallMetrics}.<br>
+ * <br>
+ * All native functions returning a <code>short</code> are treated as functions
+ * returning a STATUS value.
+ *
+ * @author Karsten Lehmann
+ *
+ * @param <T> class of wrapped API
+ */
+class NativeCallMetricsInterceptor<T> implements MethodInterceptor {
+	private final T original;
+
+	public NativeCallMetricsInterceptor(T original) {
+		this.original = original;
+	}
+
+	@Override
+	public Object intercept(Object o, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+		String functionName = method.getName();
+		Object result = null;
+		long t0 = NativeCallMetrics.callStarted();
+		try {
+			result = method.invoke(original, args);
+			return result;
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+		finally {
+			short status = 0;
+			if (result instanceof Short) {
+				status = (short) (((Short) result).shortValue() & NotesConstants.ERR_MASK);
+			}
+			long bytes = status==0 ? getBytesTransferred(functionName, args) : 0;
+			NativeCallMetrics.callFinished(functionName, t0, bytes, status);
+		}
+	}
+
+	/**
+	 * Computes the number of bytes read or written by a native call for the
+	 * functions where this information is available in the call arguments
+	 *
+	 * @param functionName function name
+	 * @param args call arguments
+	 * @return bytes or 0 if unknown
+	 */
+	private static long getBytesTransferred(String functionName, Object[] args) {
+		if (args==null) {
+			return 0;
+		}
+
+		switch (functionName) {
+		case "NIFReadEntries":
+			//retBufferLength follows rethBuffer
+			return getUnsignedShort(args, 8);
+		case "NIFReadEntriesExt":
+			return getUnsignedShort(args, 12);
+		case "NSFDbReadObject":
+			//Length argument
+			return getInt(args, 3);
+		case "NSFDbWriteObject":
+			return getInt(args, 4);
+		default:
+			return 0;
+		}
+	}
+
+	private static long getUnsignedShort(Object[] args, int idx) {
+		if (idx<args.length && args[idx] instanceof ShortByReference) {
+			return ((ShortByReference) args[idx]).getValue() & 0xffff;
+		}
+		return 0;
+	}
+
+	private static long getInt(Object[] args, int idx) {
+		if (idx<args.length && args[idx] instanceof Integer) {
+			return ((Integer) args[idx]).intValue() & 0xffffffffL;
+		}
+		return 0;
+	}
+}
@@ -7,6 +7,7 @@ import com.mindoo.domino.jna.internal.structs.MacNotesNamesListHeader64Struct;
 import com.mindoo.domino.jna.internal.structs.NoteIdStruct;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionPositionStruct;
 import com.mindoo.domino.jna.internal.structs.NotesFileObjectStruct;
+import com.mindoo.domino.jna.internal.structs.NotesItemTableStruct;
 import com.mindoo.domino.jna.internal.structs.NotesItemValueTableStruct;
 import com.mindoo.domino.jna.internal.structs.NotesMIMEPartStruct;
 import com.mindoo.domino.jna.internal.structs.NotesNamesListHeader32Struct;
@@ -68,6 +69,7 @@ public interface NotesConstants {
 	public final int timeDatePairSize = NotesTimeDatePairStruct.newInstance().size();
 	public final int collectionPositionSize = NotesCollectionPositionStruct.newInstance().size();
 	public final int itemValueTableSize = NotesItemValueTableStruct.newInstance().size();
+	public final int itemTableSize = NotesItemTableStruct.newInstance().size();
 	public final int tableItemSize = NotesTableItemStruct.newInstance().size();
 	public final int oidSize = NotesOriginatorIdStruct.newInstance().size();
 	public final int winNamesListHeaderSize64 = WinNotesNamesListHeader64Struct.newInstance().size();
@@ -26,7 +26,6 @@ import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.gc.NotesGC;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionStatsStruct;
-import com.mindoo.domino.jna.internal.structs.NotesItemTableStruct;
 import com.mindoo.domino.jna.utils.LMBCSString;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.mindoo.domino.jna.utils.PlatformUtils;
@@ -180,6 +179,7 @@ public class NotesLookupResultBufferDecoder {
 		List<NotesViewEntryData> viewEntries = new ArrayList<NotesViewEntryData>();
 		
 		final boolean decodeAllValues = true;
+		final boolean compactColumnValues = parentCollection!=null && parentCollection.isCompactColumnValues();
 
 		if (returnMask.size()==1 && returnMask.contains(ReadMask.NOTEID)) {
 			//special optimized case for reading only note ids
@@ -287,19 +287,33 @@ public class NotesLookupResultBufferDecoder {
 					int startBufferPosOfSummaryValues = bufferPos;
 
 					Pointer itemValueTablePtr = bufferPtr.share(bufferPos);
-					ItemValueTableDataImpl itemTableData = (ItemValueTableDataImpl) decodeItemValueTable(itemValueTablePtr,
-							convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues);
+					
+					if (compactColumnValues) {
+						//copy the raw summary buffer; values are decoded on demand
+						CompactItemValueTable compactTable = CompactItemValueTable.read(itemValueTablePtr,
+								convertStringsLazily, convertNotesTimeDateToCalendar);
+						bufferPos = startBufferPosOfSummaryValues + compactTable.getData().length;
+						
+						newData.setCompactColumnValues(compactTable);
+						newData.setColumnValueSizesInBytes(compactTable.getItemValueLengthsInBytes());
+					}
+					else {
+						ItemValueTableDataImpl itemTableData = (ItemValueTableDataImpl) decodeItemValueTable(itemValueTablePtr,
+								convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues);
 
-					//move to the end of the buffer
-					bufferPos = startBufferPosOfSummaryValues + itemTableData.getTotalBufferLength();
+						//move to the end of the buffer
+						bufferPos = startBufferPosOfSummaryValues + itemTableData.getTotalBufferLength();
 
-					Object[] decodedItemValues = new Object[itemTableData.getItemsCount()];
-					for (int c=0; c<itemTableData.getItemsCount(); c++) {
-						decodedItemValues[c] = itemTableData.getItemValue(c);
+						Object[] decodedItemValues = new Object[itemTableData.getItemsCount()];
+						int[] decodedItemTypes = new int[itemTableData.getItemsCount()];
+						for (int c=0; c<itemTableData.getItemsCount(); c++) {
+							decodedItemValues[c] = itemTableData.getItemValue(c);
+							decodedItemTypes[c] = itemTableData.getItemDataType(c);
+						}
+						newData.setColumnValues(decodedItemValues, decodedItemTypes);
+						//add some statistical information to the data object to be able to see which columns "pollute" the summary buffer
+						newData.setColumnValueSizesInBytes(itemTableData.getItemValueLengthsInBytes());
 					}
-					newData.setColumnValues(decodedItemValues);
-					//add some statistical information to the data object to be able to see which columns "pollute" the summary buffer
-					newData.setColumnValueSizesInBytes(itemTableData.getItemValueLengthsInBytes());
 				}
 				if (returnMask.contains(ReadMask.SUMMARY) || returnMask.contains(ReadMask.SUMMARY_PERMUTED)) {
 					int startBufferPosOfSummaryValues = bufferPos;
@@ -336,7 +350,42 @@ public class NotesLookupResultBufferDecoder {
 	 */
 	public static IItemTableData decodeItemValueTableWithColumnNames(String[] columnItemNames,
 			Pointer bufferPtr, boolean convertStringsLazily, boolean convertNotesTimeDateToCalendar, boolean decodeAllValues) {
-		ItemValueTableDataImpl valueTable = (ItemValueTableDataImpl) decodeItemValueTable(bufferPtr, convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues);
+		return decodeItemValueTableWithColumnNames(columnItemNames, bufferPtr, convertStringsLazily,
+				convertNotesTimeDateToCalendar, decodeAllValues, null);
+	}
+	
+	/**
+	 * Decodes an ITEM_VALUE_TABLE structure and adds the specified column names, optionally
+	 * reusing a data object returned by a previous call to reduce allocations when decoding
+	 * many summary buffers in a row, e.g. in a search callback.<br>
+	 * <br>
+	 * A reused object is overwritten, so the caller must not access the previous data afterwards.
+	 * Use {@link IItemTableData#snapshot()} to keep a copy.
+	 * 
+	 * @param columnItemNames column item names
+	 * @param bufferPtr pointer to a buffer
+	 * @param convertStringsLazily true to delay string conversion until the first use
+	 * @param convertNotesTimeDateToCalendar true to convert {@link NotesTimeDate} values to {@link Calendar}
+	 * @param decodeAllValues true to decode all values in the buffer
+	 * @param reusableData data object returned by a previous call of this method or null
+	 * @return item value table data, either <code>reusableData</code> or a new object
+	 */
+	public static IItemTableData decodeItemValueTableWithColumnNames(String[] columnItemNames,
+			Pointer bufferPtr, boolean convertStringsLazily, boolean convertNotesTimeDateToCalendar, boolean decodeAllValues,
+			IItemTableData reusableData) {
+		
+		if (reusableData instanceof ItemTableDataImpl && ((ItemTableDataImpl) reusableData).m_wrappedValueTable!=null) {
+			ItemTableDataImpl itemTableData = (ItemTableDataImpl) reusableData;
+			ItemValueTableDataImpl valueTable = itemTableData.m_wrappedValueTable;
+			valueTable.resetForReuse(convertStringsLazily);
+			decodeItemValueTable(bufferPtr, convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues, valueTable);
+			itemTableData.resetForReuse(convertStringsLazily);
+			itemTableData.wrap(columnItemNames, valueTable);
+			return itemTableData;
+		}
+		
+		ItemValueTableDataImpl valueTable = new ItemValueTableDataImpl(convertStringsLazily);
+		decodeItemValueTable(bufferPtr, convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues, valueTable);
 		IItemTableData itemTableData = new ItemTableDataImpl(columnItemNames, valueTable);
 		return itemTableData;
 	}
@@ -352,6 +401,14 @@ public class NotesLookupResultBufferDecoder {
 	 */
 	public static IItemValueTableData decodeItemValueTable(Pointer bufferPtr,
 			boolean convertStringsLazily, boolean convertNotesTimeDateToCalendar, boolean decodeAllValues) {
+		ItemValueTableDataImpl data = new ItemValueTableDataImpl(convertStringsLazily);
+		decodeItemValueTable(bufferPtr, convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues, data);
+		return data;
+	}
+	
+	private static void decodeItemValueTable(Pointer bufferPtr,
+			boolean convertStringsLazily, boolean convertNotesTimeDateToCalendar, boolean decodeAllValues,
+			ItemValueTableDataImpl data) {
 		int bufferPos = 0;
 		
 		//skip item value table header
@@ -375,7 +432,8 @@ public class NotesLookupResultBufferDecoder {
 		int totalBufferLength = bufferPtr.getShort(0) & 0xffff;
 		int itemsCount = bufferPtr.getShort(2) & 0xffff;
 		
-		int[] itemValueLengths = new int[itemsCount];
+		int[] itemValueLengths = data.m_itemValueLengthsInBytes!=null && data.m_itemValueLengthsInBytes.length==itemsCount ?
+				data.m_itemValueLengthsInBytes : new int[itemsCount];
 		//we don't have any item names:
 		int[] itemNameLengths = null;
 		
@@ -386,7 +444,6 @@ public class NotesLookupResultBufferDecoder {
 			bufferPos += 2;
 		}
 
-		ItemValueTableDataImpl data = new ItemValueTableDataImpl(convertStringsLazily);
 		data.setPreferNotesTimeDates(!convertNotesTimeDateToCalendar);
 		data.m_totalBufferLength = totalBufferLength;
 		data.m_itemsCount = itemsCount;
@@ -396,8 +453,6 @@ public class NotesLookupResultBufferDecoder {
 		
 		populateItemValueTableData(itemValuePtrWithBounds, itemsCount, itemNameLengths, itemValueLengths, data,
 				convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues);
-
-		return data;
 	}
 
 	/**
@@ -415,16 +470,43 @@ public class NotesLookupResultBufferDecoder {
 			int[] itemNameLengths, int[] itemValueLengths, ItemValueTableDataImpl retData, boolean convertStringsLazily,
 			boolean convertNotesTimeDateToCalendar, boolean decodeAllValues) {
 		int bufferPos = 0;
-		String[] itemNames = new String[itemsCount];
-		int[] itemDataTypes = new int[itemsCount];
-		Pointer[] itemValueBufferPointers = new Pointer[itemsCount];
-		int[] itemValueBufferSizes = new int[itemsCount];
-		Object[] decodedItemValues = new Object[itemsCount];
+		String[] itemNames;
+		int[] itemDataTypes;
+		Pointer[] itemValueBufferPointers;
+		int[] itemValueBufferSizes;
+		Object[] decodedItemValues;
+		
+		boolean isNamesTable = retData instanceof ItemTableDataImpl;
+		String[] oldItemNames = isNamesTable ? ((ItemTableDataImpl)retData).m_itemNames : null;
+		
+		if (retData.m_itemDataTypes!=null && retData.m_itemDataTypes.length==itemsCount &&
+				(!isNamesTable || (oldItemNames!=null && oldItemNames.length==itemsCount))) {
+			//reused data object with the same number of items, e.g. for a flyweight in a search callback
+			itemNames = oldItemNames;
+			itemDataTypes = retData.m_itemDataTypes;
+			itemValueBufferPointers = retData.m_itemValueBufferPointers;
+			itemValueBufferSizes = retData.m_itemValueBufferSizes;
+			decodedItemValues = retData.m_itemValues;
+			Arrays.fill(decodedItemValues, null);
+		}
+		else {
+			itemNames = itemNameLengths!=null ? new String[itemsCount] : null;
+			itemDataTypes = new int[itemsCount];
+			itemValueBufferPointers = new Pointer[itemsCount];
+			itemValueBufferSizes = new int[itemsCount];
+			decodedItemValues = new Object[itemsCount];
+		}
 		
 		for (int j=0; j<itemsCount; j++) {
-			if (itemNameLengths!=null && itemNameLengths[j]>0) {
-				itemNames[j] = NotesStringUtils.fromLMBCS(bufferPtr.share(bufferPos), itemNameLengths[j]);
-				bufferPos += itemNameLengths[j];
+			if (itemNameLengths!=null) {
+				if (itemNameLengths[j]>0) {
+					//item names repeat for every note, so we share the converted strings
+					itemNames[j] = ItemNameDictionary.get(bufferPtr, bufferPos, itemNameLengths[j]);
+					bufferPos += itemNameLengths[j];
+				}
+				else {
+					itemNames[j] = null;
+				}
 			}
 			
 			//read data type
@@ -434,6 +516,9 @@ public class NotesLookupResultBufferDecoder {
 				higher-level category that has already appeared. Or an empty item might
 				be a field that is missing in a response doc. Just print * as a place
 				holder and go on to the next item in the pSummary. */
+				itemDataTypes[j] = 0;
+				itemValueBufferPointers[j] = null;
+				itemValueBufferSizes[j] = 0;
 				continue;
 			}
 			else {
@@ -498,7 +583,7 @@ public class NotesLookupResultBufferDecoder {
 		retData.m_itemDataTypes = itemDataTypes;
 		retData.m_itemValueLengthsInBytes = itemValueLengths;
 		
-		if (retData instanceof ItemTableDataImpl) {
+		if (isNamesTable) {
 			((ItemTableDataImpl)retData).m_itemNames = itemNames;
 		}
 	}
@@ -514,12 +599,34 @@ public class NotesLookupResultBufferDecoder {
 	 */
 	public static IItemTableData decodeItemTable(Pointer bufferPtr,
 			boolean convertStringsLazily, boolean convertNotesTimeDateToCalendar, boolean decodeAllValues) {
+		return decodeItemTable(bufferPtr, convertStringsLazily, convertNotesTimeDateToCalendar, decodeAllValues, null);
+	}
+	
+	/**
+	 * Decodes an ITEM_TABLE structure with item names and item values, optionally
+	 * reusing a data object returned by a previous call to reduce allocations when decoding
+	 * many summary buffers in a row, e.g. in a search callback.<br>
+	 * <br>
+	 * A reused object is overwritten, so the caller must not access the previous data afterwards.
+	 * Use {@link IItemTableData#snapshot()} to keep a copy.
+	 * 
+	 * @param bufferPtr pointer to a buffer
+	 * @param convertStringsLazily true to delay string conversion until the first use
+	 * @param convertNotesTimeDateToCalendar true to convert {@link NotesTimeDate} values to {@link Calendar}
+	 * @param decodeAllValues true to decode all values in the buffer
+	 * @param reusableData data object returned by a previous call of this method or null
+	 * @return data, either <code>reusableData</code> or a new object
+	 */
+	public static IItemTableData decodeItemTable(Pointer bufferPtr,
+			boolean convertStringsLazily, boolean convertNotesTimeDateToCalendar, boolean decodeAllValues,
+			IItemTableData reusableData) {
 		int bufferPos = 0;
-		NotesItemTableStruct itemTable = NotesItemTableStruct.newInstance(bufferPtr);
-		itemTable.read();
+		//read the ITEM_TABLE header directly instead of allocating a structure for each summary buffer
+		int totalBufferLength = bufferPtr.getShort(0) & 0xffff;
+		int itemsCount = bufferPtr.getShort(2) & 0xffff;
 		
 		//skip item table header
-		bufferPos += itemTable.size();
+		bufferPos += NotesConstants.itemTableSize;
 
 //		typedef struct {
 //			   USHORT Length; /*  total length of this buffer */
@@ -528,22 +635,31 @@ public class NotesLookupResultBufferDecoder {
 //			/* now comes the packed text containing the item names. */
 //			} ITEM_TABLE;					
 		
-		int itemsCount = itemTable.getItemsAsInt();
-		int[] itemValueLengths = new int[itemsCount];
-		int[] itemNameLengths = new int[itemsCount];
+		ItemTableDataImpl data;
+		if (reusableData instanceof ItemTableDataImpl && ((ItemTableDataImpl) reusableData).m_wrappedValueTable==null) {
+			data = (ItemTableDataImpl) reusableData;
+			data.resetForReuse(convertStringsLazily);
+		}
+		else {
+			data = new ItemTableDataImpl(convertStringsLazily);
+		}
+		
+		int[] itemValueLengths = data.m_itemValueLengthsInBytes!=null && data.m_itemValueLengthsInBytes.length==itemsCount ?
+				data.m_itemValueLengthsInBytes : new int[itemsCount];
+		int[] itemNameLengths = data.m_itemNameLengths!=null && data.m_itemNameLengths.length==itemsCount ?
+				data.m_itemNameLengths : new int[itemsCount];
+		data.m_itemNameLengths = itemNameLengths;
 		
 		//read ITEM structures for each item
 		for (int j=0; j<itemsCount; j++) {
-			Pointer itemPtr = bufferPtr.share(bufferPos);
-			itemNameLengths[j] = (int) (itemPtr.getShort(0) & 0xffff);
-			itemValueLengths[j] = (int) (itemPtr.share(2).getShort(0) & 0xffff);
+			itemNameLengths[j] = (int) (bufferPtr.getShort(bufferPos) & 0xffff);
+			itemValueLengths[j] = (int) (bufferPtr.getShort(bufferPos + 2) & 0xffff);
 			
 			bufferPos += NotesConstants.tableItemSize;
 		}
 		
-		ItemTableDataImpl data = new ItemTableDataImpl(convertStringsLazily);
 		data.setPreferNotesTimeDates(!convertNotesTimeDateToCalendar);
-		data.m_totalBufferLength = itemTable.getLengthAsInt();
+		data.m_totalBufferLength = totalBufferLength;
 		data.m_itemsCount = itemsCount;
 		
 		Pointer itemValuePtr = bufferPtr.share(bufferPos);
@@ -555,6 +671,46 @@ public class NotesLookupResultBufferDecoder {
 		return data;
 	}
 
+	/**
+	 * Copies the names and values of an {@link IItemTableData} into a new object
+	 * that does not depend on any native memory, e.g. to implement {@link IItemTableData#snapshot()}
+	 * 
+	 * @param data data to copy
+	 * @return copy
+	 */
+	public static IItemTableData copyItemTableData(IItemTableData data) {
+		String[] itemNames = data.getItemNames();
+		int itemsCount = itemNames.length;
+		
+		ItemTableDataImpl copy = new ItemTableDataImpl(true);
+		copy.m_itemNames = itemNames.clone();
+		copy.m_itemsCount = itemsCount;
+		copy.m_itemDataTypes = new int[itemsCount];
+		copy.m_itemValueBufferSizes = new int[itemsCount];
+		copy.m_itemValueLengthsInBytes = new int[itemsCount];
+		copy.m_itemValueBufferPointers = new Pointer[itemsCount];
+		copy.m_itemValues = new Object[itemsCount];
+		
+		boolean preferNotesTimeDates = data.isPreferNotesTimeDates();
+		//we store NotesTimeDate values like the decoded summary buffer and convert on access
+		data.setPreferNotesTimeDates(true);
+		try {
+			for (int i=0; i<itemsCount; i++) {
+				copy.m_itemDataTypes[i] = data.getItemDataType(i);
+				Object val = data.getItemValue(i);
+				if (val instanceof List) {
+					val = new ArrayList<Object>((List<?>) val);
+				}
+				copy.m_itemValues[i] = val;
+			}
+		}
+		finally {
+			data.setPreferNotesTimeDates(preferNotesTimeDates);
+		}
+		copy.setPreferNotesTimeDates(preferNotesTimeDates);
+		return copy;
+	}
+	
 	/**
 	 * Container class for the data parsed from an ITEM_VALUE_TABLE structure
 	 * 
@@ -576,6 +732,17 @@ public class NotesLookupResultBufferDecoder {
 			m_convertStringsLazily = convertStringsLazily;
 		}
 		
+		/**
+		 * Prepares the object to be populated with the data of the next summary buffer
+		 * 
+		 * @param convertStringsLazily true to delay string conversion until the first use
+		 */
+		void resetForReuse(boolean convertStringsLazily) {
+			m_convertStringsLazily = convertStringsLazily;
+			m_freed = false;
+			m_preferNotesTimeDates = null;
+		}
+		
 		public void free() {
 			m_freed = true;
 		}
@@ -601,33 +768,7 @@ public class NotesLookupResultBufferDecoder {
 		public Object getItemValue(int index) {
 			int type = getItemDataType(index);
 			
-			if (m_itemValues[index] == null) {
-				if (isFreed())
-					throw new NotesError(0, "Buffer already freed");
-				
-				if (type == NotesItem.TYPE_TEXT) {
-					m_itemValues[index] = ItemDecoder.decodeTextValue(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff), m_convertStringsLazily);
-				}
-				else if (type == NotesItem.TYPE_TEXT_LIST) {
-					//read a text list item value
-					int valueLength = (int) (m_itemValueBufferSizes[index] & 0xffff);
-					m_itemValues[index] = valueLength==0 ? Collections.emptyList() : ItemDecoder.decodeTextListValue(m_itemValueBufferPointers[index], m_convertStringsLazily);
-				}
-				else if (type == NotesItem.TYPE_NUMBER) {
-					m_itemValues[index] = ItemDecoder.decodeNumber(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff));
-				}
-				else if (type == NotesItem.TYPE_TIME) {
-					//we always store NotesTimeDate and convert to Calendar if requested by caller
-					m_itemValues[index] = ItemDecoder.decodeTimeDateAsNotesTimeDate(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff));
-				}
-				else if (type == NotesItem.TYPE_NUMBER_RANGE) {
-					m_itemValues[index] = ItemDecoder.decodeNumberList(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff));
-				}
-				else if (type == NotesItem.TYPE_TIME_RANGE) {
-					//we always store a List of NotesTimeDate and convert to Calendar if requested by caller
-					m_itemValues[index] = ItemDecoder.decodeTimeDateListAsNotesTimeDate(m_itemValueBufferPointers[index]);
-				}
-			}
+			decodeItemValue(index);
 			
 			if (type == NotesItem.TYPE_TIME && !isPreferNotesTimeDates()) {
 				if (m_itemValues[index] instanceof NotesTimeDate) {
@@ -674,6 +815,43 @@ public class NotesLookupResultBufferDecoder {
 				return m_itemValues[index];
 		}
 		
+		/**
+		 * Decodes an item value from the buffer if not already done
+		 * 
+		 * @param index item index
+		 */
+		protected void decodeItemValue(int index) {
+			if (m_itemValues[index] == null) {
+				int type = getItemDataType(index);
+				
+				if (isFreed())
+					throw new NotesError(0, "Buffer already freed");
+				
+				if (type == NotesItem.TYPE_TEXT) {
+					m_itemValues[index] = ItemDecoder.decodeTextValue(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff), m_convertStringsLazily);
+				}
+				else if (type == NotesItem.TYPE_TEXT_LIST) {
+					//read a text list item value
+					int valueLength = (int) (m_itemValueBufferSizes[index] & 0xffff);
+					m_itemValues[index] = valueLength==0 ? Collections.emptyList() : ItemDecoder.decodeTextListValue(m_itemValueBufferPointers[index], m_convertStringsLazily);
+				}
+				else if (type == NotesItem.TYPE_NUMBER) {
+					m_itemValues[index] = ItemDecoder.decodeNumber(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff));
+				}
+				else if (type == NotesItem.TYPE_TIME) {
+					//we always store NotesTimeDate and convert to Calendar if requested by caller
+					m_itemValues[index] = ItemDecoder.decodeTimeDateAsNotesTimeDate(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff));
+				}
+				else if (type == NotesItem.TYPE_NUMBER_RANGE) {
+					m_itemValues[index] = ItemDecoder.decodeNumberList(m_itemValueBufferPointers[index], (int) (m_itemValueBufferSizes[index] & 0xffff));
+				}
+				else if (type == NotesItem.TYPE_TIME_RANGE) {
+					//we always store a List of NotesTimeDate and convert to Calendar if requested by caller
+					m_itemValues[index] = ItemDecoder.decodeTimeDateListAsNotesTimeDate(m_itemValueBufferPointers[index]);
+				}
+			}
+		}
+		
 		@Override
 		public int getItemDataType(int index) {
 			return m_itemDataTypes[index];
@@ -712,6 +890,8 @@ public class NotesLookupResultBufferDecoder {
 	 */
 	private static class ItemTableDataImpl extends ItemValueTableDataImpl implements IItemTableData {
 		protected String[] m_itemNames;
+		//kept to reuse the array when the object is reused for the next summary buffer
+		protected int[] m_itemNameLengths;
 		private ItemValueTableDataImpl m_wrappedValueTable;
 		private Map<String,Boolean> m_itemExistence;
 		private TypedItemAccess m_typedItems;
@@ -719,6 +899,27 @@ public class NotesLookupResultBufferDecoder {
 		public ItemTableDataImpl(String[] itemNames, ItemValueTableDataImpl valueTable) {
 			super(valueTable.m_convertStringsLazily);
 			
+			wrap(itemNames, valueTable);
+			initTypedItemAccess();
+		}
+		
+		public ItemTableDataImpl(boolean convertStringsLazily) {
+			super(convertStringsLazily);
+			
+			initTypedItemAccess();
+		}
+		
+		private void initTypedItemAccess() {
+			m_typedItems = new TypedItemAccess() {
+				
+				@Override
+				public Object get(String itemName) {
+					return ItemTableDataImpl.this.get(itemName);
+				}
+			};
+		}
+		
+		void wrap(String[] itemNames, ItemValueTableDataImpl valueTable) {
 			m_itemNames = itemNames;
 			
 			m_wrappedValueTable = valueTable;
@@ -729,18 +930,54 @@ public class NotesLookupResultBufferDecoder {
 			m_totalBufferLength = valueTable.m_totalBufferLength;
 			m_itemsCount = valueTable.m_itemsCount;
 			m_itemValueLengthsInBytes = valueTable.m_itemValueLengthsInBytes;
-			
-			m_typedItems = new TypedItemAccess() {
-				
-				@Override
-				public Object get(String itemName) {
-					return ItemTableDataImpl.this.get(itemName);
-				}
-			};
 		}
 		
-		public ItemTableDataImpl(boolean convertStringsLazily) {
-			super(convertStringsLazily);
+		@Override
+		void resetForReuse(boolean convertStringsLazily) {
+			super.resetForReuse(convertStringsLazily);
+			if (m_itemExistence!=null) {
+				m_itemExistence.clear();
+			}
+		}
+		
+		@Override
+		public void free() {
+			super.free();
+			if (m_wrappedValueTable!=null) {
+				m_wrappedValueTable.free();
+			}
+		}
+		
+		@Override
+		public IItemTableData snapshot() {
+			if (isFreed() || (m_wrappedValueTable!=null && m_wrappedValueTable.isFreed())) {
+				throw new NotesError(0, "Buffer already freed");
+			}
+			
+			int itemsCount = getItemsCount();
+			ItemTableDataImpl copy = new ItemTableDataImpl(m_convertStringsLazily);
+			copy.m_itemNames = m_itemNames.clone();
+			copy.m_itemsCount = itemsCount;
+			copy.m_totalBufferLength = m_totalBufferLength;
+			copy.m_itemDataTypes = m_itemDataTypes.clone();
+			copy.m_itemValueBufferSizes = m_itemValueBufferSizes.clone();
+			copy.m_itemValueLengthsInBytes = m_itemValueLengthsInBytes.clone();
+			//the copy does not point to the summary buffer, all values are decoded below
+			copy.m_itemValueBufferPointers = new Pointer[itemsCount];
+			copy.m_itemValues = new Object[itemsCount];
+			
+			for (int i=0; i<itemsCount; i++) {
+				decodeItemValue(i);
+				Object val = m_itemValues[i];
+				if (val instanceof List) {
+					//get(String) replaces LMBCSString values in lists, so the copy gets its own list
+					val = new ArrayList<Object>((List<?>) val);
+				}
+				copy.m_itemValues[i] = val;
+			}
+			
+			copy.setPreferNotesTimeDates(isPreferNotesTimeDates());
+			return copy;
 		}
 		
 		@Override
@@ -21,6 +21,7 @@ import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.UnsupportedPlatformError;
 import com.mindoo.domino.jna.gc.NotesGC;
 import com.mindoo.domino.jna.internal.INotesNativeAPI.NativeFunctionName;
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.StringUtil;
 import com.sun.jna.Function;
@@ -43,6 +44,8 @@ import net.sf.cglib.proxy.MethodProxy;
 public class NotesNativeAPI {
 	private static volatile INotesNativeAPI m_instanceWithoutCrashLogging;
 	private static volatile INotesNativeAPI m_instanceWithCrashLogging;
+	private static volatile INotesNativeAPI m_instanceWithMetrics;
+	private static volatile INotesNativeAPI m_instanceWithCrashLoggingAndMetrics;
 	private static Class m_nativeClazz;
 	
 	private static int m_platformAlignment;
@@ -200,9 +203,21 @@ public class NotesNativeAPI {
 			if (m_instanceWithCrashLogging==null) {
 				m_instanceWithCrashLogging = wrapWithCrashStackLogging(INotesNativeAPI.class, m_instanceWithoutCrashLogging);
 			}
+			if (NativeCallMetrics.isEnabled()) {
+				if (m_instanceWithCrashLoggingAndMetrics==null) {
+					m_instanceWithCrashLoggingAndMetrics = wrapWithMetrics(INotesNativeAPI.class, m_instanceWithCrashLogging);
+				}
+				return m_instanceWithCrashLoggingAndMetrics;
+			}
 			return m_instanceWithCrashLogging;
 		}
 		else {
+			if (NativeCallMetrics.isEnabled()) {
+				if (m_instanceWithMetrics==null) {
+					m_instanceWithMetrics = wrapWithMetrics(INotesNativeAPI.class, m_instanceWithoutCrashLogging);
+				}
+				return m_instanceWithMetrics;
+			}
 			return m_instanceWithoutCrashLogging;
 		}
 	}
@@ -348,5 +363,30 @@ public class NotesNativeAPI {
 			return api;
 		}
 	}
+
+	/**
+	 * Wraps the specified API object to report each native call to {@link NativeCallMetrics}
+	 * 
+	 * @param apiClazz class of API
+	 * @param api API
+	 * @return wrapped API
+	 */
+	static <T> T wrapWithMetrics(final Class<T> apiClazz, final T api) {
+
+		try {
+			return AccessController.doPrivileged(new PrivilegedExceptionAction<T>() {
+
+				@Override
+				public T run() throws Exception {
+					MethodInterceptor handler = new NativeCallMetricsInterceptor<T>(api);
+					T wrapperWithMetrics = (T) Enhancer.create(apiClazz, handler);
+					return wrapperWithMetrics;
+				}
+			});
+		} catch (PrivilegedActionException e) {
+			e.printStackTrace();
+			return api;
+		}
+	}
 	
 }
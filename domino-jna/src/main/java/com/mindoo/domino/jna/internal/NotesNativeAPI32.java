@@ -2,6 +2,7 @@ package com.mindoo.domino.jna.internal;
 
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
 
 /**
  * Class providing C methods for 32 bit. Should be used internally by
@@ -12,6 +13,8 @@ import com.mindoo.domino.jna.gc.NotesGC;
 public class NotesNativeAPI32 {
 	private static volatile INotesNativeAPI32 m_instanceWithoutCrashLogging;
 	private static volatile INotesNativeAPI32 m_instanceWithCrashLogging;
+	private static volatile INotesNativeAPI32 m_instanceWithMetrics;
+	private static volatile INotesNativeAPI32 m_instanceWithCrashLoggingAndMetrics;
 
 	/**
 	 * Gets called from {@link NotesNativeAPI#initialize()}
@@ -44,9 +47,21 @@ public class NotesNativeAPI32 {
 			if (m_instanceWithCrashLogging==null) {
 				m_instanceWithCrashLogging = NotesNativeAPI.wrapWithCrashStackLogging(INotesNativeAPI32.class, m_instanceWithoutCrashLogging);
 			}
+			if (NativeCallMetrics.isEnabled()) {
+				if (m_instanceWithCrashLoggingAndMetrics==null) {
+					m_instanceWithCrashLoggingAndMetrics = NotesNativeAPI.wrapWithMetrics(INotesNativeAPI32.class, m_instanceWithCrashLogging);
+				}
+				return m_instanceWithCrashLoggingAndMetrics;
+			}
 			return m_instanceWithCrashLogging;
 		}
 		else {
+			if (NativeCallMetrics.isEnabled()) {
+				if (m_instanceWithMetrics==null) {
+					m_instanceWithMetrics = NotesNativeAPI.wrapWithMetrics(INotesNativeAPI32.class, m_instanceWithoutCrashLogging);
+				}
+				return m_instanceWithMetrics;
+			}
 			return m_instanceWithoutCrashLogging;
 		}
 	}
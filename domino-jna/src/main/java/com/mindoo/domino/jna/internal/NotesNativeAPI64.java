@@ -2,6 +2,7 @@ package com.mindoo.domino.jna.internal;
 
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
 
 /**
  * Class providing C methods for 64 bit. Should be used internally by
@@ -12,6 +13,8 @@ import com.mindoo.domino.jna.gc.NotesGC;
 public class NotesNativeAPI64 {
 	private static volatile INotesNativeAPI64 m_instanceWithoutCrashLogging;
 	private static volatile INotesNativeAPI64 m_instanceWithCrashLogging;
+	private static volatile INotesNativeAPI64 m_instanceWithMetrics;
+	private static volatile INotesNativeAPI64 m_instanceWithCrashLoggingAndMetrics;
 
 	/**
 	 * Gets called from {@link NotesNativeAPI#initialize()}
@@ -44,9 +47,21 @@ public class NotesNativeAPI64 {
 			if (m_instanceWithCrashLogging==null) {
 				m_instanceWithCrashLogging = NotesNativeAPI.wrapWithCrashStackLogging(INotesNativeAPI64.class, m_instanceWithoutCrashLogging);
 			}
+			if (NativeCallMetrics.isEnabled()) {
+				if (m_instanceWithCrashLoggingAndMetrics==null) {
+					m_instanceWithCrashLoggingAndMetrics = NotesNativeAPI.wrapWithMetrics(INotesNativeAPI64.class, m_instanceWithCrashLogging);
+				}
+				return m_instanceWithCrashLoggingAndMetrics;
+			}
 			return m_instanceWithCrashLogging;
 		}
 		else {
+			if (NativeCallMetrics.isEnabled()) {
+				if (m_instanceWithMetrics==null) {
+					m_instanceWithMetrics = NotesNativeAPI.wrapWithMetrics(INotesNativeAPI64.class, m_instanceWithoutCrashLogging);
+				}
+				return m_instanceWithMetrics;
+			}
 			return m_instanceWithoutCrashLogging;
 		}
 	}
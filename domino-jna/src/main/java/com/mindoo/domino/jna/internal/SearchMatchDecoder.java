@@ -1,5 +1,7 @@
 package com.mindoo.domino.jna.internal;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.EnumSet;
 import java.util.Formatter;
 
@@ -63,6 +65,212 @@ public class SearchMatchDecoder {
 		return match;
 	}
 	
+	/**
+	 * Reusable {@link ISearchMatch} for search callbacks that process the match data immediately.
+	 * Each call of {@link #read(Pointer)} copies the SEARCH_MATCH structure into one reused buffer
+	 * and the values are only decoded when requested. Use {@link #snapshot()} to keep the data
+	 * of a search match beyond the next call of {@link #read(Pointer)}.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static class ReusableSearchMatch implements NotesSearch.ISearchMatch {
+		//size of the SEARCH_MATCH structure up to the SummaryLength member
+		private static final int SEARCH_MATCH_SIZE = 54;
+		
+		private final byte[] m_data = new byte[SEARCH_MATCH_SIZE];
+		private final ByteBuffer m_buffer = ByteBuffer.wrap(m_data).order(ByteOrder.nativeOrder());
+		
+		private String m_unid;
+		private EnumSet<NoteClass> m_noteClassAsEnum;
+		private EnumSet<NoteFlags> m_flagsAsEnum;
+		
+		/**
+		 * Copies the SEARCH_MATCH structure at the specified memory address and
+		 * discards the values decoded for the previous match
+		 * 
+		 * @param ptr memory pointer
+		 * @return this object
+		 */
+		public ReusableSearchMatch read(Pointer ptr) {
+			ptr.read(0, m_data, 0, SEARCH_MATCH_SIZE);
+			m_unid = null;
+			m_noteClassAsEnum = null;
+			m_flagsAsEnum = null;
+			return this;
+		}
+		
+		private int[] getInnards(int offset) {
+			return new int[] {m_buffer.getInt(offset), m_buffer.getInt(offset+4)};
+		}
+		
+		@Override
+		public int[] getGIDFileInnards() {
+			return getInnards(0);
+		}
+		
+		@Override
+		public int[] getGIDNoteInnards() {
+			return getInnards(8);
+		}
+		
+		@Override
+		public int getNoteId() {
+			return m_buffer.getInt(16);
+		}
+		
+		@Override
+		public int[] getOIDFileInnards() {
+			return getInnards(20);
+		}
+		
+		@Override
+		public int[] getOIDNoteInnards() {
+			return getInnards(28);
+		}
+		
+		@Override
+		public int getSeq() {
+			return m_buffer.getInt(36);
+		}
+		
+		@Override
+		public int[] getSeqTimeInnards() {
+			return getInnards(40);
+		}
+		
+		private short getNoteClassRaw() {
+			return m_buffer.getShort(48);
+		}
+		
+		private byte getSeRetFlags() {
+			return m_buffer.get(50);
+		}
+		
+		private byte getPrivileges() {
+			return m_buffer.get(51);
+		}
+		
+		@Override
+		public EnumSet<NoteClass> getNoteClass() {
+			if (m_noteClassAsEnum==null) {
+				m_noteClassAsEnum = NoteClass.toNoteClasses(getNoteClassRaw());
+			}
+			return m_noteClassAsEnum;
+		}
+		
+		/**
+		 * Checks if the note class contains {@link NoteClass#NOTIFYDELETION} without creating
+		 * the {@link EnumSet} of {@link #getNoteClass()}
+		 * 
+		 * @return true if deletion stub
+		 */
+		public boolean isDeletionStub() {
+			return (getNoteClassRaw() & NotesConstants.NOTE_CLASS_NOTIFYDELETION) == NotesConstants.NOTE_CLASS_NOTIFYDELETION;
+		}
+		
+		@Override
+		public EnumSet<NoteFlags> getFlags() {
+			if (m_flagsAsEnum==null) {
+				m_flagsAsEnum = SearchMatchImpl.toNoteFlags(getSeRetFlags());
+			}
+			return m_flagsAsEnum;
+		}
+		
+		@Override
+		public boolean matchesFormula() {
+			return ((getSeRetFlags() & NotesConstants.SE_FMATCH) == NotesConstants.SE_FMATCH);
+		}
+		
+		@Override
+		public boolean isLargeSummary() {
+			return ((getSeRetFlags() & NotesConstants.SE_FLARGESUMMARY) == NotesConstants.SE_FLARGESUMMARY);
+		}
+		
+		@Override
+		public int getSummaryLength() {
+			return m_buffer.getShort(52) & 0xffff;
+		}
+		
+		@Override
+		public NotesOriginatorIdData getOIDData() {
+			return new NotesOriginatorIdData(getUNID(), getSeq(), getSeqTimeInnards());
+		}
+		
+		@Override
+		public String getUNID() {
+			if (m_unid==null) {
+				m_unid = toUNID(m_buffer.getInt(24), m_buffer.getInt(20), m_buffer.getInt(32), m_buffer.getInt(28));
+			}
+			return m_unid;
+		}
+		
+		@Override
+		public NotesTimeDate getDbCreated() {
+			return new NotesTimeDate(getGIDFileInnards());
+		}
+		
+		@Override
+		public NotesTimeDate getNoteModified() {
+			return new NotesTimeDate(getGIDNoteInnards());
+		}
+		
+		@Override
+		public NotesTimeDate getSeqTime() {
+			return new NotesTimeDate(getSeqTimeInnards());
+		}
+		
+		@Override
+		public ISearchMatch snapshot() {
+			SearchMatchImpl match = new SearchMatchImpl();
+			match.setGIDFileInnards(getGIDFileInnards());
+			match.setGIDNoteInnards(getGIDNoteInnards());
+			match.setNoteId(getNoteId());
+			match.setOIDFileInnards(getOIDFileInnards());
+			match.setOIDNoteInnards(getOIDNoteInnards());
+			match.setSeq(getSeq());
+			match.setSeqTimeInnards(getSeqTimeInnards());
+			match.setNoteClass(getNoteClassRaw());
+			match.setSeRetFlags(getSeRetFlags());
+			match.setPrivileges(getPrivileges());
+			match.setSummaryLength(m_buffer.getShort(52));
+			return match;
+		}
+		
+		@Override
+		public String toString() {
+			return "ReusableSearchMatch [unid="+getUNID()+", seq="+getSeq()+", seqtime="+getSeqTime()+
+					", noteid="+getNoteId()+", class="+getNoteClass()+",flags="+getFlags()+", modified="+getNoteModified()+"]";
+		}
+	}
+	
+	/**
+	 * Formats the originator id innards as UNID string
+	 * 
+	 * @param fileInnards1 file innards[1]
+	 * @param fileInnards0 file innards[0]
+	 * @param noteInnards1 note innards[1]
+	 * @param noteInnards0 note innards[0]
+	 * @return UNID
+	 */
+	private static String toUNID(int fileInnards1, int fileInnards0, int noteInnards1, int noteInnards0) {
+		// optimized version of String.format that runs faster
+		// String.format("%08x%08x%08x%08x", fileInnards1, fileInnards0, noteInnards1, noteInnards0)
+		char[] unidChars = new char[32];
+		appendHex(unidChars, 0, fileInnards1);
+		appendHex(unidChars, 8, fileInnards0);
+		appendHex(unidChars, 16, noteInnards1);
+		appendHex(unidChars, 24, noteInnards0);
+		return new String(unidChars);
+	}
+	
+	private static void appendHex(char[] chars, int offset, int value) {
+		for (int i = 7; i >= 0; i--) {
+			int v = value & 0x0F;
+			chars[offset + i] = (char) (v < 10 ? v + '0' : v - 10 + 'A');
+			value >>>= 4;
+		}
+	}
+	
 	private static class SearchMatchImpl implements NotesSearch.ISearchMatch {
 		//global instance id
 		private int[] gid_file_innards;
@@ -175,14 +383,14 @@ public class SearchMatchDecoder {
 		
 		@Override
 		public int getSummaryLength() {
-			return (int) (summaryLength &0xffff);
+			return summaryLength & 0xffff;
 		}
 		
 		void setSummaryLength(short summaryLength) {
 			this.summaryLength = summaryLength;
 		}
 
-		private static EnumSet<NoteFlags> toNoteFlags(byte flagsAsByte) {
+		static EnumSet<NoteFlags> toNoteFlags(byte flagsAsByte) {
 			EnumSet<NoteFlags> flags = EnumSet.noneOf(NoteFlags.class);
 			boolean isTruncated = (flagsAsByte & NotesConstants.SE_FTRUNCATED) == NotesConstants.SE_FTRUNCATED;
 			if (isTruncated)
@@ -249,29 +457,10 @@ public class SearchMatchDecoder {
 		@Override
 		public String getUNID() {
 			if (m_unid==null) {
-				// optimized version of String.format that runs faster
-				// String.format("%08x%08x%08x%08x", this.oid_file_innards[1], this.oid_file_innards[0], this.oid_note_innards[1], this.oid_note_innards[0])
-				
-				m_unid = new StringBuilder(32)
-			            .append(toHex(this.oid_file_innards[1]))
-			            .append(toHex(this.oid_file_innards[0]))
-			            .append(toHex(this.oid_note_innards[1]))
-			            .append(toHex(this.oid_note_innards[0]))
-			            .toString()
-			            .toUpperCase();
+				m_unid = toUNID(this.oid_file_innards[1], this.oid_file_innards[0], this.oid_note_innards[1], this.oid_note_innards[0]);
 			}
 			return m_unid;
 		}
-
-		private String toHex(int value) {
-		    char[] hexChars = new char[8];
-		    for (int i = 7; i >= 0; i--) {
-		        int v = value & 0x0F;
-		        hexChars[i] = (char) (v < 10 ? v + '0' : v - 10 + 'a');
-		        value >>>= 4;
-		    }
-		    return new String(hexChars);
-		}
 		
 		@Override
 		public NotesTimeDate getDbCreated() {
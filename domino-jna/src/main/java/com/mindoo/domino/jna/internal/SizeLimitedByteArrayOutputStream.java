@@ -0,0 +1,64 @@
+package com.mindoo.domino.jna.internal;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * {@link ByteArrayOutputStream} that discards its content and ignores all further
+ * writes as soon as more than a max number of bytes have been written, e.g. to
+ * only buffer data that is small enough to be cached.
+ * 
+ * @author Karsten Lehmann
+ */
+public class SizeLimitedByteArrayOutputStream extends ByteArrayOutputStream {
+	private int m_maxSize;
+	private boolean m_sizeExceeded;
+	
+	/**
+	 * Creates a new stream
+	 * 
+	 * @param maxSize max number of bytes to buffer
+	 */
+	public SizeLimitedByteArrayOutputStream(int maxSize) {
+		m_maxSize = maxSize;
+	}
+	
+	@Override
+	public synchronized void write(int b) {
+		if (m_sizeExceeded) {
+			return;
+		}
+		if (count + 1 > m_maxSize) {
+			discard();
+			return;
+		}
+		super.write(b);
+	}
+	
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		if (m_sizeExceeded) {
+			return;
+		}
+		if ((long) count + len > m_maxSize) {
+			discard();
+			return;
+		}
+		super.write(b, off, len);
+	}
+	
+	private void discard() {
+		m_sizeExceeded = true;
+		buf = new byte[0];
+		count = 0;
+	}
+	
+	/**
+	 * Returns true if more than the max number of bytes have been written and the content has been discarded
+	 * 
+	 * @return true if size exceeded
+	 */
+	public synchronized boolean isSizeExceeded() {
+		return m_sizeExceeded;
+	}
+	
+}
@@ -0,0 +1,33 @@
+package com.mindoo.domino.jna.metrics;
+
+/**
+ * Service provider interface to forward native call metrics to an external metrics system,
+ * e.g. Micrometer or Dropwizard Metrics.<br>
+ * <br>
+ * Implementations can be registered via {@link NativeCallMetrics#addListener(INativeCallMetricsListener)}
+ * or as a service in <code>META-INF/services/com.mindoo.domino.jna.metrics.INativeCallMetricsListener</code>.
+ * They are only called while metrics are enabled and are invoked on the thread that made the call,
+ * so they should return quickly.
+ *
+ * @author Karsten Lehmann
+ */
+public interface INativeCallMetricsListener {
+
+	/**
+	 * Method is called after each native C API call
+	 *
+	 * @param functionName name of the C API function
+	 * @param durationNanos call duration in nanoseconds
+	 * @param bytesTransferred number of bytes read or written or 0 if unknown
+	 * @param status returned STATUS masked with ERR_MASK or 0 for success or functions that do not return a STATUS
+	 */
+	void nativeCallFinished(String functionName, long durationNanos, long bytesTransferred, short status);
+
+	/**
+	 * Method is called when a high level operation has ended
+	 *
+	 * @param operation operation
+	 */
+	void operationFinished(NativeOperation operation);
+
+}
@@ -0,0 +1,401 @@
+package com.mindoo.domino.jna.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.utils.PlatformUtils;
+
+/**
+ * Opt-in instrumentation of all native C API calls made through the Domino JNA API.<br>
+ * <br>
+ * When enabled (via {@link #setEnabled(boolean)} or by setting the system property
+ * <code>dominojna.metrics=true</code>), the API objects returned by <code>NotesNativeAPI.get()</code>,
+ * <code>NotesNativeAPI32.get()</code> and <code>NotesNativeAPI64.get()</code> are wrapped to record
+ * per function call counts, a latency histogram, transferred bytes and returned error codes
+ * ({@link NativeFunctionStats}).<br>
+ * When disabled, the unwrapped API objects are returned, so the only cost is a volatile read per API access.<br>
+ * <br>
+ * In addition, high level operations like <code>NotesCollection.getAllEntries</code>, <code>NotesSearch.search</code>
+ * and <code>SyncUtil.sync</code> are tracked as {@link NativeOperation}s that split their duration into
+ * time spent in native code, in application callbacks and in the Domino JNA code itself
+ * ({@link NativeOperationStats}).<br>
+ * <br>
+ * Metrics can be read programmatically, via JMX after calling {@link #registerMBean()} or forwarded to
+ * an external metrics system by an {@link INativeCallMetricsListener}.
+ *
+ * @author Karsten Lehmann
+ */
+public class NativeCallMetrics {
+	/** object name used by {@link #registerMBean()} */
+	public static final String MBEAN_NAME = "com.mindoo.domino.jna:type=NativeCallMetrics";
+
+	private static volatile boolean m_enabled;
+	private static volatile boolean m_serviceListenersLoaded;
+
+	private static final ConcurrentHashMap<String,NativeFunctionStats> m_statsByFunction = new ConcurrentHashMap<String,NativeFunctionStats>();
+	private static final ConcurrentHashMap<String,NativeOperationStats> m_statsByOperation = new ConcurrentHashMap<String,NativeOperationStats>();
+	private static final CopyOnWriteArrayList<INativeCallMetricsListener> m_listeners = new CopyOnWriteArrayList<INativeCallMetricsListener>();
+
+	private static final ThreadLocal<ThreadState> m_threadState = new ThreadLocal<ThreadState>() {
+		@Override
+		protected ThreadState initialValue() {
+			return new ThreadState();
+		}
+	};
+
+	static {
+		String enabledProp = System.getProperty("dominojna.metrics");
+		if ("true".equalsIgnoreCase(enabledProp)) {
+			setEnabled(true);
+		}
+	}
+
+	/**
+	 * Per thread nesting level of native calls and the current operation
+	 */
+	private static class ThreadState {
+		private int m_nativeCallDepth;
+		private NativeOperation m_currentOperation;
+	}
+
+	/**
+	 * Checks whether native calls are instrumented
+	 *
+	 * @return true if enabled
+	 */
+	public static boolean isEnabled() {
+		return m_enabled;
+	}
+
+	/**
+	 * Enables or disables the instrumentation. The first time metrics get enabled, we
+	 * look for {@link INativeCallMetricsListener} services.<br>
+	 * Changes affect API objects that are fetched afterwards, API objects currently
+	 * in use by running code are not unwrapped or wrapped.
+	 *
+	 * @param enabled true to enable
+	 */
+	public static void setEnabled(boolean enabled) {
+		if (enabled && !m_serviceListenersLoaded) {
+			synchronized (NativeCallMetrics.class) {
+				if (!m_serviceListenersLoaded) {
+					Iterator<INativeCallMetricsListener> listenersIt = PlatformUtils.getService(INativeCallMetricsListener.class);
+					while (listenersIt.hasNext()) {
+						m_listeners.add(listenersIt.next());
+					}
+					m_serviceListenersLoaded = true;
+				}
+			}
+		}
+		m_enabled = enabled;
+	}
+
+	/**
+	 * Adds a listener to be notified about native calls and finished operations
+	 *
+	 * @param listener listener
+	 */
+	public static void addListener(INativeCallMetricsListener listener) {
+		m_listeners.addIfAbsent(listener);
+	}
+
+	/**
+	 * Removes a listener
+	 *
+	 * @param listener listener
+	 */
+	public static void removeListener(INativeCallMetricsListener listener) {
+		m_listeners.remove(listener);
+	}
+
+	/**
+	 * Starts tracking a high level operation for the current thread. Operations may be nested,
+	 * e.g. a <code>NotesSearch.search</code> inside <code>SyncUtil.sync</code>; native calls are
+	 * counted for all running operations of the thread.
+	 *
+	 * @param name operation name
+	 * @return operation that needs to be ended via {@link NativeOperation#end()} in a finally block or null if metrics are disabled
+	 */
+	public static NativeOperation beginOperation(String name) {
+		if (!m_enabled) {
+			return null;
+		}
+		ThreadState state = m_threadState.get();
+		NativeOperation op = new NativeOperation(name, state.m_currentOperation);
+		state.m_currentOperation = op;
+		return op;
+	}
+
+	/**
+	 * Returns the innermost running operation of the current thread
+	 *
+	 * @return operation or null if there is none or metrics are disabled
+	 */
+	public static NativeOperation getCurrentOperation() {
+		if (!m_enabled) {
+			return null;
+		}
+		return m_threadState.get().m_currentOperation;
+	}
+
+	static void endOperation(NativeOperation op) {
+		if (op.getThread()!=Thread.currentThread()) {
+			throw new NotesError(0, "Operation "+op.getName()+" must be ended by the thread that started it");
+		}
+		ThreadState state = m_threadState.get();
+		if (state.m_currentOperation==op) {
+			state.m_currentOperation = op.getParent();
+		}
+
+		NativeOperationStats stats = m_statsByOperation.get(op.getName());
+		if (stats==null) {
+			stats = m_statsByOperation.computeIfAbsent(op.getName(), (key) -> { return new NativeOperationStats(key); });
+		}
+		stats.add(op);
+
+		for (INativeCallMetricsListener currListener : m_listeners) {
+			currListener.operationFinished(op);
+		}
+	}
+
+	static void addCallbackNanos(NativeOperation op, long nanos) {
+		if (op.getThread()!=Thread.currentThread()) {
+			return;
+		}
+		ThreadState state = m_threadState.get();
+		op.callbackFinished(nanos, state.m_nativeCallDepth>0);
+	}
+
+	/**
+	 * Internal method called by the API wrapper before invoking a native function
+	 *
+	 * @return start time in nanoseconds to be passed to {@link #callFinished(String, long, long, short)}
+	 */
+	public static long callStarted() {
+		m_threadState.get().m_nativeCallDepth++;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Internal method called by the API wrapper after a native function has returned
+	 *
+	 * @param functionName name of the C API function
+	 * @param startNanos value returned by {@link #callStarted()}
+	 * @param bytesTransferred number of bytes read or written or 0 if unknown
+	 * @param status returned STATUS masked with ERR_MASK or 0
+	 */
+	public static void callFinished(String functionName, long startNanos, long bytesTransferred, short status) {
+		long durationNanos = System.nanoTime() - startNanos;
+
+		ThreadState state = m_threadState.get();
+		if (state.m_nativeCallDepth>0) {
+			state.m_nativeCallDepth--;
+		}
+		boolean outermost = state.m_nativeCallDepth==0;
+
+		NativeFunctionStats stats = m_statsByFunction.get(functionName);
+		if (stats==null) {
+			stats = m_statsByFunction.computeIfAbsent(functionName, (key) -> { return new NativeFunctionStats(key); });
+		}
+		stats.record(durationNanos, bytesTransferred, status);
+
+		NativeOperation op = state.m_currentOperation;
+		while (op!=null) {
+			op.nativeCallFinished(durationNanos, outermost);
+			op = op.getParent();
+		}
+
+		for (INativeCallMetricsListener currListener : m_listeners) {
+			currListener.nativeCallFinished(functionName, durationNanos, bytesTransferred, status);
+		}
+	}
+
+	/**
+	 * Returns the statistics of all called C API functions
+	 *
+	 * @return statistics sorted by total call duration in descending order
+	 */
+	public static List<NativeFunctionStats> getFunctionStats() {
+		List<NativeFunctionStats> stats = new ArrayList<NativeFunctionStats>(m_statsByFunction.values());
+		Collections.sort(stats, new Comparator<NativeFunctionStats>() {
+
+			@Override
+			public int compare(NativeFunctionStats o1, NativeFunctionStats o2) {
+				return Long.compare(o2.getTotalNanos(), o1.getTotalNanos());
+			}
+		});
+		return stats;
+	}
+
+	/**
+	 * Returns the statistics of a single C API function
+	 *
+	 * @param functionName function name, e.g. "NIFReadEntries"
+	 * @return statistics or null if the function has not been called
+	 */
+	public static NativeFunctionStats getFunctionStats(String functionName) {
+		return m_statsByFunction.get(functionName);
+	}
+
+	/**
+	 * Returns the statistics of all finished high level operations
+	 *
+	 * @return statistics sorted by operation name
+	 */
+	public static List<NativeOperationStats> getOperationStats() {
+		return new ArrayList<NativeOperationStats>(new TreeMap<String,NativeOperationStats>(m_statsByOperation).values());
+	}
+
+	/**
+	 * Returns the statistics of a high level operation
+	 *
+	 * @param name operation name, e.g. "NotesSearch.search"
+	 * @return statistics or null if no such operation has finished yet
+	 */
+	public static NativeOperationStats getOperationStats(String name) {
+		return m_statsByOperation.get(name);
+	}
+
+	/**
+	 * Clears all collected metrics
+	 */
+	public static void reset() {
+		for (NativeFunctionStats currStats : m_statsByFunction.values()) {
+			currStats.reset();
+		}
+		for (NativeOperationStats currStats : m_statsByOperation.values()) {
+			currStats.reset();
+		}
+	}
+
+	/**
+	 * Registers a {@link NativeCallMetricsMXBean} under {@link #MBEAN_NAME} in the platform MBean server
+	 */
+	public static synchronized void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MXBeanImpl(), name);
+			}
+		}
+		catch (Exception e) {
+			throw new NotesError(0, "Error registering native call metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Removes the {@link NativeCallMetricsMXBean} from the platform MBean server
+	 */
+	public static synchronized void unregisterMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		}
+		catch (Exception e) {
+			throw new NotesError(0, "Error unregistering native call metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Implementation of the JMX interface
+	 */
+	private static class MXBeanImpl implements NativeCallMetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return NativeCallMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			NativeCallMetrics.setEnabled(enabled);
+		}
+
+		@Override
+		public void reset() {
+			NativeCallMetrics.reset();
+		}
+
+		@Override
+		public long getTotalCalls() {
+			long calls = 0;
+			for (NativeFunctionStats currStats : m_statsByFunction.values()) {
+				calls += currStats.getCallCount();
+			}
+			return calls;
+		}
+
+		@Override
+		public Map<String, Long> getCallCounts() {
+			Map<String,Long> values = new TreeMap<String,Long>();
+			for (NativeFunctionStats currStats : m_statsByFunction.values()) {
+				values.put(currStats.getFunctionName(), currStats.getCallCount());
+			}
+			return values;
+		}
+
+		@Override
+		public Map<String, Long> getTotalMicros() {
+			Map<String,Long> values = new TreeMap<String,Long>();
+			for (NativeFunctionStats currStats : m_statsByFunction.values()) {
+				values.put(currStats.getFunctionName(), currStats.getTotalNanos() / 1000);
+			}
+			return values;
+		}
+
+		@Override
+		public Map<String, Long> getErrorCounts() {
+			Map<String,Long> values = new TreeMap<String,Long>();
+			for (NativeFunctionStats currStats : m_statsByFunction.values()) {
+				values.put(currStats.getFunctionName(), currStats.getErrorCount());
+			}
+			return values;
+		}
+
+		@Override
+		public Map<String, Long> getBytesTransferred() {
+			Map<String,Long> values = new TreeMap<String,Long>();
+			for (NativeFunctionStats currStats : m_statsByFunction.values()) {
+				values.put(currStats.getFunctionName(), currStats.getBytesTransferred());
+			}
+			return values;
+		}
+
+		@Override
+		public String[] getFunctionSummaries() {
+			List<NativeFunctionStats> stats = getFunctionStats();
+			String[] summaries = new String[stats.size()];
+			for (int i=0; i<summaries.length; i++) {
+				NativeFunctionStats currStats = stats.get(i);
+				summaries[i] = currStats.toString() + (currStats.getErrorCount()==0 ? "" : " errors: "+currStats.getErrorCounts());
+			}
+			return summaries;
+		}
+
+		@Override
+		public String[] getOperationSummaries() {
+			List<NativeOperationStats> stats = getOperationStats();
+			String[] summaries = new String[stats.size()];
+			for (int i=0; i<summaries.length; i++) {
+				summaries[i] = stats.get(i).toString();
+			}
+			return summaries;
+		}
+	}
+}
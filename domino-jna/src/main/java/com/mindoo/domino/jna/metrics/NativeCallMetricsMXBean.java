@@ -0,0 +1,82 @@
+package com.mindoo.domino.jna.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX interface to read the collected {@link NativeCallMetrics}, registered via
+ * {@link NativeCallMetrics#registerMBean()}
+ *
+ * @author Karsten Lehmann
+ */
+public interface NativeCallMetricsMXBean {
+
+	/**
+	 * Checks whether metrics are collected
+	 *
+	 * @return true if enabled
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enables or disables collecting metrics
+	 *
+	 * @param enabled true to enable
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Clears all collected metrics
+	 */
+	void reset();
+
+	/**
+	 * Returns the total number of recorded native calls
+	 *
+	 * @return calls
+	 */
+	long getTotalCalls();
+
+	/**
+	 * Returns the number of calls per C API function
+	 *
+	 * @return map of function name and calls
+	 */
+	Map<String,Long> getCallCounts();
+
+	/**
+	 * Returns the total call duration per C API function
+	 *
+	 * @return map of function name and duration in microseconds
+	 */
+	Map<String,Long> getTotalMicros();
+
+	/**
+	 * Returns the number of calls that returned an error per C API function
+	 *
+	 * @return map of function name and error count
+	 */
+	Map<String,Long> getErrorCounts();
+
+	/**
+	 * Returns the transferred bytes per C API function
+	 *
+	 * @return map of function name and bytes
+	 */
+	Map<String,Long> getBytesTransferred();
+
+	/**
+	 * Returns one line per C API function with call count, latencies and errors,
+	 * sorted by total duration
+	 *
+	 * @return summaries
+	 */
+	String[] getFunctionSummaries();
+
+	/**
+	 * Returns one line per high level operation with its time breakdown
+	 *
+	 * @return summaries
+	 */
+	String[] getOperationSummaries();
+
+}
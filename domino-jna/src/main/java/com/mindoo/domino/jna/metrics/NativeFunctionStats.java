@@ -0,0 +1,228 @@
+package com.mindoo.domino.jna.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call statistics for a single native C API function, collected by {@link NativeCallMetrics}.<br>
+ * <br>
+ * Call durations are counted in a latency histogram with power-of-two microsecond buckets:
+ * bucket 0 contains calls below 1 microsecond, bucket <code>i</code> calls between
+ * 2<sup>i-1</sup> and 2<sup>i</sup> microseconds and the last bucket all slower calls.
+ *
+ * @author Karsten Lehmann
+ */
+public class NativeFunctionStats {
+	/** number of histogram buckets, the last one covers calls of 2^(HISTOGRAM_BUCKETS-2) microseconds (~16s) and more */
+	public static final int HISTOGRAM_BUCKETS = 26;
+
+	private final String m_functionName;
+	private final LongAdder m_calls = new LongAdder();
+	private final LongAdder m_errors = new LongAdder();
+	private final LongAdder m_totalNanos = new LongAdder();
+	private final LongAdder m_bytes = new LongAdder();
+	private final AtomicLong m_maxNanos = new AtomicLong();
+	private final AtomicLongArray m_histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+	private final ConcurrentHashMap<Short,LongAdder> m_errorCounts = new ConcurrentHashMap<Short,LongAdder>();
+
+	NativeFunctionStats(String functionName) {
+		m_functionName = functionName;
+	}
+
+	void record(long durationNanos, long bytesTransferred, short status) {
+		m_calls.increment();
+		m_totalNanos.add(durationNanos);
+		if (bytesTransferred>0) {
+			m_bytes.add(bytesTransferred);
+		}
+		if (status!=0) {
+			m_errors.increment();
+			LongAdder errCount = m_errorCounts.get(status);
+			if (errCount==null) {
+				errCount = m_errorCounts.computeIfAbsent(status, (key) -> { return new LongAdder(); });
+			}
+			errCount.increment();
+		}
+
+		long max;
+		while (durationNanos > (max = m_maxNanos.get())) {
+			if (m_maxNanos.compareAndSet(max, durationNanos)) {
+				break;
+			}
+		}
+
+		m_histogram.incrementAndGet(getHistogramBucket(durationNanos));
+	}
+
+	/**
+	 * Computes the histogram bucket for a call duration
+	 *
+	 * @param durationNanos duration in nanoseconds
+	 * @return bucket index
+	 */
+	static int getHistogramBucket(long durationNanos) {
+		long micros = durationNanos / 1000;
+		if (micros<=0) {
+			return 0;
+		}
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(bucket, HISTOGRAM_BUCKETS-1);
+	}
+
+	/**
+	 * Returns the upper bound of a histogram bucket
+	 *
+	 * @param bucket bucket index
+	 * @return upper bound in microseconds (exclusive) or {@link Long#MAX_VALUE} for the last bucket
+	 */
+	public static long getHistogramBucketUpperBoundMicros(int bucket) {
+		if (bucket>=HISTOGRAM_BUCKETS-1) {
+			return Long.MAX_VALUE;
+		}
+		return 1L << bucket;
+	}
+
+	/**
+	 * Returns the name of the C API function
+	 *
+	 * @return name
+	 */
+	public String getFunctionName() {
+		return m_functionName;
+	}
+
+	/**
+	 * Returns the number of calls
+	 *
+	 * @return calls
+	 */
+	public long getCallCount() {
+		return m_calls.sum();
+	}
+
+	/**
+	 * Returns the number of calls that returned an error code
+	 *
+	 * @return error count
+	 */
+	public long getErrorCount() {
+		return m_errors.sum();
+	}
+
+	/**
+	 * Returns how often each error code has been returned
+	 *
+	 * @return map of error code (STATUS masked with ERR_MASK) and count, sorted by error code
+	 */
+	public Map<Short,Long> getErrorCounts() {
+		Map<Short,Long> counts = new TreeMap<Short,Long>();
+		for (Entry<Short,LongAdder> currEntry : m_errorCounts.entrySet()) {
+			counts.put(currEntry.getKey(), currEntry.getValue().sum());
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the total duration of all calls, including the JNA argument marshalling
+	 * and the time spent in Java callbacks invoked by the function
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return m_totalNanos.sum();
+	}
+
+	/**
+	 * Returns the duration of the slowest call
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return m_maxNanos.get();
+	}
+
+	/**
+	 * Returns the average call duration
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getAverageNanos() {
+		long calls = getCallCount();
+		return calls==0 ? 0 : getTotalNanos() / calls;
+	}
+
+	/**
+	 * Returns the number of bytes read or written by the function, e.g. the size of the
+	 * buffers returned by NIFReadEntries or the object data read with NSFDbReadObject.
+	 * Returns 0 for functions where the transferred data size is not known.
+	 *
+	 * @return bytes
+	 */
+	public long getBytesTransferred() {
+		return m_bytes.sum();
+	}
+
+	/**
+	 * Returns a copy of the latency histogram
+	 *
+	 * @return call counts per bucket, see {@link #getHistogramBucketUpperBoundMicros(int)}
+	 */
+	public long[] getHistogram() {
+		long[] histogram = new long[HISTOGRAM_BUCKETS];
+		for (int i=0; i<HISTOGRAM_BUCKETS; i++) {
+			histogram[i] = m_histogram.get(i);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Estimates a latency percentile from the histogram
+	 *
+	 * @param percentile percentile between 0 and 100, e.g. 99
+	 * @return upper bound of the histogram bucket containing the percentile in microseconds
+	 */
+	public long getPercentileMicros(double percentile) {
+		long[] histogram = getHistogram();
+		long total = 0;
+		for (long currCount : histogram) {
+			total += currCount;
+		}
+		if (total==0) {
+			return 0;
+		}
+		long threshold = (long) Math.ceil(total * Math.max(0, Math.min(100, percentile)) / 100);
+		long sum = 0;
+		for (int i=0; i<histogram.length; i++) {
+			sum += histogram[i];
+			if (sum>=threshold && sum>0) {
+				return i==HISTOGRAM_BUCKETS-1 ? getMaxNanos() / 1000 : getHistogramBucketUpperBoundMicros(i);
+			}
+		}
+		return getMaxNanos() / 1000;
+	}
+
+	void reset() {
+		m_calls.reset();
+		m_errors.reset();
+		m_totalNanos.reset();
+		m_bytes.reset();
+		m_maxNanos.set(0);
+		for (int i=0; i<HISTOGRAM_BUCKETS; i++) {
+			m_histogram.set(i, 0);
+		}
+		m_errorCounts.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "NativeFunctionStats [function="+m_functionName+", calls="+getCallCount()+", errors="+getErrorCount()+
+				", total="+(getTotalNanos()/1000)+"us, avg="+(getAverageNanos()/1000)+"us, p99<="+getPercentileMicros(99)+
+				"us, max="+(getMaxNanos()/1000)+"us, bytes="+getBytesTransferred()+"]";
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.mindoo.domino.jna.metrics;
+
+/**
+ * A running or finished high level operation like a view read via
+ * <code>NotesCollection.getAllEntries</code> or a <code>NotesSearch.search</code>,
+ * tracked by {@link NativeCallMetrics} to break down where its time is spent.<br>
+ * <br>
+ * Operations are bound to the thread that started them. Native calls made by this thread while
+ * the operation is running are summed up as native time (only the outermost call is counted if
+ * native code calls back into Java which calls native code again). Time spent in Java callbacks
+ * is reported by the operation code via {@link #addCallbackNanos(long)}. If a callback is
+ * invoked by native code (e.g. from NSFSearch), its time is subtracted from the native time.<br>
+ * <br>
+ * Native time includes the JNA argument marshalling, so {@link #getNativeNanos()} is an upper
+ * bound of the time spent waiting on the server or in the Notes client code.
+ *
+ * @author Karsten Lehmann
+ */
+public class NativeOperation {
+	private final String m_name;
+	private final NativeOperation m_parent;
+	private final Thread m_thread;
+	private final long m_startNanos;
+	private long m_endNanos;
+	private long m_nativeCalls;
+	private long m_nativeNanos;
+	private long m_callbackNanos;
+	private long m_callbackInNativeNanos;
+
+	NativeOperation(String name, NativeOperation parent) {
+		m_name = name;
+		m_parent = parent;
+		m_thread = Thread.currentThread();
+		m_startNanos = System.nanoTime();
+	}
+
+	NativeOperation getParent() {
+		return m_parent;
+	}
+
+	Thread getThread() {
+		return m_thread;
+	}
+
+	void nativeCallFinished(long durationNanos, boolean outermost) {
+		m_nativeCalls++;
+		if (outermost) {
+			m_nativeNanos += durationNanos;
+		}
+	}
+
+	/**
+	 * Reports the time spent in a Java callback of the operation, e.g. in a view lookup callback
+	 * or a search callback. Calls from other threads than the one that started the operation
+	 * are ignored.
+	 *
+	 * @param nanos duration in nanoseconds
+	 */
+	public void addCallbackNanos(long nanos) {
+		NativeCallMetrics.addCallbackNanos(this, nanos);
+	}
+
+	void callbackFinished(long nanos, boolean insideNativeCall) {
+		m_callbackNanos += nanos;
+		if (insideNativeCall) {
+			m_callbackInNativeNanos += nanos;
+		}
+	}
+
+	/**
+	 * Ends the operation and adds its durations to the {@link NativeOperationStats}
+	 * of the operation name
+	 */
+	public void end() {
+		if (m_endNanos==0) {
+			m_endNanos = System.nanoTime();
+			NativeCallMetrics.endOperation(this);
+		}
+	}
+
+	/**
+	 * Returns the operation name
+	 *
+	 * @return name, e.g. "NotesCollection.getAllEntries"
+	 */
+	public String getName() {
+		return m_name;
+	}
+
+	/**
+	 * Checks whether {@link #end()} has been called
+	 *
+	 * @return true if ended
+	 */
+	public boolean isEnded() {
+		return m_endNanos!=0;
+	}
+
+	/**
+	 * Returns the wall clock duration of the operation, up to now if it is still running
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getWallNanos() {
+		return (m_endNanos==0 ? System.nanoTime() : m_endNanos) - m_startNanos;
+	}
+
+	/**
+	 * Returns the number of native calls made by the operation
+	 *
+	 * @return calls
+	 */
+	public long getNativeCalls() {
+		return m_nativeCalls;
+	}
+
+	/**
+	 * Returns the time spent in native calls, excluding Java callbacks invoked by native code
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getNativeNanos() {
+		return Math.max(0, m_nativeNanos - m_callbackInNativeNanos);
+	}
+
+	/**
+	 * Returns the time spent in Java callbacks of the operation
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getCallbackNanos() {
+		return m_callbackNanos;
+	}
+
+	/**
+	 * Returns the remaining time spent in Domino JNA code, e.g. for decoding buffers
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getOtherNanos() {
+		return Math.max(0, getWallNanos() - getNativeNanos() - getCallbackNanos());
+	}
+
+	@Override
+	public String toString() {
+		return "NativeOperation [name="+m_name+", wall="+(getWallNanos()/1000)+"us, native="+(getNativeNanos()/1000)+
+				"us, nativeCalls="+m_nativeCalls+", callbacks="+(getCallbackNanos()/1000)+"us, other="+(getOtherNanos()/1000)+"us]";
+	}
+
+}
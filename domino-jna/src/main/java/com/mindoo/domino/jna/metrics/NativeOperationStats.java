@@ -0,0 +1,128 @@
+package com.mindoo.domino.jna.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Summary of all finished {@link NativeOperation}s with the same name
+ *
+ * @author Karsten Lehmann
+ */
+public class NativeOperationStats {
+	private final String m_name;
+	private final LongAdder m_count = new LongAdder();
+	private final LongAdder m_wallNanos = new LongAdder();
+	private final LongAdder m_nativeNanos = new LongAdder();
+	private final LongAdder m_nativeCalls = new LongAdder();
+	private final LongAdder m_callbackNanos = new LongAdder();
+	private final AtomicLong m_maxWallNanos = new AtomicLong();
+
+	NativeOperationStats(String name) {
+		m_name = name;
+	}
+
+	void add(NativeOperation op) {
+		long wallNanos = op.getWallNanos();
+		m_count.increment();
+		m_wallNanos.add(wallNanos);
+		m_nativeNanos.add(op.getNativeNanos());
+		m_nativeCalls.add(op.getNativeCalls());
+		m_callbackNanos.add(op.getCallbackNanos());
+
+		long max;
+		while (wallNanos > (max = m_maxWallNanos.get())) {
+			if (m_maxWallNanos.compareAndSet(max, wallNanos)) {
+				break;
+			}
+		}
+	}
+
+	void reset() {
+		m_count.reset();
+		m_wallNanos.reset();
+		m_nativeNanos.reset();
+		m_nativeCalls.reset();
+		m_callbackNanos.reset();
+		m_maxWallNanos.set(0);
+	}
+
+	/**
+	 * Returns the operation name
+	 *
+	 * @return name
+	 */
+	public String getName() {
+		return m_name;
+	}
+
+	/**
+	 * Returns the number of finished operations
+	 *
+	 * @return count
+	 */
+	public long getCount() {
+		return m_count.sum();
+	}
+
+	/**
+	 * Returns the total wall clock time of all operations
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getWallNanos() {
+		return m_wallNanos.sum();
+	}
+
+	/**
+	 * Returns the wall clock time of the slowest operation
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getMaxWallNanos() {
+		return m_maxWallNanos.get();
+	}
+
+	/**
+	 * Returns the total time spent in native calls, see {@link NativeOperation#getNativeNanos()}
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getNativeNanos() {
+		return m_nativeNanos.sum();
+	}
+
+	/**
+	 * Returns the total number of native calls
+	 *
+	 * @return calls
+	 */
+	public long getNativeCalls() {
+		return m_nativeCalls.sum();
+	}
+
+	/**
+	 * Returns the total time spent in Java callbacks
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getCallbackNanos() {
+		return m_callbackNanos.sum();
+	}
+
+	/**
+	 * Returns the remaining time spent in Domino JNA code
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getOtherNanos() {
+		return Math.max(0, getWallNanos() - getNativeNanos() - getCallbackNanos());
+	}
+
+	@Override
+	public String toString() {
+		return "NativeOperationStats [name="+m_name+", count="+getCount()+", wall="+(getWallNanos()/1000)+
+				"us, maxWall="+(getMaxWallNanos()/1000)+"us, native="+(getNativeNanos()/1000)+"us, nativeCalls="+getNativeCalls()+
+				", callbacks="+(getCallbackNanos()/1000)+"us, other="+(getOtherNanos()/1000)+"us]";
+	}
+
+}
@@ -1,7 +1,11 @@
 package com.mindoo.domino.jna.richtext.conversion;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.mindoo.domino.jna.IAdaptable;
 import com.mindoo.domino.jna.constants.CDRecordType;
+import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.richtext.FontStyle;
 import com.mindoo.domino.jna.richtext.ICompoundText;
 import com.mindoo.domino.jna.richtext.IRichTextNavigator;
@@ -14,14 +18,16 @@ import com.sun.jna.Pointer;
  * 
  * @author Karsten Lehmann
  */
-public abstract class AbstractMailMergeConversion implements IRichTextConversion {
+public abstract class AbstractMailMergeConversion implements IStreamingRichTextConversion {
+	/** max number of characters we write into one CDTEXT record */
+	private static final int MAX_CHARS_PER_RECORD = 16000;
 	
 	public AbstractMailMergeConversion() {
 	}
 	
 	@Override
 	public boolean isMatch(IRichTextNavigator nav) {
-		//TODO add support for search word recognition across CD record boundaries like in this JS lib: https://github.com/padolsey/findAndReplaceDOMText
+		//matches across CD record boundaries are only supported by MailMergeTemplate
 		if (nav.gotoFirst()) {
 			do {
 				if (CDRecordType.TEXT.getConstant() == nav.getCurrentRecordTypeAsShort()) {
@@ -104,4 +110,84 @@ public abstract class AbstractMailMergeConversion implements IRichTextConversion
 			while (source.gotoNext());
 		}
 	}
+	
+	@Override
+	public boolean convertRecord(IRichTextNavigator source, ICompoundText<?> target) {
+		if (CDRecordType.TEXT.getConstant() == source.getCurrentRecordTypeAsShort()) {
+			Memory recordData = source.getCurrentRecordData();
+			int txtMemLength = source.getCurrentRecordDataLength()-4;
+			
+			if (txtMemLength>0) {
+				//skip FONTID
+				String txt = NotesStringUtils.fromLMBCS(recordData.share(4), txtMemLength);
+				if (containsMatch(txt)) {
+					String newTxt = replaceAllMatches(txt);
+					writeTextRecords(recordData.getByteArray(0, 4), newTxt, target);
+					return true;
+				}
+			}
+		}
+		source.copyCurrentRecordTo(target);
+		return false;
+	}
+	
+	/**
+	 * Writes CDTEXT records directly instead of calling {@link ICompoundText#addText(String, com.mindoo.domino.jna.richtext.TextStyle, FontStyle, boolean)},
+	 * because the target may not contain the preceding paragraph records when used in a
+	 * {@link RichTextConversionPipeline} or {@link MailMergeTemplate}
+	 * 
+	 * @param fontIdArr FONTID of the original record
+	 * @param txt new text
+	 * @param target target
+	 */
+	static void writeTextRecords(byte[] fontIdArr, String txt, ICompoundText<?> target) {
+		for (Memory currRecordMem : createTextRecords(fontIdArr, txt)) {
+			target.addCDRecords(currRecordMem);
+		}
+	}
+	
+	/**
+	 * Creates CDTEXT records for a text, split into multiple records for long text
+	 * 
+	 * @param fontIdArr FONTID
+	 * @param txt text
+	 * @return records
+	 */
+	static List<Memory> createTextRecords(byte[] fontIdArr, String txt) {
+		List<Memory> records = new ArrayList<Memory>();
+		int startIdx = 0;
+		while (startIdx<txt.length()) {
+			int endIdx = Math.min(txt.length(), startIdx+MAX_CHARS_PER_RECORD);
+			//do not split a surrogate pair across two records
+			if (endIdx<txt.length() && Character.isHighSurrogate(txt.charAt(endIdx-1))) {
+				endIdx--;
+			}
+			String currTxt = txt.substring(startIdx, endIdx);
+			startIdx = endIdx;
+			//line breaks are stored as null bytes
+			Memory txtMem = NotesStringUtils.toLMBCS(currTxt, false, true);
+			int txtMemLength = txtMem==null ? 0 : (int) txtMem.size();
+			
+//			typedef struct {
+//				   WSIG   Header; /* Tag and length */
+//				   FONTID FontID; /* Font ID */
+//				/* The 8-bit text string follows... */
+//				} CDTEXT;
+			int recordLength = 4 + 4 + txtMemLength;
+			Memory recordMem = new Memory(recordLength);
+			recordMem.setShort(0, NotesConstants.SIG_CD_TEXT);
+			recordMem.setShort(2, (short) (recordLength & 0xffff));
+			recordMem.write(4, fontIdArr, 0, 4);
+			if (txtMemLength>0) {
+				recordMem.write(8, txtMem.getByteArray(0, txtMemLength), 0, txtMemLength);
+			}
+			records.add(recordMem);
+		}
+		return records;
+	}
+	
+	@Override
+	public boolean finish(ICompoundText<?> target) {
+		return false;
+	}
 }
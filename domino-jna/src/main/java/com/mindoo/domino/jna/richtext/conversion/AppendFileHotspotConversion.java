@@ -9,7 +9,7 @@ import com.mindoo.domino.jna.richtext.IRichTextNavigator;
  * 
  * @author Karsten Lehmann
  */
-public class AppendFileHotspotConversion implements IRichTextConversion {
+public class AppendFileHotspotConversion implements IStreamingRichTextConversion {
 	private String m_attachmentProgrammaticName;
 	private String m_fileNameToDisplay;
 	
@@ -60,4 +60,16 @@ public class AppendFileHotspotConversion implements IRichTextConversion {
 		target.addFileHotspot(m_attachmentProgrammaticName, m_fileNameToDisplay);
 	}
 
+	@Override
+	public boolean convertRecord(IRichTextNavigator source, ICompoundText<?> target) {
+		source.copyCurrentRecordTo(target);
+		return false;
+	}
+
+	@Override
+	public boolean finish(ICompoundText<?> target) {
+		target.addFileHotspot(m_attachmentProgrammaticName, m_fileNameToDisplay);
+		return true;
+	}
+
 }
@@ -0,0 +1,37 @@
+package com.mindoo.domino.jna.richtext.conversion;
+
+import com.mindoo.domino.jna.richtext.ICompoundText;
+import com.mindoo.domino.jna.richtext.IRichTextNavigator;
+
+/**
+ * Extension of {@link IRichTextConversion} for conversions that can process the
+ * CD record stream one record at a time. {@link RichTextConversionPipeline} pushes
+ * each record through consecutive streaming conversions in a single pass, without
+ * calling {@link #isMatch(IRichTextNavigator)} first.
+ *
+ * @author Karsten Lehmann
+ */
+public interface IStreamingRichTextConversion extends IRichTextConversion {
+
+	/**
+	 * Converts the CD record at the current position of the navigator. Implementations
+	 * either copy the record to the target via {@link IRichTextNavigator#copyCurrentRecordTo(ICompoundText)},
+	 * write different content or skip it. The navigator position must not be changed.
+	 * The record data is only valid until this method returns.
+	 *
+	 * @param source navigator positioned on the current record
+	 * @param target target to write conversion result
+	 * @return true if the output differs from the current record
+	 */
+	public boolean convertRecord(IRichTextNavigator source, ICompoundText<?> target);
+
+	/**
+	 * Method is called after the last record has been processed, e.g. to append
+	 * content or to write records held back in {@link #convertRecord(IRichTextNavigator, ICompoundText)}.
+	 *
+	 * @param target target to write conversion result
+	 * @return true if content has been added
+	 */
+	public boolean finish(ICompoundText<?> target);
+
+}
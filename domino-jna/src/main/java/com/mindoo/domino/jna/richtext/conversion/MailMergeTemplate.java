@@ -0,0 +1,504 @@
+package com.mindoo.domino.jna.richtext.conversion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.constants.CDRecordType;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.CDRecordBuffer;
+import com.mindoo.domino.jna.richtext.ICompoundText;
+import com.mindoo.domino.jna.richtext.IRichTextNavigator;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
+import com.sun.jna.Memory;
+
+/**
+ * Precompiled mail merge template.<br>
+ * <br>
+ * The richtext of the template is parsed once into a list of static CD record segments
+ * and placeholder slots. Rendering the template for a value map just writes the static
+ * segments and the CDTEXT records for the placeholder values, without decoding and
+ * searching the template text again. In contrast to {@link SimpleMailMergeConversion},
+ * placeholders are also found when they span multiple CDTEXT records, e.g. because
+ * of a font change in the middle of the placeholder.<br>
+ * <br>
+ * Instances are immutable and can be rendered from multiple threads at the same time.
+ *
+ * @author Karsten Lehmann
+ */
+public class MailMergeTemplate {
+	private static final int SEGMENT_STATIC = 0;
+	private static final int SEGMENT_SLOT = 1;
+
+	private String[] m_placeholders;
+	/** static CD records of the template */
+	private Memory m_staticData;
+	private int[] m_segmentTypes;
+	/** for static segments the data offset, for slots the placeholder index */
+	private int[] m_segmentValues;
+	/** for static segments the data length, for slots the index in {@link #m_slotFontIds} */
+	private int[] m_segmentLengths;
+	private byte[][] m_slotFontIds;
+	/** template text that a slot replaces, used if there is no value for the placeholder */
+	private String[] m_slotOriginalTexts;
+
+	private MailMergeTemplate(String[] placeholders, byte[] staticData, int staticDataLength, SegmentList segments) {
+		m_placeholders = placeholders;
+		if (staticDataLength>0) {
+			m_staticData = new Memory(staticDataLength);
+			m_staticData.write(0, staticData, 0, staticDataLength);
+		}
+		m_segmentTypes = Arrays.copyOf(segments.m_types, segments.m_size);
+		m_segmentValues = Arrays.copyOf(segments.m_values, segments.m_size);
+		m_segmentLengths = Arrays.copyOf(segments.m_lengths, segments.m_size);
+		m_slotFontIds = segments.m_slotFontIds.toArray(new byte[segments.m_slotFontIds.size()][]);
+		m_slotOriginalTexts = segments.m_slotOriginalTexts.toArray(new String[segments.m_slotOriginalTexts.size()]);
+	}
+
+	/**
+	 * Compiles the content of a richtext item into a template
+	 *
+	 * @param note note containing the template
+	 * @param itemName richtext item name
+	 * @param placeholders placeholder strings to search for, e.g. "&lt;&lt;firstname&gt;&gt;"
+	 * @param ignoreCase true to ignore the case when searching
+	 * @return template
+	 */
+	public static MailMergeTemplate compile(NotesNote note, String itemName, Collection<String> placeholders, boolean ignoreCase) {
+		return compile(note.getRichtextNavigator(itemName), placeholders, ignoreCase);
+	}
+
+	/**
+	 * Compiles the content of a richtext navigator into a template
+	 *
+	 * @param nav richtext navigator
+	 * @param placeholders placeholder strings to search for, e.g. "&lt;&lt;firstname&gt;&gt;"
+	 * @param ignoreCase true to ignore the case when searching
+	 * @return template
+	 */
+	public static MailMergeTemplate compile(IRichTextNavigator nav, Collection<String> placeholders, boolean ignoreCase) {
+		List<String> placeholderList = new ArrayList<String>(placeholders.size());
+		for (String currPlaceholder : placeholders) {
+			if (currPlaceholder==null || currPlaceholder.length()==0)
+				throw new IllegalArgumentException("Placeholders cannot be empty");
+			placeholderList.add(currPlaceholder);
+		}
+
+		Compiler compiler = new Compiler(placeholderList.toArray(new String[placeholderList.size()]), ignoreCase);
+
+		if (nav.gotoFirst()) {
+			do {
+				if (CDRecordType.TEXT.getConstant() == nav.getCurrentRecordTypeAsShort()) {
+					compiler.addTextRecord(nav);
+				}
+				else {
+					compiler.flushTextRun();
+					compiler.addStatic(nav.getCurrentRecordDataWithHeader().getByteArray(0, nav.getCurrentRecordTotalLength()));
+				}
+			}
+			while (nav.gotoNext());
+		}
+		compiler.flushTextRun();
+
+		return new MailMergeTemplate(compiler.m_placeholders, compiler.m_staticData, compiler.m_staticDataLength,
+				compiler.m_segments);
+	}
+
+	/**
+	 * Returns the placeholders of this template
+	 *
+	 * @return placeholders
+	 */
+	public List<String> getPlaceholders() {
+		return Arrays.asList(m_placeholders.clone());
+	}
+
+	/**
+	 * Returns the number of placeholder occurrences found in the template
+	 *
+	 * @return number of slots
+	 */
+	public int getSlotCount() {
+		return m_slotFontIds.length;
+	}
+
+	/**
+	 * Writes the template content with placeholder values to a target
+	 *
+	 * @param values placeholder values, using the placeholder strings as keys; placeholders without value are not replaced
+	 * @param target target
+	 */
+	public void render(Map<String,String> values, ICompoundText<?> target) {
+		for (int i=0; i<m_segmentTypes.length; i++) {
+			if (m_segmentTypes[i]==SEGMENT_STATIC) {
+				int offset = m_segmentValues[i];
+				int length = m_segmentLengths[i];
+				if (target instanceof CDRecordBuffer) {
+					((CDRecordBuffer) target).addCDRecords(m_staticData.share(offset), length);
+				}
+				else {
+					target.addCDRecords((Memory) m_staticData.share(offset, length));
+				}
+			}
+			else {
+				int slotIdx = m_segmentLengths[i];
+				String value = values.get(m_placeholders[m_segmentValues[i]]);
+				if (value==null) {
+					value = m_slotOriginalTexts[slotIdx];
+				}
+				if (value.length()>0) {
+					AbstractMailMergeConversion.writeTextRecords(m_slotFontIds[slotIdx], value, target);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the template content with placeholder values to a richtext item.
+	 * Existing richtext items with this name are replaced. The note is not saved.
+	 *
+	 * @param values placeholder values, using the placeholder strings as keys; placeholders without value are not replaced
+	 * @param note target note
+	 * @param itemName richtext item name
+	 */
+	public void renderToNote(Map<String,String> values, NotesNote note, String itemName) {
+		CDRecordBuffer buffer = new CDRecordBuffer(Long.MAX_VALUE);
+		try {
+			render(values, buffer);
+			buffer.copyToNote(note, itemName);
+		}
+		finally {
+			buffer.dispose();
+		}
+	}
+
+	/**
+	 * Callback to produce the target notes for {@link MailMergeTemplate#renderToNotes(NotesDatabase, List, String, int, IMailMergeNoteFactory)}.
+	 * Methods are called from the worker threads, so implementations need to be thread-safe.
+	 */
+	public static interface IMailMergeNoteFactory {
+
+		/**
+		 * Creates or opens the note that receives the rendered richtext, e.g. to
+		 * set the form and the recipients
+		 *
+		 * @param db database opened by the worker thread
+		 * @param index index of the value map
+		 * @param values value map
+		 * @return note
+		 */
+		public NotesNote getTargetNote(NotesDatabase db, int index, Map<String,String> values);
+
+	}
+
+	/**
+	 * Renders the template for many value maps in parallel and saves the results in notes
+	 *
+	 * @param db database, each worker thread opens it with the same server, path and user context
+	 * @param valuesList value maps
+	 * @param itemName richtext item name in the target notes
+	 * @param numThreads number of worker threads
+	 * @param factory factory to create the target notes
+	 * @return note ids of the saved notes, in the order of the value maps
+	 */
+	public int[] renderToNotes(NotesDatabase db, final List<? extends Map<String,String>> valuesList,
+			final String itemName, int numThreads, final IMailMergeNoteFactory factory) {
+		if (numThreads<1)
+			throw new IllegalArgumentException("Number of threads must be greater than 0");
+
+		final String server = db.getServer();
+		final String filePath = db.getRelativeFilePath();
+		final String asUserCanonical = db.getContextUser();
+
+		final int[] noteIds = new int[valuesList.size()];
+		final AtomicInteger nextIdx = new AtomicInteger();
+		final AtomicBoolean aborted = new AtomicBoolean();
+
+		int workerCount = Math.max(1, Math.min(numThreads, valuesList.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount, new NotesThreadFactory("MailMergeTemplate"));
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(workerCount);
+			for (int i=0; i<workerCount; i++) {
+				futures.add(executor.submit(() -> {
+					try {
+						return NotesGC.runWithAutoGC(() -> {
+							NotesDatabase workerDb = new NotesDatabase(server, filePath, asUserCanonical);
+							CDRecordBuffer buffer = new CDRecordBuffer(Long.MAX_VALUE);
+							try {
+								int idx;
+								while (!aborted.get() && (idx = nextIdx.getAndIncrement()) < valuesList.size()) {
+									Map<String,String> currValues = valuesList.get(idx);
+
+									//reuse the native memory of the buffer for all notes
+									buffer.reset();
+									render(currValues, buffer);
+
+									NotesNote note = factory.getTargetNote(workerDb, idx, currValues);
+									buffer.copyToNote(note, itemName);
+									note.update();
+									noteIds[idx] = note.getNoteId();
+									note.recycle();
+								}
+							}
+							finally {
+								buffer.dispose();
+								workerDb.recycle();
+							}
+							return null;
+						});
+					}
+					catch (Exception e) {
+						aborted.set(true);
+						throw e;
+					}
+				}));
+			}
+
+			for (Future<Object> currFuture : futures) {
+				try {
+					currFuture.get();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new NotesError(0, "Interrupted while rendering mail merge template into "+server+"!!"+filePath, e);
+				}
+				catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof NotesError) {
+						throw (NotesError) cause;
+					}
+					throw new NotesError(0, "Error rendering mail merge template into "+server+"!!"+filePath, cause);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return noteIds;
+	}
+
+	@Override
+	public String toString() {
+		return "MailMergeTemplate [placeholders="+Arrays.toString(m_placeholders)+", segments="+m_segmentTypes.length+
+				", slots="+m_slotFontIds.length+", staticsize="+(m_staticData==null ? 0 : m_staticData.size())+"]";
+	}
+
+	/**
+	 * Growable segment arrays
+	 */
+	private static class SegmentList {
+		private int[] m_types = new int[16];
+		private int[] m_values = new int[16];
+		private int[] m_lengths = new int[16];
+		private int m_size;
+		private List<byte[]> m_slotFontIds = new ArrayList<byte[]>();
+		private List<String> m_slotOriginalTexts = new ArrayList<String>();
+
+		private void add(int type, int value, int length) {
+			if (m_size == m_types.length) {
+				m_types = Arrays.copyOf(m_types, m_size * 2);
+				m_values = Arrays.copyOf(m_values, m_size * 2);
+				m_lengths = Arrays.copyOf(m_lengths, m_size * 2);
+			}
+			m_types[m_size] = type;
+			m_values[m_size] = value;
+			m_lengths[m_size] = length;
+			m_size++;
+		}
+	}
+
+	/**
+	 * Collects the static data and segments while traversing the template richtext.
+	 * Consecutive CDTEXT records are combined to a text run, so that placeholders spanning
+	 * record boundaries are found.
+	 */
+	private static class Compiler {
+		private String[] m_placeholders;
+		private boolean m_ignoreCase;
+		private byte[] m_staticData = new byte[4096];
+		private int m_staticDataLength;
+		private SegmentList m_segments = new SegmentList();
+
+		//current text run
+		private List<byte[]> m_runRecords = new ArrayList<byte[]>();
+		private List<byte[]> m_runFontIds = new ArrayList<byte[]>();
+		private List<String> m_runTexts = new ArrayList<String>();
+
+		public Compiler(String[] placeholders, boolean ignoreCase) {
+			m_placeholders = placeholders;
+			m_ignoreCase = ignoreCase;
+		}
+
+		public void addTextRecord(IRichTextNavigator nav) {
+//			typedef struct {
+//				   WSIG   Header; /* Tag and length */
+//				   FONTID FontID; /* Font ID */
+//				/* The 8-bit text string follows... */
+//				} CDTEXT;
+			Memory recordData = nav.getCurrentRecordData();
+			int txtMemLength = nav.getCurrentRecordDataLength() - 4;
+
+			m_runRecords.add(nav.getCurrentRecordDataWithHeader().getByteArray(0, nav.getCurrentRecordTotalLength()));
+			m_runFontIds.add(recordData.getByteArray(0, 4));
+			m_runTexts.add(txtMemLength>0 ? NotesStringUtils.fromLMBCS(recordData.share(4), txtMemLength) : "");
+		}
+
+		/**
+		 * Appends one CD record to the static data
+		 *
+		 * @param record record data including header
+		 */
+		public void addStatic(byte[] record) {
+			//CD records start at even addresses
+			int paddedLength = record.length + (record.length & 1);
+			if (m_staticDataLength + paddedLength > m_staticData.length) {
+				m_staticData = Arrays.copyOf(m_staticData, Math.max(m_staticData.length * 2, m_staticDataLength + paddedLength));
+			}
+			int offset = m_staticDataLength;
+			System.arraycopy(record, 0, m_staticData, offset, record.length);
+			if (paddedLength!=record.length) {
+				m_staticData[offset + record.length] = 0;
+			}
+			m_staticDataLength += paddedLength;
+
+			//merge with a directly preceding static segment
+			int lastIdx = m_segments.m_size - 1;
+			if (lastIdx>=0 && m_segments.m_types[lastIdx]==SEGMENT_STATIC &&
+					m_segments.m_values[lastIdx] + m_segments.m_lengths[lastIdx] == offset) {
+				m_segments.m_lengths[lastIdx] += paddedLength;
+			}
+			else {
+				m_segments.add(SEGMENT_STATIC, offset, paddedLength);
+			}
+		}
+
+		private void addStaticText(byte[] fontId, String txt) {
+			if (txt.length()==0) {
+				return;
+			}
+			for (Memory currRecordMem : AbstractMailMergeConversion.createTextRecords(fontId, txt)) {
+				addStatic(currRecordMem.getByteArray(0, (int) currRecordMem.size()));
+			}
+		}
+
+		private void addSlot(int placeholderIdx, byte[] fontId, String originalText) {
+			m_segments.add(SEGMENT_SLOT, placeholderIdx, m_segments.m_slotFontIds.size());
+			m_segments.m_slotFontIds.add(fontId);
+			m_segments.m_slotOriginalTexts.add(originalText);
+		}
+
+		/**
+		 * Finds the longest placeholder starting at the specified position
+		 *
+		 * @param txt text
+		 * @param pos position
+		 * @return placeholder index or -1
+		 */
+		private int findPlaceholderAt(String txt, int pos) {
+			int matchIdx = -1;
+			int matchLength = 0;
+			for (int i=0; i<m_placeholders.length; i++) {
+				String currPlaceholder = m_placeholders[i];
+				if (currPlaceholder.length() > matchLength &&
+						txt.regionMatches(m_ignoreCase, pos, currPlaceholder, 0, currPlaceholder.length())) {
+					matchIdx = i;
+					matchLength = currPlaceholder.length();
+				}
+			}
+			return matchIdx;
+		}
+
+		/**
+		 * Searches the current text run for placeholders and writes its segments
+		 */
+		public void flushTextRun() {
+			if (m_runRecords.isEmpty()) {
+				return;
+			}
+
+			int recordCount = m_runRecords.size();
+			int[] recordStarts = new int[recordCount + 1];
+			StringBuilder sb = new StringBuilder();
+			for (int i=0; i<recordCount; i++) {
+				recordStarts[i] = sb.length();
+				sb.append(m_runTexts.get(i));
+			}
+			recordStarts[recordCount] = sb.length();
+			String runText = sb.toString();
+
+			//find non-overlapping matches from left to right
+			List<int[]> matches = new ArrayList<int[]>();
+			int pos = 0;
+			while (pos < runText.length()) {
+				int placeholderIdx = findPlaceholderAt(runText, pos);
+				if (placeholderIdx!=-1) {
+					int end = pos + m_placeholders[placeholderIdx].length();
+					matches.add(new int[] {pos, end, placeholderIdx});
+					pos = end;
+				}
+				else {
+					pos++;
+				}
+			}
+
+			int matchIdx = 0;
+			for (int i=0; i<recordCount; i++) {
+				int recStart = recordStarts[i];
+				int recEnd = recordStarts[i+1];
+
+				//skip matches ending before this record
+				while (matchIdx < matches.size() && matches.get(matchIdx)[1] <= recStart) {
+					matchIdx++;
+				}
+
+				boolean hasOverlap = matchIdx < matches.size() && matches.get(matchIdx)[0] < recEnd;
+				if (!hasOverlap) {
+					//keep the original record
+					addStatic(m_runRecords.get(i));
+					continue;
+				}
+
+				byte[] fontId = m_runFontIds.get(i);
+				int currPos = recStart;
+				int currMatchIdx = matchIdx;
+				while (currPos < recEnd) {
+					int[] currMatch = currMatchIdx < matches.size() ? matches.get(currMatchIdx) : null;
+
+					if (currMatch==null || currMatch[0] >= recEnd) {
+						addStaticText(fontId, runText.substring(currPos, recEnd));
+						currPos = recEnd;
+					}
+					else if (currMatch[0] > currPos) {
+						addStaticText(fontId, runText.substring(currPos, currMatch[0]));
+						currPos = currMatch[0];
+					}
+					else {
+						if (currMatch[0] == currPos && currMatch[0] >= recStart) {
+							//match starts in this record, so the value uses its font
+							addSlot(currMatch[2], fontId, runText.substring(currMatch[0], currMatch[1]));
+						}
+						//parts of a match that started in a previous record are dropped
+						currPos = Math.min(recEnd, currMatch[1]);
+						currMatchIdx++;
+					}
+				}
+			}
+
+			m_runRecords.clear();
+			m_runFontIds.clear();
+			m_runTexts.clear();
+		}
+	}
+}
@@ -15,9 +15,14 @@ import com.sun.jna.Memory;
  * 
  * @author Karsten Lehmann
  */
-public class RemoveFileHotspotConversion implements IRichTextConversion {
+public class RemoveFileHotspotConversion implements IStreamingRichTextConversion {
 	private String m_attachmentFileName;
 	
+	//state of the streaming conversion
+	private byte[] m_pendingBeginRecord;
+	private boolean m_skipping;
+	private boolean m_afterHotspotEnd;
+	
 	public RemoveFileHotspotConversion(NotesAttachment att) {
 		m_attachmentFileName = att.getFileName();
 	}
@@ -28,6 +33,9 @@ public class RemoveFileHotspotConversion implements IRichTextConversion {
 	
 	@Override
 	public void richtextNavigationStart() {
+		m_pendingBeginRecord = null;
+		m_skipping = false;
+		m_afterHotspotEnd = false;
 	}
 	
 	@Override
@@ -126,17 +134,8 @@ public class RemoveFileHotspotConversion implements IRichTextConversion {
 								/*  if HOTSPOTREC_RUNFLAG_SIGNED, WORD SigLen then SigData follows. */
 //							} CDHOTSPOTBEGIN;
 
-							Memory hotspotRecordDataBuf = nav.getCurrentRecordData();
-							
-							short type = hotspotRecordDataBuf.getShort(0);
-							if (type == NotesConstants.HOTSPOTREC_TYPE_FILE) {
-								int flags = hotspotRecordDataBuf.share(2).getInt(0);
-								int dataLength = (int) (hotspotRecordDataBuf.share(6).getShort(0)  & 0xffff);
-								
-								String uniqueFileName = NotesStringUtils.fromLMBCS(hotspotRecordDataBuf.share(8), -1);
-								if (uniqueFileName.equalsIgnoreCase(m_attachmentFileName)) {
-									return savedPos;
-								}
+							if (isMatchingFileHotspot(nav.getCurrentRecordData())) {
+								return savedPos;
 							}
 						}
 					}
@@ -157,6 +156,23 @@ public class RemoveFileHotspotConversion implements IRichTextConversion {
 		return null;
 	}
 	
+	/**
+	 * Checks if the data of a HOTSPOTBEGIN record points to our attachment
+	 * 
+	 * @param hotspotRecordDataBuf record data without header
+	 * @return true if match
+	 */
+	private boolean isMatchingFileHotspot(Memory hotspotRecordDataBuf) {
+		short type = hotspotRecordDataBuf.getShort(0);
+		if (type == NotesConstants.HOTSPOTREC_TYPE_FILE) {
+			String uniqueFileName = NotesStringUtils.fromLMBCS(hotspotRecordDataBuf.share(8), -1);
+			if (uniqueFileName.equalsIgnoreCase(m_attachmentFileName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	@Override
 	public boolean isMatch(IRichTextNavigator nav) {
 		RichTextNavPosition pos = findBeginBeforeHotspot(nav, null);
@@ -197,5 +213,62 @@ public class RemoveFileHotspotConversion implements IRichTextConversion {
 			//richtext empty
 		}
 	}
+	
+	@Override
+	public boolean convertRecord(IRichTextNavigator source, ICompoundText<?> target) {
+		short recordType = source.getCurrentRecordTypeAsShort();
+		
+		if (m_skipping) {
+			//skip everything until we find HOTSPOTEND followed by END
+			if (m_afterHotspotEnd && CDRecordType.END.getConstant() == recordType) {
+				m_skipping = false;
+				m_afterHotspotEnd = false;
+			}
+			else {
+				m_afterHotspotEnd = CDRecordType.HOTSPOTEND.getConstant() == recordType;
+			}
+			return true;
+		}
+		
+		if (m_pendingBeginRecord!=null) {
+			//we need the record after BEGIN to decide whether it starts our hotspot
+			byte[] pendingBeginRecord = m_pendingBeginRecord;
+			m_pendingBeginRecord = null;
+			
+			if (CDRecordType.HOTSPOTBEGIN.getConstant() == recordType && isMatchingFileHotspot(source.getCurrentRecordData())) {
+				m_skipping = true;
+				m_afterHotspotEnd = false;
+				return true;
+			}
+			writePendingBeginRecord(pendingBeginRecord, target);
+		}
+		
+		if (CDRecordType.BEGIN.getConstant() == recordType) {
+			Memory beginDataBuf = source.getCurrentRecordData();
+			int signature = beginDataBuf.share(2).getShort(0);
+			if (signature == NotesConstants.SIG_CD_V4HOTSPOTBEGIN) {
+				m_pendingBeginRecord = source.getCurrentRecordDataWithHeader().getByteArray(0, source.getCurrentRecordTotalLength());
+				return false;
+			}
+		}
+		
+		source.copyCurrentRecordTo(target);
+		return false;
+	}
+	
+	private void writePendingBeginRecord(byte[] recordData, ICompoundText<?> target) {
+		Memory recordMem = new Memory(recordData.length);
+		recordMem.write(0, recordData, 0, recordData.length);
+		target.addCDRecords(recordMem);
+	}
+	
+	@Override
+	public boolean finish(ICompoundText<?> target) {
+		if (m_pendingBeginRecord!=null) {
+			writePendingBeginRecord(m_pendingBeginRecord, target);
+			m_pendingBeginRecord = null;
+		}
+		return false;
+	}
 
 }
@@ -0,0 +1,248 @@
+package com.mindoo.domino.jna.richtext.conversion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.internal.CDRecordBuffer;
+import com.mindoo.domino.jna.richtext.IRichTextNavigator;
+
+/**
+ * Applies a list of {@link IRichTextConversion} to a richtext item.<br>
+ * <br>
+ * Intermediate results are collected as CD records in native memory (see {@link CDRecordBuffer})
+ * instead of temp files. Only content exceeding the memory threshold is moved to disk.
+ * Consecutive conversions implementing {@link IStreamingRichTextConversion} are fused:
+ * each CD record gets pushed through all of them in a single pass over the richtext item.
+ * Only the final result is written back to the note.
+ *
+ * @author Karsten Lehmann
+ */
+public class RichTextConversionPipeline {
+	/** default max number of bytes to keep in memory for an intermediate result */
+	public static final long DEFAULT_MEMORY_THRESHOLD = 16 * 1024 * 1024;
+
+	private IRichTextConversion[] m_conversions;
+	private long m_memoryThreshold;
+
+	/**
+	 * Creates a new pipeline
+	 *
+	 * @param conversions conversions, processed from left to right
+	 */
+	public RichTextConversionPipeline(IRichTextConversion... conversions) {
+		m_conversions = conversions==null ? new IRichTextConversion[0] : conversions;
+		m_memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+	}
+
+	/**
+	 * Sets the max number of bytes to keep in memory for intermediate results
+	 * before they are moved to a temp file
+	 *
+	 * @param threshold threshold in bytes
+	 * @return this pipeline
+	 */
+	public RichTextConversionPipeline setMemoryThreshold(long threshold) {
+		if (threshold<0)
+			throw new IllegalArgumentException("Threshold cannot be negative: "+threshold);
+		m_memoryThreshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Returns the max number of bytes to keep in memory for intermediate results
+	 *
+	 * @return threshold in bytes
+	 */
+	public long getMemoryThreshold() {
+		return m_memoryThreshold;
+	}
+
+	/**
+	 * Applies the conversions to a richtext item
+	 *
+	 * @param note note containing the richtext item
+	 * @param itemName richtext item name
+	 * @param targetNote note to copy to conversion result to
+	 * @param targetItemName item name in target note where we should save the conversion result
+	 * @return true if richtext has been updated, false if no conversion changed the content
+	 */
+	public boolean convert(NotesNote note, String itemName, NotesNote targetNote, String targetItemName) {
+		if (m_conversions.length==0)
+			return false;
+
+		IRichTextNavigator currNav = note.getRichtextNavigator(itemName);
+		CDRecordBuffer currBuffer = null;
+		CDRecordBuffer output = null;
+
+		try {
+			int i=0;
+			while (i<m_conversions.length) {
+				IRichTextConversion currConversion = m_conversions[i];
+
+				if (currConversion instanceof IStreamingRichTextConversion) {
+					//collect consecutive streaming conversions to process them in one pass
+					List<IStreamingRichTextConversion> stages = new ArrayList<IStreamingRichTextConversion>();
+					while (i<m_conversions.length && m_conversions[i] instanceof IStreamingRichTextConversion) {
+						stages.add((IStreamingRichTextConversion) m_conversions[i]);
+						i++;
+					}
+
+					output = new CDRecordBuffer(m_memoryThreshold);
+					if (new FusedStages(stages, output).run(currNav)) {
+						if (currBuffer!=null) {
+							currBuffer.dispose();
+						}
+						currBuffer = output;
+						currNav = output.getNavigator();
+					}
+					else {
+						output.dispose();
+					}
+					output = null;
+				}
+				else {
+					currConversion.richtextNavigationStart();
+					try {
+						if (currConversion.isMatch(currNav)) {
+							output = new CDRecordBuffer(m_memoryThreshold);
+							currConversion.convert(currNav, output);
+							if (currBuffer!=null) {
+								currBuffer.dispose();
+							}
+							currBuffer = output;
+							output = null;
+							currNav = currBuffer.getNavigator();
+						}
+					}
+					finally {
+						currConversion.richtextNavigationEnd();
+					}
+					i++;
+				}
+			}
+
+			if (currBuffer!=null) {
+				currBuffer.copyToNote(targetNote, targetItemName);
+				return true;
+			}
+			else {
+				return false;
+			}
+		}
+		finally {
+			if (output!=null) {
+				output.dispose();
+			}
+			if (currBuffer!=null) {
+				currBuffer.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Pushes CD records through a list of streaming conversions. The output of each stage
+	 * is collected per record in a small scratch buffer and directly passed on to the next stage.
+	 */
+	private static class FusedStages {
+		private List<IStreamingRichTextConversion> m_stages;
+		private CDRecordBuffer[] m_scratch;
+		private CDRecordBuffer m_output;
+
+		public FusedStages(List<IStreamingRichTextConversion> stages, CDRecordBuffer output) {
+			m_stages = stages;
+			m_output = output;
+			m_scratch = new CDRecordBuffer[stages.size()-1];
+		}
+
+		private CDRecordBuffer getTarget(int stageIdx) {
+			if (stageIdx==m_stages.size()-1) {
+				return m_output;
+			}
+			if (m_scratch[stageIdx]==null) {
+				//scratch buffers only hold the output for a single record, so no need for temp files
+				m_scratch[stageIdx] = new CDRecordBuffer(Long.MAX_VALUE);
+			}
+			return m_scratch[stageIdx];
+		}
+
+		/**
+		 * Processes all records of the source navigator
+		 *
+		 * @param source source
+		 * @return true if any stage changed the content
+		 */
+		public boolean run(IRichTextNavigator source) {
+			for (IStreamingRichTextConversion currStage : m_stages) {
+				currStage.richtextNavigationStart();
+			}
+
+			try {
+				boolean changed = false;
+
+				if (source.gotoFirst()) {
+					do {
+						if (push(0, source)) {
+							changed = true;
+						}
+					}
+					while (source.gotoNext());
+				}
+
+				for (int i=0; i<m_stages.size(); i++) {
+					CDRecordBuffer target = getTarget(i);
+					if (m_stages.get(i).finish(target)) {
+						changed = true;
+					}
+					if (target!=m_output && drain(i+1, target)) {
+						changed = true;
+					}
+				}
+				return changed;
+			}
+			finally {
+				for (IStreamingRichTextConversion currStage : m_stages) {
+					currStage.richtextNavigationEnd();
+				}
+				for (CDRecordBuffer currScratch : m_scratch) {
+					if (currScratch!=null) {
+						currScratch.dispose();
+					}
+				}
+			}
+		}
+
+		private boolean push(int stageIdx, IRichTextNavigator nav) {
+			CDRecordBuffer target = getTarget(stageIdx);
+			boolean changed = m_stages.get(stageIdx).convertRecord(nav, target);
+
+			if (target!=m_output && drain(stageIdx+1, target)) {
+				changed = true;
+			}
+			return changed;
+		}
+
+		private boolean drain(int stageIdx, CDRecordBuffer buffer) {
+			if (!buffer.hasData()) {
+				return false;
+			}
+
+			boolean changed = false;
+			try {
+				IRichTextNavigator nav = buffer.getNavigator();
+				if (nav.gotoFirst()) {
+					do {
+						if (push(stageIdx, nav)) {
+							changed = true;
+						}
+					}
+					while (nav.gotoNext());
+				}
+			}
+			finally {
+				buffer.reset();
+			}
+			return changed;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.mindoo.domino.jna.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.errors.NotesError;
+
+/**
+ * {@link INotesChangeFeedCursorStore} that stores the cursors in a properties file
+ *
+ * @author Karsten Lehmann
+ */
+public class FileChangeFeedCursorStore implements INotesChangeFeedCursorStore {
+	private File m_file;
+	private Properties m_cursors;
+
+	/**
+	 * Creates a new store
+	 *
+	 * @param file properties file, will be created if it does not exist
+	 */
+	public FileChangeFeedCursorStore(File file) {
+		m_file = file;
+	}
+
+	private synchronized Properties getCursors() {
+		if (m_cursors==null) {
+			Properties cursors = new Properties();
+			if (m_file.exists()) {
+				try (InputStream in = new FileInputStream(m_file)) {
+					cursors.load(in);
+				} catch (IOException e) {
+					throw new NotesError(0, "Error reading change feed cursors from "+m_file.getAbsolutePath(), e);
+				}
+			}
+			m_cursors = cursors;
+		}
+		return m_cursors;
+	}
+
+	@Override
+	public synchronized NotesTimeDate loadCursor(String feedKey) {
+		String value = getCursors().getProperty(feedKey);
+		if (value==null) {
+			return null;
+		}
+		int iPos = value.indexOf(':');
+		if (iPos==-1) {
+			return null;
+		}
+		int[] innards = new int[] {
+				Integer.parseUnsignedInt(value.substring(0, iPos), 16),
+				Integer.parseUnsignedInt(value.substring(iPos+1), 16)
+		};
+		return new NotesTimeDate(innards);
+	}
+
+	@Override
+	public synchronized void saveCursor(String feedKey, NotesTimeDate cursor) {
+		int[] innards = cursor.getInnards();
+		String value = Integer.toHexString(innards[0]) + ":" + Integer.toHexString(innards[1]);
+		Properties cursors = getCursors();
+		if (value.equals(cursors.getProperty(feedKey))) {
+			return;
+		}
+		cursors.setProperty(feedKey, value);
+
+		File parentDir = m_file.getAbsoluteFile().getParentFile();
+		try {
+			if (parentDir!=null && !parentDir.exists()) {
+				Files.createDirectories(parentDir.toPath());
+			}
+			//write to temp file and move it so that we never leave a partially written file
+			File tmpFile = File.createTempFile(m_file.getName(), ".tmp", parentDir);
+			try (OutputStream out = new FileOutputStream(tmpFile)) {
+				cursors.store(out, "NotesChangeFeed cursors");
+			}
+			Files.move(tmpFile.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new NotesError(0, "Error writing change feed cursors to "+m_file.getAbsolutePath(), e);
+		}
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.mindoo.domino.jna.sync;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * Storage for the positions of {@link NotesChangeFeed} in the databases, so
+ * that the feed continues where it stopped after a restart
+ *
+ * @author Karsten Lehmann
+ */
+public interface INotesChangeFeedCursorStore {
+
+	/**
+	 * Loads a cursor
+	 *
+	 * @param feedKey key of the database feed
+	 * @return cursor or null if not stored yet
+	 */
+	public NotesTimeDate loadCursor(String feedKey);
+
+	/**
+	 * Stores a cursor. Called after all listeners have received the changes up to this date.
+	 *
+	 * @param feedKey key of the database feed
+	 * @param cursor cursor
+	 */
+	public void saveCursor(String feedKey, NotesTimeDate cursor);
+
+}
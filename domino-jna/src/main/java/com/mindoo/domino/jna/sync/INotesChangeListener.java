@@ -0,0 +1,20 @@
+package com.mindoo.domino.jna.sync;
+
+/**
+ * Listener for database changes reported by {@link NotesChangeFeed}
+ *
+ * @author Karsten Lehmann
+ */
+public interface INotesChangeListener {
+
+	/**
+	 * Method is called with coalesced changes of a database. Called from a worker
+	 * thread of the {@link NotesChangeFeed} that has been initialized for Notes API calls and
+	 * runs in a {@link com.mindoo.domino.jna.gc.NotesGC} context. Implementations should
+	 * return quickly, because all listeners of the database are called sequentially.
+	 *
+	 * @param changes changes
+	 */
+	public void changesFound(NotesChangeSet changes);
+
+}
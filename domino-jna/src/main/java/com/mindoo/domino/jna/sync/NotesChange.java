@@ -0,0 +1,64 @@
+package com.mindoo.domino.jna.sync;
+
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.constants.NoteClass;
+
+/**
+ * Change of a single note reported by {@link NotesChangeFeed}
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesChange {
+
+	public static enum Type {
+		/** note has been created or has been added to the database for the first time, e.g. via replication */
+		ADDED,
+		/** existing note has been changed */
+		MODIFIED,
+		/** note has been deleted, only a deletion stub is left */
+		DELETED
+	}
+
+	private Type m_type;
+	private int m_noteId;
+	private NotesOriginatorIdData m_oid;
+	private EnumSet<NoteClass> m_noteClass;
+
+	public NotesChange(Type type, int noteId, NotesOriginatorIdData oid, EnumSet<NoteClass> noteClass) {
+		m_type = type;
+		m_noteId = noteId;
+		m_oid = oid;
+		m_noteClass = noteClass;
+	}
+
+	public Type getType() {
+		return m_type;
+	}
+
+	public int getNoteId() {
+		return m_noteId;
+	}
+
+	/**
+	 * Returns the originator id of the note with UNID, sequence number and sequence time
+	 *
+	 * @return originator id
+	 */
+	public NotesOriginatorIdData getOID() {
+		return m_oid;
+	}
+
+	public String getUNID() {
+		return m_oid.getUNID();
+	}
+
+	public EnumSet<NoteClass> getNoteClass() {
+		return m_noteClass;
+	}
+
+	@Override
+	public String toString() {
+		return "NotesChange [type="+m_type+", noteid="+m_noteId+", unid="+m_oid.getUNID()+", seq="+m_oid.getSequence()+"]";
+	}
+}
@@ -0,0 +1,475 @@
+package com.mindoo.domino.jna.sync;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesSearch;
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Service that tracks changes in databases and reports them to registered listeners, so
+ * that many consumers interested in the same database share one incremental
+ * {@link NotesSearch#search(NotesDatabase, com.mindoo.domino.jna.NotesIDTable, String, String, Set, Set, NotesTimeDate, com.mindoo.domino.jna.NotesSearch.SearchCallback)}
+ * call per polling interval.<br>
+ * <br>
+ * For each database and set of note classes, the feed remembers the "until" date returned
+ * by NSFSearch as cursor for the next run. When a poll finds changes, we poll again
+ * after a short delay and coalesce the results, so that bursts of changes (e.g. agents
+ * or replication) are delivered as one {@link NotesChangeSet} with each note only contained once.
+ * Changes are delivered when a poll finds no more changes or when the max coalesce delay is reached.<br>
+ * <br>
+ * With an {@link INotesChangeFeedCursorStore}, cursors are persisted after all listeners have received the
+ * changes, so after a restart the feed continues where it stopped (at-least-once delivery). Without a stored
+ * cursor, the feed starts with the last modified date of the database and only reports future changes.<br>
+ * <br>
+ * A note is reported as {@link NotesChange.Type#ADDED} if its creation date (contained in the UNID) is
+ * after the start of the poll or if its sequence number is 1 (e.g. a new note received via replication).
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesChangeFeed {
+	private static final Logger log = Logger.getLogger(NotesChangeFeed.class.getName());
+
+	/** default interval between two polls */
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 10000;
+	/** default delay for the follow-up poll when changes have been found */
+	public static final long DEFAULT_COALESCE_MILLIS = 1000;
+	/** default max time to delay changes while more changes keep coming in */
+	public static final long DEFAULT_MAX_COALESCE_MILLIS = 10000;
+
+	private ScheduledExecutorService m_executor;
+	private INotesChangeFeedCursorStore m_cursorStore;
+	private long m_pollIntervalMillis;
+	private long m_coalesceMillis;
+	private long m_maxCoalesceMillis;
+	private Map<String,DatabaseFeed> m_feeds = new ConcurrentHashMap<>();
+	private volatile boolean m_shutdown;
+
+	private AtomicLong m_polls = new AtomicLong();
+	private AtomicLong m_changeSetsDelivered = new AtomicLong();
+
+	/**
+	 * Creates a new change feed with default intervals and without cursor persistence
+	 */
+	public NotesChangeFeed() {
+		this(DEFAULT_POLL_INTERVAL_MILLIS, DEFAULT_COALESCE_MILLIS, DEFAULT_MAX_COALESCE_MILLIS, null);
+	}
+
+	/**
+	 * Creates a new change feed
+	 *
+	 * @param pollIntervalMillis interval between two polls of a database
+	 * @param coalesceMillis delay of the follow-up poll when changes have been found or 0 to deliver changes immediately
+	 * @param maxCoalesceMillis max time to hold back changes while more changes keep coming in
+	 * @param cursorStore optional store to persist the cursors or null
+	 */
+	public NotesChangeFeed(long pollIntervalMillis, long coalesceMillis, long maxCoalesceMillis,
+			INotesChangeFeedCursorStore cursorStore) {
+		if (pollIntervalMillis<=0) {
+			throw new IllegalArgumentException("Poll interval must be greater than 0: "+pollIntervalMillis);
+		}
+		m_pollIntervalMillis = pollIntervalMillis;
+		m_coalesceMillis = Math.max(0, coalesceMillis);
+		m_maxCoalesceMillis = Math.max(m_coalesceMillis, maxCoalesceMillis);
+		m_cursorStore = cursorStore;
+
+		int numThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+		m_executor = Executors.newScheduledThreadPool(numThreads, new NotesThreadFactory("NotesChangeFeed"));
+	}
+
+	/**
+	 * Registers a listener for changes of data notes in a database
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param listener listener
+	 * @return subscription, call {@link Subscription#close()} to stop receiving changes
+	 */
+	public Subscription subscribe(String server, String filePath, INotesChangeListener listener) {
+		return subscribe(server, filePath, EnumSet.of(NoteClass.DATA), listener);
+	}
+
+	/**
+	 * Registers a listener for changes in a database
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param noteClasses note classes to track
+	 * @param listener listener
+	 * @return subscription, call {@link Subscription#close()} to stop receiving changes
+	 */
+	public synchronized Subscription subscribe(String server, String filePath, Set<NoteClass> noteClasses,
+			INotesChangeListener listener) {
+		if (m_shutdown) {
+			throw new IllegalStateException("Change feed has been shut down");
+		}
+
+		String feedKey = getFeedKey(server, filePath, noteClasses);
+		DatabaseFeed feed = m_feeds.get(feedKey);
+		if (feed==null) {
+			feed = new DatabaseFeed(feedKey, server, filePath, noteClasses);
+			m_feeds.put(feedKey, feed);
+			feed.schedule(0);
+		}
+		feed.m_listeners.add(listener);
+		return new Subscription(feed, listener);
+	}
+
+	private synchronized void unsubscribe(DatabaseFeed feed, INotesChangeListener listener) {
+		feed.m_listeners.remove(listener);
+		if (feed.m_listeners.isEmpty()) {
+			feed.stop();
+			m_feeds.remove(feed.m_feedKey);
+		}
+	}
+
+	/**
+	 * Polls a database as soon as possible instead of waiting for the next
+	 * scheduled run, e.g. if the caller knows that the database has been changed
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param noteClasses note classes used to subscribe
+	 */
+	public void pollNow(String server, String filePath, Set<NoteClass> noteClasses) {
+		DatabaseFeed feed = m_feeds.get(getFeedKey(server, filePath, noteClasses));
+		if (feed!=null) {
+			feed.schedule(0);
+		}
+	}
+
+	/**
+	 * Stops polling all databases
+	 */
+	public synchronized void shutdown() {
+		m_shutdown = true;
+		for (DatabaseFeed currFeed : m_feeds.values()) {
+			currFeed.stop();
+		}
+		m_feeds.clear();
+		m_executor.shutdown();
+	}
+
+	/**
+	 * Returns the key that is used to store the cursor of a database
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param noteClasses note classes
+	 * @return key
+	 */
+	public static String getFeedKey(String server, String filePath, Set<NoteClass> noteClasses) {
+		String serverKey = StringUtil.isEmpty(server) ? "" : NotesNamingUtils.toCanonicalName(server).toLowerCase(Locale.ENGLISH);
+		String filePathKey = filePath.replace('\\', '/').toLowerCase(Locale.ENGLISH);
+		Set<NoteClass> useNoteClasses = noteClasses==null || noteClasses.isEmpty() ? EnumSet.of(NoteClass.DATA) : noteClasses;
+		return serverKey + "!!" + filePathKey + "!!" + Integer.toHexString(NoteClass.toBitMaskInt(useNoteClasses));
+	}
+
+	/**
+	 * Returns the number of databases with registered listeners
+	 *
+	 * @return number of databases
+	 */
+	public int getDatabaseCount() {
+		return m_feeds.size();
+	}
+
+	/**
+	 * Returns the total number of NSF searches
+	 *
+	 * @return polls
+	 */
+	public long getPollCount() {
+		return m_polls.get();
+	}
+
+	/**
+	 * Returns the total number of change sets delivered to the databases' listeners
+	 *
+	 * @return number of change sets
+	 */
+	public long getChangeSetsDelivered() {
+		return m_changeSetsDelivered.get();
+	}
+
+	/**
+	 * Registration of a {@link INotesChangeListener}
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public class Subscription implements AutoCloseable {
+		private DatabaseFeed m_feed;
+		private INotesChangeListener m_listener;
+
+		private Subscription(DatabaseFeed feed, INotesChangeListener listener) {
+			m_feed = feed;
+			m_listener = listener;
+		}
+
+		public String getFeedKey() {
+			return m_feed.m_feedKey;
+		}
+
+		/**
+		 * Returns the current cursor of the database feed
+		 *
+		 * @return cursor or null if the database has not been polled yet
+		 */
+		public NotesTimeDate getCursor() {
+			return m_feed.m_since;
+		}
+
+		/**
+		 * Returns the last error that occurred while polling the database
+		 *
+		 * @return error or null
+		 */
+		public Throwable getLastError() {
+			return m_feed.m_lastError;
+		}
+
+		/**
+		 * Stops receiving changes
+		 */
+		@Override
+		public void close() {
+			unsubscribe(m_feed, m_listener);
+		}
+	}
+
+	/**
+	 * Polling state of one database and set of note classes
+	 */
+	private class DatabaseFeed {
+		private final String m_feedKey;
+		private final String m_server;
+		private final String m_filePath;
+		private final EnumSet<NoteClass> m_noteClasses;
+		private final List<INotesChangeListener> m_listeners = new CopyOnWriteArrayList<>();
+
+		private volatile NotesTimeDate m_since;
+		private volatile Throwable m_lastError;
+		private ScheduledFuture<?> m_nextRun;
+		private boolean m_running;
+		private boolean m_runRequested;
+		private boolean m_stopped;
+
+		//changes that have been found but are held back to coalesce more changes
+		private LinkedHashMap<Integer,NotesChange> m_pendingChanges = new LinkedHashMap<>();
+		private NotesTimeDate m_pendingSince;
+		private long m_pendingSinceMillis;
+
+		private DatabaseFeed(String feedKey, String server, String filePath, Set<NoteClass> noteClasses) {
+			m_feedKey = feedKey;
+			m_server = server==null ? "" : server;
+			m_filePath = filePath;
+			m_noteClasses = noteClasses==null || noteClasses.isEmpty() ? EnumSet.of(NoteClass.DATA) : EnumSet.copyOf(noteClasses);
+			if (m_cursorStore!=null) {
+				m_since = m_cursorStore.loadCursor(feedKey);
+			}
+		}
+
+		private synchronized void schedule(long delayMillis) {
+			if (m_stopped || m_shutdown) {
+				return;
+			}
+			if (m_running) {
+				//the current run schedules the next one
+				m_runRequested = m_runRequested || delayMillis==0;
+				return;
+			}
+			if (m_nextRun!=null) {
+				if (delayMillis >= m_nextRun.getDelay(TimeUnit.MILLISECONDS)) {
+					//already scheduled earlier
+					return;
+				}
+				if (!m_nextRun.cancel(false)) {
+					return;
+				}
+			}
+			m_nextRun = m_executor.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		private synchronized void stop() {
+			m_stopped = true;
+			if (m_nextRun!=null) {
+				m_nextRun.cancel(false);
+				m_nextRun = null;
+			}
+		}
+
+		private void run() {
+			synchronized (this) {
+				m_nextRun = null;
+				if (m_stopped) {
+					return;
+				}
+				m_running = true;
+				m_runRequested = false;
+			}
+
+			long nextDelay = m_pollIntervalMillis;
+			try {
+				nextDelay = NotesGC.runWithAutoGC(this::pollAndDeliver);
+				m_lastError = null;
+			}
+			catch (Throwable t) {
+				m_lastError = t;
+				log.log(Level.WARNING, "Error polling database "+m_server+"!!"+m_filePath+" for changes", t);
+			}
+			finally {
+				synchronized (this) {
+					m_running = false;
+					schedule(m_runRequested ? 0 : nextDelay);
+				}
+			}
+		}
+
+		/**
+		 * Searches the database for changes and delivers them to the listeners if no
+		 * more changes are expected
+		 *
+		 * @return delay for the next poll
+		 */
+		private long pollAndDeliver() {
+			NotesDatabase db = new NotesDatabase(m_server, m_filePath, "");
+			try {
+				if (m_since==null) {
+					//no cursor yet, start with the last modification of the database
+					NotesTimeDate[] lastModified = db.getLastModifiedTimes();
+					m_since = lastModified[0].isAfter(lastModified[1]) ? lastModified[0] : lastModified[1];
+					saveCursor(m_since);
+					return m_pollIntervalMillis;
+				}
+
+				NotesTimeDate pollSince = m_since;
+				List<NotesChange> newChanges = search(db, pollSince);
+				m_polls.incrementAndGet();
+
+				if (!newChanges.isEmpty() && m_pendingChanges.isEmpty()) {
+					m_pendingSince = pollSince;
+					m_pendingSinceMillis = System.currentTimeMillis();
+				}
+				for (NotesChange currChange : newChanges) {
+					addPendingChange(currChange);
+				}
+
+				if (m_pendingChanges.isEmpty()) {
+					if (!newChanges.isEmpty()) {
+						//all changes canceled each other out (created and deleted)
+						m_pendingSince = null;
+					}
+					saveCursor(m_since);
+					return m_pollIntervalMillis;
+				}
+
+				boolean burstEnded = newChanges.isEmpty();
+				boolean maxDelayReached = (System.currentTimeMillis() - m_pendingSinceMillis) >= m_maxCoalesceMillis;
+				if (m_coalesceMillis==0 || burstEnded || maxDelayReached) {
+					deliver();
+					return m_pollIntervalMillis;
+				}
+				else {
+					return m_coalesceMillis;
+				}
+			}
+			finally {
+				db.recycle();
+			}
+		}
+
+		private List<NotesChange> search(NotesDatabase db, final NotesTimeDate pollSince) {
+			final List<NotesChange> changes = new ArrayList<>();
+
+			//NOTIFYDELETIONS to get deletion stubs of notes that we may already have reported
+			NotesTimeDate until = NotesSearch.search(db, null, null, "-", EnumSet.of(Search.NOTIFYDELETIONS), m_noteClasses,
+					pollSince, new NotesSearch.SearchCallback() {
+
+				@Override
+				public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+						IItemTableData summaryBufferData) {
+					NotesTimeDate created = new NotesTimeDate(searchMatch.getOIDNoteInnards());
+					boolean isNew = searchMatch.getSeq()<=1 || created.isAfter(pollSince);
+
+					changes.add(new NotesChange(isNew ? NotesChange.Type.ADDED : NotesChange.Type.MODIFIED,
+							searchMatch.getNoteId(), searchMatch.getOIDData(), searchMatch.getNoteClass()));
+					return Action.Continue;
+				}
+
+				@Override
+				public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+						IItemTableData summaryBufferData) {
+					EnumSet<NoteClass> noteClass = EnumSet.copyOf(searchMatch.getNoteClass());
+					noteClass.remove(NoteClass.NOTIFYDELETION);
+					changes.add(new NotesChange(NotesChange.Type.DELETED, searchMatch.getNoteId(),
+							searchMatch.getOIDData(), noteClass));
+					return Action.Continue;
+				}
+			});
+
+			m_since = until;
+			return changes;
+		}
+
+		private void addPendingChange(NotesChange change) {
+			NotesChange existingChange = m_pendingChanges.remove(change.getNoteId());
+			if (existingChange!=null && existingChange.getType()==NotesChange.Type.ADDED) {
+				if (change.getType()==NotesChange.Type.DELETED) {
+					//created and deleted during the burst, consumers never knew about it
+					return;
+				}
+				else {
+					change = new NotesChange(NotesChange.Type.ADDED, change.getNoteId(), change.getOID(), change.getNoteClass());
+				}
+			}
+			m_pendingChanges.put(change.getNoteId(), change);
+		}
+
+		private void deliver() {
+			NotesChangeSet changeSet = new NotesChangeSet(m_server, m_filePath, m_pendingSince, m_since,
+					new ArrayList<>(m_pendingChanges.values()));
+			m_pendingChanges.clear();
+			m_pendingSince = null;
+
+			for (INotesChangeListener currListener : m_listeners) {
+				try {
+					currListener.changesFound(changeSet);
+				}
+				catch (Throwable t) {
+					log.log(Level.WARNING, "Error in change listener "+currListener+" for database "+m_server+"!!"+m_filePath, t);
+				}
+			}
+			m_changeSetsDelivered.incrementAndGet();
+			saveCursor(m_since);
+		}
+
+		private void saveCursor(NotesTimeDate cursor) {
+			if (m_cursorStore!=null) {
+				m_cursorStore.saveCursor(m_feedKey, cursor);
+			}
+		}
+	}
+}
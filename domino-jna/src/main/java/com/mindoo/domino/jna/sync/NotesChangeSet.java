@@ -0,0 +1,92 @@
+package com.mindoo.domino.jna.sync;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * Coalesced changes of a database between two points in time, reported by {@link NotesChangeFeed}.
+ * Each note is contained only once with its latest state.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesChangeSet {
+	private String m_server;
+	private String m_filePath;
+	private NotesTimeDate m_since;
+	private NotesTimeDate m_until;
+	private List<NotesChange> m_changes;
+
+	public NotesChangeSet(String server, String filePath, NotesTimeDate since, NotesTimeDate until,
+			List<NotesChange> changes) {
+		m_server = server;
+		m_filePath = filePath;
+		m_since = since;
+		m_until = until;
+		m_changes = Collections.unmodifiableList(changes);
+	}
+
+	public String getServer() {
+		return m_server;
+	}
+
+	public String getFilePath() {
+		return m_filePath;
+	}
+
+	/**
+	 * Returns the start of the time range covered by this change set
+	 *
+	 * @return since date (exclusive)
+	 */
+	public NotesTimeDate getSince() {
+		return m_since;
+	}
+
+	/**
+	 * Returns the end of the time range covered by this change set, which is the
+	 * start of the next change set
+	 *
+	 * @return until date
+	 */
+	public NotesTimeDate getUntil() {
+		return m_until;
+	}
+
+	/**
+	 * Returns all changes
+	 *
+	 * @return changes
+	 */
+	public List<NotesChange> getChanges() {
+		return m_changes;
+	}
+
+	public List<NotesChange> getAdded() {
+		return getChanges(NotesChange.Type.ADDED);
+	}
+
+	public List<NotesChange> getModified() {
+		return getChanges(NotesChange.Type.MODIFIED);
+	}
+
+	public List<NotesChange> getDeleted() {
+		return getChanges(NotesChange.Type.DELETED);
+	}
+
+	private List<NotesChange> getChanges(NotesChange.Type type) {
+		return m_changes.stream().filter((change) -> change.getType()==type).collect(Collectors.toList());
+	}
+
+	public boolean isEmpty() {
+		return m_changes.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "NotesChangeSet [server="+m_server+", filepath="+m_filePath+", since="+m_since+", until="+m_until+
+				", changes="+m_changes.size()+"]";
+	}
+}
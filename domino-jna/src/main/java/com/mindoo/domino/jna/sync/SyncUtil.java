@@ -23,6 +23,8 @@ import com.mindoo.domino.jna.constants.NoteClass;
 import com.mindoo.domino.jna.constants.OpenNote;
 import com.mindoo.domino.jna.constants.Search;
 import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
+import com.mindoo.domino.jna.metrics.NativeOperation;
 import com.mindoo.domino.jna.sync.ISyncTarget.DataToRead;
 import com.mindoo.domino.jna.sync.ISyncTarget.TargetResult;
 import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
@@ -110,6 +112,7 @@ public class SyncUtil {
 		
 		NotesIDTable searchFilter = null;
 		
+		final NativeOperation op = NativeCallMetrics.beginOperation("SyncUtil.sync");
 		try {
 			if (isWipeReqired) {
 				//db replica id has changed, tell the target to clear its content and any stored last sync dates
@@ -294,7 +297,11 @@ public class SyncUtil {
 			if (!purgeInTarget.isEmpty()) {
 				//purge entries from target, when they no longer match the changed formula
 				for (Entry<String,NotesOriginatorIdData> currEntry : purgeInTarget.entrySet()) {
+					long tTarget = op==null ? 0 : System.nanoTime();
 					TargetResult tResult = target.noteChangedNotMatchingFormula(ctx, currEntry.getValue());
+					if (op!=null) {
+						op.addCallbackNanos(System.nanoTime() - tTarget);
+					}
 					if (tResult==TargetResult.Added)
 						addedToTarget[0]++;
 					else if (tResult==TargetResult.Removed)
@@ -336,7 +343,11 @@ public class SyncUtil {
 							}
 						}
 						
+						long tTarget = op==null ? 0 : System.nanoTime();
 						TargetResult tResult = target.noteChangedMatchingFormula(ctx, oidData, summaryBufferData, note);
+						if (op!=null) {
+							op.addCallbackNanos(System.nanoTime() - tTarget);
+						}
 						if (tResult==TargetResult.Added)
 							addedToTarget[0]++;
 						else if (tResult==TargetResult.Removed)
@@ -358,7 +369,11 @@ public class SyncUtil {
 						
 						NotesOriginatorIdData oidData = searchMatch.getOIDData();
 						
+						long tTarget = op==null ? 0 : System.nanoTime();
 						TargetResult tResult = target.noteChangedNotMatchingFormula(ctx, oidData);
+						if (op!=null) {
+							op.addCallbackNanos(System.nanoTime() - tTarget);
+						}
 						if (tResult==TargetResult.Added)
 							addedToTarget[0]++;
 						else if (tResult==TargetResult.Removed)
@@ -375,7 +390,11 @@ public class SyncUtil {
 						
 						NotesOriginatorIdData oidData = searchMatch.getOIDData();
 						
+						long tTarget = op==null ? 0 : System.nanoTime();
 						TargetResult tResult = target.noteDeleted(ctx, oidData);
+						if (op!=null) {
+							op.addCallbackNanos(System.nanoTime() - tTarget);
+						}
 						if (tResult==TargetResult.Added)
 							addedToTarget[0]++;
 						else if (tResult==TargetResult.Removed)
@@ -408,6 +427,9 @@ public class SyncUtil {
 			if (searchFilter!=null) {
 				searchFilter.recycle();
 			}
+			if (op!=null) {
+				op.end();
+			}
 		}
 	}
 	
@@ -4,11 +4,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.EnumSet;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.mindoo.domino.jna.NotesNamesList;
 import com.mindoo.domino.jna.errors.NotesError;
@@ -22,6 +19,7 @@ import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesNativeAPI;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
+import com.mindoo.domino.jna.internal.SizeLimitedLRUCache;
 import com.mindoo.domino.jna.internal.handles.DHANDLE32;
 import com.mindoo.domino.jna.internal.handles.DHANDLE64;
 import com.mindoo.domino.jna.internal.structs.LinuxNotesNamesListHeader64Struct;
@@ -44,34 +42,21 @@ import com.sun.jna.ptr.ShortByReference;
  * @author Karsten Lehmann
  */
 public class NotesNamingUtils {
-	private static final int MAX_STRINGCACHE_SIZE = 500;
+	//max size of the name conversion caches (key and value chars), in bytes
+	private static final int MAX_NAMECACHE_SIZE_BYTES = 1000000;
 	
-	private static Map<String, String> m_nameAbbrCache = Collections.synchronizedMap(new LinkedHashMap<String, String>(16,0.75f, true) {
-		private static final long serialVersionUID = -5818239831757810895L;
-
+	private static SizeLimitedLRUCache<String, String> m_nameAbbrCache = new SizeLimitedLRUCache<String, String>(MAX_NAMECACHE_SIZE_BYTES) {
 		@Override
-		protected boolean removeEldestEntry (Map.Entry<String,String> eldest) {
-			if (size() > MAX_STRINGCACHE_SIZE) {
-				return true;
-			}
-			else {
-				return false;
-			}
+		protected int computeSize(String key, String value) {
+			return (key.length() + value.length()) * 2;
 		}
-	});
-	private static Map<String, String> m_nameCanonicalCache = Collections.synchronizedMap(new LinkedHashMap<String, String>(16,0.75f, true) {
-		private static final long serialVersionUID = -5818239831757810895L;
-
+	};
+	private static SizeLimitedLRUCache<String, String> m_nameCanonicalCache = new SizeLimitedLRUCache<String, String>(MAX_NAMECACHE_SIZE_BYTES) {
 		@Override
-		protected boolean removeEldestEntry (Map.Entry<String,String> eldest) {
-			if (size() > MAX_STRINGCACHE_SIZE) {
-				return true;
-			}
-			else {
-				return false;
-			}
+		protected int computeSize(String key, String value) {
+			return (key.length() + value.length()) * 2;
 		}
-	});
+	};
 	
 	/**
 	 * This function converts a distinguished name in abbreviated format to canonical format.
@@ -119,10 +104,19 @@ public class NotesNamingUtils {
 		if (name.length()==0)
 			return name;
 
-		String cacheKey = name + ((templateName!=null && templateName.length()>0) ? ("|" + templateName) : "");
-		String abbrName = m_nameCanonicalCache.get(cacheKey);
-		if (abbrName!=null) {
-			return abbrName;
+		boolean hasTemplate = templateName!=null && templateName.length()>0;
+		//the template is only used for common names, so we can ignore it for hierarchical names
+		if (!hasTemplate || name.indexOf('/')!=-1) {
+			String canonicalName = toCanonicalNameWithoutNativeCall(name);
+			if (canonicalName!=null) {
+				return canonicalName;
+			}
+		}
+		
+		String cacheKey = name + (hasTemplate ? ("|" + templateName) : "");
+		String canonicalName = m_nameCanonicalCache.get(cacheKey);
+		if (canonicalName!=null) {
+			return canonicalName;
 		}
 
 		Memory templateNameMem = templateName==null ? null : NotesStringUtils.toLMBCS(templateName, true); //used when abbrName is only a common name
@@ -141,6 +135,103 @@ public class NotesNamingUtils {
 		return sOutName;
 	}
 	
+	/**
+	 * Converts the standard hierarchical name forms to canonical format without calling
+	 * DNCanonicalize, e.g. "John Doe/Sales/Acme" to "CN=John Doe/OU=Sales/O=Acme".<br>
+	 * Names that need the rules of the C API (common names, a possible country code as last
+	 * component, Notes domains, wildcard names, partially labeled names etc.) are not converted.<br>
+	 * We do not cache the result, because computing it costs about the same as a cache write.
+	 * 
+	 * @param name name to convert
+	 * @return canonical name or null if the C API is required for the conversion
+	 */
+	static String toCanonicalNameWithoutNativeCall(String name) {
+		if (name.indexOf('@')!=-1) {
+			return null;
+		}
+		
+		int numComponents = 1;
+		for (int i=0; i<name.length(); i++) {
+			if (name.charAt(i)=='/') {
+				numComponents++;
+			}
+		}
+		//CN + max. 4 OUs + O + C
+		if (numComponents<2 || numComponents>6) {
+			return null;
+		}
+		
+		String[] components = new String[numComponents];
+		int componentIdx = 0;
+		int startIdx = 0;
+		int numLabeled = 0;
+		
+		for (int i=0; i<=name.length(); i++) {
+			if (i==name.length() || name.charAt(i)=='/') {
+				String currComponent = name.substring(startIdx, i);
+				if (currComponent.length()==0 || "*".equals(currComponent) ||
+						Character.isWhitespace(currComponent.charAt(0)) ||
+						Character.isWhitespace(currComponent.charAt(currComponent.length()-1))) {
+					return null;
+				}
+				if (currComponent.indexOf('=')!=-1) {
+					numLabeled++;
+				}
+				components[componentIdx++] = currComponent;
+				startIdx = i+1;
+			}
+		}
+		
+		if (numLabeled==numComponents) {
+			//already canonical; only accept the standard labels in their canonical order
+			if (!components[0].startsWith("CN=")) {
+				return null;
+			}
+			for (int i=1; i<numComponents; i++) {
+				String currComponent = components[i];
+				boolean isLast = i==numComponents-1;
+				boolean isSecondLast = i==numComponents-2;
+				
+				if (currComponent.startsWith("OU=")) {
+					if (isLast) {
+						return null;
+					}
+				}
+				else if (currComponent.startsWith("O=")) {
+					if (!isLast && !(isSecondLast && components[numComponents-1].startsWith("C="))) {
+						return null;
+					}
+				}
+				else if (currComponent.startsWith("C=")) {
+					if (!isLast || numComponents<3) {
+						return null;
+					}
+				}
+				else {
+					return null;
+				}
+			}
+			return name;
+		}
+		else if (numLabeled>0) {
+			return null;
+		}
+		
+		//two character organizations cannot be distinguished from country codes
+		String lastComponent = components[numComponents-1];
+		if (lastComponent.length()<=2) {
+			return null;
+		}
+		
+		StringBuilder sb = new StringBuilder(name.length() + 4 + 4*numComponents);
+		sb.append("CN=").append(components[0]);
+		for (int i=1; i<numComponents-1; i++) {
+			sb.append("/OU=").append(components[i]);
+		}
+		sb.append("/O=").append(lastComponent);
+		return sb.toString();
+	}
+	
 	/**
 	 * This function converts a distinguished name in canonical format to abbreviated format.
 	 * A fully distinguished name is in canonical format - it contains all possible naming components.
@@ -155,31 +246,29 @@ public class NotesNamingUtils {
 		if (name.length()==0)
 			return name;
 		
-		final String cacheKey = name;
-		String abbrName = m_nameAbbrCache.get(cacheKey);
+		if (name.indexOf('=')==-1) {
+			//nothing to remove
+			return name;
+		}
 		
-		if (abbrName==null) {
-			StringTokenizerExt st=new StringTokenizerExt(name, "/");
-			StringBuilder sb=new StringBuilder(name.length());
-			while (st.hasMoreTokens()) {
-				String currToken=st.nextToken();
-				int iPos = currToken.indexOf("=");
+		StringBuilder sb=new StringBuilder(name.length());
+		int startIdx = 0;
+		for (int i=0; i<=name.length(); i++) {
+			if (i==name.length() || name.charAt(i)=='/') {
 				if (sb.length()>0)
-					sb.append("/");
+					sb.append('/');
 				
-				if (iPos!=-1) {
-					sb.append(currToken.substring(iPos+1));
+				int iPos = name.indexOf('=', startIdx);
+				if (iPos!=-1 && iPos<i) {
+					sb.append(name, iPos+1, i);
 				}
 				else {
-					sb.append(currToken);
+					sb.append(name, startIdx, i);
 				}
+				startIdx = i+1;
 			}
-			
-			abbrName = sb.toString();
-			m_nameAbbrCache.put(cacheKey, abbrName);
 		}
-
-		return abbrName;
+		return sb.toString();
 	}
 
 	/**
@@ -311,13 +400,19 @@ public class NotesNamingUtils {
 		if (name.length()==0)
 			return name;
 		
-		String cacheKey = name + ((templateName!=null && templateName.length()>0) ? ("|" + templateName) : "");
+		boolean hasTemplate = templateName!=null && templateName.length()>0;
+		//the template is only used for common names, so we can ignore it for hierarchical names
+		if (!hasTemplate || name.indexOf('/')!=-1) {
+			return toAbbreviatedName(name);
+		}
+		
+		String cacheKey = name + "|" + templateName;
 		String abbrName = m_nameAbbrCache.get(cacheKey);
 		if (abbrName!=null) {
 			return abbrName;
 		}
 		
-		Memory templateNameMem = templateName==null || templateName.length()==0 ? null : NotesStringUtils.toLMBCS(templateName, true); //used when abbrName is only a common name
+		Memory templateNameMem = NotesStringUtils.toLMBCS(templateName, true); //used when abbrName is only a common name
 		Memory inNameMem = NotesStringUtils.toLMBCS(name, true);
 		DisposableMemory outNameMem = new DisposableMemory(NotesConstants.MAXUSERNAME);
 		ShortByReference outLength = new ShortByReference();
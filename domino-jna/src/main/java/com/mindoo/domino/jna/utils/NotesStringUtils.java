@@ -3,11 +3,10 @@ package com.mindoo.domino.jna.utils;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 import com.mindoo.domino.jna.errors.NotesError;
@@ -246,6 +245,21 @@ public class NotesStringUtils {
 		if (data==null || data.length==0)
 			return "";
 		
+		//check if data only contains ascii characters that map 1:1 to LMBCS;
+		//in this case we can skip the OSTranslate call
+		boolean isPureAscii = true;
+		for (int i=0; i<data.length; i++) {
+			byte b = data[i];
+			if (b <= 0x1f) {
+				//covers all bytes >= 0x80 as well, since byte is signed
+				isPureAscii = false;
+				break;
+			}
+		}
+		if (isPureAscii) {
+			return new String(data, StandardCharsets.US_ASCII);
+		}
+		
 		int startOffset = 0;
 		
 		List<String> lines = new ArrayList<String>();
@@ -734,13 +748,7 @@ public class NotesStringUtils {
 	 * @return unid
 	 */
 	public static String toUNID(long innardsFile, long innardsNote) {
-		Formatter formatter = new Formatter();
-		
-		formatter.format("%016x", innardsFile);
-		formatter.format("%016x", innardsNote);
-		String unid = formatter.toString().toUpperCase();
-		formatter.close();
-		return unid;
+		return UnidCodec.toString(innardsFile, innardsNote);
 	}
 
 	/**
@@ -750,13 +758,7 @@ public class NotesStringUtils {
 	 * @return UNID as string
 	 */
 	public static String pointerToUnid(Pointer ptr) {
-		Formatter formatter = new Formatter();
-		ByteBuffer data = ptr.getByteBuffer(0, 16).order(ByteOrder.LITTLE_ENDIAN);
-		formatter.format("%016x", data.getLong());
-		formatter.format("%016x", data.getLong());
-		String unidStr = formatter.toString().toUpperCase();
-		formatter.close();
-		return unidStr;
+		return UnidCodec.read(ptr);
 	}
 	
 	/**
@@ -767,16 +769,7 @@ public class NotesStringUtils {
 	 */
 	public static void unidToPointer(String unidStr, Pointer target) {
 		try {
-			int fileInnards1 = (int) (Long.parseLong(unidStr.substring(0,8), 16) & 0xffffffff);
-			int fileInnards0 = (int) (Long.parseLong(unidStr.substring(8,16), 16) & 0xffffffff);
-
-			int noteInnards1 = (int) (Long.parseLong(unidStr.substring(16,24), 16) & 0xffffffff);
-			int noteInnards0 = (int) (Long.parseLong(unidStr.substring(24,32), 16) & 0xffffffff);
-
-			target.setInt(0, fileInnards0);
-			target.share(4).setInt(0, fileInnards1);
-			target.share(8).setInt(0, noteInnards0);
-			target.share(12).setInt(0, noteInnards1);
+			UnidCodec.write(unidStr, target);
 		}
 		catch (Exception e) {
 			throw new NotesError(0, "Could not convert UNID to memory: "+unidStr, e);
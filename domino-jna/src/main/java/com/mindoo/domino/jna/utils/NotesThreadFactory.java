@@ -0,0 +1,61 @@
+package com.mindoo.domino.jna.utils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} for worker threads that call the Notes C API. Each thread
+ * runs {@link NotesInitUtils#notesInitThread()} before executing its work and
+ * {@link NotesInitUtils#notesTermThread()} before it terminates.<br>
+ * <br>
+ * The work itself still needs to run in a {@link com.mindoo.domino.jna.gc.NotesGC#runWithAutoGC(java.util.concurrent.Callable)}
+ * block to get the allocated handles disposed.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesThreadFactory implements ThreadFactory {
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+
+	private final String m_namePrefix;
+	private final AtomicInteger m_threadNumber = new AtomicInteger(1);
+	private final boolean m_daemon;
+
+	/**
+	 * Creates a new factory for daemon threads
+	 *
+	 * @param poolName name prefix for the threads
+	 */
+	public NotesThreadFactory(String poolName) {
+		this(poolName, true);
+	}
+
+	/**
+	 * Creates a new factory
+	 *
+	 * @param poolName name prefix for the threads
+	 * @param daemon true to create daemon threads
+	 */
+	public NotesThreadFactory(String poolName, boolean daemon) {
+		m_namePrefix = (StringUtil.isEmpty(poolName) ? "domino-jna" : poolName) + "-" + POOL_NUMBER.getAndIncrement() + "-thread-";
+		m_daemon = daemon;
+	}
+
+	@Override
+	public Thread newThread(final Runnable r) {
+		Thread t = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				NotesInitUtils.notesInitThread();
+				try {
+					r.run();
+				}
+				finally {
+					NotesInitUtils.notesTermThread();
+				}
+			}
+		}, m_namePrefix + m_threadNumber.getAndIncrement());
+		t.setDaemon(m_daemon);
+		return t;
+	}
+}
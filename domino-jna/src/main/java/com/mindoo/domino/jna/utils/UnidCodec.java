@@ -0,0 +1,210 @@
+package com.mindoo.domino.jna.utils;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Conversion between the 32 character hex string of a UNID and its binary form,
+ * two longs containing the innards of the file and the note timedate.<br>
+ * <br>
+ * In contrast to {@link java.util.Formatter} and {@link Long#parseLong(String, int)}, the
+ * methods do not produce intermediate objects, so they can be used in loops over
+ * large numbers of UNIDs.
+ *
+ * @author Karsten Lehmann
+ */
+public class UnidCodec {
+	private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
+	/** Length of a UNID string */
+	public static final int UNID_LENGTH = 32;
+
+	/**
+	 * Checks if a string is a valid UNID, consisting of 32 hex characters
+	 *
+	 * @param unid string
+	 * @return true if valid
+	 */
+	public static boolean isValid(CharSequence unid) {
+		if (unid==null || unid.length()!=UNID_LENGTH) {
+			return false;
+		}
+		for (int i=0; i<UNID_LENGTH; i++) {
+			if (hexValue(unid.charAt(i)) == -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the file part of a UNID (the first 16 characters)
+	 *
+	 * @param unid UNID
+	 * @return innards of file timedate, Innards[1] in the upper 32 bits
+	 * @throws IllegalArgumentException if the UNID is invalid
+	 */
+	public static long parseFile(CharSequence unid) {
+		checkLength(unid);
+		return parseHex(unid, 0);
+	}
+
+	/**
+	 * Parses the note part of a UNID (the last 16 characters)
+	 *
+	 * @param unid UNID
+	 * @return innards of note timedate, Innards[1] in the upper 32 bits
+	 * @throws IllegalArgumentException if the UNID is invalid
+	 */
+	public static long parseNote(CharSequence unid) {
+		checkLength(unid);
+		return parseHex(unid, 16);
+	}
+
+	private static void checkLength(CharSequence unid) {
+		if (unid==null || unid.length()!=UNID_LENGTH) {
+			throw new IllegalArgumentException("Invalid UNID: "+unid);
+		}
+	}
+
+	private static long parseHex(CharSequence unid, int offset) {
+		long val = 0;
+		for (int i=offset; i<offset+16; i++) {
+			int digit = hexValue(unid.charAt(i));
+			if (digit==-1) {
+				throw new IllegalArgumentException("Invalid UNID: "+unid);
+			}
+			val = (val << 4) | digit;
+		}
+		return val;
+	}
+
+	private static int hexValue(char c) {
+		if (c>='0' && c<='9') {
+			return c - '0';
+		}
+		else if (c>='A' && c<='F') {
+			return c - 'A' + 10;
+		}
+		else if (c>='a' && c<='f') {
+			return c - 'a' + 10;
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the UNID as 32 uppercase hex characters into an array
+	 *
+	 * @param file innards of file timedate
+	 * @param note innards of note timedate
+	 * @param target target array
+	 * @param offset offset in target array
+	 */
+	public static void toChars(long file, long note, char[] target, int offset) {
+		writeHex(file, target, offset);
+		writeHex(note, target, offset+16);
+	}
+
+	private static void writeHex(long val, char[] target, int offset) {
+		for (int i=offset+15; i>=offset; i--) {
+			target[i] = HEX_CHARS[(int) (val & 0xf)];
+			val >>>= 4;
+		}
+	}
+
+	/**
+	 * Appends the UNID as 32 uppercase hex characters
+	 *
+	 * @param file innards of file timedate
+	 * @param note innards of note timedate
+	 * @param sb target
+	 */
+	public static void append(long file, long note, StringBuilder sb) {
+		appendHex(file, sb);
+		appendHex(note, sb);
+	}
+
+	private static void appendHex(long val, StringBuilder sb) {
+		for (int shift=60; shift>=0; shift-=4) {
+			sb.append(HEX_CHARS[(int) ((val >>> shift) & 0xf)]);
+		}
+	}
+
+	/**
+	 * Converts the binary UNID to a string
+	 *
+	 * @param file innards of file timedate
+	 * @param note innards of note timedate
+	 * @return UNID with uppercase hex characters
+	 */
+	public static String toString(long file, long note) {
+		char[] chars = new char[UNID_LENGTH];
+		toChars(file, note, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Reads the file part of a UNID / OID from memory
+	 *
+	 * @param ptr pointer to the UNID
+	 * @return innards of file timedate
+	 */
+	public static long readFile(Pointer ptr) {
+		return toLong(ptr.getInt(0), ptr.getInt(4));
+	}
+
+	/**
+	 * Reads the note part of a UNID / OID from memory
+	 *
+	 * @param ptr pointer to the UNID
+	 * @return innards of note timedate
+	 */
+	public static long readNote(Pointer ptr) {
+		return toLong(ptr.getInt(8), ptr.getInt(12));
+	}
+
+	/**
+	 * Reads a UNID from memory
+	 *
+	 * @param ptr pointer to the UNID
+	 * @return UNID string
+	 */
+	public static String read(Pointer ptr) {
+		return toString(readFile(ptr), readNote(ptr));
+	}
+
+	/**
+	 * Writes a binary UNID to memory
+	 *
+	 * @param file innards of file timedate
+	 * @param note innards of note timedate
+	 * @param target target memory
+	 */
+	public static void write(long file, long note, Pointer target) {
+		target.setInt(0, (int) (file & 0xffffffffL));
+		target.setInt(4, (int) (file >>> 32));
+		target.setInt(8, (int) (note & 0xffffffffL));
+		target.setInt(12, (int) (note >>> 32));
+	}
+
+	/**
+	 * Writes a UNID string to memory
+	 *
+	 * @param unid UNID
+	 * @param target target memory
+	 * @throws IllegalArgumentException if the UNID is invalid
+	 */
+	public static void write(CharSequence unid, Pointer target) {
+		write(parseFile(unid), parseNote(unid), target);
+	}
+
+	/**
+	 * Combines the two innards of a timedate to a long
+	 *
+	 * @param innards0 Innards[0]
+	 * @param innards1 Innards[1]
+	 * @return long value
+	 */
+	public static long toLong(int innards0, int innards1) {
+		return (((long) innards1) << 32) | (innards0 & 0xffffffffL);
+	}
+}
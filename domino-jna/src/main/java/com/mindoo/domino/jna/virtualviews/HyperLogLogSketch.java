@@ -0,0 +1,127 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * HyperLogLog sketch to estimate the number of distinct values in a category
+ * with a fixed amount of memory ({@value #REGISTER_COUNT} bytes, about 3% standard error).<br>
+ * <br>
+ * Sketches cannot remove values, so {@link VirtualViewAggregates} rebuilds them from the
+ * child entries after removals.
+ */
+class HyperLogLogSketch {
+	static final int PRECISION = 10;
+	static final int REGISTER_COUNT = 1 << PRECISION;
+	private static final double ALPHA_MM = (0.7213 / (1 + 1.079 / REGISTER_COUNT)) * REGISTER_COUNT * REGISTER_COUNT;
+
+	private final byte[] registers = new byte[REGISTER_COUNT];
+
+	/**
+	 * Adds a value. Lists add each of their elements, strings are compared case insensitive
+	 * like category values.
+	 *
+	 * @param value value
+	 */
+	void addValue(Object value) {
+		if (value instanceof List) {
+			for (Object currValue : (List<?>) value) {
+				if (currValue != null) {
+					addHash(hash(currValue));
+				}
+			}
+		}
+		else if (value != null) {
+			addHash(hash(value));
+		}
+	}
+
+	void addHash(long hash) {
+		int idx = (int) (hash >>> (64 - PRECISION));
+		long remainingBits = hash << PRECISION;
+		int rank = remainingBits == 0 ? (64 - PRECISION + 1) : Long.numberOfLeadingZeros(remainingBits) + 1;
+		if (rank > registers[idx]) {
+			registers[idx] = (byte) rank;
+		}
+	}
+
+	/**
+	 * Adds all values of another sketch to this one
+	 *
+	 * @param other other sketch
+	 */
+	void merge(HyperLogLogSketch other) {
+		byte[] otherRegisters = other.registers;
+		for (int i=0; i<REGISTER_COUNT; i++) {
+			if (otherRegisters[i] > registers[i]) {
+				registers[i] = otherRegisters[i];
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill(registers, (byte) 0);
+	}
+
+	/**
+	 * Returns the estimated number of distinct values
+	 *
+	 * @return estimate
+	 */
+	long estimate() {
+		double sum = 0;
+		int zeroRegisters = 0;
+		for (int i=0; i<REGISTER_COUNT; i++) {
+			sum += 1d / (1L << registers[i]);
+			if (registers[i] == 0) {
+				zeroRegisters++;
+			}
+		}
+		double estimate = ALPHA_MM / sum;
+		if (estimate <= 2.5 * REGISTER_COUNT && zeroRegisters > 0) {
+			//small range correction (linear counting)
+			estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeroRegisters);
+		}
+		return Math.round(estimate);
+	}
+
+	static long hash(Object value) {
+		long h;
+		if (value instanceof String) {
+			String str = (String) value;
+			h = 0xcbf29ce484222325L;
+			for (int i=0; i<str.length(); i++) {
+				h ^= Character.toLowerCase(str.charAt(i));
+				h *= 0x100000001b3L;
+			}
+		}
+		else if (value instanceof Number) {
+			h = Double.doubleToLongBits(((Number) value).doubleValue());
+		}
+		else if (value instanceof NotesTimeDate) {
+			int[] innards = ((NotesTimeDate) value).getInnards();
+			h = ((long) innards[1] << 32) | (innards[0] & 0xffffffffL);
+		}
+		else {
+			h = value.hashCode();
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Finalization step of MurmurHash3 to spread the bits of the hash
+	 *
+	 * @param h hash
+	 * @return mixed hash
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -4,8 +4,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -15,6 +15,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -47,6 +48,8 @@ public class VirtualView {
 	private Map<ScopedNoteId,List<VirtualViewEntryData>> pendingSiblingIndexFlush = new ConcurrentHashMap<>();
 	/** lock to coordinate r/w access on the view */
 	private ReadWriteLock viewChangeLock = new ReentrantReadWriteLock();
+	/** if set, {@link #applyChanges(VirtualViewDataChange)} collects the changes of the current thread instead of applying them */
+	private ThreadLocal<List<VirtualViewDataChange>> collectedChanges = new ThreadLocal<>();
 
 	//data for serialization
 
@@ -59,11 +62,19 @@ public class VirtualView {
 	private List<VirtualViewColumn> totalColumns;
 	private List<VirtualViewColumn> valueFunctionColumns;
 	private boolean[] docOrderDescending;
-	private boolean viewHasTotalColumns;
+	private VirtualViewAggregates.Layout aggregatesLayout;
+	/** categories whose total column values need to be recomputed at the end of {@link #applyChanges(VirtualViewDataChange)} */
+	private Set<VirtualViewEntryData> pendingTotalsUpdate = Collections.newSetFromMap(new IdentityHashMap<>());
 	private AtomicLong categoryNoteId = new AtomicLong(4);
 	private CategorizationStyle categorizationStyle = CategorizationStyle.DOCUMENT_THEN_CATEGORY;
 	private boolean indexBuild = false;
 	private NotesTimeDate lastIndexUpdateTime;
+	/** optional off-heap storage for document column values */
+	private VirtualViewColumnStore columnStore;
+	/** shared comparator for document entries, which never have children */
+	private ViewEntrySortKeyComparator docEntryChildrenComparator;
+	/** optional secondary indexes for {@link VirtualViewQuery} */
+	private VirtualViewIndexes indexes;
 	
 	/** contains the occurences of a note id in the view */
 	private Map<ScopedNoteId,List<VirtualViewEntryData>> entriesByNoteId;
@@ -110,10 +121,11 @@ public class VirtualView {
 			
 			if (currColumn.getTotalMode() != VirtualViewColumn.Total.NONE) {
 				this.totalColumns.add(currColumn);
-				viewHasTotalColumns = true;
 			}
 		}
 
+		aggregatesLayout = VirtualViewAggregates.Layout.forColumns(totalColumns);
+		
 		docOrderDescending = new boolean[sortColumns.size()];
 		for (int i = 0; i < docOrderDescending.length; i++) {
 			docOrderDescending[i] = sortColumns.get(i).getSorting() == VirtualViewColumn.ColumnSort.DESCENDING;
@@ -137,6 +149,83 @@ public class VirtualView {
 		return this;
 	}
 	
+	/**
+	 * Enables or disables storing the column values and UNIDs of document entries in a
+	 * {@link VirtualViewColumnStore} outside of the Java heap, which reduces the
+	 * memory footprint and garbage collection work for views with millions of documents.
+	 * Can only be changed before the first data is added to the view.
+	 * 
+	 * @param columnar true to use columnar storage
+	 * @return this view
+	 */
+	VirtualView setColumnarStorage(boolean columnar) {
+		if (!indexBuild) {
+			this.columnStore = columnar ? new VirtualViewColumnStore() : null;
+		}
+		return this;
+	}
+	
+	/**
+	 * Returns the off-heap storage for document column values
+	 * 
+	 * @return column store or null if columnar storage is not enabled
+	 */
+	public VirtualViewColumnStore getColumnStore() {
+		return columnStore;
+	}
+	
+	/**
+	 * Adds a secondary index over the values of an item, which is used by {@link VirtualViewQuery}
+	 * to find and sort documents. The index is filled with the documents already in the
+	 * view and kept up to date in {@link #applyChanges(VirtualViewDataChange)}.
+	 * 
+	 * @param itemName item name
+	 * @param type index type
+	 * @return this view
+	 */
+	public VirtualView addIndex(String itemName, VirtualViewIndexType type) {
+		viewChangeLock.writeLock().lock();
+		try {
+			if (indexes == null) {
+				indexes = new VirtualViewIndexes();
+				for (Entry<ScopedNoteId,List<VirtualViewEntryData>> currEntry : entriesByNoteId.entrySet()) {
+					if (ORIGIN_VIRTUALVIEW.equals(currEntry.getKey().getOrigin())) {
+						continue;
+					}
+					for (VirtualViewEntryData currViewEntry : currEntry.getValue()) {
+						if (currViewEntry.isDocument()) {
+							indexes.addDocument(currEntry.getKey(), currViewEntry);
+							break;
+						}
+					}
+				}
+			}
+			indexes.addIndex(itemName, type);
+		}
+		finally {
+			viewChangeLock.writeLock().unlock();
+		}
+		return this;
+	}
+	
+	/**
+	 * Returns the secondary indexes of the view
+	 * 
+	 * @return indexes or null if no index has been added
+	 */
+	VirtualViewIndexes getIndexes() {
+		return indexes;
+	}
+	
+	/**
+	 * Returns which items are aggregated for the total columns
+	 * 
+	 * @return layout or null if the view has no total columns
+	 */
+	VirtualViewAggregates.Layout getAggregatesLayout() {
+		return aggregatesLayout;
+	}
+	
 	/**
 	 * Returns the categorization style of the view
 	 * 
@@ -171,7 +260,8 @@ public class VirtualView {
 	}
 	
 	/**
-	 * Updates the data for all data providers
+	 * Updates the data for all data providers one after another. Use a {@link VirtualViewRefreshScheduler}
+	 * to update providers of different databases in parallel.
 	 */
 	public void update() {
 		for (IVirtualViewDataProvider currProvider : this.dataProviderByOrigin.values()) {
@@ -403,6 +493,50 @@ public class VirtualView {
 		return true;
 	}
 	
+	/**
+	 * Runs code (e.g. {@link IVirtualViewDataProvider#update()}) and returns the changes it passes to
+	 * {@link #applyChanges(VirtualViewDataChange)} in the current thread instead of applying them
+	 * 
+	 * @param runnable code to run
+	 * @return collected changes
+	 */
+	List<VirtualViewDataChange> collectChanges(Runnable runnable) {
+		List<VirtualViewDataChange> oldChanges = collectedChanges.get();
+		List<VirtualViewDataChange> changes = new ArrayList<>();
+		collectedChanges.set(changes);
+		try {
+			runnable.run();
+		}
+		finally {
+			if (oldChanges == null) {
+				collectedChanges.remove();
+			}
+			else {
+				collectedChanges.set(oldChanges);
+			}
+		}
+		return changes;
+	}
+	
+	/**
+	 * Applies multiple data changes with a single write lock, so that readers
+	 * either see the view before or after all changes
+	 * 
+	 * @param changes data changes
+	 */
+	public void applyChanges(Collection<VirtualViewDataChange> changes) {
+		viewChangeLock.writeLock().lock();
+		try {
+			releaseRemovedRows();
+			for (VirtualViewDataChange currChange : changes) {
+				applyChangesWithWriteLock(currChange);
+			}
+		}
+		finally {
+			viewChangeLock.writeLock().unlock();
+		}
+	}
+	
 	/**
 	 * Modifies the view structure based on data changes. The method uses
 	 * a write lock to ensure that it is not called concurrently.
@@ -410,6 +544,34 @@ public class VirtualView {
 	 * @param change data change
 	 */
 	public void applyChanges(VirtualViewDataChange change) {
+		List<VirtualViewDataChange> changesToCollect = collectedChanges.get();
+		if (changesToCollect != null) {
+			changesToCollect.add(change);
+			return;
+		}
+		
+		viewChangeLock.writeLock().lock();
+		try {
+			releaseRemovedRows();
+			applyChangesWithWriteLock(change);
+		}
+		finally {
+			viewChangeLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Frees the column store rows of documents removed in the previous write batch. Entries of these
+	 * documents may still be used by navigators and queries of the previous batch, so the rows
+	 * are not reused within the batch that removed them.
+	 */
+	private void releaseRemovedRows() {
+		if (columnStore != null) {
+			columnStore.releaseRemovedRows();
+		}
+	}
+	
+	private void applyChangesWithWriteLock(VirtualViewDataChange change) {
 		viewChangeLock.writeLock().lock();
 		try {
 			indexBuild = true;
@@ -419,6 +581,7 @@ public class VirtualView {
 			List<VirtualViewEntryData> categoryEntriesToCheck = new ArrayList<>();
 			
 			//apply removals
+			Set<Integer> rowIdsToRemove = columnStore == null ? null : new HashSet<>();
 			Set<Integer> noteIdsToRemove = new HashSet<>();
 			noteIdsToRemove.addAll(change.getRemovals());
 			noteIdsToRemove.addAll(change.getAdditions().keySet());
@@ -427,6 +590,11 @@ public class VirtualView {
 				ScopedNoteId scopedNoteId = new ScopedNoteId(origin, currNoteId);
 				List<VirtualViewEntryData> entries = entriesByNoteId.remove(scopedNoteId);
 				if (entries != null) {
+					if (indexes != null) {
+						//needs to run before the column store rows get freed
+						indexes.removeDocument(scopedNoteId);
+					}
+					
 					for (VirtualViewEntryData currEntry : entries) {
 						if (currEntry.isCategory() || ORIGIN_VIRTUALVIEW.equals(currEntry.getOrigin())) {
 							// don't remove our own entries or categories
@@ -441,6 +609,11 @@ public class VirtualView {
 
 						    removeDocFromCountsAndReadersLisOfParents(currEntry);
 						    
+						    if (rowIdsToRemove != null && currEntry.getRowId() != -1) {
+						    	//the same row is shared by all entries of the document
+						    	rowIdsToRemove.add(currEntry.getRowId());
+						    }
+						    
 						    //remember to assign new sibling indexes
 						    markEntryForSiblingIndexFlush(parentEntry);
 						}
@@ -453,6 +626,12 @@ public class VirtualView {
 				}
 			}
 			
+			if (rowIdsToRemove != null) {
+				for (Integer currRowId : rowIdsToRemove) {
+					columnStore.removeRow(currRowId.intValue());
+				}
+			}
+			
 			//apply additions
 			
 			VirtualViewEntryData root = getRoot();
@@ -467,9 +646,29 @@ public class VirtualView {
 						root, this.categoryColumns, true);
 				if (!addedViewEntries.isEmpty()) {
 					indexChanged = true;
+					
+					if (columnStore != null) {
+						//move the values off-heap, the entries decode them on access
+						int rowId = columnStore.addRow(unid, columnValues);
+						int rowGeneration = columnStore.getRowGeneration(rowId);
+						for (VirtualViewEntryData currAddedEntry : addedViewEntries) {
+							if (currAddedEntry.isDocument()) {
+								currAddedEntry.setRowId(rowId, rowGeneration);
+							}
+						}
+					}
 				}
 				ScopedNoteId scopedNoteId = new ScopedNoteId(origin, currNoteId);
                 entriesByNoteId.put(scopedNoteId, addedViewEntries);
+                
+                if (indexes != null) {
+                	for (VirtualViewEntryData currAddedEntry : addedViewEntries) {
+                		if (currAddedEntry.isDocument()) {
+                			indexes.addDocument(scopedNoteId, currAddedEntry);
+                			break;
+                		}
+                	}
+                }
 			}
 			
 			//clean up category entries that are now empty
@@ -481,6 +680,9 @@ public class VirtualView {
 				}
 			}
 			
+			//recompute totals of changed categories
+			processPendingTotalsUpdates();
+			
 			//assign new sibling indexes
 			processPendingSiblingIndexUpdates();
 			
@@ -542,6 +744,37 @@ public class VirtualView {
 		pendingSiblingIndexFlush.clear();
 	}
 	
+	/**
+	 * Rebuilds the MIN, MAX and DISTINCT_COUNT totals that were invalidated by removals and
+	 * writes the total values of changed categories into their column values. Categories are
+	 * processed deepest first, so that parents can merge the rebuilt totals of their children.
+	 */
+	private void processPendingTotalsUpdates() {
+		if (pendingTotalsUpdate.isEmpty()) {
+			return;
+		}
+		List<VirtualViewEntryData> categories = new ArrayList<>(pendingTotalsUpdate);
+		pendingTotalsUpdate.clear();
+		categories.sort((cat1, cat2) -> Integer.compare(cat2.getLevel(), cat1.getLevel()));
+		
+		for (VirtualViewEntryData currCategory : categories) {
+			VirtualViewAggregates aggregates = currCategory.getAggregates();
+			if (aggregates.isDirty()) {
+				aggregates.beginRebuild();
+				for (VirtualViewEntryData currChild : currCategory.getChildEntriesAsMap().values()) {
+					if (currChild.isCategory()) {
+						aggregates.rebuildMerge(currChild.getAggregates());
+					}
+					else {
+						aggregates.rebuildAdd(aggregatesLayout.extract(currChild));
+					}
+				}
+				aggregates.endRebuild();
+			}
+			computeTotalColumnValues(currCategory);
+		}
+	}
+	
 	private Object getFirstListValue(Object value) {
 		if (value instanceof List) {
 			List<?> valueList = (List<?>) value;
@@ -605,13 +838,15 @@ public class VirtualView {
 			
 			ViewEntrySortKey sortKey = ViewEntrySortKey.createSortKey(false, docSortValues, origin, noteId);
 
-			ViewEntrySortKeyComparator childEntryComparator = new ViewEntrySortKeyComparator(
-					getCategorizationStyle(), false, this.docOrderDescending);
+			if (docEntryChildrenComparator == null) {
+				docEntryChildrenComparator = new ViewEntrySortKeyComparator(
+						getCategorizationStyle(), false, this.docOrderDescending);
+			}
 
 			VirtualViewEntryData newDocChild = new VirtualViewEntryData(this,
 					targetParent, origin, noteId,
 					unid, sortKey,
-					childEntryComparator);
+					docEntryChildrenComparator);
 			//TODO add support for permuted columns (multiple rows for one doc)
 
 			newDocChild.setColumnValues(columnValues);
@@ -783,17 +1018,7 @@ public class VirtualView {
 	}
 
 	private void addDocToCountsAndReadersListOfParents(VirtualViewEntryData docEntry) {
-		Map<String,Double> docTotalValues = null;
-		if (viewHasTotalColumns) {
-			docTotalValues = new HashMap<>();
-			for (VirtualViewColumn currTotalColumn : totalColumns) {
-				String itemName = currTotalColumn.getItemName();
-				Double docVal = docEntry.getAsDouble(itemName, null);
-				if (docVal != null) {
-					docTotalValues.put(itemName, docVal);
-				}
-			}			
-		}
+		VirtualViewAggregates.DocValues docTotalValues = aggregatesLayout == null ? null : aggregatesLayout.extract(docEntry);
 		
 		String origin = docEntry.getOrigin();
 		Collection<String> readersList = docEntry.getDocReadersList();
@@ -810,14 +1035,8 @@ public class VirtualView {
 			currParent.descendantCount.incrementAndGet();
 			
 			if (docTotalValues != null) {
-				for (Entry<String,Double> currDocTotalValue : docTotalValues.entrySet()) {
-	                String itemName = currDocTotalValue.getKey();
-	                Double dblVal = currDocTotalValue.getValue();
-	                
-	                currParent.addAndGetTotalValue(itemName, dblVal);
-	            }
-				
-				computeTotalColumnValues(currParent);				
+				currParent.getAggregates().add(docTotalValues);
+				pendingTotalsUpdate.add(currParent);
 			}
 
 			if (hasNoReadersItems) {
@@ -833,17 +1052,7 @@ public class VirtualView {
 	}
 	
 	private void removeDocFromCountsAndReadersLisOfParents(VirtualViewEntryData docEntry) {
-		Map<String,Double> docTotalValues = null;
-		if (viewHasTotalColumns) {
-			docTotalValues = new HashMap<>();
-			for (VirtualViewColumn currTotalColumn : totalColumns) {
-				String itemName = currTotalColumn.getItemName();
-				Double docVal = docEntry.getAsDouble(itemName, null);
-				if (docVal != null) {
-					docTotalValues.put(itemName, docVal);
-				}
-			}			
-		}
+		VirtualViewAggregates.DocValues docTotalValues = aggregatesLayout == null ? null : aggregatesLayout.extract(docEntry);
 
 		String origin = docEntry.getOrigin();
 		Collection<String> readersList = docEntry.getDocReadersList();
@@ -860,14 +1069,8 @@ public class VirtualView {
 			currParent.descendantCount.decrementAndGet();
 			
 			if (docTotalValues != null) {
-				for (Entry<String,Double> currDocTotalValue : docTotalValues.entrySet()) {
-	                String itemName = currDocTotalValue.getKey();
-	                Double dblVal = currDocTotalValue.getValue();
-	                
-	                currParent.addAndGetTotalValue(itemName, -1 * dblVal);
-	            }				
-				
-				computeTotalColumnValues(currParent);				
+				currParent.getAggregates().remove(docTotalValues);
+				pendingTotalsUpdate.add(currParent);
 			}
 			
 			if (hasNoReadersItems) {
@@ -885,24 +1088,13 @@ public class VirtualView {
 	private void computeTotalColumnValues(VirtualViewEntryData catEntry) {
 		for (VirtualViewColumn currTotalColumn : totalColumns) {
 			String itemName = currTotalColumn.getItemName();
-			Double dblVal = catEntry.getTotalValue(itemName);
+			Double dblVal = catEntry.getTotalValue(itemName, currTotalColumn.getTotalMode());
 			
 			if (dblVal == null) {
 				catEntry.getColumnValues().remove(itemName);
 			}
 			else {
-				if (currTotalColumn.getTotalMode() == Total.SUM) {
-					catEntry.getColumnValues().put(itemName, dblVal);
-				}
-				else if (currTotalColumn.getTotalMode() == Total.AVERAGE) {
-					int docCount = catEntry.getDescendantDocumentCount(); // computeDescendantDocCount(catEntry);
-					if (docCount == 0) {
-						catEntry.getColumnValues().remove(itemName);
-					}
-					else {
-						catEntry.getColumnValues().put(itemName, dblVal / docCount);
-					}
-				}				
+				catEntry.getColumnValues().put(itemName, dblVal);
 			}
 		}
 	}
@@ -954,6 +1146,36 @@ public class VirtualView {
 		}
 	}
 
+	/**
+	 * Creates an ad-hoc group-by query over the documents of the view
+	 * 
+	 * @param itemNames items to group by
+	 * @return query builder
+	 */
+	public VirtualViewGroupBy groupBy(String... itemNames) {
+		return new VirtualViewGroupBy(this, Arrays.asList(itemNames));
+	}
+	
+	/**
+	 * Calls the consumer once for each document in the view, even if it is displayed
+	 * in multiple categories
+	 * 
+	 * @param consumer consumer
+	 */
+	void forEachDocument(Consumer<VirtualViewEntryData> consumer) {
+		for (Entry<ScopedNoteId,List<VirtualViewEntryData>> currEntry : entriesByNoteId.entrySet()) {
+			if (ORIGIN_VIRTUALVIEW.equals(currEntry.getKey().getOrigin())) {
+				continue;
+			}
+			for (VirtualViewEntryData currViewEntry : currEntry.getValue()) {
+				if (currViewEntry.isDocument()) {
+					consumer.accept(currViewEntry);
+					break;
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Returns the root entry of the view. The root is an artifical entry that
 	 * is automatically expanded and contains the top level of the view as
@@ -0,0 +1,382 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.mindoo.domino.jna.internal.TypedItemAccess;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+
+/**
+ * Incrementally maintained totals of a category entry (or an ad-hoc group, see {@link VirtualViewGroupBy})
+ * using primitive accumulators per item.<br>
+ * <br>
+ * SUM, COUNT and AVERAGE are updated in place when documents are added or removed. MIN, MAX and
+ * DISTINCT_COUNT cannot be reverted on removal, so a removal only marks them dirty and
+ * {@link VirtualView} rebuilds them once per change batch from the child entries, deepest categories first.
+ */
+class VirtualViewAggregates {
+	private final Layout layout;
+
+	private final double[] sums;
+	/** number of documents with a value */
+	private final int[] valueCounts;
+	/** number of documents with a numeric value */
+	private final int[] numberCounts;
+
+	private final double[] mins;
+	private final double[] maxs;
+	private final boolean[] minMaxDirty;
+
+	private final HyperLogLogSketch[] sketches;
+	private final boolean[] sketchDirty;
+
+	/**
+	 * Describes which items are aggregated and which accumulators they need
+	 */
+	static class Layout {
+		private final String[] itemNames;
+		private final Map<String,Integer> slotByItemNameLC;
+		private final boolean[] minMax;
+		private final boolean[] distinct;
+		private final boolean hasMinMax;
+		private final boolean hasDistinct;
+
+		/**
+		 * Creates a new layout
+		 *
+		 * @param modesByItemName total modes to compute per item name
+		 */
+		Layout(Map<String,? extends Set<Total>> modesByItemName) {
+			int size = modesByItemName.size();
+			this.itemNames = new String[size];
+			this.slotByItemNameLC = new HashMap<>();
+			this.minMax = new boolean[size];
+			this.distinct = new boolean[size];
+
+			boolean anyMinMax = false;
+			boolean anyDistinct = false;
+			int slot = 0;
+			for (Entry<String,? extends Set<Total>> currEntry : modesByItemName.entrySet()) {
+				Set<Total> modes = currEntry.getValue();
+				itemNames[slot] = currEntry.getKey();
+				slotByItemNameLC.put(currEntry.getKey().toLowerCase(Locale.ENGLISH), slot);
+				minMax[slot] = modes.contains(Total.MIN) || modes.contains(Total.MAX);
+				distinct[slot] = modes.contains(Total.DISTINCT_COUNT);
+				anyMinMax |= minMax[slot];
+				anyDistinct |= distinct[slot];
+				slot++;
+			}
+			this.hasMinMax = anyMinMax;
+			this.hasDistinct = anyDistinct;
+		}
+
+		/**
+		 * Creates the layout for the total columns of a view
+		 *
+		 * @param totalColumns total columns
+		 * @return layout or null if there are no total columns
+		 */
+		static Layout forColumns(List<VirtualViewColumn> totalColumns) {
+			if (totalColumns.isEmpty()) {
+				return null;
+			}
+			Map<String,Set<Total>> modesByItemName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (VirtualViewColumn currColumn : totalColumns) {
+				modesByItemName.computeIfAbsent(currColumn.getItemName(), (key) -> EnumSet.noneOf(Total.class))
+				.add(currColumn.getTotalMode());
+			}
+			return new Layout(modesByItemName);
+		}
+
+		/**
+		 * Returns the slot of an item
+		 *
+		 * @param itemName item name (case insensitive)
+		 * @return slot or -1 if the item is not aggregated
+		 */
+		int getSlot(String itemName) {
+			Integer slot = slotByItemNameLC.get(itemName.toLowerCase(Locale.ENGLISH));
+			return slot == null ? -1 : slot.intValue();
+		}
+
+		/**
+		 * Reads the values of the aggregated items from a document
+		 *
+		 * @param doc document
+		 * @return values
+		 */
+		DocValues extract(TypedItemAccess doc) {
+			DocValues docValues = new DocValues(itemNames.length);
+			for (int i=0; i<itemNames.length; i++) {
+				Object value = doc.get(itemNames[i]);
+				if (value instanceof List && ((List<?>) value).isEmpty()) {
+					value = null;
+				}
+				docValues.values[i] = value;
+
+				Object firstValue = value instanceof List ? ((List<?>) value).get(0) : value;
+				if (firstValue instanceof Number) {
+					docValues.numbers[i] = ((Number) firstValue).doubleValue();
+					docValues.hasNumber[i] = true;
+				}
+			}
+			return docValues;
+		}
+	}
+
+	/**
+	 * Values of the aggregated items of one document
+	 */
+	static class DocValues {
+		private final Object[] values;
+		private final double[] numbers;
+		private final boolean[] hasNumber;
+
+		private DocValues(int size) {
+			this.values = new Object[size];
+			this.numbers = new double[size];
+			this.hasNumber = new boolean[size];
+		}
+	}
+
+	VirtualViewAggregates(Layout layout) {
+		this.layout = layout;
+		int size = layout.itemNames.length;
+
+		this.sums = new double[size];
+		this.valueCounts = new int[size];
+		this.numberCounts = new int[size];
+
+		if (layout.hasMinMax) {
+			this.mins = new double[size];
+			this.maxs = new double[size];
+			this.minMaxDirty = new boolean[size];
+			Arrays.fill(mins, Double.POSITIVE_INFINITY);
+			Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+		}
+		else {
+			this.mins = null;
+			this.maxs = null;
+			this.minMaxDirty = null;
+		}
+
+		if (layout.hasDistinct) {
+			this.sketches = new HyperLogLogSketch[size];
+			this.sketchDirty = new boolean[size];
+			for (int i=0; i<size; i++) {
+				if (layout.distinct[i]) {
+					sketches[i] = new HyperLogLogSketch();
+				}
+			}
+		}
+		else {
+			this.sketches = null;
+			this.sketchDirty = null;
+		}
+	}
+
+	Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Adds the values of a document
+	 *
+	 * @param docValues document values
+	 */
+	synchronized void add(DocValues docValues) {
+		for (int i=0; i<sums.length; i++) {
+			if (docValues.values[i] == null) {
+				continue;
+			}
+			valueCounts[i]++;
+
+			if (docValues.hasNumber[i]) {
+				double val = docValues.numbers[i];
+				numberCounts[i]++;
+				sums[i] += val;
+
+				if (mins != null && layout.minMax[i]) {
+					if (val < mins[i]) {
+						mins[i] = val;
+					}
+					if (val > maxs[i]) {
+						maxs[i] = val;
+					}
+				}
+			}
+
+			if (sketches != null && sketches[i] != null) {
+				sketches[i].addValue(docValues.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Removes the values of a document
+	 *
+	 * @param docValues document values
+	 */
+	synchronized void remove(DocValues docValues) {
+		for (int i=0; i<sums.length; i++) {
+			if (docValues.values[i] == null) {
+				continue;
+			}
+			valueCounts[i]--;
+
+			if (docValues.hasNumber[i]) {
+				double val = docValues.numbers[i];
+				numberCounts[i]--;
+				//reset to avoid rounding errors adding up
+				sums[i] = numberCounts[i] == 0 ? 0 : sums[i] - val;
+
+				if (mins != null && layout.minMax[i]) {
+					if (numberCounts[i] == 0) {
+						mins[i] = Double.POSITIVE_INFINITY;
+						maxs[i] = Double.NEGATIVE_INFINITY;
+						minMaxDirty[i] = false;
+					}
+					else if (val <= mins[i] || val >= maxs[i]) {
+						//removed an extreme value, we need to look at the children again
+						minMaxDirty[i] = true;
+					}
+				}
+			}
+
+			if (sketches != null && sketches[i] != null) {
+				if (valueCounts[i] == 0) {
+					sketches[i].clear();
+					sketchDirty[i] = false;
+				}
+				else {
+					sketchDirty[i] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if MIN, MAX or DISTINCT_COUNT values need to be rebuilt after removals
+	 *
+	 * @return true if dirty
+	 */
+	synchronized boolean isDirty() {
+		for (int i=0; i<sums.length; i++) {
+			if ((minMaxDirty != null && minMaxDirty[i]) || (sketchDirty != null && sketchDirty[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Resets the dirty accumulators before they get rebuilt via {@link #rebuildAdd(DocValues)}
+	 * and {@link #rebuildMerge(VirtualViewAggregates)}
+	 */
+	synchronized void beginRebuild() {
+		for (int i=0; i<sums.length; i++) {
+			if (minMaxDirty != null && minMaxDirty[i]) {
+				mins[i] = Double.POSITIVE_INFINITY;
+				maxs[i] = Double.NEGATIVE_INFINITY;
+			}
+			if (sketchDirty != null && sketchDirty[i]) {
+				sketches[i].clear();
+			}
+		}
+	}
+
+	/**
+	 * Adds the values of a direct child document to the dirty accumulators
+	 *
+	 * @param docValues document values
+	 */
+	synchronized void rebuildAdd(DocValues docValues) {
+		for (int i=0; i<sums.length; i++) {
+			if (minMaxDirty != null && minMaxDirty[i] && docValues.hasNumber[i]) {
+				mins[i] = Math.min(mins[i], docValues.numbers[i]);
+				maxs[i] = Math.max(maxs[i], docValues.numbers[i]);
+			}
+			if (sketchDirty != null && sketchDirty[i]) {
+				sketches[i].addValue(docValues.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Merges the accumulators of a child category into the dirty accumulators
+	 *
+	 * @param child child category aggregates with the same layout
+	 */
+	synchronized void rebuildMerge(VirtualViewAggregates child) {
+		synchronized (child) {
+			for (int i=0; i<sums.length; i++) {
+				if (minMaxDirty != null && minMaxDirty[i]) {
+					mins[i] = Math.min(mins[i], child.mins[i]);
+					maxs[i] = Math.max(maxs[i], child.maxs[i]);
+				}
+				if (sketchDirty != null && sketchDirty[i]) {
+					sketches[i].merge(child.sketches[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the rebuilt accumulators as clean
+	 */
+	synchronized void endRebuild() {
+		if (minMaxDirty != null) {
+			Arrays.fill(minMaxDirty, false);
+		}
+		if (sketchDirty != null) {
+			Arrays.fill(sketchDirty, false);
+		}
+	}
+
+	/**
+	 * Returns an aggregated value
+	 *
+	 * @param itemName item name (case insensitive)
+	 * @param mode total mode
+	 * @param docCount number of documents, used to compute the {@link Total#AVERAGE}
+	 * @return value or null if not available
+	 */
+	Double getValue(String itemName, Total mode, int docCount) {
+		int slot = layout.getSlot(itemName);
+		return slot == -1 ? null : getValue(slot, mode, docCount);
+	}
+
+	/**
+	 * Returns an aggregated value
+	 *
+	 * @param slot slot of the item in the {@link Layout}
+	 * @param mode total mode
+	 * @param docCount number of documents, used to compute the {@link Total#AVERAGE}
+	 * @return value or null if not available
+	 */
+	synchronized Double getValue(int slot, Total mode, int docCount) {
+		switch (mode) {
+		case SUM:
+			return numberCounts[slot] > 0 ? sums[slot] : null;
+		case AVERAGE:
+			return numberCounts[slot] > 0 && docCount > 0 ? sums[slot] / docCount : null;
+		case COUNT:
+			return valueCounts[slot] > 0 ? (double) valueCounts[slot] : null;
+		case MIN:
+			return mins != null && layout.minMax[slot] && numberCounts[slot] > 0 ? mins[slot] : null;
+		case MAX:
+			return maxs != null && layout.minMax[slot] && numberCounts[slot] > 0 ? maxs[slot] : null;
+		case DISTINCT_COUNT:
+			return sketches != null && sketches[slot] != null && valueCounts[slot] > 0 ? (double) sketches[slot].estimate() : null;
+		default:
+			return null;
+		}
+	}
+}
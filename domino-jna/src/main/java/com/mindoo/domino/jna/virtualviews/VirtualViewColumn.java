@@ -5,7 +5,13 @@ import com.mindoo.domino.jna.IViewColumn;
 public class VirtualViewColumn implements IViewColumn {
 	public static enum Category { YES, NO }
 	public static enum Hidden { YES, NO }
-	public static enum Total { NONE, SUM, AVERAGE }
+	/**
+	 * Total computed for category entries over all their descendant documents.
+	 * {@link #COUNT} counts documents with a value, {@link #MIN}, {@link #MAX} and
+	 * {@link #DISTINCT_COUNT} are maintained as needed; {@link #DISTINCT_COUNT} is an
+	 * estimate (HyperLogLog, about 3% standard error).
+	 */
+	public static enum Total { NONE, SUM, AVERAGE, COUNT, MIN, MAX, DISTINCT_COUNT }
 	
 	private String title;
 	private String itemName;
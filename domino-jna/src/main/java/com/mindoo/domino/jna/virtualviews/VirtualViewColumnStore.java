@@ -0,0 +1,517 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * Column oriented storage for the column values and UNIDs of {@link VirtualView} document entries,
+ * used when the view is built with {@link VirtualViewFactory.VirtualViewBuilder#withColumnarStorage()}.<br>
+ * <br>
+ * Each document gets a row id. Values are kept outside of the Java heap in direct {@link ByteBuffer}s
+ * (one buffer per column and chunk of {@value #CHUNK_ROWS} rows) with 8 bytes per cell:
+ * <ul>
+ * <li>strings are dictionary encoded, so that a value shared by many documents is only stored once</li>
+ * <li>numbers are stored as primitive doubles, ints or longs</li>
+ * <li>{@link NotesTimeDate} values are stored as their two innards ints</li>
+ * <li>lists (e.g. readers in the <code>$C1$</code> item) are interned and stored as dictionary id</li>
+ * <li>UNIDs are stored as 16 binary bytes</li>
+ * </ul>
+ * The {@link VirtualViewEntryData} objects of documents only keep their row id and decode values on access.<br>
+ * <br>
+ * Rows are added and removed by the {@link VirtualView} while it holds its write lock. Reads do not lock,
+ * so a navigator or query may still hold the entry of a removed document. To make sure such an entry never
+ * decodes the values of another document, removed rows keep their values until the next write batch
+ * ({@link #releaseRemovedRows()}) and only then get cleared and have their row id and dictionary ids freed
+ * for reuse. Each row has a generation number that is incremented when it gets cleared; entries remember the
+ * generation of their row and read null values once it has changed.
+ */
+public class VirtualViewColumnStore {
+	/** number of rows per off-heap chunk */
+	public static final int CHUNK_ROWS = 4096;
+	private static final int CHUNK_SHIFT = 12;
+	private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_STRING = 1;
+	private static final byte TAG_DOUBLE = 2;
+	private static final byte TAG_INTEGER = 3;
+	private static final byte TAG_LONG = 4;
+	private static final byte TAG_TIMEDATE = 5;
+	private static final byte TAG_LIST = 6;
+	private static final byte TAG_OBJECT = 7;
+
+	private static final byte UNID_NONE = 0;
+	private static final byte UNID_BINARY = 1;
+	private static final byte UNID_STRING = 2;
+
+	private final VirtualViewValueDictionary<String> strings = new VirtualViewValueDictionary<>();
+	private final VirtualViewValueDictionary<List<Object>> lists = new VirtualViewValueDictionary<>();
+	private final VirtualViewValueDictionary<Object> objects = new VirtualViewValueDictionary<>();
+
+	/** column index by lowercase item name */
+	private final Map<String,Integer> columnIndexByItemName = new ConcurrentHashMap<>();
+	private volatile String[] itemNames = new String[0];
+
+	private volatile Chunk[] chunks = new Chunk[0];
+	private int[] freeRowIds = new int[16];
+	private int freeRowIdsCount;
+	/** rows removed in the current write batch, freed by {@link #releaseRemovedRows()} */
+	private int[] removedRowIds = new int[16];
+	private int removedRowIdsCount;
+	private final BitSet removedRows = new BitSet();
+	private int nextRowId;
+	private volatile int rowCount;
+	private volatile long offHeapBytes;
+
+	private static class Chunk {
+		/** 16 bytes per row, followed by one type byte per row */
+		private final ByteBuffer unids;
+		/** per column: 8 bytes per row, followed by one tag byte per row; allocated on first write */
+		private volatile ByteBuffer[] columns;
+		/** per row: incremented when the row gets cleared for reuse */
+		private final AtomicIntegerArray generations = new AtomicIntegerArray(CHUNK_ROWS);
+
+		private Chunk(int columnCount) {
+			this.unids = ByteBuffer.allocateDirect(CHUNK_ROWS * 17).order(ByteOrder.nativeOrder());
+			this.columns = new ByteBuffer[columnCount];
+		}
+	}
+
+	VirtualViewColumnStore() {
+	}
+
+	/**
+	 * Stores the UNID and column values of a document
+	 *
+	 * @param unid UNID
+	 * @param columnValues column values
+	 * @return row id
+	 */
+	synchronized int addRow(String unid, Map<String,Object> columnValues) {
+		int rowId;
+		if (freeRowIdsCount > 0) {
+			rowId = freeRowIds[--freeRowIdsCount];
+		}
+		else {
+			rowId = nextRowId++;
+		}
+
+		Chunk chunk = getOrCreateChunk(rowId >>> CHUNK_SHIFT);
+		int rowInChunk = rowId & CHUNK_MASK;
+
+		writeUnid(chunk.unids, rowInChunk, unid);
+
+		for (Entry<String,Object> currEntry : columnValues.entrySet()) {
+			Object value = currEntry.getValue();
+			if (value == null) {
+				continue;
+			}
+			int colIdx = getOrCreateColumn(currEntry.getKey());
+			ByteBuffer colBuf = getOrCreateColumnBuffer(chunk, colIdx);
+			writeValue(colBuf, rowInChunk, value);
+		}
+
+		rowCount++;
+		return rowId;
+	}
+
+	/**
+	 * Returns the current generation of a row, entries pass it to the read methods
+	 * to detect that their row has been cleared and reused in the meantime
+	 *
+	 * @param rowId row id
+	 * @return generation
+	 */
+	int getRowGeneration(int rowId) {
+		Chunk chunk = getChunk(rowId);
+		return chunk == null ? 0 : chunk.generations.get(rowId & CHUNK_MASK);
+	}
+
+	/**
+	 * Removes a row. Its values stay readable for entries that are still in use
+	 * until the next call to {@link #releaseRemovedRows()}.
+	 *
+	 * @param rowId row id
+	 */
+	synchronized void removeRow(int rowId) {
+		Chunk chunk = getChunk(rowId);
+		if (chunk == null || rowId >= nextRowId || removedRows.get(rowId)) {
+			return;
+		}
+		if (chunk.unids.get(CHUNK_ROWS * 16 + (rowId & CHUNK_MASK)) == UNID_NONE) {
+			//already released
+			return;
+		}
+		removedRows.set(rowId);
+		if (removedRowIdsCount == removedRowIds.length) {
+			removedRowIds = Arrays.copyOf(removedRowIds, removedRowIds.length * 2);
+		}
+		removedRowIds[removedRowIdsCount++] = rowId;
+		rowCount--;
+	}
+
+	/**
+	 * Clears the rows removed since the last call, releases the dictionary values they
+	 * reference and frees their row ids for reuse. Called by the {@link VirtualView} at the
+	 * start of a write batch, so that ids freed in one batch are reused in the next one at the earliest.
+	 */
+	synchronized void releaseRemovedRows() {
+		for (int i=0; i<removedRowIdsCount; i++) {
+			clearRow(removedRowIds[i]);
+		}
+		removedRowIdsCount = 0;
+		removedRows.clear();
+	}
+
+	private void clearRow(int rowId) {
+		Chunk chunk = getChunk(rowId);
+		int rowInChunk = rowId & CHUNK_MASK;
+
+		//invalidate entries still pointing to the row before any of its ids can be reused
+		chunk.generations.incrementAndGet(rowInChunk);
+
+		int unidTagPos = CHUNK_ROWS * 16 + rowInChunk;
+		byte unidTag = chunk.unids.get(unidTagPos);
+		if (unidTag == UNID_STRING) {
+			strings.release(chunk.unids.getInt(rowInChunk * 16));
+		}
+		chunk.unids.put(unidTagPos, UNID_NONE);
+
+		for (ByteBuffer currColBuf : chunk.columns) {
+			if (currColBuf == null) {
+				continue;
+			}
+			int tagPos = CHUNK_ROWS * 8 + rowInChunk;
+			byte tag = currColBuf.get(tagPos);
+			if (tag == TAG_NULL) {
+				continue;
+			}
+			int dictId = currColBuf.getInt(rowInChunk * 8);
+			if (tag == TAG_STRING) {
+				strings.release(dictId);
+			}
+			else if (tag == TAG_LIST) {
+				lists.release(dictId);
+			}
+			else if (tag == TAG_OBJECT) {
+				objects.release(dictId);
+			}
+			currColBuf.put(tagPos, TAG_NULL);
+		}
+
+		if (freeRowIdsCount == freeRowIds.length) {
+			freeRowIds = Arrays.copyOf(freeRowIds, freeRowIds.length * 2);
+		}
+		freeRowIds[freeRowIdsCount++] = rowId;
+	}
+
+	/**
+	 * Returns the UNID of a row
+	 *
+	 * @param rowId row id
+	 * @param generation generation of the row when the entry was created, see {@link #getRowGeneration(int)}
+	 * @return UNID or null if the row does not exist or has been cleared
+	 */
+	String getUNID(int rowId, int generation) {
+		Chunk chunk = getChunk(rowId);
+		if (chunk == null) {
+			return null;
+		}
+		int rowInChunk = rowId & CHUNK_MASK;
+		byte unidTag = chunk.unids.get(CHUNK_ROWS * 16 + rowInChunk);
+		String unid;
+		if (unidTag == UNID_BINARY) {
+			unid = toHex(chunk.unids.getLong(rowInChunk * 16)) + toHex(chunk.unids.getLong(rowInChunk * 16 + 8));
+		}
+		else if (unidTag == UNID_STRING) {
+			unid = strings.get(chunk.unids.getInt(rowInChunk * 16));
+		}
+		else {
+			unid = null;
+		}
+		//check after reading, the row might have been reused while we were reading it
+		return chunk.generations.get(rowInChunk) == generation ? unid : null;
+	}
+
+	/**
+	 * Reads a single value of a row
+	 *
+	 * @param rowId row id
+	 * @param generation generation of the row when the entry was created, see {@link #getRowGeneration(int)}
+	 * @param itemName item name (case insensitive)
+	 * @return value or null
+	 */
+	Object getValue(int rowId, int generation, String itemName) {
+		if (itemName == null) {
+			return null;
+		}
+		Integer colIdx = columnIndexByItemName.get(itemName.toLowerCase(Locale.ENGLISH));
+		if (colIdx == null) {
+			return null;
+		}
+		Chunk chunk = getChunk(rowId);
+		if (chunk == null) {
+			return null;
+		}
+		ByteBuffer[] colBuffers = chunk.columns;
+		if (colIdx.intValue() >= colBuffers.length) {
+			return null;
+		}
+		int rowInChunk = rowId & CHUNK_MASK;
+		Object value = readValue(colBuffers[colIdx.intValue()], rowInChunk);
+		return chunk.generations.get(rowInChunk) == generation ? value : null;
+	}
+
+	/**
+	 * Decodes all non-null values of a row
+	 *
+	 * @param rowId row id
+	 * @param generation generation of the row when the entry was created, see {@link #getRowGeneration(int)}
+	 * @return map with case insensitive item names, empty if the row has been cleared
+	 */
+	Map<String,Object> getValues(int rowId, int generation) {
+		Map<String,Object> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Chunk chunk = getChunk(rowId);
+		if (chunk == null) {
+			return values;
+		}
+		String[] currItemNames = itemNames;
+		ByteBuffer[] colBuffers = chunk.columns;
+		int rowInChunk = rowId & CHUNK_MASK;
+
+		for (int i=0; i<colBuffers.length && i<currItemNames.length; i++) {
+			Object value = readValue(colBuffers[i], rowInChunk);
+			if (value != null) {
+				values.put(currItemNames[i], value);
+			}
+		}
+		if (chunk.generations.get(rowInChunk) != generation) {
+			values.clear();
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the number of stored rows
+	 *
+	 * @return row count
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of columns, which is the number of distinct item names
+	 * seen so far
+	 *
+	 * @return column count
+	 */
+	public int getColumnCount() {
+		return itemNames.length;
+	}
+
+	/**
+	 * Returns the number of bytes allocated outside of the Java heap
+	 *
+	 * @return bytes
+	 */
+	public long getOffHeapBytes() {
+		return offHeapBytes;
+	}
+
+	/**
+	 * Returns the number of distinct string values
+	 *
+	 * @return size of string dictionary
+	 */
+	public int getStringDictionarySize() {
+		return strings.size();
+	}
+
+	/**
+	 * Returns the number of distinct list values, e.g. reader lists
+	 *
+	 * @return size of list dictionary
+	 */
+	public int getListDictionarySize() {
+		return lists.size();
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualViewColumnStore [rows=" + getRowCount() + ", columns=" + getColumnCount() +
+				", offHeapBytes=" + getOffHeapBytes() + ", strings=" + getStringDictionarySize() +
+				", lists=" + getListDictionarySize() + "]";
+	}
+
+	private Chunk getChunk(int rowId) {
+		if (rowId < 0) {
+			return null;
+		}
+		Chunk[] currChunks = chunks;
+		int chunkIdx = rowId >>> CHUNK_SHIFT;
+		return chunkIdx < currChunks.length ? currChunks[chunkIdx] : null;
+	}
+
+	private Chunk getOrCreateChunk(int chunkIdx) {
+		Chunk[] currChunks = chunks;
+		if (chunkIdx < currChunks.length) {
+			return currChunks[chunkIdx];
+		}
+		Chunk[] newChunks = Arrays.copyOf(currChunks, chunkIdx + 1);
+		for (int i=currChunks.length; i<newChunks.length; i++) {
+			newChunks[i] = new Chunk(itemNames.length);
+			offHeapBytes += CHUNK_ROWS * 17;
+		}
+		chunks = newChunks;
+		return newChunks[chunkIdx];
+	}
+
+	private int getOrCreateColumn(String itemName) {
+		String itemNameLC = itemName.toLowerCase(Locale.ENGLISH);
+		Integer colIdx = columnIndexByItemName.get(itemNameLC);
+		if (colIdx != null) {
+			return colIdx.intValue();
+		}
+		String[] newItemNames = Arrays.copyOf(itemNames, itemNames.length + 1);
+		int newIdx = newItemNames.length - 1;
+		newItemNames[newIdx] = itemName;
+		itemNames = newItemNames;
+		columnIndexByItemName.put(itemNameLC, newIdx);
+		return newIdx;
+	}
+
+	private ByteBuffer getOrCreateColumnBuffer(Chunk chunk, int colIdx) {
+		ByteBuffer[] colBuffers = chunk.columns;
+		if (colIdx >= colBuffers.length) {
+			colBuffers = Arrays.copyOf(colBuffers, itemNames.length);
+			chunk.columns = colBuffers;
+		}
+		ByteBuffer colBuf = colBuffers[colIdx];
+		if (colBuf == null) {
+			colBuf = ByteBuffer.allocateDirect(CHUNK_ROWS * 9).order(ByteOrder.nativeOrder());
+			offHeapBytes += CHUNK_ROWS * 9;
+			colBuffers[colIdx] = colBuf;
+		}
+		return colBuf;
+	}
+
+	private void writeUnid(ByteBuffer buf, int rowInChunk, String unid) {
+		int pos = rowInChunk * 16;
+		if (isHexUnid(unid)) {
+			buf.putLong(pos, Long.parseUnsignedLong(unid.substring(0, 16), 16));
+			buf.putLong(pos + 8, Long.parseUnsignedLong(unid.substring(16), 16));
+			buf.put(CHUNK_ROWS * 16 + rowInChunk, UNID_BINARY);
+		}
+		else {
+			//unusual UNID format (or null), keep it as string
+			buf.putInt(pos, strings.acquire(unid == null ? "" : unid));
+			buf.put(CHUNK_ROWS * 16 + rowInChunk, UNID_STRING);
+		}
+	}
+
+	private static boolean isHexUnid(String unid) {
+		if (unid == null || unid.length() != 32) {
+			return false;
+		}
+		for (int i=0; i<32; i++) {
+			char c = unid.charAt(i);
+			if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'F'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String toHex(long val) {
+		String hex = Long.toHexString(val).toUpperCase(Locale.ENGLISH);
+		if (hex.length() < 16) {
+			StringBuilder sb = new StringBuilder(16);
+			for (int i=hex.length(); i<16; i++) {
+				sb.append('0');
+			}
+			sb.append(hex);
+			hex = sb.toString();
+		}
+		return hex;
+	}
+
+	private void writeValue(ByteBuffer buf, int rowInChunk, Object value) {
+		int pos = rowInChunk * 8;
+		byte tag;
+
+		if (value instanceof String) {
+			buf.putInt(pos, strings.acquire((String) value));
+			tag = TAG_STRING;
+		}
+		else if (value instanceof Double) {
+			buf.putDouble(pos, ((Double) value).doubleValue());
+			tag = TAG_DOUBLE;
+		}
+		else if (value instanceof Integer) {
+			buf.putInt(pos, ((Integer) value).intValue());
+			tag = TAG_INTEGER;
+		}
+		else if (value instanceof Long) {
+			buf.putLong(pos, ((Long) value).longValue());
+			tag = TAG_LONG;
+		}
+		else if (value instanceof NotesTimeDate) {
+			int[] innards = ((NotesTimeDate) value).getInnards();
+			buf.putInt(pos, innards[0]);
+			buf.putInt(pos + 4, innards[1]);
+			tag = TAG_TIMEDATE;
+		}
+		else if (value instanceof List) {
+			List<Object> listCopy = Collections.unmodifiableList(new ArrayList<>((List<?>) value));
+			buf.putInt(pos, lists.acquire(listCopy));
+			tag = TAG_LIST;
+		}
+		else {
+			buf.putInt(pos, objects.acquire(value));
+			tag = TAG_OBJECT;
+		}
+
+		buf.put(CHUNK_ROWS * 8 + rowInChunk, tag);
+	}
+
+	private Object readValue(ByteBuffer buf, int rowInChunk) {
+		if (buf == null) {
+			return null;
+		}
+		int pos = rowInChunk * 8;
+		byte tag = buf.get(CHUNK_ROWS * 8 + rowInChunk);
+
+		switch (tag) {
+		case TAG_STRING:
+			return strings.get(buf.getInt(pos));
+		case TAG_DOUBLE:
+			return buf.getDouble(pos);
+		case TAG_INTEGER:
+			return buf.getInt(pos);
+		case TAG_LONG:
+			return buf.getLong(pos);
+		case TAG_TIMEDATE:
+			return new NotesTimeDate(new int[] { buf.getInt(pos), buf.getInt(pos + 4) });
+		case TAG_LIST:
+			return lists.get(buf.getInt(pos));
+		case TAG_OBJECT:
+			return objects.get(buf.getInt(pos));
+		default:
+			return null;
+		}
+	}
+}
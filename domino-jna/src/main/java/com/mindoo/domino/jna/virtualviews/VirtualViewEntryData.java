@@ -17,6 +17,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import com.mindoo.domino.jna.IViewEntryData;
 import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.TypedItemAccess;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
 
 /**
  * Entry in a {@link VirtualView}, representing a document or category.
@@ -38,6 +39,9 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	
 	private ViewEntrySortKey sortKey;	
 	private Map<String,Object> columnValues;
+	/** row in the {@link VirtualViewColumnStore} of the view or -1 if values are stored in {@link #columnValues} */
+	private int rowId = -1;
+	private int rowGeneration;
 	
 	private ConcurrentSkipListMap<ViewEntrySortKey,VirtualViewEntryData> childEntriesBySortKey;
 	private Comparator<ViewEntrySortKey> childrenComparator;
@@ -51,6 +55,9 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	AtomicInteger descendantDocumentCount;
 	AtomicInteger descendantCategoryCount;
 	
+	/** documents never have children, so they share this empty map */
+	private static final ConcurrentSkipListMap<ViewEntrySortKey,VirtualViewEntryData> NO_CHILD_ENTRIES = new ConcurrentSkipListMap<>((o1, o2) -> 0);
+	
 	public VirtualViewEntryData(VirtualView parentView, VirtualViewEntryData parent, String origin, int noteId, String unid,
 			ViewEntrySortKey sortKey, Comparator<ViewEntrySortKey> childrenComparator) {
 		this.parentView = parentView;
@@ -60,17 +67,28 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 		this.unid = unid;
 		this.sortKey = sortKey;
 		
-		this.childCount = new AtomicInteger();
-		this.childCategoryCount = new AtomicInteger();
-		this.childDocumentCount = new AtomicInteger();
-
-		this.descendantCount = new AtomicInteger();
-		this.descendantDocumentCount = new AtomicInteger();
-		this.descendantCategoryCount = new AtomicInteger();
-		
 		Objects.requireNonNull(childrenComparator);
 		this.childrenComparator = childrenComparator;
-		this.childEntriesBySortKey = new ConcurrentSkipListMap<>(childrenComparator);
+
+		if (isCategory()) {
+			//counters and totals are only needed for categories and the root entry
+			this.childCount = new AtomicInteger();
+			this.childCategoryCount = new AtomicInteger();
+			this.childDocumentCount = new AtomicInteger();
+
+			this.descendantCount = new AtomicInteger();
+			this.descendantDocumentCount = new AtomicInteger();
+			this.descendantCategoryCount = new AtomicInteger();
+			this.descendantCountWithoutReaders = new AtomicInteger();
+
+			VirtualViewAggregates.Layout aggregatesLayout = parentView == null ? null : parentView.getAggregatesLayout();
+			this.aggregates = aggregatesLayout == null ? null : new VirtualViewAggregates(aggregatesLayout);
+			this.categoryReadersList = new ConcurrentHashMap<>();
+			this.childEntriesBySortKey = new ConcurrentSkipListMap<>(childrenComparator);
+		}
+		else {
+			this.childEntriesBySortKey = NO_CHILD_ENTRIES;
+		}
 	}
 	
 	public VirtualView getParentView() {
@@ -87,32 +105,32 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	
 	@Override
 	public int getChildCount() {
-		return childCount.get();
+		return childCount == null ? 0 : childCount.get();
 	}
 	
 	public int getChildCategoryCount() {
-		return childCategoryCount.get();
+		return childCategoryCount == null ? 0 : childCategoryCount.get();
 	}
 	
 	public int getChildDocumentCount() {
-		return childDocumentCount.get();
+		return childDocumentCount == null ? 0 : childDocumentCount.get();
 	}
 	
 	@Override
 	public int getDescendantCount() {
-		return descendantCount.get();
+		return descendantCount == null ? 0 : descendantCount.get();
 	}
 	
 	public int getDescendantCountWithoutReaders() {
-		return descendantCountWithoutReaders.get();
+		return descendantCountWithoutReaders == null ? 0 : descendantCountWithoutReaders.get();
 	}
 	
 	public int getDescendantDocumentCount() {
-        return descendantDocumentCount.get();
+        return descendantDocumentCount == null ? 0 : descendantDocumentCount.get();
 	}
 	
 	public int getDescendantCategoryCount() {
-		return descendantCategoryCount.get();
+		return descendantCategoryCount == null ? 0 : descendantCategoryCount.get();
 	}
 	
 	@Override
@@ -144,6 +162,9 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	
 	@Override
 	public String getUNID() {
+		if (rowId != -1) {
+			return parentView.getColumnStore().getUNID(rowId, rowGeneration);
+		}
 		return unid;
 	}
 	
@@ -158,6 +179,9 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	
 	@Override
 	public Object get(String itemName) {
+		if (rowId != -1) {
+			return parentView.getColumnStore().getValue(rowId, rowGeneration, itemName);
+		}
 		return columnValues==null ? null : columnValues.get(itemName);
 	}
 	
@@ -167,15 +191,20 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	 * @return item names
 	 */
 	public Iterator<String> getItemNames() {
-		return columnValues == null ? Collections.emptyIterator() : columnValues.keySet().iterator();
+		Map<String,Object> values = getColumnValues();
+		return values == null ? Collections.emptyIterator() : values.keySet().iterator();
 	}
 	
 	/**
-	 * Returns the column values of the entry as a map. Use
+	 * Returns the column values of the entry as a map. If the view uses a
+	 * {@link VirtualViewColumnStore}, the map is decoded on each call.
 	 * 
 	 * @return column values
 	 */
 	public Map<String,Object> getColumnValues() {
+		if (rowId != -1) {
+			return parentView.getColumnStore().getValues(rowId, rowGeneration);
+		}
 		return columnValues;
 	}
 	
@@ -183,6 +212,29 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 		this.columnValues = columnValues;
 	}
 	
+	/**
+	 * Returns the row of the entry in the {@link VirtualViewColumnStore}
+	 * 
+	 * @return row id or -1 if the values are stored in the entry
+	 */
+	int getRowId() {
+		return rowId;
+	}
+	
+	/**
+	 * Switches the entry to read its UNID and column values from a row of the
+	 * {@link VirtualViewColumnStore} and drops the on-heap copies
+	 * 
+	 * @param rowId row id
+	 * @param rowGeneration generation of the row, see {@link VirtualViewColumnStore#getRowGeneration(int)}
+	 */
+	void setRowId(int rowId, int rowGeneration) {
+		this.rowId = rowId;
+		this.rowGeneration = rowGeneration;
+		this.columnValues = null;
+		this.unid = null;
+	}
+	
 	@Override
 	public boolean isDocument() {
 		return !isCategory() && !isTotal();
@@ -269,7 +321,7 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	 * @return origins
 	 */
 	public Set<String> getCategoryReadersListOrigins() {
-		return categoryReadersList.keySet();
+		return categoryReadersList == null ? Collections.emptySet() : categoryReadersList.keySet();
 	}
 	
 	/**
@@ -280,6 +332,9 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 	 * @return readers list or null if no readers list is stored for this origin
 	 */
 	public Set<String> getCategoryReadersList(String origin) {
+		if (categoryReadersList == null) {
+			return Collections.emptySet();
+		}
 		return categoryReadersList.getOrDefault(origin, Collections.emptyMap()).keySet();
 	}
 	
@@ -376,42 +431,42 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 		return pos;
 	}
 	
-	private ConcurrentHashMap<String,Double> totalValues = new ConcurrentHashMap<>();
+	/** totals over the descendant documents of categories, null for documents or views without total columns */
+	private VirtualViewAggregates aggregates;
 	
-	private ConcurrentHashMap<String,Map<String,Integer>> categoryReadersList = new ConcurrentHashMap<>();
+	private ConcurrentHashMap<String,Map<String,Integer>> categoryReadersList;
 	/** number of descendant entries that do not have reader items or just "*" */
-	AtomicInteger descendantCountWithoutReaders = new AtomicInteger();
+	AtomicInteger descendantCountWithoutReaders;
+	
+	VirtualViewAggregates getAggregates() {
+		return aggregates;
+	}
 	
 	/**
-	 * Adds a value to a total value and returns the new total
+	 * Returns the sum of the values of an item over all descendant documents of a category
 	 * 
-	 * @param itemName item name
-	 * @param val value to add
-	 * @return new total value
+	 * @param itemName item name of a total column
+	 * @return total value or null if no total value is stored
 	 */
-	double addAndGetTotalValue(String itemName, double val) {
-		String itemNameLC = itemName.toLowerCase();
-		
-		return totalValues.compute(itemNameLC, (key, oldVal) -> {
-			if (oldVal == null) {
-				return Double.valueOf(val);
-            }
-            else {
-            	return Double.valueOf(oldVal.doubleValue() + val);
-            }
-        }).doubleValue();
+	public Double getTotalValue(String itemName) {
+		return getTotalValue(itemName, Total.SUM);
 	}
 	
 	/**
-	 * Returns the total value for a specific item
+	 * Returns an aggregated value of an item over all descendant documents of a category.
+	 * {@link Total#SUM}, {@link Total#COUNT} and {@link Total#AVERAGE} are available for all
+	 * total columns, {@link Total#MIN}, {@link Total#MAX} and {@link Total#DISTINCT_COUNT}
+	 * only if a column of the item uses that mode.
 	 * 
-	 * @param itemName item name
-	 * @return total value or null if no total value is stored
+	 * @param itemName item name of a total column
+	 * @param mode total mode
+	 * @return value or null if not available
 	 */
-	public Double getTotalValue(String itemName) {
-		String itemNameLC = itemName.toLowerCase();
-		
-		return totalValues.getOrDefault(itemName, null);
+	public Double getTotalValue(String itemName, Total mode) {
+		if (aggregates == null) {
+			return null;
+		}
+		return aggregates.getValue(itemName, mode, getDescendantDocumentCount());
 	}
 	
 	int increaseAndGetReader(String origin, String reader) {
@@ -461,8 +516,8 @@ public class VirtualViewEntryData extends TypedItemAccess implements IViewEntryD
 		sb.append(", sortKey=").append(sortKey);
 		sb.append(", origin=").append(origin);
 		sb.append(", noteId=").append(noteId);
-	    sb.append(", unid=").append(unid);
-	    sb.append(", columnValues=").append(columnValues);
+	    sb.append(", unid=").append(getUNID());
+	    sb.append(", columnValues=").append(getColumnValues());
 	    sb.append(", childCount=").append(childCount);
 	    sb.append(", childDocCount=").append(childDocumentCount);
 	    sb.append(", childCatCount=").append(childCategoryCount);
@@ -130,6 +130,32 @@ public enum VirtualViewFactory {
 			m_view.setCategorizationStyle(style);
 			return this;
 		}
+
+		/**
+		 * Stores the column values and UNIDs of the view documents in a {@link VirtualViewColumnStore}
+		 * outside of the Java heap instead of one map per view entry. Recommended for views
+		 * with millions of documents, where it reduces memory usage and GC pauses at the cost
+		 * of decoding values when they are read.
+		 *
+		 * @return builder object to add more data providers
+		 */
+		public VirtualViewBuilder withColumnarStorage() {
+			m_view.setColumnarStorage(true);
+			return this;
+		}
+
+		/**
+		 * Adds a secondary index over the values of an item, used to find, sort and page
+		 * through documents with {@link VirtualViewNavigator#query()}
+		 *
+		 * @param itemName item name
+		 * @param type index type
+		 * @return builder object to add more data providers
+		 */
+		public VirtualViewBuilder withIndex(String itemName, VirtualViewIndexType type) {
+			m_view.addIndex(itemName, type);
+			return this;
+		}
 		
 		/**
 		 * Adds a data provider to the view that runs a formula search in a Notes database and for all matching data documents
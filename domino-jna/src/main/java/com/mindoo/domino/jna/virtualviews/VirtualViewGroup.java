@@ -0,0 +1,59 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.List;
+
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+
+/**
+ * Result row of a {@link VirtualViewGroupBy} query
+ */
+public class VirtualViewGroup {
+	private List<Object> key;
+	private VirtualViewAggregates aggregates;
+	private int documentCount;
+
+	VirtualViewGroup(List<Object> key, VirtualViewAggregates.Layout layout) {
+		this.key = key;
+		this.aggregates = new VirtualViewAggregates(layout);
+	}
+
+	void add(VirtualViewAggregates.DocValues docValues) {
+		documentCount++;
+		aggregates.add(docValues);
+	}
+
+	/**
+	 * Returns the values of the group items, in the order passed to {@link VirtualView#groupBy(String...)}.
+	 * A null value groups the documents without a value.
+	 *
+	 * @return key values
+	 */
+	public List<Object> getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the number of documents in the group
+	 *
+	 * @return document count
+	 */
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	/**
+	 * Returns an aggregated value
+	 *
+	 * @param itemName item name passed to {@link VirtualViewGroupBy#aggregate(String, Total...)}
+	 * @param mode total mode
+	 * @return value or null if not available
+	 */
+	public Double getValue(String itemName, Total mode) {
+		return aggregates.getValue(itemName, mode, documentCount);
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualViewGroup [key=" + key + ", documentCount=" + documentCount + "]";
+	}
+}
@@ -0,0 +1,122 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.mindoo.domino.jna.virtualviews.VirtualView.CategorizationStyle;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+
+/**
+ * Ad-hoc group-by query over the documents of a {@link VirtualView}, e.g. to compute totals for
+ * a dashboard by columns that are not categorized in the view. The query scans the documents
+ * once under the view's read lock and does not change the view.<br>
+ * <br>
+ * Documents are counted once, even if the view shows them in multiple categories. Multi-value
+ * group items put the document into one group per value, like categories do. Strings are grouped
+ * case insensitive. Reader items are not checked, so the results include all documents.<br>
+ * <br>
+ * Usage:<br>
+ * <pre>
+ * List&lt;VirtualViewGroup&gt; groups = view.groupBy("Country", "City")
+ *     .aggregate("Salary", Total.SUM, Total.MAX)
+ *     .aggregate("Lastname", Total.DISTINCT_COUNT)
+ *     .execute();
+ * </pre>
+ */
+public class VirtualViewGroupBy {
+	private VirtualView view;
+	private List<String> groupItemNames;
+	private Map<String,Set<Total>> modesByItemName;
+
+	VirtualViewGroupBy(VirtualView view, List<String> groupItemNames) {
+		this.view = view;
+		this.groupItemNames = groupItemNames;
+		this.modesByItemName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	}
+
+	/**
+	 * Adds an aggregation to compute for each group
+	 *
+	 * @param itemName item name
+	 * @param modes total modes
+	 * @return this query
+	 */
+	public VirtualViewGroupBy aggregate(String itemName, Total... modes) {
+		modesByItemName.computeIfAbsent(itemName, (key) -> EnumSet.noneOf(Total.class))
+		.addAll(Arrays.asList(modes));
+		return this;
+	}
+
+	/**
+	 * Runs the query
+	 *
+	 * @return groups sorted ascending by their key values
+	 */
+	public List<VirtualViewGroup> execute() {
+		VirtualViewAggregates.Layout layout = new VirtualViewAggregates.Layout(modesByItemName);
+		TreeMap<ViewEntrySortKey,VirtualViewGroup> groups = new TreeMap<>(new ViewEntrySortKeyComparator(
+				CategorizationStyle.DOCUMENT_THEN_CATEGORY, false, new boolean[groupItemNames.size()]));
+
+		view.accessWithReadLock(() -> {
+			view.forEachDocument((docEntry) -> {
+				VirtualViewAggregates.DocValues docValues = layout.extract(docEntry);
+
+				List<List<Object>> keys = new ArrayList<>();
+				keys.add(Collections.emptyList());
+				for (String currItemName : groupItemNames) {
+					keys = addKeyValues(keys, docEntry.get(currItemName));
+				}
+
+				List<VirtualViewGroup> docGroups = new ArrayList<>(keys.size());
+				for (List<Object> currKey : keys) {
+					ViewEntrySortKey sortKey = ViewEntrySortKey.createSortKey(false, currKey, "", 0);
+					VirtualViewGroup group = groups.computeIfAbsent(sortKey, (k) -> new VirtualViewGroup(currKey, layout));
+					//multi-value items may produce the same group twice
+					if (!docGroups.contains(group)) {
+						docGroups.add(group);
+						group.add(docValues);
+					}
+				}
+			});
+		});
+
+		return new ArrayList<>(groups.values());
+	}
+
+	/**
+	 * Appends the values of a group item to all key prefixes
+	 *
+	 * @param keys key prefixes
+	 * @param value item value
+	 * @return new keys
+	 */
+	private List<List<Object>> addKeyValues(List<List<Object>> keys, Object value) {
+		List<?> values;
+		if (value instanceof List && !((List<?>) value).isEmpty()) {
+			values = (List<?>) value;
+		}
+		else if (value instanceof List || "".equals(value)) {
+			values = Arrays.asList((Object) null);
+		}
+		else {
+			values = Arrays.asList(value);
+		}
+
+		List<List<Object>> newKeys = new ArrayList<>(keys.size() * values.size());
+		for (List<Object> currKey : keys) {
+			for (Object currValue : values) {
+				List<Object> newKey = new ArrayList<>(currKey.size() + 1);
+				newKey.addAll(currKey);
+				newKey.add(currValue);
+				newKeys.add(newKey);
+			}
+		}
+		return newKeys;
+	}
+}
@@ -0,0 +1,14 @@
+package com.mindoo.domino.jna.virtualviews;
+
+/**
+ * Type of a secondary index over the values of an item in a {@link VirtualView},
+ * see {@link VirtualView#addIndex(String, VirtualViewIndexType)}
+ */
+public enum VirtualViewIndexType {
+	/** index for equality lookups (strings case insensitive) */
+	HASH,
+	/** sorted index for equality, range and prefix lookups and to sort query results */
+	SORTED,
+	/** index of the words in string values, for full text like token lookups */
+	FULL_TOKEN
+}
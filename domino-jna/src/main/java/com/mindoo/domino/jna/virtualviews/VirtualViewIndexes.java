@@ -0,0 +1,436 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.virtualviews.VirtualView.ScopedNoteId;
+
+/**
+ * Secondary indexes of a {@link VirtualView}. Each document of the view gets a dense int id,
+ * the indexes map item values to {@link BitSet}s of these ids, so that query predicates
+ * can be combined with fast bitmap operations.<br>
+ * <br>
+ * The indexes are changed by the view while it holds its write lock and read by
+ * {@link VirtualViewQuery} with the read lock.
+ */
+class VirtualViewIndexes {
+	/**
+	 * Sort order for index values: numbers, then date/times, then strings (case insensitive),
+	 * then other values by their string representation
+	 */
+	static final Comparator<Object> VALUE_COMPARATOR = (o1, o2) -> {
+		int rank1 = getTypeRank(o1);
+		int rank2 = getTypeRank(o2);
+		if (rank1 != rank2) {
+			return Integer.compare(rank1, rank2);
+		}
+		switch (rank1) {
+		case 0:
+			return Double.compare(((Number) o1).doubleValue(), ((Number) o2).doubleValue());
+		case 1:
+			return ((NotesTimeDate) o1).compareTo((NotesTimeDate) o2);
+		case 2:
+			return ((String) o1).compareToIgnoreCase((String) o2);
+		default:
+			return o1.toString().compareTo(o2.toString());
+		}
+	};
+
+	private final Map<ScopedNoteId,Integer> docIdByNoteId = new HashMap<>();
+	private VirtualViewEntryData[] docsById = new VirtualViewEntryData[1024];
+	private final BitSet allDocIds = new BitSet();
+	private int[] freeDocIds = new int[16];
+	private int freeDocIdsCount;
+	private int nextDocId;
+
+	private final List<ItemIndex> indexes = new ArrayList<>();
+
+	private static int getTypeRank(Object value) {
+		if (value instanceof Number) {
+			return 0;
+		}
+		else if (value instanceof NotesTimeDate) {
+			return 1;
+		}
+		else if (value instanceof String) {
+			return 2;
+		}
+		else {
+			return 3;
+		}
+	}
+
+	/**
+	 * Index of one item
+	 */
+	static class ItemIndex {
+		private final String itemName;
+		private final VirtualViewIndexType type;
+		private final Map<Object,BitSet> buckets;
+		private final BitSet docsWithValue = new BitSet();
+
+		private ItemIndex(String itemName, VirtualViewIndexType type) {
+			this.itemName = itemName;
+			this.type = type;
+			if (type == VirtualViewIndexType.HASH) {
+				this.buckets = new HashMap<>();
+			}
+			else if (type == VirtualViewIndexType.SORTED) {
+				this.buckets = new TreeMap<>(VALUE_COMPARATOR);
+			}
+			else {
+				this.buckets = new TreeMap<>();
+			}
+		}
+
+		String getItemName() {
+			return itemName;
+		}
+
+		VirtualViewIndexType getType() {
+			return type;
+		}
+
+		/**
+		 * Converts an item value into the keys of this index
+		 *
+		 * @param value item value
+		 * @return keys
+		 */
+		private Collection<Object> toKeys(Object value) {
+			if (value == null) {
+				return Collections.emptyList();
+			}
+			List<?> values = value instanceof List ? (List<?>) value : Arrays.asList(value);
+			Set<Object> keys = new LinkedHashSet<>();
+			for (Object currValue : values) {
+				if (type == VirtualViewIndexType.FULL_TOKEN) {
+					if (currValue instanceof String) {
+						keys.addAll(tokenize((String) currValue));
+					}
+				}
+				else {
+					Object key = toKey(currValue);
+					if (key != null) {
+						keys.add(key);
+					}
+				}
+			}
+			return keys;
+		}
+
+		/**
+		 * Normalizes a single value for lookups
+		 *
+		 * @param value value
+		 * @return key or null for empty values
+		 */
+		Object toKey(Object value) {
+			if (value == null || "".equals(value)) {
+				return null;
+			}
+			if (value instanceof Number) {
+				return Double.valueOf(((Number) value).doubleValue());
+			}
+			if (value instanceof String && type != VirtualViewIndexType.SORTED) {
+				//sorted index compares case insensitive
+				return ((String) value).toLowerCase(Locale.ENGLISH);
+			}
+			return value;
+		}
+
+		/**
+		 * Returns the value to sort a document by, which is the first non-empty value
+		 * of multi-value items
+		 *
+		 * @param value item value
+		 * @return sort value or null if the document has no value
+		 */
+		Object getSortValue(Object value) {
+			if (value instanceof List) {
+				for (Object currValue : (List<?>) value) {
+					Object key = toKey(currValue);
+					if (key != null) {
+						return key;
+					}
+				}
+				return null;
+			}
+			return toKey(value);
+		}
+
+		private void add(int docId, Object value) {
+			Collection<Object> keys = toKeys(value);
+			for (Object currKey : keys) {
+				buckets.computeIfAbsent(currKey, (k) -> new BitSet()).set(docId);
+			}
+			if (!keys.isEmpty()) {
+				docsWithValue.set(docId);
+			}
+		}
+
+		private void remove(int docId, Object value) {
+			for (Object currKey : toKeys(value)) {
+				BitSet bucket = buckets.get(currKey);
+				if (bucket != null) {
+					bucket.clear(docId);
+					if (bucket.isEmpty()) {
+						buckets.remove(currKey);
+					}
+				}
+			}
+			docsWithValue.clear(docId);
+		}
+
+		/**
+		 * Returns the documents that contain a value
+		 *
+		 * @param value value (for {@link VirtualViewIndexType#FULL_TOKEN}: a single word)
+		 * @return doc ids
+		 */
+		BitSet getEqual(Object value) {
+			Object key = toKey(value);
+			BitSet bucket = key == null ? null : buckets.get(key);
+			return bucket == null ? new BitSet() : (BitSet) bucket.clone();
+		}
+
+		/**
+		 * Returns the documents with a value in a range, only supported for {@link VirtualViewIndexType#SORTED}
+		 *
+		 * @param from lower bound or null
+		 * @param fromInclusive true to include the lower bound
+		 * @param to upper bound or null
+		 * @param toInclusive true to include the upper bound
+		 * @return doc ids
+		 */
+		BitSet getRange(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+			NavigableMap<Object,BitSet> range = getSortedBuckets();
+			Object fromKey = toKey(from);
+			Object toKey = toKey(to);
+			if (fromKey != null && toKey != null) {
+				if (VALUE_COMPARATOR.compare(fromKey, toKey) > 0) {
+					return new BitSet();
+				}
+				range = range.subMap(fromKey, fromInclusive, toKey, toInclusive);
+			}
+			else if (fromKey != null) {
+				range = range.tailMap(fromKey, fromInclusive);
+			}
+			else if (toKey != null) {
+				range = range.headMap(toKey, toInclusive);
+			}
+			return union(range.values());
+		}
+
+		/**
+		 * Returns the documents with a string value (or word for {@link VirtualViewIndexType#FULL_TOKEN})
+		 * starting with a prefix, case insensitive
+		 *
+		 * @param prefix prefix
+		 * @return doc ids
+		 */
+		BitSet getPrefix(String prefix) {
+			if (type == VirtualViewIndexType.HASH) {
+				throw new IllegalArgumentException("Prefix lookups are not supported for hash index of item "+itemName);
+			}
+			String prefixLC = prefix.toLowerCase(Locale.ENGLISH);
+			@SuppressWarnings("unchecked")
+			NavigableMap<Object,BitSet> sortedBuckets = (NavigableMap<Object,BitSet>) (NavigableMap<?,BitSet>) buckets;
+			BitSet result = new BitSet();
+			for (Map.Entry<Object,BitSet> currEntry : sortedBuckets.tailMap(prefixLC, true).entrySet()) {
+				Object key = currEntry.getKey();
+				if (!(key instanceof String) || !((String) key).regionMatches(true, 0, prefixLC, 0, prefixLC.length())) {
+					break;
+				}
+				result.or(currEntry.getValue());
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the buckets in ascending value order, only supported for {@link VirtualViewIndexType#SORTED}
+		 *
+		 * @return buckets
+		 */
+		@SuppressWarnings("unchecked")
+		NavigableMap<Object,BitSet> getSortedBuckets() {
+			if (type != VirtualViewIndexType.SORTED) {
+				throw new IllegalArgumentException("Item "+itemName+" has no sorted index");
+			}
+			return (NavigableMap<Object,BitSet>) buckets;
+		}
+
+		BitSet getDocsWithValue() {
+			return docsWithValue;
+		}
+	}
+
+	/**
+	 * Splits a string into lowercase words
+	 *
+	 * @param text text
+	 * @return words
+	 */
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		int start = -1;
+		for (int i=0; i<=text.length(); i++) {
+			boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (isWordChar) {
+				if (start == -1) {
+					start = i;
+				}
+			}
+			else if (start != -1) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ENGLISH));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	private static BitSet union(Collection<BitSet> bitSets) {
+		BitSet result = new BitSet();
+		for (BitSet currBitSet : bitSets) {
+			result.or(currBitSet);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds an index and fills it with the existing documents
+	 *
+	 * @param itemName item name
+	 * @param type index type
+	 * @return false if the index already exists
+	 */
+	boolean addIndex(String itemName, VirtualViewIndexType type) {
+		if (getIndex(itemName, type) != null) {
+			return false;
+		}
+		ItemIndex index = new ItemIndex(itemName, type);
+		for (int docId = allDocIds.nextSetBit(0); docId >= 0; docId = allDocIds.nextSetBit(docId+1)) {
+			index.add(docId, docsById[docId].get(itemName));
+		}
+		indexes.add(index);
+		return true;
+	}
+
+	/**
+	 * Returns an index
+	 *
+	 * @param itemName item name (case insensitive)
+	 * @param type index type
+	 * @return index or null if not found
+	 */
+	ItemIndex getIndex(String itemName, VirtualViewIndexType type) {
+		for (ItemIndex currIndex : indexes) {
+			if (currIndex.getType() == type && currIndex.getItemName().equalsIgnoreCase(itemName)) {
+				return currIndex;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the first existing index of an item in the order of the specified types
+	 *
+	 * @param itemName item name (case insensitive)
+	 * @param types index types
+	 * @return index
+	 * @throws IllegalArgumentException if there is no matching index
+	 */
+	ItemIndex findIndex(String itemName, VirtualViewIndexType... types) {
+		for (VirtualViewIndexType currType : types) {
+			ItemIndex index = getIndex(itemName, currType);
+			if (index != null) {
+				return index;
+			}
+		}
+		throw new IllegalArgumentException("No index of type "+Arrays.toString(types)+" found for item "+itemName);
+	}
+
+	/**
+	 * Adds a document to all indexes
+	 *
+	 * @param scopedNoteId note id and origin
+	 * @param docEntry view entry of the document
+	 */
+	void addDocument(ScopedNoteId scopedNoteId, VirtualViewEntryData docEntry) {
+		removeDocument(scopedNoteId);
+
+		int docId;
+		if (freeDocIdsCount > 0) {
+			docId = freeDocIds[--freeDocIdsCount];
+		}
+		else {
+			docId = nextDocId++;
+			if (docId >= docsById.length) {
+				docsById = Arrays.copyOf(docsById, docsById.length * 2);
+			}
+		}
+		docsById[docId] = docEntry;
+		docIdByNoteId.put(scopedNoteId, docId);
+		allDocIds.set(docId);
+
+		for (ItemIndex currIndex : indexes) {
+			currIndex.add(docId, docEntry.get(currIndex.getItemName()));
+		}
+	}
+
+	/**
+	 * Removes a document from all indexes. Must be called while the values of the document
+	 * can still be read.
+	 *
+	 * @param scopedNoteId note id and origin
+	 */
+	void removeDocument(ScopedNoteId scopedNoteId) {
+		Integer docId = docIdByNoteId.remove(scopedNoteId);
+		if (docId == null) {
+			return;
+		}
+		VirtualViewEntryData docEntry = docsById[docId];
+		for (ItemIndex currIndex : indexes) {
+			currIndex.remove(docId, docEntry.get(currIndex.getItemName()));
+		}
+		docsById[docId] = null;
+		allDocIds.clear(docId);
+
+		if (freeDocIdsCount == freeDocIds.length) {
+			freeDocIds = Arrays.copyOf(freeDocIds, freeDocIds.length * 2);
+		}
+		freeDocIds[freeDocIdsCount++] = docId;
+	}
+
+	/**
+	 * Returns the ids of all documents
+	 *
+	 * @return doc ids (do not modify)
+	 */
+	BitSet getAllDocIds() {
+		return allDocIds;
+	}
+
+	/**
+	 * Returns the view entry for a doc id
+	 *
+	 * @param docId doc id
+	 * @return entry
+	 */
+	VirtualViewEntryData getDocument(int docId) {
+		return docsById[docId];
+	}
+}
@@ -663,7 +663,7 @@ public class VirtualViewNavigator {
 	 * @param entry entry to check
 	 * @return true if visible
 	 */
-	private boolean isVisible(VirtualViewEntryData entry) {
+	boolean isVisible(VirtualViewEntryData entry) {
 		if (inVisibilityCheck.get()) {
 			//might happen if the view entry access check code calls virtual view navigator methods that itself need to check access;
 			//prevents StackOverflowError
@@ -1144,6 +1144,17 @@ public class VirtualViewNavigator {
 		}
 	}
 	
+	/**
+	 * Creates a query that searches documents of the view via its secondary indexes
+	 * (see {@link VirtualView#addIndex(String, VirtualViewIndexType)}). The query only
+	 * returns documents that are visible with the access check of this navigator.
+	 * 
+	 * @return query
+	 */
+	public VirtualViewQuery query() {
+		return new VirtualViewQuery(this);
+	}
+	
 	/**
 	 * Collapse all entries by default. Use {@link #expand(String, int)} and the other expand methods to expand specific entries.
 	 * 
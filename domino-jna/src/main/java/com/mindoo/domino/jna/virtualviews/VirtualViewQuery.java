@@ -0,0 +1,420 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+
+import com.mindoo.domino.jna.NotesTimeDate;
+
+/**
+ * Query on the documents of a {@link VirtualView} that uses the secondary indexes
+ * of the view (see {@link VirtualView#addIndex(String, VirtualViewIndexType)}) to
+ * find, sort and page through the documents without traversing the view tree.<br>
+ * <br>
+ * Results are returned in pages. Use {@link VirtualViewQueryResult#getNextCursor()} and
+ * {@link #startAfter(String)} to read the next page. The cursor contains the position of the
+ * last returned document, so paging stays stable when the view changes between two calls.<br>
+ * <br>
+ * Create a query via {@link VirtualViewNavigator#query()}.
+ */
+public class VirtualViewQuery {
+	private static final int DEFAULT_PAGE_SIZE = 50;
+
+	private static final Comparator<VirtualViewEntryData> ORIGIN_NOTEID_COMPARATOR = (o1, o2) -> {
+		int result = o1.getOrigin().compareTo(o2.getOrigin());
+		if (result != 0) {
+			return result;
+		}
+		return Integer.compare(o1.getNoteId(), o2.getNoteId());
+	};
+
+	private VirtualViewNavigator nav;
+	private VirtualViewQueryFilter filter;
+	private String sortItemName;
+	private boolean sortDescending;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private String cursor;
+
+	VirtualViewQuery(VirtualViewNavigator nav) {
+		this.nav = nav;
+	}
+
+	/**
+	 * Sets the filter for the documents
+	 *
+	 * @param filter filter or null to return all documents
+	 * @return this query
+	 */
+	public VirtualViewQuery where(VirtualViewQueryFilter filter) {
+		this.filter = filter;
+		return this;
+	}
+
+	/**
+	 * Sorts the result by the value of an item, the item needs a {@link VirtualViewIndexType#SORTED} index.
+	 * Documents without a value are returned last. By default, documents are returned in
+	 * origin / note id order.
+	 *
+	 * @param itemName item name
+	 * @param descending true to sort descending
+	 * @return this query
+	 */
+	public VirtualViewQuery sortBy(String itemName, boolean descending) {
+		this.sortItemName = itemName;
+		this.sortDescending = descending;
+		return this;
+	}
+
+	/**
+	 * Sets the number of documents to return per page
+	 *
+	 * @param pageSize page size, default is 50
+	 * @return this query
+	 */
+	public VirtualViewQuery pageSize(int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be greater than 0: "+pageSize);
+		}
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * Continues reading after the last document of a previous page
+	 *
+	 * @param cursor cursor from {@link VirtualViewQueryResult#getNextCursor()} or null to start at the beginning
+	 * @return this query
+	 */
+	public VirtualViewQuery startAfter(String cursor) {
+		this.cursor = cursor;
+		return this;
+	}
+
+	/**
+	 * Runs the query and returns one page of results
+	 *
+	 * @return result
+	 */
+	public VirtualViewQueryResult execute() {
+		VirtualView view = nav.getView();
+		VirtualViewQueryResult[] result = new VirtualViewQueryResult[1];
+		view.accessWithReadLock(() -> {
+			VirtualViewIndexes indexes = view.getIndexes();
+			if (indexes == null) {
+				throw new IllegalStateException("The view has no indexes, use VirtualView.addIndex(...) to create them");
+			}
+			result[0] = execute(indexes);
+		});
+		return result[0];
+	}
+
+	private VirtualViewQueryResult execute(VirtualViewIndexes indexes) {
+		VirtualViewIndexes.ItemIndex sortIndex = sortItemName==null ? null : indexes.findIndex(sortItemName, VirtualViewIndexType.SORTED);
+		CursorPosition startPos = cursor==null ? null : CursorPosition.decode(cursor);
+
+		BitSet matches = filter==null ? (BitSet) indexes.getAllDocIds().clone() : filter.evaluate(indexes);
+		for (int docId = matches.nextSetBit(0); docId >= 0; docId = matches.nextSetBit(docId+1)) {
+			if (!nav.isVisible(indexes.getDocument(docId))) {
+				matches.clear(docId);
+			}
+		}
+		int totalCount = matches.cardinality();
+
+		//read one document more than requested to find out if there is a next page
+		int limit = pageSize + 1;
+		List<VirtualViewEntryData> page;
+		if (sortIndex == null) {
+			page = readUnsorted(indexes, matches, startPos, limit);
+		}
+		else {
+			page = readSorted(indexes, sortIndex, matches, startPos, limit);
+		}
+
+		String nextCursor = null;
+		if (page.size() > pageSize) {
+			page = page.subList(0, pageSize);
+			VirtualViewEntryData lastEntry = page.get(pageSize-1);
+			Object sortValue = sortIndex==null ? null : sortIndex.getSortValue(lastEntry.get(sortIndex.getItemName()));
+			nextCursor = new CursorPosition(sortValue, lastEntry.getOrigin(), lastEntry.getNoteId()).encode();
+		}
+		return new VirtualViewQueryResult(new ArrayList<>(page), totalCount, nextCursor);
+	}
+
+	private List<VirtualViewEntryData> readUnsorted(VirtualViewIndexes indexes, BitSet matches,
+			CursorPosition startPos, int limit) {
+		//keep the smallest entries in a max-heap, so we don't need to sort all matches
+		PriorityQueue<VirtualViewEntryData> smallestEntries = new PriorityQueue<>(limit+1, ORIGIN_NOTEID_COMPARATOR.reversed());
+		for (int docId = matches.nextSetBit(0); docId >= 0; docId = matches.nextSetBit(docId+1)) {
+			VirtualViewEntryData docEntry = indexes.getDocument(docId);
+			if (startPos!=null && startPos.compareTo(docEntry) >= 0) {
+				continue;
+			}
+			smallestEntries.add(docEntry);
+			if (smallestEntries.size() > limit) {
+				smallestEntries.poll();
+			}
+		}
+		List<VirtualViewEntryData> page = new ArrayList<>(smallestEntries);
+		page.sort(ORIGIN_NOTEID_COMPARATOR);
+		return page;
+	}
+
+	private List<VirtualViewEntryData> readSorted(VirtualViewIndexes indexes, VirtualViewIndexes.ItemIndex sortIndex,
+			BitSet matches, CursorPosition startPos, int limit) {
+		List<VirtualViewEntryData> page = new ArrayList<>();
+
+		boolean startInDocsWithoutValue = startPos!=null && startPos.sortValue==null;
+		if (!startInDocsWithoutValue) {
+			NavigableMap<Object,BitSet> buckets = sortIndex.getSortedBuckets();
+			if (matches.cardinality() < buckets.size()) {
+				//fewer matches than distinct values, sorting the matches is cheaper than walking the buckets
+				readSortedMatches(indexes, sortIndex, matches, startPos, limit, page);
+			}
+			else {
+				readSortedBuckets(indexes, sortIndex, buckets, matches, startPos, limit, page);
+			}
+			if (page.size() == limit) {
+				return page;
+			}
+		}
+
+		BitSet docIdsWithoutValue = (BitSet) matches.clone();
+		docIdsWithoutValue.andNot(sortIndex.getDocsWithValue());
+		List<VirtualViewEntryData> entriesWithoutValue = new ArrayList<>();
+		for (int docId = docIdsWithoutValue.nextSetBit(0); docId >= 0; docId = docIdsWithoutValue.nextSetBit(docId+1)) {
+			VirtualViewEntryData docEntry = indexes.getDocument(docId);
+			if (startInDocsWithoutValue && startPos.compareTo(docEntry) >= 0) {
+				continue;
+			}
+			entriesWithoutValue.add(docEntry);
+		}
+		entriesWithoutValue.sort(ORIGIN_NOTEID_COMPARATOR);
+
+		for (VirtualViewEntryData currEntry : entriesWithoutValue) {
+			page.add(currEntry);
+			if (page.size() == limit) {
+				break;
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Reads the matches with a value in sort order by walking the buckets of the sorted index
+	 */
+	private void readSortedBuckets(VirtualViewIndexes indexes, VirtualViewIndexes.ItemIndex sortIndex,
+			NavigableMap<Object,BitSet> buckets, BitSet matches, CursorPosition startPos, int limit,
+			List<VirtualViewEntryData> page) {
+		if (sortDescending) {
+			buckets = buckets.descendingMap();
+		}
+		if (startPos != null) {
+			buckets = buckets.tailMap(startPos.sortValue, true);
+		}
+
+		for (Entry<Object,BitSet> currBucket : buckets.entrySet()) {
+			if (!currBucket.getValue().intersects(matches)) {
+				continue;
+			}
+			Object bucketValue = currBucket.getKey();
+			boolean isStartBucket = startPos!=null && VirtualViewIndexes.VALUE_COMPARATOR.compare(bucketValue, startPos.sortValue) == 0;
+
+			BitSet bucketDocIds = (BitSet) currBucket.getValue().clone();
+			bucketDocIds.and(matches);
+
+			List<VirtualViewEntryData> bucketEntries = new ArrayList<>();
+			for (int docId = bucketDocIds.nextSetBit(0); docId >= 0; docId = bucketDocIds.nextSetBit(docId+1)) {
+				VirtualViewEntryData docEntry = indexes.getDocument(docId);
+				//multi-value items are in several buckets, but sorted by their first value
+				Object sortValue = sortIndex.getSortValue(docEntry.get(sortIndex.getItemName()));
+				if (sortValue==null || VirtualViewIndexes.VALUE_COMPARATOR.compare(sortValue, bucketValue) != 0) {
+					continue;
+				}
+				if (isStartBucket && startPos.compareTo(docEntry) >= 0) {
+					continue;
+				}
+				bucketEntries.add(docEntry);
+			}
+			bucketEntries.sort(ORIGIN_NOTEID_COMPARATOR);
+
+			for (VirtualViewEntryData currEntry : bucketEntries) {
+				page.add(currEntry);
+				if (page.size() == limit) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the matches with a value in sort order by sorting them by their sort value,
+	 * used when there are only a few matches compared to the number of buckets
+	 */
+	private void readSortedMatches(VirtualViewIndexes indexes, VirtualViewIndexes.ItemIndex sortIndex,
+			BitSet matches, CursorPosition startPos, int limit, List<VirtualViewEntryData> page) {
+		Comparator<Object> valueComparator = sortDescending ? VirtualViewIndexes.VALUE_COMPARATOR.reversed() : VirtualViewIndexes.VALUE_COMPARATOR;
+
+		BitSet docIdsWithValue = (BitSet) matches.clone();
+		docIdsWithValue.and(sortIndex.getDocsWithValue());
+
+		List<SortedMatch> sortedMatches = new ArrayList<>();
+		for (int docId = docIdsWithValue.nextSetBit(0); docId >= 0; docId = docIdsWithValue.nextSetBit(docId+1)) {
+			VirtualViewEntryData docEntry = indexes.getDocument(docId);
+			Object sortValue = sortIndex.getSortValue(docEntry.get(sortIndex.getItemName()));
+			if (sortValue == null) {
+				continue;
+			}
+			if (startPos != null) {
+				int cmp = valueComparator.compare(sortValue, startPos.sortValue);
+				if (cmp < 0 || (cmp == 0 && startPos.compareTo(docEntry) >= 0)) {
+					continue;
+				}
+			}
+			sortedMatches.add(new SortedMatch(docEntry, sortValue));
+		}
+		sortedMatches.sort((m1, m2) -> {
+			int result = valueComparator.compare(m1.sortValue, m2.sortValue);
+			if (result != 0) {
+				return result;
+			}
+			return ORIGIN_NOTEID_COMPARATOR.compare(m1.entry, m2.entry);
+		});
+
+		for (SortedMatch currMatch : sortedMatches) {
+			page.add(currMatch.entry);
+			if (page.size() == limit) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Matching document with its sort value
+	 */
+	private static class SortedMatch {
+		private final VirtualViewEntryData entry;
+		private final Object sortValue;
+
+		private SortedMatch(VirtualViewEntryData entry, Object sortValue) {
+			this.entry = entry;
+			this.sortValue = sortValue;
+		}
+	}
+
+	/**
+	 * Sort value of a cursor that is neither a number, date/time nor string; it has the
+	 * same type rank and string representation as the original value, so it is compared
+	 * the same way by {@link VirtualViewIndexes#VALUE_COMPARATOR}
+	 */
+	private static class OtherSortValue {
+		private final String value;
+
+		private OtherSortValue(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return value;
+		}
+	}
+
+	/**
+	 * Position of the last document of a page, encoded as opaque cursor string
+	 */
+	private static class CursorPosition {
+		private static final char SEPARATOR = '\n';
+
+		private final Object sortValue;
+		private final String origin;
+		private final int noteId;
+
+		private CursorPosition(Object sortValue, String origin, int noteId) {
+			this.sortValue = sortValue;
+			this.origin = origin;
+			this.noteId = noteId;
+		}
+
+		/**
+		 * Compares the origin and note id of this position with a document
+		 *
+		 * @param docEntry document
+		 * @return comparison result
+		 */
+		private int compareTo(VirtualViewEntryData docEntry) {
+			int result = origin.compareTo(docEntry.getOrigin());
+			if (result != 0) {
+				return result;
+			}
+			return Integer.compare(noteId, docEntry.getNoteId());
+		}
+
+		private String encode() {
+			StringBuilder sb = new StringBuilder();
+			if (sortValue == null) {
+				sb.append('n');
+			}
+			else if (sortValue instanceof Number) {
+				sb.append('d').append(((Number) sortValue).doubleValue());
+			}
+			else if (sortValue instanceof NotesTimeDate) {
+				int[] innards = ((NotesTimeDate) sortValue).getInnards();
+				sb.append('t').append(innards[0]).append(',').append(innards[1]);
+			}
+			else if (sortValue instanceof String) {
+				sb.append('s').append(sortValue);
+			}
+			else {
+				//other values are sorted by their string representation after all strings
+				sb.append('o').append(sortValue.toString());
+			}
+			sb.append(SEPARATOR).append(origin).append(SEPARATOR).append(noteId);
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+		}
+
+		private static CursorPosition decode(String cursor) {
+			try {
+				String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+				int noteIdSep = decoded.lastIndexOf(SEPARATOR);
+				int originSep = decoded.lastIndexOf(SEPARATOR, noteIdSep-1);
+
+				int noteId = Integer.parseInt(decoded.substring(noteIdSep+1));
+				String origin = decoded.substring(originSep+1, noteIdSep);
+
+				char valueType = decoded.charAt(0);
+				String valueStr = decoded.substring(1, originSep);
+				Object sortValue;
+				switch (valueType) {
+				case 'n':
+					sortValue = null;
+					break;
+				case 'd':
+					sortValue = Double.valueOf(valueStr);
+					break;
+				case 't':
+					String[] innardsStr = valueStr.split(",");
+					sortValue = new NotesTimeDate(new int[] {Integer.parseInt(innardsStr[0]), Integer.parseInt(innardsStr[1])});
+					break;
+				case 's':
+					sortValue = valueStr;
+					break;
+				case 'o':
+					sortValue = new OtherSortValue(valueStr);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown value type: "+valueType);
+				}
+				return new CursorPosition(sortValue, origin, noteId);
+			}
+			catch (RuntimeException e) {
+				throw new IllegalArgumentException("Invalid cursor: "+cursor, e);
+			}
+		}
+	}
+}
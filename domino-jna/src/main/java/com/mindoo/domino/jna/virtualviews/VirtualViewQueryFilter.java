@@ -0,0 +1,176 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Filter for a {@link VirtualViewQuery}. Filters are evaluated against the secondary indexes
+ * of the view (see {@link VirtualView#addIndex(String, VirtualViewIndexType)}) and combined
+ * as bitmaps, so no document values need to be read.
+ */
+public abstract class VirtualViewQueryFilter {
+
+	VirtualViewQueryFilter() {
+	}
+
+	/**
+	 * Computes the ids of the matching documents
+	 *
+	 * @param indexes indexes of the view
+	 * @return doc ids, may be modified by the caller
+	 */
+	abstract BitSet evaluate(VirtualViewIndexes indexes);
+
+	/**
+	 * Documents with an item value equal to the specified value (strings case insensitive).
+	 * Uses a {@link VirtualViewIndexType#HASH} or {@link VirtualViewIndexType#SORTED} index.
+	 *
+	 * @param itemName item name
+	 * @param value value
+	 * @return filter
+	 */
+	public static VirtualViewQueryFilter eq(String itemName, Object value) {
+		return new VirtualViewQueryFilter() {
+			@Override
+			BitSet evaluate(VirtualViewIndexes indexes) {
+				return indexes.findIndex(itemName, VirtualViewIndexType.HASH, VirtualViewIndexType.SORTED).getEqual(value);
+			}
+		};
+	}
+
+	/**
+	 * Documents with an item value in a range. Uses a {@link VirtualViewIndexType#SORTED} index.
+	 *
+	 * @param itemName item name
+	 * @param from lower bound or null for no lower bound
+	 * @param fromInclusive true to include the lower bound
+	 * @param to upper bound or null for no upper bound
+	 * @param toInclusive true to include the upper bound
+	 * @return filter
+	 */
+	public static VirtualViewQueryFilter range(String itemName, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+		return new VirtualViewQueryFilter() {
+			@Override
+			BitSet evaluate(VirtualViewIndexes indexes) {
+				return indexes.findIndex(itemName, VirtualViewIndexType.SORTED).getRange(from, fromInclusive, to, toInclusive);
+			}
+		};
+	}
+
+	/**
+	 * Documents with a string value starting with a prefix (case insensitive).
+	 * Uses a {@link VirtualViewIndexType#SORTED} index.
+	 *
+	 * @param itemName item name
+	 * @param prefix prefix
+	 * @return filter
+	 */
+	public static VirtualViewQueryFilter prefix(String itemName, String prefix) {
+		return new VirtualViewQueryFilter() {
+			@Override
+			BitSet evaluate(VirtualViewIndexes indexes) {
+				return indexes.findIndex(itemName, VirtualViewIndexType.SORTED).getPrefix(prefix);
+			}
+		};
+	}
+
+	/**
+	 * Documents that contain all words of a text in an item. A word ending with "*" matches
+	 * all words with that prefix. Uses a {@link VirtualViewIndexType#FULL_TOKEN} index.
+	 *
+	 * @param itemName item name
+	 * @param text words to search for, e.g. "john sm*"
+	 * @return filter
+	 */
+	public static VirtualViewQueryFilter words(String itemName, String text) {
+		return new VirtualViewQueryFilter() {
+			@Override
+			BitSet evaluate(VirtualViewIndexes indexes) {
+				VirtualViewIndexes.ItemIndex index = indexes.findIndex(itemName, VirtualViewIndexType.FULL_TOKEN);
+				BitSet result = null;
+				for (String currWord : text.trim().split("\\s+")) {
+					boolean isPrefix = currWord.endsWith("*");
+					List<String> tokens = VirtualViewIndexes.tokenize(currWord);
+					for (int i=0; i<tokens.size(); i++) {
+						String currToken = tokens.get(i);
+						BitSet tokenDocs = isPrefix && i == tokens.size()-1 ? index.getPrefix(currToken) : index.getEqual(currToken);
+						if (result == null) {
+							result = tokenDocs;
+						}
+						else {
+							result.and(tokenDocs);
+						}
+					}
+				}
+				return result == null ? new BitSet() : result;
+			}
+		};
+	}
+
+	/**
+	 * Documents matching all filters
+	 *
+	 * @param filters filters
+	 * @return filter
+	 */
+	public static VirtualViewQueryFilter and(VirtualViewQueryFilter... filters) {
+		List<VirtualViewQueryFilter> filterList = Arrays.asList(filters);
+		return new VirtualViewQueryFilter() {
+			@Override
+			BitSet evaluate(VirtualViewIndexes indexes) {
+				BitSet result = null;
+				for (VirtualViewQueryFilter currFilter : filterList) {
+					BitSet currDocs = currFilter.evaluate(indexes);
+					if (result == null) {
+						result = currDocs;
+					}
+					else {
+						result.and(currDocs);
+					}
+					if (result.isEmpty()) {
+						break;
+					}
+				}
+				return result == null ? (BitSet) indexes.getAllDocIds().clone() : result;
+			}
+		};
+	}
+
+	/**
+	 * Documents matching at least one filter
+	 *
+	 * @param filters filters
+	 * @return filter
+	 */
+	public static VirtualViewQueryFilter or(VirtualViewQueryFilter... filters) {
+		List<VirtualViewQueryFilter> filterList = Arrays.asList(filters);
+		return new VirtualViewQueryFilter() {
+			@Override
+			BitSet evaluate(VirtualViewIndexes indexes) {
+				BitSet result = new BitSet();
+				for (VirtualViewQueryFilter currFilter : filterList) {
+					result.or(currFilter.evaluate(indexes));
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Documents not matching a filter
+	 *
+	 * @param filter filter
+	 * @return filter
+	 */
+	public static VirtualViewQueryFilter not(VirtualViewQueryFilter filter) {
+		return new VirtualViewQueryFilter() {
+			@Override
+			BitSet evaluate(VirtualViewIndexes indexes) {
+				BitSet result = (BitSet) indexes.getAllDocIds().clone();
+				result.andNot(filter.evaluate(indexes));
+				return result;
+			}
+		};
+	}
+}
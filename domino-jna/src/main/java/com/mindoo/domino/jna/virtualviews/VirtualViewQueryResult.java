@@ -0,0 +1,51 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.List;
+
+/**
+ * One page of results of a {@link VirtualViewQuery}
+ */
+public class VirtualViewQueryResult {
+	private List<VirtualViewEntryData> entries;
+	private int totalCount;
+	private String nextCursor;
+
+	VirtualViewQueryResult(List<VirtualViewEntryData> entries, int totalCount, String nextCursor) {
+		this.entries = entries;
+		this.totalCount = totalCount;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Returns the document entries of this page. Documents that are displayed
+	 * in multiple categories are only returned once.
+	 *
+	 * @return entries
+	 */
+	public List<VirtualViewEntryData> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Returns the number of documents matching the query that are visible to the user
+	 *
+	 * @return total count
+	 */
+	public int getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Returns the cursor to pass to {@link VirtualViewQuery#startAfter(String)} to read the next page
+	 *
+	 * @return cursor or null if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualViewQueryResult [entries=" + entries.size() + ", totalCount=" + totalCount + ", nextCursor=" + nextCursor + "]";
+	}
+}
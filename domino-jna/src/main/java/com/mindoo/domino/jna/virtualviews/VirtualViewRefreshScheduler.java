@@ -0,0 +1,486 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.utils.NotesThreadFactory;
+import com.mindoo.domino.jna.utils.StringUtil;
+import com.mindoo.domino.jna.virtualviews.dataprovider.AbstractNSFVirtualViewDataProvider;
+import com.mindoo.domino.jna.virtualviews.dataprovider.FolderVirtualViewDataProvider;
+import com.mindoo.domino.jna.virtualviews.dataprovider.IVirtualViewDataProvider;
+import com.mindoo.domino.jna.virtualviews.dataprovider.NotesSearchVirtualViewDataProvider;
+
+/**
+ * Refreshes the data providers of a {@link VirtualView} in parallel. In contrast to
+ * {@link VirtualView#update()}, which calls the providers one after another, the scheduler
+ * runs providers of different databases concurrently on a thread pool. Providers of the same
+ * database run in the same worker task, so they share one database handle
+ * (see {@link AbstractNSFVirtualViewDataProvider#getDatabase()}).<br>
+ * <br>
+ * The changes produced by the providers of one refresh round are collected and applied
+ * to the view with a single write lock (see {@link VirtualView#applyChanges(java.util.Collection)}),
+ * so readers never see a partially refreshed view. Providers advance their position in the data source
+ * (e.g. the time of the last search) during the update, before the changes are applied. If applying the
+ * changes fails, the scheduler restores the positions read before the update
+ * (see {@link IVirtualViewDataProvider#getPosition()}), so that the providers fetch the changes again in
+ * the next round. If the round gets interrupted, it still waits for the running updates and applies their changes.<br>
+ * <br>
+ * When started with {@link #start()}, each provider is refreshed in its own interval, randomized by
+ * a jitter to spread the load of many databases. Providers reading a database are skipped if the
+ * modified times of the database did not change since their last refresh. This is enabled by default
+ * for {@link NotesSearchVirtualViewDataProvider} and {@link FolderVirtualViewDataProvider}, which only
+ * depend on database content.<br>
+ * <br>
+ * Data providers are not thread-safe, so {@link VirtualView#update()} should not be called
+ * while the scheduler is running.
+ */
+public class VirtualViewRefreshScheduler implements AutoCloseable {
+	private static final Logger log = Logger.getLogger(VirtualViewRefreshScheduler.class.getName());
+
+	/** default interval between two refreshes of a data provider */
+	public static final long DEFAULT_INTERVAL_MILLIS = 30000;
+	/** default jitter, the refresh interval is randomly changed by up to +/- 10% */
+	public static final double DEFAULT_JITTER = 0.1;
+
+	private final VirtualView view;
+	private final ExecutorService workers;
+	private final boolean ownWorkers;
+	private ScheduledExecutorService timer;
+
+	private long defaultIntervalMillis = DEFAULT_INTERVAL_MILLIS;
+	private double jitter = DEFAULT_JITTER;
+	private final Map<String,Long> intervalMillisByOrigin = new ConcurrentHashMap<>();
+	private final Map<String,Boolean> skipIfUnchangedByOrigin = new ConcurrentHashMap<>();
+	private final Map<String,ProviderState> stateByOrigin = new ConcurrentHashMap<>();
+	/** makes sure that refresh rounds do not overlap */
+	private final Object roundLock = new Object();
+	private volatile boolean closed;
+
+	private final AtomicLong rounds = new AtomicLong();
+	private final AtomicLong providerUpdates = new AtomicLong();
+	private final AtomicLong providerSkips = new AtomicLong();
+
+	/**
+	 * Creates a new scheduler with one worker thread per CPU core
+	 *
+	 * @param view view to refresh
+	 */
+	public VirtualViewRefreshScheduler(VirtualView view) {
+		this(view, Math.max(1, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Creates a new scheduler
+	 *
+	 * @param view view to refresh
+	 * @param numThreads number of worker threads
+	 */
+	public VirtualViewRefreshScheduler(VirtualView view, int numThreads) {
+		this(view, Executors.newFixedThreadPool(numThreads, new NotesThreadFactory("VirtualViewRefresh")), true);
+	}
+
+	/**
+	 * Creates a new scheduler that uses an existing executor for the provider updates
+	 *
+	 * @param view view to refresh
+	 * @param workers executor to run the provider updates; its threads must be initialized for Notes API calls, e.g. created by a {@link NotesThreadFactory}
+	 */
+	public VirtualViewRefreshScheduler(VirtualView view, ExecutorService workers) {
+		this(view, workers, false);
+	}
+
+	private VirtualViewRefreshScheduler(VirtualView view, ExecutorService workers, boolean ownWorkers) {
+		this.view = view;
+		this.workers = workers;
+		this.ownWorkers = ownWorkers;
+	}
+
+	/**
+	 * Sets the refresh interval for data providers without a specific interval
+	 *
+	 * @param interval interval
+	 * @param unit time unit
+	 * @return this scheduler
+	 */
+	public VirtualViewRefreshScheduler withDefaultInterval(long interval, TimeUnit unit) {
+		this.defaultIntervalMillis = toIntervalMillis(interval, unit);
+		return this;
+	}
+
+	/**
+	 * Sets the refresh interval of a data provider
+	 *
+	 * @param origin origin of the data provider
+	 * @param interval interval
+	 * @param unit time unit
+	 * @return this scheduler
+	 */
+	public VirtualViewRefreshScheduler withInterval(String origin, long interval, TimeUnit unit) {
+		intervalMillisByOrigin.put(origin, toIntervalMillis(interval, unit));
+		return this;
+	}
+
+	private static long toIntervalMillis(long interval, TimeUnit unit) {
+		long intervalMillis = unit.toMillis(interval);
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("Interval must be greater than 0: "+interval+" "+unit);
+		}
+		return intervalMillis;
+	}
+
+	/**
+	 * Sets the jitter to randomize the refresh intervals, so that providers with
+	 * the same interval do not all hit the server at the same time
+	 *
+	 * @param jitter max relative change of the interval between 0 and 1, e.g. 0.1 for +/- 10%
+	 * @return this scheduler
+	 */
+	public VirtualViewRefreshScheduler withJitter(double jitter) {
+		if (jitter < 0 || jitter > 1) {
+			throw new IllegalArgumentException("Jitter must be between 0 and 1: "+jitter);
+		}
+		this.jitter = jitter;
+		return this;
+	}
+
+	/**
+	 * Sets whether a data provider reading a database should be skipped if the modified times
+	 * of the database did not change since its last refresh. Has no effect for providers that
+	 * are not based on {@link AbstractNSFVirtualViewDataProvider}.
+	 *
+	 * @param origin origin of the data provider
+	 * @param skip true to skip
+	 * @return this scheduler
+	 */
+	public VirtualViewRefreshScheduler withSkipIfUnchanged(String origin, boolean skip) {
+		skipIfUnchangedByOrigin.put(origin, skip);
+		return this;
+	}
+
+	/**
+	 * Starts refreshing the data providers in their intervals. All providers are refreshed
+	 * immediately for the first time.
+	 *
+	 * @return this scheduler
+	 */
+	public synchronized VirtualViewRefreshScheduler start() {
+		if (closed) {
+			throw new IllegalStateException("Scheduler has been closed");
+		}
+		if (timer == null) {
+			//the timer thread only waits for the workers and applies the changes, no Notes API calls
+			timer = Executors.newSingleThreadScheduledExecutor((r) -> {
+				Thread t = new Thread(r, "VirtualViewRefreshTimer");
+				t.setDaemon(true);
+				return t;
+			});
+			timer.execute(this::runScheduledRound);
+		}
+		return this;
+	}
+
+	/**
+	 * Refreshes all data providers of the view now and waits until their changes have
+	 * been applied. Providers of unchanged databases are skipped as described
+	 * in {@link #withSkipIfUnchanged(String, boolean)}.
+	 *
+	 * @throws NotesError if a data provider failed; the changes of the other providers are applied
+	 */
+	public void refresh() {
+		Throwable firstError = runRound(true);
+		if (firstError != null) {
+			//special case for JUnit testcases
+			if (firstError instanceof AssertionError) {
+				throw (AssertionError) firstError;
+			}
+			throw new NotesError(0, "Error refreshing virtual view data providers", firstError);
+		}
+	}
+
+	/**
+	 * Stops the scheduled refreshes
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (timer != null) {
+			timer.shutdown();
+			timer = null;
+		}
+		if (ownWorkers) {
+			workers.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the last error of a data provider
+	 *
+	 * @param origin origin of the data provider
+	 * @return error or null if its last refresh was successful
+	 */
+	public Throwable getLastError(String origin) {
+		ProviderState state = stateByOrigin.get(origin);
+		return state == null ? null : state.lastError;
+	}
+
+	/**
+	 * Returns the number of refresh rounds
+	 *
+	 * @return rounds
+	 */
+	public long getRoundCount() {
+		return rounds.get();
+	}
+
+	/**
+	 * Returns the total number of {@link IVirtualViewDataProvider#update()} calls
+	 *
+	 * @return updates
+	 */
+	public long getProviderUpdateCount() {
+		return providerUpdates.get();
+	}
+
+	/**
+	 * Returns the total number of provider refreshes skipped because the database was unchanged
+	 *
+	 * @return skips
+	 */
+	public long getProviderSkipCount() {
+		return providerSkips.get();
+	}
+
+	private void runScheduledRound() {
+		long nextRunMillis = Long.MAX_VALUE;
+		try {
+			runRound(false);
+		}
+		catch (Throwable t) {
+			log.log(Level.WARNING, "Error refreshing virtual view data providers", t);
+		}
+		finally {
+			for (ProviderState currState : stateByOrigin.values()) {
+				nextRunMillis = Math.min(nextRunMillis, currState.nextRunMillis);
+			}
+			synchronized (this) {
+				if (timer != null) {
+					long delayMillis = nextRunMillis == Long.MAX_VALUE ? defaultIntervalMillis : Math.max(0, nextRunMillis - System.currentTimeMillis());
+					timer.schedule(this::runScheduledRound, delayMillis, TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the due data providers (grouped by database) in parallel and applies their changes
+	 *
+	 * @param all true to run all providers, false to only run the providers whose interval has elapsed
+	 * @return first error of a provider or null
+	 */
+	private Throwable runRound(boolean all) {
+		synchronized (roundLock) {
+			long now = System.currentTimeMillis();
+
+			//providers of the same database run in one task and share the database handle
+			Map<String,List<ProviderState>> dueStatesByDb = new LinkedHashMap<>();
+			for (Iterator<IVirtualViewDataProvider> it = view.getDataProviders(); it.hasNext(); ) {
+				IVirtualViewDataProvider currProvider = it.next();
+				ProviderState state = stateByOrigin.computeIfAbsent(currProvider.getOrigin(), (origin) -> new ProviderState(currProvider));
+				if (all || state.nextRunMillis <= now) {
+					dueStatesByDb.computeIfAbsent(getDatabaseKey(currProvider), (key) -> new ArrayList<>()).add(state);
+				}
+			}
+			if (dueStatesByDb.isEmpty()) {
+				return null;
+			}
+			rounds.incrementAndGet();
+
+			List<Future<List<ProviderUpdate>>> futures = new ArrayList<>(dueStatesByDb.size());
+			for (List<ProviderState> currStates : dueStatesByDb.values()) {
+				futures.add(workers.submit(() -> NotesGC.runWithAutoGC(() -> refreshProviders(currStates))));
+			}
+
+			List<ProviderUpdate> updates = new ArrayList<>();
+			Throwable firstError = null;
+			boolean interrupted = false;
+			for (Future<List<ProviderUpdate>> currFuture : futures) {
+				//wait even if interrupted, the providers have already advanced their positions
+				while (true) {
+					try {
+						updates.addAll(currFuture.get());
+						break;
+					}
+					catch (InterruptedException e) {
+						interrupted = true;
+					}
+					catch (ExecutionException e) {
+						if (firstError == null) {
+							firstError = e.getCause();
+						}
+						break;
+					}
+				}
+			}
+
+			List<VirtualViewDataChange> allChanges = new ArrayList<>();
+			for (ProviderUpdate currUpdate : updates) {
+				allChanges.addAll(currUpdate.changes);
+			}
+			if (!allChanges.isEmpty()) {
+				try {
+					view.applyChanges(allChanges);
+				}
+				catch (Throwable t) {
+					log.log(Level.WARNING, "Error applying the changes of the virtual view data providers", t);
+					//let the providers fetch the changes again, re-applying the ones that made it into the view does no harm
+					for (ProviderUpdate currUpdate : updates) {
+						if (!currUpdate.changes.isEmpty()) {
+							currUpdate.state.provider.restorePosition(currUpdate.position);
+							currUpdate.state.lastDbModified = null;
+							currUpdate.state.lastError = t;
+						}
+					}
+					if (firstError == null) {
+						firstError = t;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+
+			long roundEnd = System.currentTimeMillis();
+			for (List<ProviderState> currStates : dueStatesByDb.values()) {
+				for (ProviderState currState : currStates) {
+					currState.nextRunMillis = roundEnd + getJitteredIntervalMillis(currState.provider.getOrigin());
+					if (firstError == null && currState.lastError != null) {
+						firstError = currState.lastError;
+					}
+				}
+			}
+			return firstError;
+		}
+	}
+
+	/**
+	 * Refreshes the data providers of one database in a worker thread
+	 *
+	 * @param states provider states
+	 * @return collected changes per provider
+	 */
+	private List<ProviderUpdate> refreshProviders(List<ProviderState> states) {
+		List<ProviderUpdate> updates = new ArrayList<>();
+
+		for (ProviderState currState : states) {
+			IVirtualViewDataProvider provider = currState.provider;
+			Object position = null;
+			boolean updateStarted = false;
+			try {
+				NotesTimeDate dbModified = null;
+				if (provider instanceof AbstractNSFVirtualViewDataProvider && isSkipIfUnchanged(provider)) {
+					//read the modified time before the update, so that changes during the update are found next time
+					NotesDatabase db = ((AbstractNSFVirtualViewDataProvider) provider).getDatabase();
+					NotesTimeDate[] lastModified = db.getLastModifiedTimes();
+					dbModified = lastModified[0].isAfter(lastModified[1]) ? lastModified[0] : lastModified[1];
+
+					if (dbModified.equals(currState.lastDbModified)) {
+						providerSkips.incrementAndGet();
+						continue;
+					}
+				}
+
+				position = provider.getPosition();
+				updateStarted = true;
+				updates.add(new ProviderUpdate(currState, position, view.collectChanges(provider::update)));
+				providerUpdates.incrementAndGet();
+				currState.lastDbModified = dbModified;
+				currState.lastError = null;
+			}
+			catch (Throwable t) {
+				if (updateStarted) {
+					//the collected changes are discarded, so the provider has to fetch them again
+					provider.restorePosition(position);
+				}
+				currState.lastError = t;
+				log.log(Level.WARNING, "Error refreshing virtual view data provider "+provider.getOrigin(), t);
+			}
+		}
+		return updates;
+	}
+
+	private boolean isSkipIfUnchanged(IVirtualViewDataProvider provider) {
+		Boolean skip = skipIfUnchangedByOrigin.get(provider.getOrigin());
+		if (skip != null) {
+			return skip.booleanValue();
+		}
+		return provider instanceof NotesSearchVirtualViewDataProvider || provider instanceof FolderVirtualViewDataProvider;
+	}
+
+	private long getJitteredIntervalMillis(String origin) {
+		long intervalMillis = intervalMillisByOrigin.getOrDefault(origin, defaultIntervalMillis);
+		if (jitter == 0) {
+			return intervalMillis;
+		}
+		double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+		return Math.max(1, (long) (intervalMillis * factor));
+	}
+
+	private static String getDatabaseKey(IVirtualViewDataProvider provider) {
+		if (provider instanceof AbstractNSFVirtualViewDataProvider) {
+			AbstractNSFVirtualViewDataProvider nsfProvider = (AbstractNSFVirtualViewDataProvider) provider;
+			String server = StringUtil.isEmpty(nsfProvider.getDbServer()) ? "" : nsfProvider.getDbServer();
+			return "nsf!!" + server.toLowerCase(Locale.ENGLISH) + "!!" + nsfProvider.getDbFilePath().replace('\\', '/').toLowerCase(Locale.ENGLISH);
+		}
+		else {
+			return "origin!!" + provider.getOrigin();
+		}
+	}
+
+	/**
+	 * Refresh state of one data provider
+	 */
+	private static class ProviderState {
+		private final IVirtualViewDataProvider provider;
+		private volatile long nextRunMillis;
+		private volatile NotesTimeDate lastDbModified;
+		private volatile Throwable lastError;
+
+		private ProviderState(IVirtualViewDataProvider provider) {
+			this.provider = provider;
+		}
+	}
+
+	/**
+	 * Changes collected from one data provider and its position before the update
+	 */
+	private static class ProviderUpdate {
+		private final ProviderState state;
+		private final Object position;
+		private final List<VirtualViewDataChange> changes;
+
+		private ProviderUpdate(ProviderState state, Object position, List<VirtualViewDataChange> changes) {
+			this.state = state;
+			this.position = position;
+			this.changes = changes;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.mindoo.domino.jna.virtualviews;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reference counted dictionary used by the {@link VirtualViewColumnStore} to store
+ * each distinct value only once and reference it by an int id.<br>
+ * <br>
+ * Write methods are synchronized, {@link #get(int)} reads a volatile array without locking,
+ * so that view navigators can decode values while the view is being changed. Ids freed by
+ * {@link #release(int)} are reused right away, so the column store only releases the values of
+ * removed rows at the start of the next write batch, after invalidating the rows.
+ *
+ * @param <T> value type
+ */
+class VirtualViewValueDictionary<T> {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Map<T,Integer> idsByValue = new HashMap<>();
+	private volatile Object[] values = new Object[INITIAL_CAPACITY];
+	private int[] refCounts = new int[INITIAL_CAPACITY];
+	private int[] freeIds = new int[16];
+	private int freeIdsCount;
+	private int nextId;
+
+	/**
+	 * Returns the id for a value and increments its reference count. The value
+	 * gets added to the dictionary if it does not exist yet.
+	 *
+	 * @param value value, not null
+	 * @return id
+	 */
+	synchronized int acquire(T value) {
+		Integer existingId = idsByValue.get(value);
+		if (existingId != null) {
+			refCounts[existingId.intValue()]++;
+			return existingId.intValue();
+		}
+
+		int id;
+		if (freeIdsCount > 0) {
+			id = freeIds[--freeIdsCount];
+		}
+		else {
+			id = nextId++;
+			if (id >= refCounts.length) {
+				int newCapacity = refCounts.length * 2;
+				refCounts = Arrays.copyOf(refCounts, newCapacity);
+				values = Arrays.copyOf(values, newCapacity);
+			}
+		}
+
+		values[id] = value;
+		refCounts[id] = 1;
+		idsByValue.put(value, id);
+		return id;
+	}
+
+	/**
+	 * Decrements the reference count of a value and removes it from the
+	 * dictionary when it is no longer used
+	 *
+	 * @param id id of the value
+	 */
+	synchronized void release(int id) {
+		if (id < 0 || id >= nextId || refCounts[id] <= 0) {
+			return;
+		}
+		if (--refCounts[id] == 0) {
+			idsByValue.remove(values[id]);
+			values[id] = null;
+
+			if (freeIdsCount == freeIds.length) {
+				freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+			}
+			freeIds[freeIdsCount++] = id;
+		}
+	}
+
+	/**
+	 * Returns the value for an id
+	 *
+	 * @param id id
+	 * @return value or null if the id is unknown
+	 */
+	@SuppressWarnings("unchecked")
+	T get(int id) {
+		Object[] currValues = values;
+		if (id < 0 || id >= currValues.length) {
+			return null;
+		}
+		return (T) currValues[id];
+	}
+
+	/**
+	 * Returns the number of distinct values in the dictionary
+	 *
+	 * @return size
+	 */
+	synchronized int size() {
+		return idsByValue.size();
+	}
+
+}
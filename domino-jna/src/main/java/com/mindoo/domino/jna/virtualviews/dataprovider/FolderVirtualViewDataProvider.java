@@ -162,4 +162,14 @@ public class FolderVirtualViewDataProvider extends AbstractNSFVirtualViewDataPro
 
 		view.applyChanges(change);
 	}
+
+	@Override
+	public Object getPosition() {
+		return since;
+	}
+
+	@Override
+	public void restorePosition(Object position) {
+		this.since = (NotesTimeDate) position;
+	}
 }
@@ -25,4 +25,27 @@ public interface IVirtualViewDataProvider {
 	 */
 	void update();
 
+	/**
+	 * Returns the position up to which the provider has read its data source, e.g. the
+	 * time of its last search. The {@link com.mindoo.domino.jna.virtualviews.VirtualViewRefreshScheduler}
+	 * reads it before calling {@link #update()} and restores it via {@link #restorePosition(Object)}
+	 * if the changes of the update could not be applied to the view, so that they get fetched again.<br>
+	 * <br>
+	 * The default implementation returns null and does not support restoring the position.
+	 * 
+	 * @return position or null
+	 */
+	default Object getPosition() {
+		return null;
+	}
+
+	/**
+	 * Resets the provider to a position returned by {@link #getPosition()}, so that the next
+	 * {@link #update()} fetches all changes made after that position again
+	 * 
+	 * @param position position
+	 */
+	default void restorePosition(Object position) {
+	}
+
 }
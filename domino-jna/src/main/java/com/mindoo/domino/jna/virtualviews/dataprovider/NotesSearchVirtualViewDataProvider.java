@@ -255,6 +255,16 @@ public class NotesSearchVirtualViewDataProvider extends AbstractNSFVirtualViewDa
 
 	    this.since = newSince;
 	}
+
+	@Override
+	public Object getPosition() {
+		return since;
+	}
+	
+	@Override
+	public void restorePosition(Object position) {
+		this.since = (NotesTimeDate) position;
+	}
 	
 	/**
 	 * Override this method to apply additional filtering to the search results
@@ -8,11 +8,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-import com.mindoo.domino.jna.NotesACL;
-import com.mindoo.domino.jna.NotesACL.NotesACLAccess;
+import com.mindoo.domino.jna.NotesACLAccessCache;
+import com.mindoo.domino.jna.NotesACLAccessCache.AccessInfo;
 import com.mindoo.domino.jna.NotesDatabase;
 import com.mindoo.domino.jna.constants.AclLevel;
-import com.mindoo.domino.jna.utils.NotesNamingUtils;
 import com.mindoo.domino.jna.virtualviews.VirtualView;
 import com.mindoo.domino.jna.virtualviews.VirtualViewEntryData;
 import com.mindoo.domino.jna.virtualviews.VirtualViewNavigator;
@@ -32,18 +31,32 @@ import com.mindoo.domino.jna.virtualviews.dataprovider.IVirtualViewDataProvider;
 public class ViewEntryAccessCheck implements IViewEntryAccessCheck {
 	private VirtualView view;
 	private String effectiveUserName;
+	private NotesACLAccessCache aclAccessCache;
 	private Map<String,Set<String>> userNamesListByOrigin;
 	private Map<String,AclLevel> dbAccessLevelsByOrigin;
 	
 	/**
-	 * Creates a new instance
+	 * Creates a new instance, using the shared {@link NotesACLAccessCache} to look up
+	 * the ACL access and usernames lists
 	 * 
 	 * @param view virtual view
 	 * @param effectiveUserName name of the user to check access for
 	 */
 	public ViewEntryAccessCheck(VirtualView view, String effectiveUserName) {
+		this(view, effectiveUserName, NotesACLAccessCache.getSharedInstance());
+	}
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param view virtual view
+	 * @param effectiveUserName name of the user to check access for
+	 * @param aclAccessCache cache for ACL access and usernames lists
+	 */
+	public ViewEntryAccessCheck(VirtualView view, String effectiveUserName, NotesACLAccessCache aclAccessCache) {
 		this.view = view;
 		this.effectiveUserName = effectiveUserName;
+		this.aclAccessCache = aclAccessCache;
 		this.userNamesListByOrigin = new HashMap<>();
 		this.dbAccessLevelsByOrigin = new HashMap<>();
 		
@@ -53,11 +66,9 @@ public class ViewEntryAccessCheck implements IViewEntryAccessCheck {
 			IVirtualViewDataProvider currProvider = dataProvidersIt.next();
 			if (currProvider instanceof AbstractNSFVirtualViewDataProvider) {
 				NotesDatabase db = ((AbstractNSFVirtualViewDataProvider) currProvider).getDatabase();
-				NotesACL acl = db.getACL();
-				NotesACLAccess aclAccess = acl.lookupAccess(effectiveUserName);
-				dbAccessLevelsByOrigin.put(currProvider.getOrigin(), aclAccess.getAclLevel());
-				
-				addDbUserNamesListForOrigins(db, currProvider.getOrigin());
+				AccessInfo accessInfo = aclAccessCache.lookupAccess(db, effectiveUserName);
+				dbAccessLevelsByOrigin.put(currProvider.getOrigin(), accessInfo.getAclLevel());
+				userNamesListByOrigin.put(currProvider.getOrigin(), accessInfo.getUserNamesListWithRoles());
 			}
 		}
 	}
@@ -162,12 +173,7 @@ public class ViewEntryAccessCheck implements IViewEntryAccessCheck {
 	 * @return this instance
 	 */
 	public ViewEntryAccessCheck addDbUserNamesListForOrigins(NotesDatabase db, String... origins) {
-		TreeSet<String> userNamesList = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
-		List<String> nameVariants = NotesNamingUtils.getUserNamesList(db.getServer(), effectiveUserName);
-		userNamesList.addAll(nameVariants);
-		
-		List<String> roles = db.queryAccessRoles(effectiveUserName);
-		userNamesList.addAll(roles);
+		Set<String> userNamesList = aclAccessCache.lookupAccess(db, effectiveUserName).getUserNamesListWithRoles();
 		
 		for (String currOrigin : origins) {
 			userNamesListByOrigin.put(currOrigin, userNamesList);			
@@ -184,7 +190,7 @@ public class ViewEntryAccessCheck implements IViewEntryAccessCheck {
 	 */
 	public ViewEntryAccessCheck addDbUserNamesListForOrigins(List<String> userNamesList, String... origins) {
 		TreeSet<String> userNamesListIgnoreCase = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
-		userNamesListIgnoreCase.addAll(userNamesListIgnoreCase);
+		userNamesListIgnoreCase.addAll(userNamesList);
 		
 		for (String currOrigin : origins) {
 			userNamesListByOrigin.put(currOrigin, userNamesListIgnoreCase);
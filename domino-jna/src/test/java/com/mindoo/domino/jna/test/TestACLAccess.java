@@ -13,6 +13,8 @@ import org.junit.Test;
 import com.mindoo.domino.jna.NotesACL;
 import com.mindoo.domino.jna.NotesACL.NotesACLAccess;
 import com.mindoo.domino.jna.NotesACL.NotesACLEntry;
+import com.mindoo.domino.jna.NotesACLAccessCache;
+import com.mindoo.domino.jna.NotesACLAccessCache.AccessInfo;
 import com.mindoo.domino.jna.constants.AclFlag;
 import com.mindoo.domino.jna.constants.AclLevel;
 import com.mindoo.domino.jna.utils.IDUtils;
@@ -154,6 +156,49 @@ public class TestACLAccess extends BaseJNATestClass {
 				});
 				
 
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testACLAccessCache() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					NotesACLAccessCache cache = new NotesACLAccessCache(100, 60000);
+					String testUsername = IDUtils.getIdUsername();
+					
+					AccessInfo access1 = cache.lookupAccess(db, testUsername);
+					assertEquals(AclLevel.MANAGER, access1.getAclLevel());
+					assertEquals(1, cache.getMisses());
+					
+					AccessInfo access2 = cache.lookupAccess(db, testUsername);
+					assertSame(access1, access2);
+					assertEquals(1, cache.getHits());
+					
+					//changing the ACL updates the non-data modified date and invalidates the entry
+					AccessInfo otherUserAccess1 = cache.lookupAccess(db, "Testuser123/Mindoo");
+					assertFalse(otherUserAccess1.getRoles().contains("[CacheTestRole]"));
+					
+					NotesACL acl = db.getACL();
+					acl.addRole("[CacheTestRole]");
+					acl.addEntry("Testuser123/Mindoo", AclLevel.DESIGNER, Arrays.asList("[CacheTestRole]"), EnumSet.noneOf(AclFlag.class));
+					acl.save();
+					
+					AccessInfo otherUserAccess2 = cache.lookupAccess(db, "CN=Testuser123/O=Mindoo");
+					assertEquals(1, cache.getInvalidations());
+					assertEquals(AclLevel.DESIGNER, otherUserAccess2.getAclLevel());
+					assertTrue(otherUserAccess2.getRoles().contains("[CacheTestRole]"));
+					assertTrue(otherUserAccess2.getUserNamesListWithRoles().contains("[cachetestrole]"));
+					
+					//the usernames list of each user is computed only once
+					assertEquals(2, cache.getNamesListMisses());
+				});
+				
 				return null;
 			}
 		});
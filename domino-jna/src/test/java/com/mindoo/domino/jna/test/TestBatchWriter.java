@@ -0,0 +1,133 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesBatchWriter;
+import com.mindoo.domino.jna.NotesBatchWriter.Operation;
+import com.mindoo.domino.jna.NotesBatchWriter.Stats;
+import com.mindoo.domino.jna.NotesNote;
+
+import lotus.domino.Session;
+
+/**
+ * Testcase for {@link NotesBatchWriter} class
+ *
+ * @author Karsten Lehmann
+ */
+public class TestBatchWriter extends BaseJNATestClass {
+
+	@Test
+	public void testBatchWriter() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					List<Operation> creates = new ArrayList<>();
+					Operation missingNoteOp;
+
+					try (NotesBatchWriter writer = new NotesBatchWriter(2).setMaxBufferedOperations(50)) {
+						for (int i=0; i<200; i++) {
+							Map<String,Object> items = new HashMap<>();
+							items.put("Form", "Person");
+							items.put("Lastname", "Test "+i);
+							items.put("Age", i);
+							creates.add(writer.create(db, items));
+						}
+						//should be rolled back and retried one by one
+						missingNoteOp = writer.update(db, "00000000000000000000000000000001", new HashMap<>());
+						writer.flush();
+
+						for (Operation currOp : creates) {
+							Assert.assertTrue(currOp.isDone());
+							Assert.assertNull(currOp.getError());
+							Assert.assertTrue(currOp.getNoteId()!=0);
+						}
+						Assert.assertNotNull(missingNoteOp.getError());
+
+						Map<String,Object> changes = new HashMap<>();
+						changes.put("Lastname", "Changed");
+						changes.put("Age", null);
+						writer.update(db, creates.get(0).getNoteId(), changes);
+						writer.delete(db, creates.get(1).getUNID());
+
+						Stats stats = writer.getStats();
+						Assert.assertEquals(203, stats.getSubmittedOperations());
+						Assert.assertEquals(200, stats.getWrittenOperations());
+						Assert.assertEquals(1, stats.getFailedOperations());
+					}
+
+					NotesNote changedNote = db.openNoteById(creates.get(0).getNoteId());
+					Assert.assertEquals("Changed", changedNote.getItemValueString("Lastname"));
+					Assert.assertFalse(changedNote.hasItem("Age"));
+
+					Assert.assertNull(db.openNoteByUnid(creates.get(1).getUNID()));
+				});
+
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testBatchWriter_retryAfterRollbackOfMixedGroup() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					List<Operation> creates = new ArrayList<>();
+					Operation missingNoteOp = null;
+
+					try (NotesBatchWriter writer = new NotesBatchWriter(1).setMaxBufferedOperations(50)) {
+						//one full batch written in a single transaction, the failing operation is in the middle
+						for (int i=0; i<49; i++) {
+							if (i==25) {
+								missingNoteOp = writer.update(db, "00000000000000000000000000000001", new HashMap<>());
+							}
+							Map<String,Object> items = new HashMap<>();
+							items.put("Form", "Person");
+							items.put("Lastname", "Test "+i);
+							creates.add(writer.create(db, items));
+						}
+						writer.flush();
+
+						Stats stats = writer.getStats();
+						Assert.assertEquals(1, stats.getRollbacks());
+						Assert.assertEquals(50, stats.getRetriedOperations());
+						Assert.assertEquals(49, stats.getWrittenOperations());
+						Assert.assertEquals(1, stats.getFailedOperations());
+					}
+
+					Assert.assertNotNull(missingNoteOp.getError());
+					Assert.assertEquals(0, missingNoteOp.getNoteId());
+
+					//the ids are the ones of the retry, not of the rolled back transaction
+					Set<Integer> noteIds = new HashSet<>();
+					for (int i=0; i<creates.size(); i++) {
+						Operation currOp = creates.get(i);
+						Assert.assertTrue(currOp.isDone());
+						Assert.assertNull(currOp.getError());
+						Assert.assertTrue(noteIds.add(currOp.getNoteId()));
+
+						NotesNote note = db.openNoteById(currOp.getNoteId());
+						Assert.assertNotNull(note);
+						Assert.assertEquals(currOp.getUNID(), note.getUNID());
+						Assert.assertEquals("Test "+i, note.getItemValueString("Lastname"));
+						note.recycle();
+					}
+				});
+
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,90 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesBulkNoteReader;
+import com.mindoo.domino.jna.NotesBulkNoteReader.NoteSnapshot;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesNote;
+
+import lotus.domino.Session;
+
+/**
+ * Testcase for {@link NotesBulkNoteReader} class
+ *
+ * @author Karsten Lehmann
+ */
+public class TestBulkNoteReader extends BaseJNATestClass {
+
+	@Test
+	public void testBulkReadNotes() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					Map<Integer,String> subjectsByNoteId = new HashMap<>();
+
+					for (int i=0; i<25; i++) {
+						NotesNote note = db.createNote();
+						note.replaceItemValue("Subject", "Test "+i);
+						note.replaceItemValue("Index", i);
+						note.update();
+						subjectsByNoteId.put(note.getNoteId(), "Test "+i);
+						note.recycle();
+					}
+
+					int[] noteIds = subjectsByNoteId.keySet().stream().mapToInt(Integer::intValue).toArray();
+
+					NotesBulkNoteReader reader = new NotesBulkNoteReader(db).setBatchSize(10);
+
+					List<Integer> readNoteIds = new ArrayList<>();
+					try (Stream<NotesNote> notes = reader.readNotes(noteIds)) {
+						notes.forEach((note) -> {
+							Assert.assertEquals(subjectsByNoteId.get(note.getNoteId()), note.getItemValueString("Subject"));
+							readNoteIds.add(note.getNoteId());
+						});
+					}
+					Assert.assertEquals(noteIds.length, readNoteIds.size());
+					Assert.assertTrue(reader.getFailedNoteIds().isEmpty());
+
+					List<NoteSnapshot> snapshots;
+					try (Stream<NoteSnapshot> snapshotStream = reader.readSnapshots(noteIds)) {
+						snapshots = snapshotStream.collect(Collectors.toList());
+					}
+					Assert.assertEquals(noteIds.length, snapshots.size());
+					for (NoteSnapshot currSnapshot : snapshots) {
+						Assert.assertEquals(subjectsByNoteId.get(currSnapshot.getNoteId()),
+								currSnapshot.getItemValue("subject").get(0));
+					}
+
+					//modify one note and only read the changed items
+					NoteSnapshot firstSnapshot = snapshots.get(0);
+					NotesNote noteToChange = db.openNoteById(firstSnapshot.getNoteId());
+					noteToChange.replaceItemValue("Subject", "Changed");
+					noteToChange.update();
+					noteToChange.recycle();
+
+					try (Stream<NotesNote> notes = reader.readNotes(new int[] {firstSnapshot.getNoteId()},
+							new int[] {firstSnapshot.getSequence()})) {
+						notes.forEach((note) -> {
+							Assert.assertEquals("Changed", note.getItemValueString("Subject"));
+							Assert.assertEquals(NotesItem.TYPE_UNAVAILABLE, note.getFirstItem("Index").getType());
+						});
+					}
+				});
+
+				return null;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.mindoo.domino.jna.test;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.sync.FileChangeFeedCursorStore;
+import com.mindoo.domino.jna.sync.NotesChange;
+import com.mindoo.domino.jna.sync.NotesChangeFeed;
+import com.mindoo.domino.jna.sync.NotesChangeFeed.Subscription;
+import com.mindoo.domino.jna.sync.NotesChangeSet;
+
+import lotus.domino.Session;
+
+/**
+ * Testcase for {@link NotesChangeFeed} class
+ *
+ * @author Karsten Lehmann
+ */
+public class TestChangeFeed extends BaseJNATestClass {
+
+	@Test
+	public void testChangeFeed() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					File cursorFile = File.createTempFile("changefeed", ".properties");
+					cursorFile.delete();
+
+					NotesChangeFeed feed = new NotesChangeFeed(200, 200, 2000, new FileChangeFeedCursorStore(cursorFile));
+					try {
+						List<NotesChangeSet> changeSets1 = new CopyOnWriteArrayList<>();
+						List<NotesChangeSet> changeSets2 = new CopyOnWriteArrayList<>();
+
+						Subscription sub1 = feed.subscribe(db.getServer(), db.getRelativeFilePath(), changeSets1::add);
+						Subscription sub2 = feed.subscribe(db.getServer(), db.getRelativeFilePath(), changeSets2::add);
+						Assert.assertEquals(1, feed.getDatabaseCount());
+
+						//wait until the feed has computed its start position
+						waitFor(() -> sub1.getCursor()!=null);
+
+						NotesNote note1 = db.createNote();
+						note1.replaceItemValue("Subject", "Test 1");
+						note1.update();
+
+						NotesNote note2 = db.createNote();
+						note2.replaceItemValue("Subject", "Test 2");
+						note2.update();
+						int note2Id = note2.getNoteId();
+						note2.delete();
+
+						feed.pollNow(db.getServer(), db.getRelativeFilePath(), EnumSet.of(NoteClass.DATA));
+						waitFor(() -> !changeSets1.isEmpty() && !changeSets2.isEmpty());
+
+						//note2 has been created and deleted in the same burst
+						NotesChangeSet changes = changeSets1.get(0);
+						Assert.assertEquals(1, changes.getChanges().size());
+						NotesChange change = changes.getChanges().get(0);
+						Assert.assertEquals(note1.getNoteId(), change.getNoteId());
+						Assert.assertEquals(NotesChange.Type.ADDED, change.getType());
+						Assert.assertNotEquals(note2Id, change.getNoteId());
+
+						Assert.assertEquals(changeSets1.get(0).getChanges().size(), changeSets2.get(0).getChanges().size());
+
+						sub1.close();
+						sub2.close();
+						Assert.assertEquals(0, feed.getDatabaseCount());
+
+						//the cursor has been persisted after delivering the changes
+						Assert.assertEquals(changes.getUntil(), new FileChangeFeedCursorStore(cursorFile).loadCursor(
+								NotesChangeFeed.getFeedKey(db.getServer(), db.getRelativeFilePath(), EnumSet.of(NoteClass.DATA))));
+					}
+					finally {
+						feed.shutdown();
+						cursorFile.delete();
+					}
+				});
+
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testChangeFeed_deletionOfDeliveredNote() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					NotesChangeFeed feed = new NotesChangeFeed(200, 0, 0, null);
+					try {
+						List<NotesChangeSet> changeSets = new CopyOnWriteArrayList<>();
+						Subscription sub = feed.subscribe(db.getServer(), db.getRelativeFilePath(), changeSets::add);
+
+						//wait until the feed has computed its start position
+						waitFor(() -> sub.getCursor()!=null);
+
+						NotesNote note = db.createNote();
+						note.replaceItemValue("Subject", "Test");
+						note.update();
+						int noteId = note.getNoteId();
+
+						feed.pollNow(db.getServer(), db.getRelativeFilePath(), EnumSet.of(NoteClass.DATA));
+						waitFor(() -> !changeSets.isEmpty());
+
+						NotesChange added = changeSets.get(0).getChanges().get(0);
+						Assert.assertEquals(noteId, added.getNoteId());
+						Assert.assertEquals(NotesChange.Type.ADDED, added.getType());
+
+						//delete the note in a later poll, consumers need to know about it
+						note.delete();
+						feed.pollNow(db.getServer(), db.getRelativeFilePath(), EnumSet.of(NoteClass.DATA));
+						waitFor(() -> changeSets.size()>1);
+
+						NotesChangeSet deletions = changeSets.get(1);
+						Assert.assertEquals(1, deletions.getChanges().size());
+						NotesChange deleted = deletions.getChanges().get(0);
+						Assert.assertEquals(noteId, deleted.getNoteId());
+						Assert.assertEquals(NotesChange.Type.DELETED, deleted.getType());
+						Assert.assertEquals(added.getUNID(), deleted.getUNID());
+						Assert.assertFalse(deleted.getNoteClass().contains(NoteClass.NOTIFYDELETION));
+
+						sub.close();
+					}
+					finally {
+						feed.shutdown();
+					}
+				});
+
+				return null;
+			}
+		});
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > timeout) {
+				Assert.fail("Timeout waiting for change feed");
+			}
+			Thread.sleep(50);
+		}
+	}
+}
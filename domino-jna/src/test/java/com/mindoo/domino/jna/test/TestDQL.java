@@ -19,7 +19,9 @@ import com.mindoo.domino.jna.constants.DBQuery;
 import com.mindoo.domino.jna.constants.Navigate;
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.dql.DQL.DQLTerm;
+import com.mindoo.domino.jna.dql.PreparedDQL;
 
+import junit.framework.Assert;
 import lotus.domino.Session;
 
 /**
@@ -203,4 +205,38 @@ public class TestDQL extends BaseJNATestClass {
 		});
 	}
 
+	/**
+	 * Runs a prepared DQL query twice and checks that the second run is
+	 * served from the result cache
+	 */
+	@Test
+	public void testPreparedDQL() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+				db.harvestDesign(HarvestMode.UPDATE);
+
+				PreparedDQL preparedQuery = PreparedDQL.prepare(and(
+						item("Lastname").isEqualTo("Abbott"),
+						item("Firstname").isGreaterThan("B")
+						));
+				Assert.assertEquals("Whitespace is normalized", "a = 'x  y' and b > 1",
+						PreparedDQL.normalize("  a  =   'x  y'\n and b > 1 "));
+
+				NotesDbQueryResult result1 = preparedQuery.execute(db);
+				Assert.assertFalse("First run computes result", result1.isFromCache());
+
+				NotesDbQueryResult result2 = preparedQuery.execute(db);
+				Assert.assertTrue("Second run uses cache", result2.isFromCache());
+				Assert.assertEquals("Same result", result1.getIDTable().getCount(), result2.getIDTable().getCount());
+
+				System.out.println(preparedQuery);
+				return null;
+			}
+		});
+	}
+
 }
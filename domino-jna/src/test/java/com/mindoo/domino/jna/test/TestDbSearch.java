@@ -229,6 +229,75 @@ public class TestDbSearch extends BaseJNATestClass {
 		});
 	}
 	
+	@Test
+	public void testDbSearch_reuseMatchObjects() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				String formula = "SELECT Form=\"Person\" & @Begins(Lastname;\"B\")";
+				final EnumSet<Search> searchFlags = EnumSet.of(Search.SUMMARY);
+
+				//collect the data with new objects for each note
+				final Map<Integer,String> unidsByNoteId = new LinkedHashMap<Integer,String>();
+				final Map<Integer,String> lastNamesByNoteId = new LinkedHashMap<Integer,String>();
+				
+				NotesSearch.search(dbData, null, formula, "-", searchFlags, EnumSet.of(NoteClass.DOCUMENT), null, new NotesSearch.SearchCallback() {
+
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+						unidsByNoteId.put(searchMatch.getNoteId(), searchMatch.getUNID());
+						lastNamesByNoteId.put(searchMatch.getNoteId(), summaryBufferData.getAsString("Lastname", ""));
+						return Action.Continue;
+					}
+				});
+				Assert.assertFalse("Search found documents", unidsByNoteId.isEmpty());
+				
+				//now with reused objects; snapshots must not change when the next note is found
+				final List<ISearchMatch> matchSnapshots = new ArrayList<ISearchMatch>();
+				final List<IItemTableData> summarySnapshots = new ArrayList<IItemTableData>();
+				final ISearchMatch[] firstMatch = new ISearchMatch[1];
+				
+				NotesSearch.search(dbData, null, formula, "-", searchFlags, EnumSet.of(NoteClass.DOCUMENT), null, new NotesSearch.SearchCallback() {
+
+					@Override
+					public boolean isReuseMatchObjects() {
+						return true;
+					}
+					
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+						if (firstMatch[0]==null) {
+							firstMatch[0] = searchMatch;
+						}
+						else {
+							Assert.assertSame("Search match object is reused", firstMatch[0], searchMatch);
+						}
+						Assert.assertEquals("UNID is correct", unidsByNoteId.get(searchMatch.getNoteId()), searchMatch.getUNID());
+						Assert.assertEquals("Summary data is correct", lastNamesByNoteId.get(searchMatch.getNoteId()),
+								summaryBufferData.getAsString("Lastname", ""));
+						
+						matchSnapshots.add(searchMatch.snapshot());
+						summarySnapshots.add(summaryBufferData.snapshot());
+						return Action.Continue;
+					}
+				});
+				
+				Assert.assertEquals("All notes found", unidsByNoteId.size(), matchSnapshots.size());
+				for (int i=0; i<matchSnapshots.size(); i++) {
+					ISearchMatch currMatch = matchSnapshots.get(i);
+					Assert.assertEquals("Snapshot UNID is correct", unidsByNoteId.get(currMatch.getNoteId()), currMatch.getUNID());
+					Assert.assertEquals("Snapshot summary data is correct", lastNamesByNoteId.get(currMatch.getNoteId()),
+							summarySnapshots.get(i).getAsString("Lastname", ""));
+				}
+				return null;
+			}
+		});
+	}
+	
 	@Test
 	public void testDbSearch_directoryScanWithFormula() {
 
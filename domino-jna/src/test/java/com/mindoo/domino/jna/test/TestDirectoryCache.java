@@ -0,0 +1,60 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.mindoo.domino.jna.directory.DirectoryCache;
+import com.mindoo.domino.jna.directory.DirectoryCache.LookupResult;
+import com.mindoo.domino.jna.directory.DirectoryEntry;
+
+import junit.framework.Assert;
+import lotus.domino.Session;
+
+/**
+ * Tests cases for the directory cache with indexed name lookups
+ *
+ * @author Karsten Lehmann
+ */
+public class TestDirectoryCache extends BaseJNATestClass {
+
+	@Test
+	public void testLookups() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				DirectoryCache cache = new DirectoryCache("");
+
+				long t0=System.currentTimeMillis();
+				cache.sync();
+				long t1=System.currentTimeMillis();
+				System.out.println("Initial sync of "+cache.size()+" entries took "+(t1-t0)+"ms");
+
+				//nothing has changed, so the incremental search should not modify the cache
+				Assert.assertFalse("No changes after second sync", cache.sync());
+
+				String userName = session.getUserName();
+				DirectoryEntry person = cache.findPerson(userName);
+				Assert.assertNotNull("Current user found in directory", person);
+				Assert.assertEquals("Person found by abbreviated name", person, cache.findPerson(person.getNameAbbreviated()));
+				Assert.assertEquals("Person found by common name", person, cache.findPerson(person.getCommonName()));
+
+				String prefix = person.getCommonName().substring(0, 1);
+				LookupResult typeAheadResult = cache.lookupByPrefix(prefix, EnumSet.of(DirectoryEntry.Type.Person), 0, 10);
+				Assert.assertTrue("Type-ahead returns entries", typeAheadResult.getTotal() > 0);
+				for (DirectoryEntry currEntry : typeAheadResult.getMatches()) {
+					System.out.println(currEntry);
+				}
+
+				Set<String> groups = cache.getGroupMembershipsExpanded(userName);
+				System.out.println("Groups of "+userName+": "+groups);
+				for (String currGroup : groups) {
+					Assert.assertNotNull("Group exists", cache.findGroup(currGroup));
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,94 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.richtext.FontStyle;
+import com.mindoo.domino.jna.richtext.RichTextBuilder;
+import com.mindoo.domino.jna.richtext.TextStyle;
+import com.mindoo.domino.jna.richtext.conversion.MailMergeTemplate;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+
+import lotus.domino.Session;
+
+/**
+ * Test cases for precompiled mail merge templates
+ *
+ * @author Karsten Lehmann
+ */
+public class TestMailMergeTemplate extends BaseJNATestClass {
+
+	@Test
+	public void testTemplate() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				boolean oldUseOSLineBreak = NotesStringUtils.isUseOSLineDelimiter();
+				NotesStringUtils.setUseOSLineDelimiter(false);
+				try {
+					withTempDb((db) -> {
+						NotesNote templateNote = db.createNote();
+
+						//the font change splits the placeholder into two CDTEXT records
+						try (RichTextBuilder rtBuilder = templateNote.createRichTextItem("Body");) {
+							rtBuilder.addText("Dear <<first", (TextStyle) null, (FontStyle) null, false);
+							rtBuilder.addText("name>>,\nyour order <<ORDER>> has shipped.", (TextStyle) null,
+									new FontStyle().setBold(true), false);
+						}
+
+						MailMergeTemplate template = MailMergeTemplate.compile(templateNote, "Body",
+								Arrays.asList("<<firstname>>", "<<order>>", "<<unused>>"), true);
+						Assert.assertEquals(2, template.getSlotCount());
+
+						Map<String,String> values = new HashMap<String,String>();
+						values.put("<<firstname>>", "Peter");
+						values.put("<<order>>", "4711");
+
+						NotesNote note = db.createNote();
+						template.renderToNote(values, note, "Body");
+						Assert.assertEquals("Dear Peter,\nyour order 4711 has shipped.", note.getRichtextContentAsText("Body"));
+
+						//placeholders without value are kept
+						values.remove("<<order>>");
+						template.renderToNote(values, note, "Body");
+						Assert.assertEquals("Dear Peter,\nyour order <<ORDER>> has shipped.", note.getRichtextContentAsText("Body"));
+
+						List<Map<String,String>> valuesList = new ArrayList<Map<String,String>>();
+						for (int i=0; i<50; i++) {
+							Map<String,String> currValues = new HashMap<String,String>();
+							currValues.put("<<firstname>>", "Name "+i);
+							currValues.put("<<order>>", Integer.toString(i));
+							valuesList.add(currValues);
+						}
+
+						int[] noteIds = template.renderToNotes(db, valuesList, "Body", 4, (workerDb, index, currValues) -> {
+							NotesNote newNote = workerDb.createNote();
+							newNote.replaceItemValue("Form", "Letter");
+							return newNote;
+						});
+						Assert.assertEquals(valuesList.size(), noteIds.length);
+
+						for (int i=0; i<noteIds.length; i++) {
+							NotesNote currNote = db.openNoteById(noteIds[i]);
+							Assert.assertEquals("Dear Name "+i+",\nyour order "+i+" has shipped.",
+									currNote.getRichtextContentAsText("Body"));
+							currNote.recycle();
+						}
+					});
+				}
+				finally {
+					NotesStringUtils.setUseOSLineDelimiter(oldUseOSLineBreak);
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,135 @@
+package com.mindoo.domino.jna.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.internal.DisposableMemory;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.internal.NotesNativeAPI;
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.sun.jna.Memory;
+import com.sun.jna.ptr.ShortByReference;
+
+import lotus.domino.Session;
+
+/**
+ * Compares the name conversions of {@link NotesNamingUtils}, partially computed in Java,
+ * with the results of the C API functions DNCanonicalize and DNAbbreviate
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNamingUtils extends BaseJNATestClass {
+	private static final String[] ABBREVIATED_NAMES = new String[] {
+			"John Doe/Acme",
+			"John Doe/Sales/Acme",
+			"John Doe/Sales/East/North/West/Acme",
+			"John Doe/Sales/Acme/DE",
+			"John Doe/Acme/DE",
+			"John Doe/AB",
+			"J\u00f6hn D\u00f6e/Vertrieb/\u00c4cme",
+			"John Doe/Acme@AcmeDomain"
+	};
+
+	private static final String[] CANONICAL_NAMES = new String[] {
+			"CN=John Doe/O=Acme",
+			"CN=John Doe/OU=Sales/O=Acme",
+			"CN=John Doe/OU=Sales/OU=East/OU=North/OU=West/O=Acme",
+			"CN=John Doe/OU=Sales/O=Acme/C=DE",
+			"CN=John Doe/O=Acme/C=DE",
+			"CN=J\u00f6hn D\u00f6e/OU=Vertrieb/O=\u00c4cme"
+	};
+
+	/** names the Java conversion leaves to DNCanonicalize */
+	private static final String[] IRREGULAR_NAMES = new String[] {
+			"John Doe/OU=Sales/Acme",
+			"O=Acme/CN=John Doe",
+			"CN=John Doe/OU=Sales",
+			"John Doe /Acme",
+			"John Doe//Acme"
+	};
+
+	private static final String[] FLAT_NAMES = new String[] {
+			"John Doe",
+			"LocalDomainServers",
+			"[Admin]"
+	};
+
+	private static final String[] WILDCARD_NAMES = new String[] {
+			"*",
+			"*/Acme",
+			"*/Sales/Acme",
+			"*/O=Acme",
+			"*/OU=Sales/O=Acme"
+	};
+
+	@Test
+	public void testNamingUtils_compareWithNativeConversion() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				for (String[] currNames : new String[][] {ABBREVIATED_NAMES, CANONICAL_NAMES, FLAT_NAMES, WILDCARD_NAMES}) {
+					for (String currName : currNames) {
+						Assert.assertEquals("Canonical name of "+currName, toCanonicalNameNative(currName, null),
+								NotesNamingUtils.toCanonicalName(currName));
+						Assert.assertEquals("Abbreviated name of "+currName, toAbbreviatedNameNative(currName, null),
+								NotesNamingUtils.toAbbreviatedName(currName));
+					}
+				}
+
+				for (String currName : IRREGULAR_NAMES) {
+					Assert.assertEquals("Canonical name of "+currName, toCanonicalNameNative(currName, null),
+							NotesNamingUtils.toCanonicalName(currName));
+				}
+
+				//the template is only applied to common names
+				for (String currName : FLAT_NAMES) {
+					Assert.assertEquals("Canonical name of "+currName+" with template",
+							toCanonicalNameNative(currName, "CN=Template/OU=Sales/O=Acme"),
+							NotesNamingUtils.toCanonicalName(currName, "CN=Template/OU=Sales/O=Acme"));
+					Assert.assertEquals("Abbreviated name of "+currName+" with template",
+							toAbbreviatedNameNative(currName, "CN=Template/OU=Sales/O=Acme"),
+							NotesNamingUtils.toAbbreviatedName(currName, "CN=Template/OU=Sales/O=Acme"));
+				}
+				for (String currName : ABBREVIATED_NAMES) {
+					Assert.assertEquals("Canonical name of "+currName+" with template",
+							toCanonicalNameNative(currName, "CN=Template/OU=Sales/O=Acme"),
+							NotesNamingUtils.toCanonicalName(currName, "CN=Template/OU=Sales/O=Acme"));
+				}
+				return null;
+			}
+		});
+	}
+
+	private String toCanonicalNameNative(String name, String templateName) {
+		Memory templateNameMem = templateName==null ? null : NotesStringUtils.toLMBCS(templateName, true);
+		Memory inNameMem = NotesStringUtils.toLMBCS(name, true);
+		DisposableMemory outNameMem = new DisposableMemory(NotesConstants.MAXUSERNAME);
+		try {
+			ShortByReference outLength = new ShortByReference();
+			short result = NotesNativeAPI.get().DNCanonicalize(0, templateNameMem, inNameMem, outNameMem, NotesConstants.MAXUSERNAME, outLength);
+			NotesErrorUtils.checkResult(result);
+			return NotesStringUtils.fromLMBCS(outNameMem, (int) (outLength.getValue() & 0xffff));
+		}
+		finally {
+			outNameMem.dispose();
+		}
+	}
+
+	private String toAbbreviatedNameNative(String name, String templateName) {
+		Memory templateNameMem = templateName==null ? null : NotesStringUtils.toLMBCS(templateName, true);
+		Memory inNameMem = NotesStringUtils.toLMBCS(name, true);
+		DisposableMemory outNameMem = new DisposableMemory(NotesConstants.MAXUSERNAME);
+		try {
+			ShortByReference outLength = new ShortByReference();
+			short result = NotesNativeAPI.get().DNAbbreviate(0, templateNameMem, inNameMem, outNameMem, NotesConstants.MAXUSERNAME, outLength);
+			NotesErrorUtils.checkResult(result);
+			return NotesStringUtils.fromLMBCS(outNameMem, (int) (outLength.getValue() & 0xffff));
+		}
+		finally {
+			outNameMem.dispose();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesSearch;
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.metrics.NativeCallMetrics;
+import com.mindoo.domino.jna.metrics.NativeFunctionStats;
+import com.mindoo.domino.jna.metrics.NativeOperationStats;
+
+import lotus.domino.Session;
+
+/**
+ * Testcase for the {@link NativeCallMetrics} instrumentation of native calls
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNativeCallMetrics extends BaseJNATestClass {
+
+	@Test
+	public void testHistogramBuckets() {
+		Assert.assertEquals(1, NativeFunctionStats.getHistogramBucketUpperBoundMicros(0));
+		Assert.assertEquals(2, NativeFunctionStats.getHistogramBucketUpperBoundMicros(1));
+		Assert.assertEquals(1024, NativeFunctionStats.getHistogramBucketUpperBoundMicros(10));
+		Assert.assertEquals(Long.MAX_VALUE, NativeFunctionStats.getHistogramBucketUpperBoundMicros(NativeFunctionStats.HISTOGRAM_BUCKETS-1));
+	}
+
+	@Test
+	public void testSearchMetrics() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					for (int i=0; i<100; i++) {
+						NotesNote note = db.createNote();
+						note.replaceItemValue("Form", "Person");
+						note.replaceItemValue("Lastname", "Test "+i);
+						note.update();
+					}
+
+					boolean wasEnabled = NativeCallMetrics.isEnabled();
+					NativeCallMetrics.setEnabled(true);
+					NativeCallMetrics.reset();
+					try {
+						int[] found = new int[1];
+
+						NotesSearch.search(db, null, "Form=\"Person\"", "-", EnumSet.of(Search.SUMMARY),
+								EnumSet.of(NoteClass.DOCUMENT), null, new SearchCallback() {
+
+							@Override
+							public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+									IItemTableData summaryBufferData) {
+								found[0]++;
+								return Action.Continue;
+							}
+						});
+						Assert.assertEquals(100, found[0]);
+
+						NativeOperationStats searchStats = NativeCallMetrics.getOperationStats("NotesSearch.search");
+						Assert.assertNotNull(searchStats);
+						Assert.assertEquals(1, searchStats.getCount());
+						Assert.assertTrue(searchStats.getNativeCalls()>0);
+						Assert.assertTrue(searchStats.getWallNanos() >= searchStats.getNativeNanos());
+						System.out.println(searchStats);
+
+						List<NativeFunctionStats> functionStats = NativeCallMetrics.getFunctionStats();
+						Assert.assertFalse(functionStats.isEmpty());
+						NativeFunctionStats nsfSearchStats = NativeCallMetrics.getFunctionStats("NSFSearchExtended3");
+						Assert.assertNotNull(nsfSearchStats);
+						Assert.assertEquals(1, nsfSearchStats.getCallCount());
+						Assert.assertEquals(0, nsfSearchStats.getErrorCount());
+
+						for (NativeFunctionStats currStats : functionStats) {
+							System.out.println(currStats);
+						}
+					}
+					finally {
+						NativeCallMetrics.setEnabled(wasEnabled);
+					}
+				});
+				return null;
+			}
+		});
+	}
+}
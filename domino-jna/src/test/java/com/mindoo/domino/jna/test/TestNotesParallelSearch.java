@@ -0,0 +1,105 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesParallelSearch;
+import com.mindoo.domino.jna.NotesSearch;
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+
+import lotus.domino.Session;
+
+/**
+ * Tests cases for {@link NotesParallelSearch}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNotesParallelSearch extends BaseJNATestClass {
+
+	/**
+	 * Note classes may be passed as any {@link Set} implementation, including
+	 * an empty one that cannot be copied via {@link EnumSet#copyOf(java.util.Collection)}
+	 */
+	@Test
+	public void testParallelSearch_emptyNoteClasses() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+
+				final AtomicInteger matches = new AtomicInteger();
+				NotesTimeDate until = NotesParallelSearch.search(dbData, null, "@True", null, "-",
+						EnumSet.noneOf(Search.class), new HashSet<NoteClass>(), null, new NotesSearch.SearchCallback() {
+
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+							IItemTableData summaryBufferData) {
+						matches.incrementAndGet();
+						return Action.Continue;
+					}
+				});
+
+				Assert.assertNotNull("Search returned an end date", until);
+				Assert.assertEquals("No notes found for empty note classes", 0, matches.get());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testParallelSearch_sameResultAsSequentialSearch() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+
+				Set<NoteClass> noteClasses = new HashSet<NoteClass>(Arrays.asList(NoteClass.DATA));
+				String formula = "Form=\"Person\" & @Begins(Lastname;\"A\")";
+
+				final Set<Integer> sequentialIds = new HashSet<Integer>();
+				NotesSearch.search(dbData, null, formula, "-", EnumSet.noneOf(Search.class), noteClasses, null,
+						new NotesSearch.SearchCallback() {
+
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+							IItemTableData summaryBufferData) {
+						sequentialIds.add(searchMatch.getNoteId());
+						return Action.Continue;
+					}
+				});
+				Assert.assertFalse("Sequential search found notes", sequentialIds.isEmpty());
+
+				final Set<Integer> parallelIds = new HashSet<Integer>();
+				NotesParallelSearch.search(dbData, null, formula, null, "-", EnumSet.noneOf(Search.class), noteClasses, null,
+						new NotesSearch.SearchCallback() {
+
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+							IItemTableData summaryBufferData) {
+						synchronized (parallelIds) {
+							parallelIds.add(searchMatch.getNoteId());
+						}
+						return Action.Continue;
+					}
+				});
+
+				Assert.assertEquals("Parallel search returns the same notes", sequentialIds, parallelIds);
+				return null;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.mindoo.domino.jna.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.dxl.ParallelDXLExporter;
+import com.mindoo.domino.jna.dxl.ParallelDXLExporter.ExportResult;
+
+import lotus.domino.Session;
+
+/**
+ * Testcase for {@link ParallelDXLExporter} class
+ *
+ * @author Karsten Lehmann
+ */
+public class TestParallelDXLExport extends BaseJNATestClass {
+
+	@Test
+	public void testParallelDXLExport() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					NotesIDTable idTable = new NotesIDTable();
+					for (int i=0; i<10; i++) {
+						NotesNote note = db.createNote();
+						note.replaceItemValue("Form", "Person");
+						note.replaceItemValue("Lastname", "Test "+i);
+						note.update();
+						idTable.addNote(note.getNoteId());
+					}
+					//deleted notes should be reported as failure
+					NotesNote deletedNote = db.createNote();
+					deletedNote.update();
+					int deletedNoteId = deletedNote.getNoteId();
+					deletedNote.delete();
+					idTable.addNote(deletedNoteId);
+
+					Map<Integer,byte[]> hashes = new ConcurrentHashMap<>();
+
+					ParallelDXLExporter exporter = new ParallelDXLExporter(db)
+							.setChunkSize(3)
+							.setNumThreads(2)
+							.setNoteExportListener(new ParallelDXLExporter.INoteExportListener() {
+
+								@Override
+								public void noteExported(int noteId, byte[] dxlHash, long dxlSize) {
+									hashes.put(noteId, dxlHash);
+								}
+
+								@Override
+								public void noteExportFailed(int noteId, Throwable t) {
+								}
+							});
+
+					ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+					ExportResult result = exporter.export(idTable, bOut);
+					Assert.assertEquals(10, result.getExportedNoteCount());
+					Assert.assertTrue(result.getFailedNoteIds().contains(deletedNoteId));
+					Assert.assertEquals(10, hashes.size());
+
+					//merged chunks produce one valid DXL document
+					Document xmlDoc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+							.parse(new ByteArrayInputStream(bOut.toByteArray()));
+					Assert.assertEquals("database", xmlDoc.getDocumentElement().getNodeName());
+					Assert.assertEquals(10, xmlDoc.getElementsByTagName("document").getLength());
+
+					File dir = Files.createTempDirectory("dxlexport").toFile();
+					try {
+						ExportResult dirResult = exporter.exportToDirectory(idTable, dir, "chunk");
+						Assert.assertEquals(4, dirResult.getFiles().size());
+						Assert.assertEquals(10, dirResult.getExportedNoteCount());
+						for (File currFile : dirResult.getFiles()) {
+							DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(currFile);
+						}
+					}
+					finally {
+						for (File currFile : dir.listFiles()) {
+							currFile.delete();
+						}
+						dir.delete();
+					}
+
+					idTable.recycle();
+				});
+
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,81 @@
+package com.mindoo.domino.jna.test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.dxl.DXLExporter;
+import com.mindoo.domino.jna.dxl.DXLImportSource;
+import com.mindoo.domino.jna.dxl.DXLImporter.DXLImportOption;
+import com.mindoo.domino.jna.dxl.ParallelDXLImporter;
+import com.mindoo.domino.jna.dxl.ParallelDXLImporter.ImportResult;
+import com.mindoo.domino.jna.dxl.ParallelDXLImporter.SourceResult;
+
+import lotus.domino.Session;
+
+/**
+ * Testcase for {@link ParallelDXLImporter} class
+ *
+ * @author Karsten Lehmann
+ */
+public class TestParallelDXLImport extends BaseJNATestClass {
+
+	@Test
+	public void testParallelDXLImport() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					List<DXLImportSource> sources = new ArrayList<>();
+
+					DXLExporter exporter = new DXLExporter();
+					for (int i=0; i<20; i++) {
+						NotesNote note = db.createNote();
+						note.replaceItemValue("Form", "Person");
+						note.replaceItemValue("Lastname", "Test "+i);
+						note.update();
+
+						StringWriter writer = new StringWriter();
+						exporter.exportNote(note, writer);
+						sources.add(DXLImportSource.fromString("note"+i, writer.toString()));
+
+						if (i==10) {
+							sources.add(DXLImportSource.fromString("broken", "<document><item"));
+						}
+					}
+					exporter.free();
+
+					ParallelDXLImporter importer = new ParallelDXLImporter(db)
+							.setNumImportThreads(2)
+							.setTransactionGroupSize(5)
+							.setImporterConfigurer((dxlImporter) -> {
+								dxlImporter.setDocumentsImportOption(DXLImportOption.CREATE);
+							});
+
+					ImportResult result = importer.importDxl(sources);
+					Assert.assertEquals(21, result.getResults().size());
+					Assert.assertEquals(20, result.getSuccessCount());
+
+					List<SourceResult> failures = result.getFailures();
+					Assert.assertEquals(1, failures.size());
+					Assert.assertEquals("broken", failures.get(0).getSource().getName());
+					Assert.assertEquals(11, failures.get(0).getSourceIndex());
+
+					for (SourceResult currResult : result.getResults()) {
+						if (currResult.isSuccess()) {
+							Assert.assertEquals(1, currResult.getImportedNoteIds().length);
+							Assert.assertNotNull(db.openNoteById(currResult.getImportedNoteIds()[0]));
+						}
+					}
+				});
+
+				return null;
+			}
+		});
+	}
+}
@@ -3,7 +3,9 @@ package com.mindoo.domino.jna.test;
 import static com.mindoo.domino.jna.dql.DQL.*;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
@@ -24,6 +26,8 @@ import com.mindoo.domino.jna.NotesQueryResultsProcessor;
 import com.mindoo.domino.jna.NotesQueryResultsProcessor.Categorized;
 import com.mindoo.domino.jna.NotesQueryResultsProcessor.Hidden;
 import com.mindoo.domino.jna.NotesQueryResultsProcessor.SortOrder;
+import com.mindoo.domino.jna.NotesQueryResultsRow;
+import com.mindoo.domino.jna.NotesQueryResultsRowReader;
 import com.mindoo.domino.jna.constants.AclLevel;
 import com.mindoo.domino.jna.constants.CreateDatabase;
 import com.mindoo.domino.jna.constants.DBClass;
@@ -142,6 +146,58 @@ public class TestQueryResultsProcessor extends BaseJNATestClass {
 			}
 		});
 	}
+
+	@Test
+	public void testQRPRowReader() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withQRPTestDb((dbQRP) -> {
+					DQLTerm dql = and(
+							item("form").isEqualTo("Person")
+							);
+					
+					NotesDbQueryResult dqlResult = dbQRP.query(dql);
+					NotesIDTable dqlResultTable = dqlResult.getIDTable();
+					assertTrue(dqlResultTable.getCount()>0);
+					
+					NotesQueryResultsProcessor qrp = new NotesQueryResultsProcessor(dbQRP)
+					.addNoteIds(dbQRP, dqlResultTable.asSet(), "people")
+					.addColumn("lastname", "Lastname", "Lastname", SortOrder.ASCENDING, Hidden.FALSE, Categorized.FALSE)
+					.addColumn("firstname", "Firstname", "Firstname", SortOrder.ASCENDING, Hidden.FALSE, Categorized.FALSE);
+					
+					//UTF-8 output without char[] round trip must be valid JSON
+					ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+					qrp.executeToJSON(bOut, null);
+					JSONObject json = new JSONObject(new String(bOut.toByteArray(), StandardCharsets.UTF_8));
+					int totalRows = json.getJSONArray("StreamResults").length();
+					assertTrue(totalRows>0);
+					
+					//read all rows
+					int rowCount = 0;
+					try (NotesQueryResultsRowReader rows = qrp.executeToRows(null)) {
+						while (rows.hasNext()) {
+							NotesQueryResultsRow row = rows.next();
+							assertTrue(row.getNoteId()!=0);
+							assertNotNull(row.getAsString("lastname", null));
+							rowCount++;
+						}
+					}
+					assertEquals(totalRows, rowCount);
+					
+					//stop early
+					try (NotesQueryResultsRowReader rows = qrp.executeToRows(null)) {
+						for (int i=0; i<5 && rows.hasNext(); i++) {
+							rows.next();
+						}
+						assertEquals(Math.min(5, totalRows), rows.getRowsRead());
+					}
+				});
+				return null;
+			}
+		});
+	}
 	
 //	@Test
 	public void testQRPView() {
@@ -0,0 +1,79 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.richtext.FontStyle;
+import com.mindoo.domino.jna.richtext.RichTextBuilder;
+import com.mindoo.domino.jna.richtext.TextStyle;
+import com.mindoo.domino.jna.richtext.conversion.RichTextConversionPipeline;
+import com.mindoo.domino.jna.richtext.conversion.SimpleMailMergeConversion;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+
+import lotus.domino.Session;
+
+/**
+ * Test cases for the fused richtext conversion pipeline
+ *
+ * @author Karsten Lehmann
+ */
+public class TestRichTextConversionPipeline extends BaseJNATestClass {
+
+	@Test
+	public void testChainedMailMerge() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				boolean oldUseOSLineBreak = NotesStringUtils.isUseOSLineDelimiter();
+				NotesStringUtils.setUseOSLineDelimiter(false);
+				try {
+					withTempDb((db) -> {
+						NotesNote note = db.createNote();
+
+						try (RichTextBuilder rtBuilder = note.createRichTextItem("Body");) {
+							rtBuilder.addText("Dear <<firstname>>,\nyour order <<order>> has shipped.", (TextStyle) null, (FontStyle) null, false);
+						}
+
+						//the second conversion works on the output of the first one
+						Map<String,String> step1 = new HashMap<String,String>();
+						step1.put("<<firstname>>", "<<name>>");
+						step1.put("<<order>>", "4711");
+
+						Map<String,String> step2 = new HashMap<String,String>();
+						step2.put("<<name>>", "Peter");
+
+						Map<String,String> noMatch = new HashMap<String,String>();
+						noMatch.put("<<unknown>>", "xyz");
+
+						boolean changed = note.convertRichTextItem("Body", note, "Body2",
+								new SimpleMailMergeConversion(step1, true),
+								new SimpleMailMergeConversion(step2, true));
+						Assert.assertTrue(changed);
+						Assert.assertEquals("Dear Peter,\nyour order 4711 has shipped.", note.getRichtextContentAsText("Body2"));
+
+						//force intermediate results to disk
+						changed = new RichTextConversionPipeline(
+								new SimpleMailMergeConversion(step1, true),
+								new SimpleMailMergeConversion(step2, true))
+								.setMemoryThreshold(0)
+								.convert(note, "Body", note, "Body3");
+						Assert.assertTrue(changed);
+						Assert.assertEquals(note.getRichtextContentAsText("Body2"), note.getRichtextContentAsText("Body3"));
+
+						changed = note.convertRichTextItem("Body", new SimpleMailMergeConversion(noMatch, true));
+						Assert.assertFalse(changed);
+					});
+				}
+				finally {
+					NotesStringUtils.setUseOSLineDelimiter(oldUseOSLineBreak);
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -1,15 +1,19 @@
 package com.mindoo.domino.jna.test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.mindoo.domino.jna.NotesAttachment;
@@ -27,8 +31,10 @@ import com.mindoo.domino.jna.html.HtmlConvertOption;
 import com.mindoo.domino.jna.html.HtmlConvertProperties;
 import com.mindoo.domino.jna.html.IHtmlApiReference;
 import com.mindoo.domino.jna.html.IHtmlApiUrlTargetComponent;
+import com.mindoo.domino.jna.html.IHtmlConversionReferences;
 import com.mindoo.domino.jna.html.IHtmlConversionResult;
 import com.mindoo.domino.jna.html.IHtmlImageRef;
+import com.mindoo.domino.jna.html.MemoryHtmlConversionCache;
 import com.mindoo.domino.jna.html.ReferenceType;
 import com.mindoo.domino.jna.html.TargetType;
 
@@ -326,4 +332,68 @@ System.out.println(bodyAsHTML);
 		});
 	}
 
+	@Test
+	public void testConvertRichtextStreamingAndCached() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = NotesDatabase.openMailDatabase();
+				if (db==null) {
+					return null;
+				}
+				NotesCollection inboxFolder = db.openCollectionByName("($Inbox)");
+				
+				NotesViewLookupResultData lkResult =
+						inboxFolder.readEntries(new NotesCollectionPosition("0"),
+						EnumSet.of(Navigate.NEXT, Navigate.CONTINUE), 0, EnumSet.of(Navigate.CURRENT),
+						1, EnumSet.of(ReadMask.NOTEID));
+				
+				List<NotesViewEntryData> entries = lkResult.getEntries();
+				if (entries.isEmpty()) {
+					return null;
+				}
+				NotesNote note = db.openNoteById(entries.get(0).getNoteId());
+				
+				HtmlConvertProperties props = new HtmlConvertProperties()
+						.option(HtmlConvertOption.ForceSectionExpand);
+				
+				IHtmlConversionResult inMemoryResult = note.convertItemToHtml("body", props);
+				
+				//use a small chunk size to check that multi-byte characters split across chunks are converted correctly
+				ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+				IHtmlConversionReferences streamRefs = note.convertToHtml("body", props, streamOut, 7, null);
+				
+				Assert.assertEquals(inMemoryResult.getText(), new String(streamOut.toByteArray(), StandardCharsets.UTF_8));
+				Assert.assertEquals(inMemoryResult.getReferences().size(), streamRefs.getReferences().size());
+				
+				MemoryHtmlConversionCache cache = new MemoryHtmlConversionCache(10*1024*1024);
+				
+				StringWriter writer1 = new StringWriter();
+				note.convertToHtml("body", props, writer1, 4000, cache);
+				Assert.assertTrue(cache.getCacheSize() > 0);
+				
+				//second call is served from the cache
+				StringWriter writer2 = new StringWriter();
+				IHtmlConversionReferences cachedRefs = note.convertToHtml("body", props, writer2, 4000, cache);
+				
+				Assert.assertEquals(inMemoryResult.getText(), writer1.toString());
+				Assert.assertEquals(writer1.toString(), writer2.toString());
+				Assert.assertEquals(streamRefs.getReferences().size(), cachedRefs.getReferences().size());
+				Assert.assertEquals(streamRefs.getImages().size(), cachedRefs.getImages().size());
+				
+				//unsaved changes are not covered by the OID based cache key, so the cache gets bypassed
+				note.replaceItemValue("Body", "changed in memory");
+				Assert.assertTrue(note.isModified());
+				StringWriter writer3 = new StringWriter();
+				note.convertToHtml("body", props, writer3, 4000, cache);
+				Assert.assertNotEquals(writer1.toString(), writer3.toString());
+				Assert.assertTrue(writer3.toString().contains("changed in memory"));
+				
+				return null;
+			}
+		});
+	}
+	
 }
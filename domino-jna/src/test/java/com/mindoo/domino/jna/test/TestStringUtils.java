@@ -1,5 +1,6 @@
 package com.mindoo.domino.jna.test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -11,6 +12,9 @@ import com.mindoo.domino.jna.NotesDbReplicaInfo;
 import com.mindoo.domino.jna.NotesTimeDate;
 import com.mindoo.domino.jna.NotesUniversalNoteId;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.DisposableMemory;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.internal.NotesNativeAPI;
 import com.mindoo.domino.jna.internal.structs.NotesUniversalNoteIdStruct;
 import com.mindoo.domino.jna.utils.DumpUtil;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
@@ -338,6 +342,92 @@ public class TestStringUtils extends BaseJNATestClass {
 		});
 	}
 
+	/**
+	 * Compares {@link NotesStringUtils#fromLMBCS(byte[])}, which skips OSTranslate for
+	 * pure ascii data, with the output of OSTranslate for ascii, control and non ascii bytes
+	 */
+	@Test
+	public void testStringUtils_fromLMBCSAsciiShortcut() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				List<byte[]> testData = new ArrayList<byte[]>();
+				
+				//all printable ascii characters, taking the shortcut
+				byte[] printableAscii = new byte[0x7f-0x20+1];
+				for (int i=0; i<printableAscii.length; i++) {
+					printableAscii[i] = (byte) (0x20+i);
+				}
+				testData.add(printableAscii);
+				
+				//each control byte and each byte >= 0x80 between ascii characters
+				for (int b=0x00; b<=0xff; b++) {
+					if (b>=0x20 && b<=0x7f) {
+						continue;
+					}
+					testData.add(new byte[] {'a', 'b', (byte) b, 'y', 'z'});
+					testData.add(new byte[] {(byte) b, 'a', 'b'});
+					testData.add(new byte[] {'a', 'b', (byte) b});
+				}
+				
+				//null bytes as line breaks
+				testData.add(new byte[] {0});
+				testData.add(new byte[] {0, 0});
+				testData.add(new byte[] {'a', 'b', 'c', 0, 0, 'd', 'e', 'f', 0});
+				testData.add(new byte[] {'a', 'b', 'c', 0, (byte) 0x84, 'd', 0, 0x10, 'e'});
+				
+				for (byte[] currData : testData) {
+					Assert.assertEquals("Conversion matches OSTranslate for "+Arrays.toString(currData),
+							fromLMBCSWithOSTranslate(currData), NotesStringUtils.fromLMBCS(currData));
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Reference conversion of LMBCS data to a Java String that lets OSTranslate convert
+	 * all data between null bytes, which get converted to line breaks
+	 * 
+	 * @param data LMBCS data
+	 * @return string
+	 */
+	private String fromLMBCSWithOSTranslate(byte[] data) {
+		List<String> lines = new ArrayList<String>();
+		int startOffset = 0;
+		for (int i=0; i<=data.length; i++) {
+			if (i==data.length || data[i]==0) {
+				int len = i-startOffset;
+				if (len==0) {
+					lines.add("");
+				}
+				else {
+					DisposableMemory inMem = new DisposableMemory(len);
+					DisposableMemory outMem = new DisposableMemory(3*len);
+					try {
+						inMem.write(0, data, startOffset, len);
+						int outLen = NotesNativeAPI.get().OSTranslate32(NotesConstants.OS_TRANSLATE_LMBCS_TO_UTF8,
+								inMem, len, outMem, (int) outMem.size());
+						lines.add(new String(outMem.getByteArray(0, outLen), StandardCharsets.UTF_8));
+					}
+					finally {
+						inMem.dispose();
+						outMem.dispose();
+					}
+				}
+				startOffset = i+1;
+			}
+		}
+		
+		if (PlatformUtils.isWindows() && NotesStringUtils.isUseOSLineDelimiter()) {
+			return StringUtil.join(lines, "\r\n");
+		}
+		else {
+			return StringUtil.join(lines, "\n");
+		}
+	}
+	
 	private static final short ULMBCS_GRP_L1   = 0x01; /* Latin-1      :ibm-850    */
 	private static final short ULMBCS_GRP_GR   = 0x02; /* Greek        :ibm-851    */
 	private static final short ULMBCS_GRP_HE   = 0x03; /* Hebrew       :ibm-1255   */
@@ -0,0 +1,94 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesUnidCache;
+import com.mindoo.domino.jna.utils.UnidCodec;
+
+import lotus.domino.Session;
+
+/**
+ * Testcase for {@link NotesUnidCache} and {@link UnidCodec} classes
+ *
+ * @author Karsten Lehmann
+ */
+public class TestUnidCache extends BaseJNATestClass {
+
+	@Test
+	public void testUnidCodec() {
+		String unid = "85257A2A0049A8F3C1257A2A004A1B9E";
+		long file = UnidCodec.parseFile(unid);
+		long note = UnidCodec.parseNote(unid);
+		Assert.assertEquals(unid, UnidCodec.toString(file, note));
+		Assert.assertEquals(unid, UnidCodec.toString(UnidCodec.parseFile(unid.toLowerCase()), UnidCodec.parseNote(unid.toLowerCase())));
+
+		StringBuilder sb = new StringBuilder();
+		UnidCodec.append(file, note, sb);
+		Assert.assertEquals(unid, sb.toString());
+
+		Assert.assertTrue(UnidCodec.isValid(unid));
+		Assert.assertFalse(UnidCodec.isValid("85257A2A0049A8F3C1257A2A004A1B9"));
+		Assert.assertFalse(UnidCodec.isValid("85257A2A0049A8F3C1257A2A004A1B9X"));
+	}
+
+	@Test
+	public void testUnidCache() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				withTempDb((db) -> {
+					List<NotesNote> notes = new ArrayList<>();
+					for (int i=0; i<200; i++) {
+						NotesNote note = db.createNote();
+						note.replaceItemValue("Form", "Person");
+						note.update();
+						notes.add(note);
+					}
+
+					NotesUnidCache cache = db.getUnidCache();
+					Assert.assertSame(cache, db.getUnidCache());
+
+					int[] noteIds = new int[notes.size()+1];
+					String[] unids = new String[notes.size()+1];
+					for (int i=0; i<notes.size(); i++) {
+						noteIds[i] = notes.get(i).getNoteId();
+						unids[i] = notes.get(i).getUNID();
+					}
+					noteIds[notes.size()] = 0x7ffffff0;
+					unids[notes.size()] = "00000000000000000000000000000001";
+
+					String[] retUnids = new String[noteIds.length];
+					Assert.assertEquals(notes.size(), cache.toUnids(noteIds, retUnids));
+					int[] retNoteIds = new int[unids.length];
+					Assert.assertEquals(notes.size(), cache.toNoteIds(unids, retNoteIds));
+
+					for (int i=0; i<notes.size(); i++) {
+						Assert.assertEquals(unids[i], retUnids[i]);
+						Assert.assertEquals(noteIds[i], retNoteIds[i]);
+						Assert.assertEquals(unids[i], cache.toUnid(noteIds[i]));
+						Assert.assertEquals(noteIds[i], cache.toNoteId(unids[i].toLowerCase()));
+					}
+					Assert.assertNull(retUnids[notes.size()]);
+					Assert.assertEquals(0, retNoteIds[notes.size()]);
+					Assert.assertEquals(notes.size(), cache.size());
+
+					//deleted notes get removed on refresh
+					NotesNote deletedNote = notes.get(0);
+					int deletedNoteId = deletedNote.getNoteId();
+					deletedNote.delete();
+					Assert.assertTrue(cache.refresh() > 0);
+					Assert.assertNull(cache.toUnid(deletedNoteId));
+					Assert.assertEquals(0, cache.toNoteId(unids[0]));
+				});
+
+				return null;
+			}
+		});
+	}
+}
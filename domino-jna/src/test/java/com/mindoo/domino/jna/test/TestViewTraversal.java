@@ -1,5 +1,6 @@
 package com.mindoo.domino.jna.test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.EnumSet;
@@ -844,4 +845,244 @@ public class TestViewTraversal extends BaseJNATestClass {
 		});
 	
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testViewTraversal_resumeAfterIndexChange() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				final Database dbLegacy = getFakeNamesDbLegacy();
+				final NotesCollection colFromDbData = dbData.openCollectionByName("People");
+				colFromDbData.update();
+
+				final Set<Integer> allNoteIds = colFromDbData.getAllIds(Navigate.NEXT_NONCATEGORY);
+
+				ViewLookupCallback<Set<Integer>> resumableCallback = new ViewLookupCallback<Set<Integer>>() {
+					private boolean m_docChanged;
+
+					@Override
+					public boolean isResumable() {
+						return true;
+					}
+
+					@Override
+					public Set<Integer> startingLookup() {
+						return new LinkedHashSet<Integer>();
+					}
+
+					@Override
+					public Action entryRead(Set<Integer> result, NotesViewEntryData entryData) {
+						Assert.assertTrue("Entry has not been returned before", result.add(entryData.getNoteId()));
+
+						if (result.size()==200 && !m_docChanged) {
+							//modify a document and refresh the view to change the view index while reading
+							try {
+								Document doc = dbLegacy.getDocumentByID(Integer.toString(entryData.getNoteId(), 16));
+								doc.replaceItemValue("ResumeTest", Long.toString(System.currentTimeMillis()));
+								doc.save(true, false);
+								doc.recycle();
+							} catch (Exception e) {
+								throw new RuntimeException(e);
+							}
+							colFromDbData.update();
+							m_docChanged = true;
+						}
+						return Action.Continue;
+					}
+
+					@Override
+					public Set<Integer> lookupDone(Set<Integer> result) {
+						return result;
+					}
+				};
+
+				Set<Integer> readNoteIds = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						100, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES), resumableCallback);
+
+				System.out.println("Resumed "+resumableCallback.getResumeCount()+" times, re-read "+
+						resumableCallback.getReReadCount()+" entries");
+				Assert.assertEquals("All entries read once", allNoteIds, readNoteIds);
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testViewTraversal_resumeCategorizedAfterIndexChange() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				final Database dbLegacy = getFakeNamesDbLegacy();
+				final NotesCollection colFromDbData = dbData.openCollectionByName("People");
+				colFromDbData.update();
+
+				EnumSet<ReadMask> readMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES, ReadMask.INDEXPOSITION);
+				List<NotesViewEntryData> allEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT),
+						100, readMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+				List<String> allEntryKeys = toEntryKeys(allEntries);
+				Assert.assertTrue("View contains categories", allEntryKeys.stream().anyMatch((key) -> key.startsWith("cat:")));
+
+				ViewLookupCallback<List<NotesViewEntryData>> resumableCallback = new ViewLookupCallback<List<NotesViewEntryData>>() {
+					private int m_docCount;
+					private boolean m_docChanged;
+
+					@Override
+					public boolean isResumable() {
+						return true;
+					}
+
+					@Override
+					public List<NotesViewEntryData> startingLookup() {
+						return new ArrayList<NotesViewEntryData>();
+					}
+
+					@Override
+					public Action entryRead(List<NotesViewEntryData> result, NotesViewEntryData entryData) {
+						result.add(entryData);
+
+						if (entryData.isDocument() && ++m_docCount==200 && !m_docChanged) {
+							//modify a document without changing its sort key and refresh the view
+							try {
+								Document doc = dbLegacy.getDocumentByID(Integer.toString(entryData.getNoteId(), 16));
+								doc.replaceItemValue("ResumeTest", Long.toString(System.currentTimeMillis()));
+								doc.save(true, false);
+								doc.recycle();
+							} catch (Exception e) {
+								throw new RuntimeException(e);
+							}
+							colFromDbData.update();
+							m_docChanged = true;
+						}
+						return Action.Continue;
+					}
+
+					@Override
+					public List<NotesViewEntryData> lookupDone(List<NotesViewEntryData> result) {
+						return result;
+					}
+				};
+
+				List<NotesViewEntryData> readEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT),
+						100, readMask, resumableCallback);
+
+				System.out.println("Resumed "+resumableCallback.getResumeCount()+" times, re-read "+
+						resumableCallback.getReReadCount()+" entries");
+				//categories with the same values below different parents must not be dropped
+				Assert.assertEquals("All categories and documents read once", allEntryKeys, toEntryKeys(readEntries));
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Computes position independent keys for view entries read in view order, documents
+	 * by note id, categories by their column values and the values of their parent categories
+	 * 
+	 * @param entries entries
+	 * @return keys
+	 */
+	private List<String> toEntryKeys(List<NotesViewEntryData> entries) {
+		List<String> keys = new ArrayList<String>(entries.size());
+		List<String> categoryPath = new ArrayList<String>();
+		for (NotesViewEntryData currEntry : entries) {
+			if (currEntry.isCategory()) {
+				while (categoryPath.size() > currEntry.getLevel()) {
+					categoryPath.remove(categoryPath.size()-1);
+				}
+				categoryPath.add(Arrays.asList(currEntry.getColumnValues()).toString());
+				keys.add("cat:"+categoryPath);
+			}
+			else {
+				keys.add("doc:"+currEntry.getNoteId());
+			}
+		}
+		return keys;
+	}
+
+	@Test
+	public void testViewTraversal_pipelinedRead() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				NotesCollection colFromDbData = dbData.openCollectionByName("People");
+				colFromDbData.update();
+
+				long t0=System.currentTimeMillis();
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						100, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES), new EntriesAsListCallback(Integer.MAX_VALUE));
+				long t1=System.currentTimeMillis();
+				System.out.println("Sequential read of "+entries.size()+" entries took "+(t1-t0)+"ms");
+
+				List<NotesViewEntryData> entriesPipelined = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						100, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES), new EntriesAsListCallback(Integer.MAX_VALUE) {
+					
+					@Override
+					public boolean isPipelined() {
+						return true;
+					}
+				});
+				long t2=System.currentTimeMillis();
+				System.out.println("Pipelined read of "+entriesPipelined.size()+" entries took "+(t2-t1)+"ms");
+
+				Assert.assertEquals("Same number of entries", entries.size(), entriesPipelined.size());
+				for (int i=0; i<entries.size(); i++) {
+					Assert.assertEquals("Same entry at index "+i, entries.get(i).getNoteId(), entriesPipelined.get(i).getNoteId());
+				}
+				return null;
+			}
+		});
+	}
+	@Test
+	public void testViewTraversal_compactColumnValues() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						100, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES), new EntriesAsListCallback(100));
+
+				colFromDbData.setCompactColumnValues(true);
+				List<NotesViewEntryData> compactEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						100, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES), new EntriesAsListCallback(100));
+				colFromDbData.setCompactColumnValues(false);
+
+				Assert.assertEquals("Same number of entries", entries.size(), compactEntries.size());
+				
+				int[] innards = new int[2];
+				int[] compactInnards = new int[2];
+				
+				for (int i=0; i<entries.size(); i++) {
+					NotesViewEntryData currEntry = entries.get(i);
+					NotesViewEntryData currCompactEntry = compactEntries.get(i);
+					Assert.assertFalse(currEntry.isCompactColumnValues());
+					Assert.assertTrue(currCompactEntry.isCompactColumnValues());
+					
+					int numCols = currEntry.getColumnValues().length;
+					for (int c=0; c<numCols; c++) {
+						Assert.assertEquals(currEntry.getColumnValueType(c), currCompactEntry.getColumnValueType(c));
+						Assert.assertEquals(currEntry.getString(c), currCompactEntry.getString(c));
+						Assert.assertEquals(currEntry.getDouble(c), currCompactEntry.getDouble(c), 0);
+						Assert.assertEquals(currEntry.getLong(c), currCompactEntry.getLong(c));
+						Assert.assertEquals(currEntry.getInnards(c, innards), currCompactEntry.getInnards(c, compactInnards));
+						Assert.assertArrayEquals(innards, compactInnards);
+					}
+					Assert.assertArrayEquals(currEntry.getColumnValueSizesInBytes(), currCompactEntry.getColumnValueSizesInBytes());
+					
+					//boxed values are decoded on demand
+					Assert.assertEquals(currEntry.getColumnDataAsMap(), currCompactEntry.getColumnDataAsMap());
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,121 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IViewColumn.ColumnSort;
+import com.mindoo.domino.jna.virtualviews.VirtualView;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Category;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Hidden;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+import com.mindoo.domino.jna.virtualviews.VirtualViewDataChange;
+import com.mindoo.domino.jna.virtualviews.VirtualViewEntryData;
+import com.mindoo.domino.jna.virtualviews.VirtualViewFactory;
+import com.mindoo.domino.jna.virtualviews.VirtualViewGroup;
+import com.mindoo.domino.jna.virtualviews.VirtualViewNavigator.SelectedOnly;
+
+/**
+ * Testcase for the category totals and group-by queries of {@link VirtualView}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestVirtualViewAggregates extends BaseJNATestClass {
+	private static final String ORIGIN = "test";
+
+	private VirtualView createView() {
+		return VirtualViewFactory.createView(
+				new VirtualViewColumn("City", "City", Category.YES, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Salary", "Salary", Category.NO, Hidden.NO, ColumnSort.NONE, Total.SUM, (String) null),
+				new VirtualViewColumn("Age", "Age", Category.NO, Hidden.NO, ColumnSort.NONE, Total.MIN, (String) null),
+				new VirtualViewColumn("Bonus", "Bonus", Category.NO, Hidden.NO, ColumnSort.NONE, Total.MAX, (String) null),
+				new VirtualViewColumn("Lastname", "Lastname", Category.NO, Hidden.NO, ColumnSort.ASCENDING, Total.DISTINCT_COUNT, (String) null),
+				new VirtualViewColumn("Department", "Department", Category.NO, Hidden.NO, ColumnSort.NONE, Total.COUNT, (String) null)
+				)
+				.build();
+	}
+
+	private Map<String,Object> createValues(String city, double salary, double age, double bonus, String lastname, String department) {
+		Map<String,Object> values = new HashMap<>();
+		values.put("City", city);
+		values.put("Salary", salary);
+		values.put("Age", age);
+		values.put("Bonus", bonus);
+		values.put("Lastname", lastname);
+		if (department != null) {
+			values.put("Department", department);
+		}
+		return values;
+	}
+
+	@Test
+	public void testIncrementalTotals() {
+		VirtualView view = createView();
+
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		change.addEntry(4, "00000000000000000000000000000004", createValues("Berlin", 1000, 30, 10, "Doe", "Sales"));
+		change.addEntry(8, "00000000000000000000000000000008", createValues("Berlin", 2000, 25, 50, "Doe", null));
+		change.addEntry(12, "0000000000000000000000000000000C", createValues("Berlin", 3000, 40, 20, "Miller", "IT"));
+		change.addEntry(16, "00000000000000000000000000000010", createValues("Paris", 500, 50, 5, "Dupont", "IT"));
+		view.applyChanges(change);
+
+		VirtualViewEntryData root = view.getRoot();
+		Assert.assertEquals(6500, root.getTotalValue("Salary"), 0);
+		Assert.assertEquals(25, root.getTotalValue("Age", Total.MIN), 0);
+		Assert.assertEquals(50, root.getTotalValue("Bonus", Total.MAX), 0);
+		Assert.assertEquals(3, root.getTotalValue("Lastname", Total.DISTINCT_COUNT), 0);
+		Assert.assertEquals(3, root.getTotalValue("Department", Total.COUNT), 0);
+
+		VirtualViewEntryData berlin = view
+				.createViewNav()
+				.withCustomAccessCheck((nav, entry) -> true)
+				.build()
+				.entriesForward(SelectedOnly.NO)
+				.findFirst()
+				.get();
+		Assert.assertEquals("Berlin", berlin.getCategoryValue());
+		Assert.assertEquals(6000.0, berlin.get("Salary"));
+		Assert.assertEquals(25.0, berlin.get("Age"));
+		Assert.assertEquals(2.0, berlin.get("Lastname"));
+
+		//remove the documents with the extreme values, MIN and MAX need to be recomputed
+		change = new VirtualViewDataChange(ORIGIN);
+		change.removeEntry(8);
+		change.removeEntry(16);
+		view.applyChanges(change);
+
+		Assert.assertEquals(4000, root.getTotalValue("Salary"), 0);
+		Assert.assertEquals(30, root.getTotalValue("Age", Total.MIN), 0);
+		Assert.assertEquals(20, root.getTotalValue("Bonus", Total.MAX), 0);
+		Assert.assertEquals(2, root.getTotalValue("Lastname", Total.DISTINCT_COUNT), 0);
+		Assert.assertEquals(20.0, berlin.get("Bonus"));
+	}
+
+	@Test
+	public void testGroupBy() {
+		VirtualView view = createView();
+
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		change.addEntry(4, "00000000000000000000000000000004", createValues("Berlin", 1000, 30, 10, "Doe", "Sales"));
+		change.addEntry(8, "00000000000000000000000000000008", createValues("Paris", 2000, 25, 50, "Doe", "IT"));
+		change.addEntry(12, "0000000000000000000000000000000C", createValues("Berlin", 3000, 40, 20, "Miller", "IT"));
+		view.applyChanges(change);
+
+		List<VirtualViewGroup> groups = view.groupBy("Department")
+				.aggregate("Salary", Total.SUM, Total.MAX, Total.AVERAGE)
+				.execute();
+
+		Assert.assertEquals(2, groups.size());
+		VirtualViewGroup itGroup = groups.get(0);
+		Assert.assertEquals("IT", itGroup.getKey().get(0));
+		Assert.assertEquals(2, itGroup.getDocumentCount());
+		Assert.assertEquals(5000, itGroup.getValue("Salary", Total.SUM), 0);
+		Assert.assertEquals(3000, itGroup.getValue("Salary", Total.MAX), 0);
+		Assert.assertEquals(2500, itGroup.getValue("Salary", Total.AVERAGE), 0);
+	}
+
+}
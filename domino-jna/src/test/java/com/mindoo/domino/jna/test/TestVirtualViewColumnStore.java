@@ -0,0 +1,153 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IViewColumn.ColumnSort;
+import com.mindoo.domino.jna.virtualviews.VirtualView;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Category;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Hidden;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumnStore;
+import com.mindoo.domino.jna.virtualviews.VirtualViewDataChange;
+import com.mindoo.domino.jna.virtualviews.VirtualViewEntryData;
+import com.mindoo.domino.jna.virtualviews.VirtualViewFactory;
+import com.mindoo.domino.jna.virtualviews.VirtualViewFactory.VirtualViewBuilder;
+import com.mindoo.domino.jna.virtualviews.VirtualViewNavigator.SelectedOnly;
+
+/**
+ * Testcase for {@link VirtualView}s that store their document values in a {@link VirtualViewColumnStore}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestVirtualViewColumnStore extends BaseJNATestClass {
+	private static final String ORIGIN = "test";
+
+	private VirtualView createView(boolean columnar) {
+		VirtualViewBuilder builder = VirtualViewFactory.createView(
+				new VirtualViewColumn("City", "City", Category.YES, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Lastname", "Lastname", Category.NO, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Salary", "Salary", Category.NO, Hidden.NO, ColumnSort.NONE, Total.SUM, (String) null)
+				);
+		if (columnar) {
+			builder.withColumnarStorage();
+		}
+		return builder.build();
+	}
+
+	private void applyChanges(VirtualView view, int round) {
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		for (int i=0; i<1000; i++) {
+			if (round > 0 && (i % 3) != 0) {
+				continue;
+			}
+			Map<String,Object> values = new HashMap<>();
+			values.put("City", "City " + ((i + round) % 7));
+			values.put("Lastname", "Lastname " + i);
+			values.put("Salary", Double.valueOf(i));
+			if ((i % 5) == 0) {
+				values.put("$C1$", Arrays.asList("CN=Jane Doe/O=Mindoo", "[Admin]"));
+			}
+			change.addEntry(4*(i+1), String.format("%032X", i * 7919L), values);
+		}
+		if (round > 0) {
+			for (int i=1; i<1000; i+=10) {
+				change.removeEntry(4*(i+1));
+			}
+		}
+		view.applyChanges(change);
+	}
+
+	private String dumpView(VirtualView view) {
+		StringBuilder sb = new StringBuilder();
+		view
+		.createViewNav()
+		.withCustomAccessCheck((nav, entry) -> true)
+		.build()
+		.expandAll()
+		.entriesForward(SelectedOnly.NO)
+		.forEach((entry) -> {
+			sb.append(entry.getPositionStr())
+			.append(" ").append(entry.getUNID())
+			.append(" ").append(entry.isDocument() ? entry.get("Lastname") : entry.getCategoryValue())
+			.append(" ").append(entry.isDocument() ? entry.get("Salary") : entry.getTotalValue("Salary"))
+			.append(" ").append(entry.getDocReadersList())
+			.append("\n");
+		});
+		return sb.toString();
+	}
+
+	@Test
+	public void testSameContentAsHeapStorage() {
+		VirtualView heapView = createView(false);
+		VirtualView columnarView = createView(true);
+		Assert.assertNull(heapView.getColumnStore());
+
+		for (int round=0; round<3; round++) {
+			applyChanges(heapView, round);
+			applyChanges(columnarView, round);
+
+			Assert.assertEquals(dumpView(heapView), dumpView(columnarView));
+
+			VirtualViewColumnStore store = columnarView.getColumnStore();
+			Assert.assertEquals(columnarView.getRoot().getDescendantDocumentCount(), store.getRowCount());
+			//all documents share the same readers list
+			Assert.assertEquals(1, store.getListDictionarySize());
+			Assert.assertTrue(store.getOffHeapBytes() > 0);
+		}
+	}
+
+	@Test
+	public void testRemovedEntriesDoNotSeeReusedRows() {
+		VirtualView view = createView(true);
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		Map<String,Object> values = new HashMap<>();
+		values.put("City", "Berlin");
+		values.put("Lastname", "Smith");
+		change.addEntry(4, "00000000000000000000000000000004", values);
+		view.applyChanges(change);
+
+		List<VirtualViewEntryData> docEntries = new ArrayList<>();
+		view
+		.createViewNav()
+		.withCustomAccessCheck((nav, entry) -> true)
+		.build()
+		.expandAll()
+		.entriesForward(SelectedOnly.NO)
+		.forEach((entry) -> {
+			if (entry.isDocument()) {
+				docEntries.add(entry);
+			}
+		});
+		Assert.assertEquals(1, docEntries.size());
+		VirtualViewEntryData removedEntry = docEntries.get(0);
+
+		//the removed document keeps its values until the next write batch
+		change = new VirtualViewDataChange(ORIGIN);
+		change.removeEntry(4);
+		view.applyChanges(change);
+		Assert.assertEquals(0, view.getColumnStore().getRowCount());
+		Assert.assertEquals("Smith", removedEntry.get("Lastname"));
+		Assert.assertEquals("00000000000000000000000000000004", removedEntry.getUNID());
+
+		//the next batch reuses the row, the old entry must not see the new document
+		change = new VirtualViewDataChange(ORIGIN);
+		values = new HashMap<>();
+		values.put("City", "Paris");
+		values.put("Lastname", "Dupont");
+		change.addEntry(8, "00000000000000000000000000000008", values);
+		view.applyChanges(change);
+		Assert.assertEquals(1, view.getColumnStore().getRowCount());
+		Assert.assertNull(removedEntry.get("Lastname"));
+		Assert.assertNull(removedEntry.getUNID());
+		Assert.assertTrue(removedEntry.getColumnValues().isEmpty());
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IViewColumn.ColumnSort;
+import com.mindoo.domino.jna.virtualviews.VirtualView;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Category;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Hidden;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+import com.mindoo.domino.jna.virtualviews.VirtualViewDataChange;
+import com.mindoo.domino.jna.virtualviews.VirtualViewEntryData;
+import com.mindoo.domino.jna.virtualviews.VirtualViewFactory;
+import com.mindoo.domino.jna.virtualviews.VirtualViewIndexType;
+import com.mindoo.domino.jna.virtualviews.VirtualViewNavigator;
+import com.mindoo.domino.jna.virtualviews.VirtualViewQueryFilter;
+import com.mindoo.domino.jna.virtualviews.VirtualViewQueryResult;
+
+/**
+ * Testcase for the secondary indexes and queries of {@link VirtualView}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestVirtualViewQuery extends BaseJNATestClass {
+	private static final String ORIGIN = "test";
+
+	private VirtualView createView() {
+		VirtualView view = VirtualViewFactory.createView(
+				new VirtualViewColumn("City", "City", Category.YES, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Name", "Name", Category.NO, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Salary", "Salary", Category.NO, Hidden.NO, ColumnSort.NONE, Total.NONE, (String) null)
+				)
+				.withIndex("City", VirtualViewIndexType.HASH)
+				.withIndex("Salary", VirtualViewIndexType.SORTED)
+				.withIndex("Name", VirtualViewIndexType.FULL_TOKEN)
+				.build();
+
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		change.addEntry(4, "00000000000000000000000000000004", createValues("Berlin", "John Smith", 3000));
+		change.addEntry(8, "00000000000000000000000000000008", createValues("Berlin", "Jane Smithers", 1000));
+		change.addEntry(12, "0000000000000000000000000000000C", createValues("Paris", "John Doe", 2000));
+		change.addEntry(16, "00000000000000000000000000000010", createValues("Paris", "Marie Dupont", 4000));
+		change.addEntry(20, "00000000000000000000000000000014", createValues("Rome", "Mario Rossi", 1000));
+		view.applyChanges(change);
+		return view;
+	}
+
+	private Map<String,Object> createValues(String city, String name, double salary) {
+		Map<String,Object> values = new HashMap<>();
+		values.put("City", city);
+		values.put("Name", name);
+		values.put("Salary", salary);
+		return values;
+	}
+
+	private List<Integer> getNoteIds(VirtualViewQueryResult result) {
+		List<Integer> noteIds = new ArrayList<>();
+		for (VirtualViewEntryData currEntry : result.getEntries()) {
+			noteIds.add(currEntry.getNoteId());
+		}
+		return noteIds;
+	}
+
+	@Test
+	public void testFilters() {
+		VirtualView view = createView();
+		VirtualViewNavigator nav = view.createViewNav().withCustomAccessCheck((n, entry) -> true).build();
+
+		VirtualViewQueryResult result = nav.query().where(VirtualViewQueryFilter.eq("City", "berlin")).execute();
+		Assert.assertEquals(Arrays.asList(4, 8), getNoteIds(result));
+
+		result = nav.query().where(VirtualViewQueryFilter.range("Salary", 1000, false, 3000, true)).execute();
+		Assert.assertEquals(Arrays.asList(4, 12), getNoteIds(result));
+
+		result = nav.query().where(VirtualViewQueryFilter.words("Name", "john sm*")).execute();
+		Assert.assertEquals(Arrays.asList(4), getNoteIds(result));
+
+		result = nav.query().where(VirtualViewQueryFilter.and(
+				VirtualViewQueryFilter.not(VirtualViewQueryFilter.eq("City", "Paris")),
+				VirtualViewQueryFilter.or(
+						VirtualViewQueryFilter.eq("Salary", 1000),
+						VirtualViewQueryFilter.words("Name", "smith")
+						)
+				)).execute();
+		Assert.assertEquals(Arrays.asList(4, 8, 20), getNoteIds(result));
+
+		//indexes follow changes of the view
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		change.removeEntry(4);
+		change.addEntry(20, "00000000000000000000000000000014", createValues("Berlin", "Mario Rossi", 1000));
+		view.applyChanges(change);
+
+		result = nav.query().where(VirtualViewQueryFilter.eq("City", "Berlin")).execute();
+		Assert.assertEquals(Arrays.asList(8, 20), getNoteIds(result));
+	}
+
+	@Test
+	public void testSortingAndPaging() {
+		VirtualView view = createView();
+		//hide one document for the current user
+		VirtualViewNavigator nav = view.createViewNav().withCustomAccessCheck((n, entry) -> entry.getNoteId() != 12).build();
+
+		VirtualViewQueryResult result = nav.query().sortBy("Salary", true).pageSize(2).execute();
+		Assert.assertEquals(4, result.getTotalCount());
+		Assert.assertEquals(Arrays.asList(16, 4), getNoteIds(result));
+		Assert.assertNotNull(result.getNextCursor());
+
+		//add a document before the cursor position, it must not shift the next page
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		change.addEntry(24, "00000000000000000000000000000018", createValues("Rome", "Luigi Verdi", 5000));
+		view.applyChanges(change);
+
+		result = nav.query().sortBy("Salary", true).pageSize(2).startAfter(result.getNextCursor()).execute();
+		Assert.assertEquals(Arrays.asList(8, 20), getNoteIds(result));
+		Assert.assertNull(result.getNextCursor());
+
+		//fewer matches than distinct salaries, sorted without walking the index buckets
+		result = nav.query().where(VirtualViewQueryFilter.eq("City", "Berlin")).sortBy("Salary", true).pageSize(1).execute();
+		Assert.assertEquals(2, result.getTotalCount());
+		Assert.assertEquals(Arrays.asList(4), getNoteIds(result));
+
+		result = nav.query().where(VirtualViewQueryFilter.eq("City", "Berlin")).sortBy("Salary", true).pageSize(1).startAfter(result.getNextCursor()).execute();
+		Assert.assertEquals(Arrays.asList(8), getNoteIds(result));
+		Assert.assertNull(result.getNextCursor());
+	}
+
+	@Test
+	public void testPagingWithMixedSortValueTypes() {
+		VirtualView view = createView();
+		VirtualViewNavigator nav = view.createViewNav().withCustomAccessCheck((n, entry) -> true).build();
+
+		//strings are sorted after numbers, other values after strings by their string representation
+		Map<String,Object> stringValues = createValues("Rome", "Luigi Verdi", 0);
+		stringValues.put("Salary", "unknown");
+		Map<String,Object> falseValues = createValues("Rome", "Paolo Bianchi", 0);
+		falseValues.put("Salary", Boolean.FALSE);
+		Map<String,Object> trueValues = createValues("Rome", "Anna Neri", 0);
+		trueValues.put("Salary", Boolean.TRUE);
+
+		VirtualViewDataChange change = new VirtualViewDataChange(ORIGIN);
+		change.addEntry(24, "00000000000000000000000000000018", stringValues);
+		change.addEntry(28, "0000000000000000000000000000001C", falseValues);
+		change.addEntry(32, "00000000000000000000000000000020", trueValues);
+		view.applyChanges(change);
+
+		List<Integer> noteIds = new ArrayList<>();
+		VirtualViewQueryResult result = nav.query().sortBy("Salary", false).pageSize(1).execute();
+		noteIds.addAll(getNoteIds(result));
+		//read a few pages more than needed, so that a cursor that does not advance fails the test
+		for (int i=0; i<10 && result.getNextCursor() != null; i++) {
+			result = nav.query().sortBy("Salary", false).pageSize(1).startAfter(result.getNextCursor()).execute();
+			noteIds.addAll(getNoteIds(result));
+		}
+		Assert.assertEquals(Arrays.asList(8, 20, 12, 4, 16, 24, 28, 32), noteIds);
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.IViewColumn.ColumnSort;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.virtualviews.VirtualView;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Category;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Hidden;
+import com.mindoo.domino.jna.virtualviews.VirtualViewColumn.Total;
+import com.mindoo.domino.jna.virtualviews.VirtualViewDataChange;
+import com.mindoo.domino.jna.virtualviews.VirtualViewFactory;
+import com.mindoo.domino.jna.virtualviews.VirtualViewNavigator.SelectedOnly;
+import com.mindoo.domino.jna.virtualviews.VirtualViewRefreshScheduler;
+import com.mindoo.domino.jna.virtualviews.dataprovider.IVirtualViewDataProvider;
+
+/**
+ * Testcase for the parallel refresh of {@link VirtualView} data providers
+ *
+ * @author Karsten Lehmann
+ */
+public class TestVirtualViewRefreshScheduler extends BaseJNATestClass {
+	private static final int NUM_PROVIDERS = 4;
+	private static final long UPDATE_DURATION_MILLIS = 500;
+
+	/**
+	 * Slow data provider that adds the same documents with the current round number on each update
+	 */
+	private static class SlowDataProvider implements IVirtualViewDataProvider {
+		private VirtualView view;
+		private String origin;
+		private AtomicInteger round;
+
+		public SlowDataProvider(String origin, AtomicInteger round) {
+			this.origin = origin;
+			this.round = round;
+		}
+
+		@Override
+		public void init(VirtualView view) {
+			this.view = view;
+		}
+
+		@Override
+		public String getOrigin() {
+			return origin;
+		}
+
+		@Override
+		public void update() {
+			try {
+				Thread.sleep(UPDATE_DURATION_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			VirtualViewDataChange change = new VirtualViewDataChange(origin);
+			for (int i=1; i<=10; i++) {
+				Map<String,Object> values = new HashMap<>();
+				values.put("Origin", origin);
+				values.put("Round", (double) round.get());
+				change.addEntry(i*4, String.format("%032X", i), values);
+			}
+			view.applyChanges(change);
+		}
+	}
+
+	/**
+	 * Data provider that adds one new document per update and uses the last note id as position
+	 */
+	private static class IncrementalDataProvider implements IVirtualViewDataProvider {
+		private VirtualView view;
+		private int lastNoteId;
+
+		@Override
+		public void init(VirtualView view) {
+			this.view = view;
+		}
+
+		@Override
+		public String getOrigin() {
+			return "incremental";
+		}
+
+		@Override
+		public void update() {
+			lastNoteId += 4;
+			VirtualViewDataChange change = new VirtualViewDataChange(getOrigin());
+			Map<String,Object> values = new HashMap<>();
+			values.put("Origin", getOrigin());
+			values.put("Round", 1.0);
+			change.addEntry(lastNoteId, String.format("%032X", lastNoteId), values);
+			view.applyChanges(change);
+		}
+
+		@Override
+		public Object getPosition() {
+			return lastNoteId;
+		}
+
+		@Override
+		public void restorePosition(Object position) {
+			this.lastNoteId = (Integer) position;
+		}
+	}
+
+	@Test
+	public void testParallelRefresh() throws Exception {
+		VirtualView view = VirtualViewFactory.createView(
+				new VirtualViewColumn("Origin", "Origin", Category.YES, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Round", "Round", Category.NO, Hidden.NO, ColumnSort.NONE, Total.SUM, (String) null)
+				)
+				.build();
+
+		AtomicInteger round = new AtomicInteger(1);
+		for (int i=0; i<NUM_PROVIDERS; i++) {
+			SlowDataProvider provider = new SlowDataProvider("provider"+i, round);
+			provider.init(view);
+			view.addDataProvider(provider);
+		}
+
+		try (VirtualViewRefreshScheduler scheduler = new VirtualViewRefreshScheduler(view, NUM_PROVIDERS)) {
+			long t0=System.currentTimeMillis();
+			scheduler.refresh();
+			long t1=System.currentTimeMillis();
+
+			//providers ran concurrently
+			Assert.assertTrue((t1-t0) < NUM_PROVIDERS * UPDATE_DURATION_MILLIS);
+			Assert.assertEquals(NUM_PROVIDERS, scheduler.getProviderUpdateCount());
+			Assert.assertEquals(NUM_PROVIDERS * 10, view.getRoot().getDescendantDocumentCount());
+			Assert.assertEquals(NUM_PROVIDERS * 10, view.getRoot().getTotalValue("Round"), 0);
+
+			//readers only see the state before or after a refresh round
+			round.set(2);
+			AtomicInteger partialReads = new AtomicInteger();
+			AtomicBoolean refreshDone = new AtomicBoolean();
+			Thread reader = new Thread(() -> {
+				while (!refreshDone.get()) {
+					view.accessWithReadLock(() -> {
+						double total = view.getRoot().getTotalValue("Round");
+						if (total != NUM_PROVIDERS * 10 && total != NUM_PROVIDERS * 20) {
+							partialReads.incrementAndGet();
+						}
+					});
+				}
+			});
+			reader.start();
+			scheduler.refresh();
+			refreshDone.set(true);
+			reader.join();
+
+			Assert.assertEquals(0, partialReads.get());
+			Assert.assertEquals(NUM_PROVIDERS * 20, view.getRoot().getTotalValue("Round"), 0);
+		}
+	}
+
+	@Test
+	public void testRestorePositionOnFailedApply() throws Exception {
+		AtomicBoolean failNextAdd = new AtomicBoolean();
+		VirtualView view = new VirtualView(
+				new VirtualViewColumn("Origin", "Origin", Category.YES, Hidden.NO, ColumnSort.ASCENDING, Total.NONE, (String) null),
+				new VirtualViewColumn("Round", "Round", Category.NO, Hidden.NO, ColumnSort.NONE, Total.SUM, (String) null)
+				) {
+			@Override
+			protected boolean isAccepted(String origin, int noteId, String unid, Map<String, Object> columnValues) {
+				if (failNextAdd.getAndSet(false)) {
+					throw new IllegalStateException("Simulated error applying the changes");
+				}
+				return true;
+			}
+		};
+		IncrementalDataProvider provider = new IncrementalDataProvider();
+		provider.init(view);
+		view.addDataProvider(provider);
+
+		try (VirtualViewRefreshScheduler scheduler = new VirtualViewRefreshScheduler(view, 1)) {
+			scheduler.refresh();
+			Assert.assertEquals(Arrays.asList(4), getDocumentNoteIds(view));
+
+			failNextAdd.set(true);
+			try {
+				scheduler.refresh();
+				Assert.fail("Expected an error applying the changes");
+			}
+			catch (NotesError e) {
+				//expected
+			}
+			Assert.assertNotNull(scheduler.getLastError(provider.getOrigin()));
+			Assert.assertEquals(Arrays.asList(4), getDocumentNoteIds(view));
+
+			//the provider fetches the lost document again
+			scheduler.refresh();
+			Assert.assertNull(scheduler.getLastError(provider.getOrigin()));
+			Assert.assertEquals(Arrays.asList(4, 8), getDocumentNoteIds(view));
+		}
+	}
+
+	private List<Integer> getDocumentNoteIds(VirtualView view) {
+		List<Integer> noteIds = new ArrayList<>();
+		view
+		.createViewNav()
+		.withCustomAccessCheck((nav, entry) -> true)
+		.build()
+		.expandAll()
+		.entriesForward(SelectedOnly.NO)
+		.forEach((entry) -> {
+			if (entry.isDocument()) {
+				noteIds.add(entry.getNoteId());
+			}
+		});
+		return noteIds;
+	}
+
+}